@@ -45,10 +45,18 @@ class BlockingRequestBuilder {
     private final MachineMetricFactory machineMetricFactory = new MachineMetricFactory();
     private final BlockingQueue<MetricDatum> queue;
     private final long timeoutNano;
+    /** Drained into each batch; or null if latencies are queued. */
+    private final LatencyAggregator latencyAggregator;
 
     BlockingRequestBuilder(CloudWatchMetricConfig config, BlockingQueue<MetricDatum> queue) {
+        this(config, queue, null);
+    }
+
+    BlockingRequestBuilder(CloudWatchMetricConfig config, BlockingQueue<MetricDatum> queue,
+            LatencyAggregator latencyAggregator) {
         this.queue = queue;
         this.timeoutNano = TimeUnit.MILLISECONDS.toNanos(config.getQueuePollTimeoutMilli());
+        this.latencyAggregator = latencyAggregator;
     }
 
     /**
@@ -57,7 +65,10 @@ class BlockingRequestBuilder {
      * necessary statistics. If there is no metrics data, this call blocks
      * indefinitely. If there is metrics data, this call will block up to about
      * {@link CloudWatchMetricConfig#getQueuePollTimeoutMilli()} number of
-     * milliseconds.
+     * milliseconds. When latencies are aggregated in memory, this call wakes
+     * up every {@link CloudWatchMetricConfig#getQueuePollTimeoutMilli()}
+     * milliseconds instead of blocking indefinitely, to find out whether any
+     * latency has been aggregated meanwhile.
      */
     Iterable<PutMetricDataRequest> nextUploadUnits() throws InterruptedException {
         final Map<String,MetricDatum> uniqueMetrics = new HashMap<String,MetricDatum>();
@@ -71,11 +82,19 @@ class BlockingRequestBuilder {
             MetricDatum datum = queue.poll(timeoutNano - elapsedNano, TimeUnit.NANOSECONDS);
             if (datum == null) {
                 // timed out
-                if (uniqueMetrics.size() > 0) {
-                    // return whatever we have so far
+                if (uniqueMetrics.size() > 0
+                        || (latencyAggregator != null && latencyAggregator.hasLatencies())) {
+                    // return whatever we have so far, including any
+                    // aggregated latencies
                     return toPutMetricDataRequests(uniqueMetrics);
                 }
                 // zero AWS related metrics
+                if (AwsSdkMetrics.isMachineMetricExcluded() && latencyAggregator != null) {
+                    // Aggregated latencies are not queued, so poll again
+                    // rather than wait indefinitely, without uploading
+                    startNano = System.nanoTime();
+                    continue;
+                }
                 if (AwsSdkMetrics.isMachineMetricExcluded()) {
                     // Short note: nothing to do, so just wait indefinitely.
                     // (Long note: There exists a pedagogical case where the
@@ -106,6 +125,9 @@ class BlockingRequestBuilder {
     private void summarize(MetricDatum datum, Map<String, MetricDatum> uniqueMetrics) {
         Double value = datum.getValue();
         if (value == null) {
+            if (datum.getStatisticValues() != null) {
+                summarizeStatistics(datum, uniqueMetrics);
+            }
             return;
         }
         List<Dimension> dims = datum.getDimensions();
@@ -135,6 +157,27 @@ class BlockingRequestBuilder {
             stat.setMinimum(value);
         }
     }
+
+    /**
+     * Merges the statistic set of the given datum, such as the summary of an
+     * aggregated latency, into the statistics of the respective unique metric.
+     */
+    private void summarizeStatistics(MetricDatum datum, Map<String, MetricDatum> uniqueMetrics) {
+        StatisticSet from = datum.getStatisticValues();
+        List<Dimension> dims = datum.getDimensions();
+        Collections.sort(dims, DimensionComparator.INSTANCE);
+        String key = datum.getMetricName() + Jackson.toJsonString(dims);
+        MetricDatum statDatum = uniqueMetrics.get(key);
+        if (statDatum == null) {
+            uniqueMetrics.put(key, datum);
+            return;
+        }
+        StatisticSet stat = statDatum.getStatisticValues();
+        stat.setSampleCount(stat.getSampleCount() + from.getSampleCount());
+        stat.setSum(stat.getSum() + from.getSum());
+        stat.setMaximum(Math.max(stat.getMaximum(), from.getMaximum()));
+        stat.setMinimum(Math.min(stat.getMinimum(), from.getMinimum()));
+    }
     /**
      * Consolidates the input metrics into a list of PutMetricDataRequest, each
      * within the maximum size limit imposed by CloudWatch.
@@ -145,6 +188,11 @@ class BlockingRequestBuilder {
         for (MetricDatum datum: machineMetricFactory.generateMetrics()) {
             summarize(datum, uniqueMetrics);
         }
+        if (latencyAggregator != null) {
+            for (MetricDatum datum: latencyAggregator.drain()) {
+                summarize(datum, uniqueMetrics);
+            }
+        }
         List<PutMetricDataRequest> list = new ArrayList<PutMetricDataRequest>();
         List<MetricDatum> data = new ArrayList<MetricDatum>();
         for (MetricDatum m: uniqueMetrics.values()) {
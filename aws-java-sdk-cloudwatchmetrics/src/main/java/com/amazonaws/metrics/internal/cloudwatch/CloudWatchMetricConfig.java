@@ -97,6 +97,12 @@ public class CloudWatchMetricConfig {
 
     private int metricQueueSize = DEFAULT_METRICS_QSIZE;
 
+    /**
+     * True if latency metrics are aggregated into in-memory histograms rather
+     * than queued per request.
+     */
+    private boolean latencyAggregationEnabled;
+
     /**
      * Returns the credential provider that holds the credentials to connect to
      * Amazon CloudWatch.
@@ -199,4 +205,28 @@ public class CloudWatchMetricConfig {
         setMetricQueueSize(metricQueueSize);
         return this;
     }
+
+    /**
+     * Returns true if latency metrics are aggregated into in-memory histograms
+     * rather than queued per request; false otherwise.
+     */
+    public boolean isLatencyAggregationEnabled() {
+        return latencyAggregationEnabled;
+    }
+
+    /**
+     * Sets whether latency metrics are aggregated, per service, request type
+     * and endpoint, into in-memory histograms that are uploaded as statistic
+     * sets and percentiles, instead of being queued per request. Aggregated
+     * latencies are never dropped for lack of space in the metric queue, and
+     * additionally carry an endpoint dimension. Disabled by default.
+     */
+    public void setLatencyAggregationEnabled(boolean latencyAggregationEnabled) {
+        this.latencyAggregationEnabled = latencyAggregationEnabled;
+    }
+
+    public CloudWatchMetricConfig withLatencyAggregationEnabled(boolean latencyAggregationEnabled) {
+        setLatencyAggregationEnabled(latencyAggregationEnabled);
+        return this;
+    }
 }
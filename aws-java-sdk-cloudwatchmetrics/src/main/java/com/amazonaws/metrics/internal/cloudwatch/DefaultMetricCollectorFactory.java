@@ -53,6 +53,7 @@ public class DefaultMetricCollectorFactory
             config.setMetricQueueSize(qSize.intValue());
         if (timeoutMilli != null)
             config.setQueuePollTimeoutMilli(timeoutMilli.longValue());
+        config.setLatencyAggregationEnabled(AwsSdkMetrics.isLatencyMetricsAggregated());
         config.setClientConfiguration(clientConfig);
         MetricCollectorSupport.startSingleton(config);
         return MetricCollectorSupport.getInstance();
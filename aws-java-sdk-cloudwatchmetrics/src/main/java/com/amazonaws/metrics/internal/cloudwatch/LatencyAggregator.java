@@ -0,0 +1,299 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.AmazonWebServiceRequest;
+import com.amazonaws.Request;
+import com.amazonaws.metrics.MetricType;
+import com.amazonaws.metrics.internal.cloudwatch.spi.Dimensions;
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.services.cloudwatch.model.StandardUnit;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.TimingInfo;
+
+/**
+ * Aggregates the predefined latency metrics of requests into a
+ * {@link LatencyHistogram} per service, metric type, request type and
+ * endpoint, so that the cost of the metrics uploaded to Amazon CloudWatch is
+ * independent of the request rate and no latency is dropped when the metrics
+ * queue is full.
+ * <p>
+ * Each time the metrics are uploaded, every histogram with new latencies is
+ * drained into a metric datum with the statistic set of the latencies, and a
+ * metric datum per percentile in {@link #PERCENTILES} with an additional
+ * {@link Dimensions#Percentile} dimension. Histograms that stayed empty since
+ * the previous upload are retired and evicted, and at most
+ * {@link #MAX_ENDPOINTS} endpoint hosts are used as dimension at a time. A
+ * request whose histogram was retired while it was being resolved records
+ * into a new one instead.
+ */
+@ThreadSafe
+class LatencyAggregator {
+    /** Percentiles reported for each aggregated latency metric. */
+    static final double[] PERCENTILES = { 50, 90, 99 };
+    private static final String[] PERCENTILE_NAMES = { "p50", "p90", "p99" };
+
+    /**
+     * Maximum number of endpoint hosts used as dimension; latencies of requests
+     * to other hosts are aggregated without the endpoint dimension, as some
+     * services (e.g. S3 with virtual hosted buckets) have a host per resource.
+     */
+    static final int MAX_ENDPOINTS = 32;
+
+    private final ConcurrentMap<Key, LatencyHistogram> histograms =
+        new ConcurrentHashMap<Key, LatencyHistogram>();
+    /** Endpoint hosts currently used as dimension. */
+    private final ConcurrentMap<String, Boolean> endpoints =
+        new ConcurrentHashMap<String, Boolean>();
+    /** Whether a latency has been recorded since the last drain. */
+    private volatile boolean recorded;
+
+    /**
+     * Returns true if the given metric type is a latency aggregated by this
+     * class; false otherwise.
+     */
+    static boolean isAggregated(MetricType type) {
+        if (!(type instanceof Field)) {
+            return false;
+        }
+        switch ((Field) type) {
+            case ClientExecuteTime:
+            case HttpClientSendRequestTime:
+            case HttpClientReceiveResponseTime:
+            case HttpRequestTime:
+            case HttpSocketReadTime:
+            case HttpClientConnectionAcquireTime:
+            case HttpClientConnectTime:
+            case HttpClientTlsHandshakeTime:
+            case HttpClientTimeToFirstByte:
+            case RequestSigningTime:
+            case ResponseProcessingTime:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Records the latencies of the given metric type measured for the given
+     * request, which must be one for which {@link #isAggregated(MetricType)}
+     * returns true.
+     */
+    void record(Field type, Request<?> request) {
+        final TimingInfo root = request.getAWSRequestMetrics().getTimingInfo();
+        final int count;
+        if (type == Field.ClientExecuteTime) {
+            count = root.isEndTimeKnown() ? 1 : 0;
+        } else {
+            count = root.getSubMeasurementCount(type);
+        }
+        if (count == 0) {
+            return;
+        }
+        final Key key = new Key(request, type, endpointOf(request));
+        for (;;) {
+            final LatencyHistogram histogram = histogramOf(key);
+            if (histogram.beginRecording()) {
+                try {
+                    if (type == Field.ClientExecuteTime) {
+                        histogram.recordNanos(root.getEndTimeNano() - root.getStartTimeNano());
+                    } else {
+                        for (int i = 0; i < count; i++) {
+                            histogram.recordNanos(root.getSubMeasurementNanos(type, i));
+                        }
+                    }
+                } finally {
+                    histogram.endRecording();
+                }
+                return;
+            }
+            // Retired by a concurrent drain, which may not have evicted it yet
+            histograms.remove(key, histogram);
+        }
+    }
+
+    /**
+     * Returns true if latencies have been recorded since the last drain.
+     */
+    boolean hasLatencies() {
+        return recorded;
+    }
+
+    /**
+     * Returns the metric data summarizing the latencies recorded since the
+     * last call, resetting the histograms and evicting the ones that stayed
+     * empty since the last call.
+     */
+    List<MetricDatum> drain() {
+        recorded = false;
+        final List<MetricDatum> data = new ArrayList<MetricDatum>();
+        final Set<String> endpointsInUse = new HashSet<String>();
+        for (Map.Entry<Key, LatencyHistogram> entry : histograms.entrySet()) {
+            final Key key = entry.getKey();
+            final LatencyHistogram histogram = entry.getValue();
+            LatencyHistogram.Snapshot snapshot = histogram.drain();
+            if (snapshot == null && histogram.retire()) {
+                histograms.remove(key, histogram);
+                // Picks up any latency recorded into it between the drain and the retirement
+                snapshot = histogram.drain();
+            } else if (key.endpoint != null) {
+                endpointsInUse.add(key.endpoint);
+            }
+            if (snapshot == null) {
+                continue;
+            }
+            data.add(new MetricDatum()
+                .withMetricName(key.serviceName)
+                .withDimensions(key.dimensions())
+                .withUnit(StandardUnit.Milliseconds)
+                .withStatisticValues(snapshot.toStatisticSet()));
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                final List<Dimension> dims = key.dimensions();
+                dims.add(new Dimension()
+                    .withName(Dimensions.Percentile.name())
+                    .withValue(PERCENTILE_NAMES[i]));
+                data.add(new MetricDatum()
+                    .withMetricName(key.serviceName)
+                    .withDimensions(dims)
+                    .withUnit(StandardUnit.Milliseconds)
+                    .withValue(LatencyHistogram.millisOf(
+                        snapshot.getValueAtPercentile(PERCENTILES[i]))));
+            }
+        }
+        endpoints.keySet().retainAll(endpointsInUse);
+        return data;
+    }
+
+    /**
+     * Returns the number of histograms currently held.
+     */
+    int size() {
+        return histograms.size();
+    }
+
+    private LatencyHistogram histogramOf(Key key) {
+        if (!recorded) {
+            recorded = true;
+        }
+        LatencyHistogram histogram = histograms.get(key);
+        if (histogram == null) {
+            final LatencyHistogram created = new LatencyHistogram();
+            histogram = histograms.putIfAbsent(key, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * Returns the host of the endpoint of the given request to use as
+     * dimension; or null if there is none or {@link #MAX_ENDPOINTS} other
+     * hosts are already in use.
+     */
+    private String endpointOf(Request<?> request) {
+        final URI uri = request.getEndpoint();
+        final String host = uri == null ? null : uri.getHost();
+        if (host == null || endpoints.containsKey(host)) {
+            return host;
+        }
+        if (endpoints.size() >= MAX_ENDPOINTS) {
+            return null;
+        }
+        endpoints.putIfAbsent(host, Boolean.TRUE);
+        return host;
+    }
+
+    /**
+     * Identifies a histogram by service, metric type, request type and endpoint.
+     */
+    private static final class Key {
+        private final String serviceName;
+        private final Field type;
+        private final Class<?> requestType;
+        private final String endpoint;
+        private final int hash;
+
+        Key(Request<?> request, Field type, String endpoint) {
+            final AmazonWebServiceRequest original = request.getOriginalRequest();
+            this.serviceName = request.getServiceName();
+            this.type = type;
+            this.requestType = original == null ? null : original.getClass();
+            this.endpoint = endpoint;
+            int h = serviceName == null ? 0 : serviceName.hashCode();
+            h = 31 * h + type.hashCode();
+            h = 31 * h + (requestType == null ? 0 : requestType.hashCode());
+            h = 31 * h + (endpoint == null ? 0 : endpoint.hashCode());
+            this.hash = h;
+        }
+
+        /**
+         * Returns a new mutable list of the dimensions of this key.
+         */
+        List<Dimension> dimensions() {
+            final List<Dimension> dims = new ArrayList<Dimension>(4);
+            dims.add(new Dimension()
+                .withName(Dimensions.MetricType.name())
+                .withValue(type.name()));
+            if (requestType != null) {
+                dims.add(new Dimension()
+                    .withName(Dimensions.RequestType.name())
+                    .withValue(requestType.getSimpleName()));
+            }
+            if (endpoint != null) {
+                dims.add(new Dimension()
+                    .withName(Dimensions.Endpoint.name())
+                    .withValue(endpoint));
+            }
+            return dims;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            final Key that = (Key) o;
+            return type == that.type
+                && requestType == that.requestType
+                && equal(serviceName, that.serviceName)
+                && equal(endpoint, that.endpoint);
+        }
+
+        private static boolean equal(String a, String b) {
+            return a == null ? b == null : a.equals(b);
+        }
+    }
+}
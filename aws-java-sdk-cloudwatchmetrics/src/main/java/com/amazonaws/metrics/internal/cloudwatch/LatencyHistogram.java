@@ -0,0 +1,242 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.apache.http.annotation.ThreadSafe;
+
+import com.amazonaws.services.cloudwatch.model.StatisticSet;
+
+/**
+ * A lock-free histogram of latencies in microseconds with buckets of
+ * logarithmically increasing width, in the manner of an HDR histogram: each
+ * power of two is divided into {@value #HALF_SUB_BUCKET_COUNT} linear buckets,
+ * so that any recorded value is known to within about 1.6%. Values above one
+ * hour are recorded as one hour.
+ * <p>
+ * Recording only updates atomic counters. The counts are drained, and reset,
+ * into a {@link Snapshot} each time the metrics are uploaded; values recorded
+ * concurrently with a drain are counted in either that snapshot or the next.
+ * A histogram that is no longer needed is {@link #retire() retired}, after
+ * which nothing can be recorded into it.
+ */
+@ThreadSafe
+class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    private static final int HALF_SUB_BUCKET_COUNT = SUB_BUCKET_COUNT / 2;
+    static final long MAX_TRACKABLE_MICROS = TimeUnit.HOURS.toMicros(1);
+    private static final int BUCKET_COUNT = indexOf(MAX_TRACKABLE_MICROS) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong sumMicros = new AtomicLong();
+    private final AtomicLong minMicros = new AtomicLong(Long.MAX_VALUE);
+    private final AtomicLong maxMicros = new AtomicLong(-1);
+
+    private static final int RETIRED = -1;
+    /** Number of recorders currently recording; or {@link #RETIRED}. */
+    private final AtomicInteger recorders = new AtomicInteger();
+
+    /**
+     * Marks the start of recording into this histogram, to be followed by
+     * {@link #endRecording()}. Returns false, and nothing must be recorded, if
+     * the histogram has been retired.
+     */
+    boolean beginRecording() {
+        for (;;) {
+            final int n = recorders.get();
+            if (n == RETIRED) {
+                return false;
+            }
+            if (recorders.compareAndSet(n, n + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Marks the end of recording started by {@link #beginRecording()}.
+     */
+    void endRecording() {
+        recorders.decrementAndGet();
+    }
+
+    /**
+     * Retires this histogram unless latencies are being recorded into it.
+     * Returns true if retired, in which case every latency recorded into it
+     * has completed and a subsequent {@link #drain()} sees them all.
+     */
+    boolean retire() {
+        return recorders.compareAndSet(0, RETIRED);
+    }
+
+    /**
+     * Records a latency given in nanoseconds, between
+     * {@link #beginRecording()} and {@link #endRecording()}. Negative values
+     * are ignored.
+     */
+    void recordNanos(long nanos) {
+        if (nanos < 0) {
+            return;
+        }
+        final long micros = Math.min(TimeUnit.NANOSECONDS.toMicros(nanos), MAX_TRACKABLE_MICROS);
+        sumMicros.addAndGet(micros);
+        long min;
+        while (micros < (min = minMicros.get()) && !minMicros.compareAndSet(min, micros))
+            ;
+        long max;
+        while (micros > (max = maxMicros.get()) && !maxMicros.compareAndSet(max, micros))
+            ;
+        counts.incrementAndGet(indexOf(micros));
+    }
+
+    /**
+     * Returns the latencies recorded since the last drain and resets the
+     * histogram; or null if nothing has been recorded since.
+     */
+    Snapshot drain() {
+        final long[] drained = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (counts.get(i) != 0) {
+                drained[i] = counts.getAndSet(i, 0);
+                total += drained[i];
+            }
+        }
+        final long sum = sumMicros.getAndSet(0);
+        final long min = minMicros.getAndSet(Long.MAX_VALUE);
+        final long max = maxMicros.getAndSet(-1);
+        if (total == 0) {
+            return null;
+        }
+        return new Snapshot(drained, total, sum, min, max);
+    }
+
+    /**
+     * Returns the index of the bucket of the given non-negative value.
+     */
+    static int indexOf(long micros) {
+        if (micros < SUB_BUCKET_COUNT) {
+            return (int) micros;
+        }
+        // Shift that brings the value into [HALF_SUB_BUCKET_COUNT, SUB_BUCKET_COUNT)
+        final int shift = (63 - Long.numberOfLeadingZeros(micros)) - (SUB_BUCKET_BITS - 1);
+        return shift * HALF_SUB_BUCKET_COUNT + (int) (micros >>> shift);
+    }
+
+    /**
+     * Returns the smallest value of the bucket at the given index.
+     */
+    static long lowestValueOf(int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = index / HALF_SUB_BUCKET_COUNT - 1;
+        final long subBucket = index % HALF_SUB_BUCKET_COUNT + HALF_SUB_BUCKET_COUNT;
+        return subBucket << shift;
+    }
+
+    /**
+     * Returns the value in the middle of the bucket at the given index.
+     */
+    static long medianValueOf(int index) {
+        final long lowest = lowestValueOf(index);
+        final long width = lowestValueOf(index + 1) - lowest;
+        return lowest + (width - 1) / 2;
+    }
+
+    /**
+     * The latencies recorded in a histogram between two drains.
+     */
+    static final class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sumMicros;
+        private final long minMicros;
+        private final long maxMicros;
+
+        Snapshot(long[] counts, long count, long sumMicros, long minMicros, long maxMicros) {
+            this.counts = counts;
+            this.count = count;
+            this.sumMicros = sumMicros;
+            // A value being recorded during the drain may be counted in the
+            // buckets before the minimum and maximum are updated.
+            this.minMicros = minMicros <= maxMicros ? minMicros : lowestValueOf(firstIndex());
+            this.maxMicros = minMicros <= maxMicros ? maxMicros : medianValueOf(lastIndex());
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        /**
+         * Returns the value in microseconds below which the given percentage
+         * of the recorded values fall.
+         *
+         * @param percentile
+         *            a percentage between 0 and 100
+         */
+        long getValueAtPercentile(double percentile) {
+            final long rank = Math.max(1, (long) Math.ceil(percentile / 100.0 * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    // Never report beyond the observed extremes
+                    return Math.max(minMicros, Math.min(maxMicros, medianValueOf(i)));
+                }
+            }
+            return maxMicros;
+        }
+
+        /**
+         * Returns the statistics of this snapshot in milliseconds.
+         */
+        StatisticSet toStatisticSet() {
+            return new StatisticSet()
+                .withSampleCount(Double.valueOf(count))
+                .withSum(millisOf(sumMicros))
+                .withMinimum(millisOf(minMicros))
+                .withMaximum(millisOf(maxMicros));
+        }
+
+        private int firstIndex() {
+            int i = 0;
+            while (i < counts.length - 1 && counts[i] == 0) {
+                i++;
+            }
+            return i;
+        }
+
+        private int lastIndex() {
+            int i = counts.length - 1;
+            while (i > 0 && counts[i] == 0) {
+                i--;
+            }
+            return i;
+        }
+    }
+
+    /**
+     * Returns the given number of microseconds in milliseconds.
+     */
+    static Double millisOf(long micros) {
+        return Double.valueOf(micros / 1000.0);
+    }
+}
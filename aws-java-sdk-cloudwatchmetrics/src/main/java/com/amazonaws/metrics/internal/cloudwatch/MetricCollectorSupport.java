@@ -87,6 +87,8 @@ public class MetricCollectorSupport extends MetricCollector {
     private final ServiceMetricCollectorSupport serviceMetricCollector;
 
     private final BlockingQueue<MetricDatum> queue;
+    /** Aggregates the latency metrics; or null if they are queued. */
+    private final LatencyAggregator latencyAggregator;
 //    private final PredefinedMetricTransformer transformer = new PredefinedMetricTransformer();
     private final CloudWatchMetricConfig config;
     private MetricUploaderThread uploaderThread;
@@ -97,7 +99,10 @@ public class MetricCollectorSupport extends MetricCollector {
         }
         this.config = config;
         this.queue = new LinkedBlockingQueue<MetricDatum>(config.getMetricQueueSize());
-        this.requestMetricCollector = new RequestMetricCollectorSupport(queue);
+        this.latencyAggregator = config.isLatencyAggregationEnabled()
+                               ? new LatencyAggregator()
+                               : null;
+        this.requestMetricCollector = new RequestMetricCollectorSupport(queue, latencyAggregator);
         this.serviceMetricCollector = new ServiceMetricCollectorSupport(queue);
     }
 
@@ -107,7 +112,7 @@ public class MetricCollectorSupport extends MetricCollector {
             if (uploaderThread != null) {
                 return false;   // already started
             }
-            uploaderThread = new MetricUploaderThread(config, queue);
+            uploaderThread = new MetricUploaderThread(config, queue, latencyAggregator);
             uploaderThread.start();
         }
         return true;
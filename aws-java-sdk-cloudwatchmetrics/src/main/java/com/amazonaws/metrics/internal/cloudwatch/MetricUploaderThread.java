@@ -37,9 +37,16 @@ class MetricUploaderThread extends Thread {
 
     MetricUploaderThread(CloudWatchMetricConfig config,
             BlockingQueue<MetricDatum> queue) {
+        this(config, queue, (LatencyAggregator) null);
+    }
+
+    MetricUploaderThread(CloudWatchMetricConfig config,
+            BlockingQueue<MetricDatum> queue,
+            LatencyAggregator latencyAggregator) {
         this(config,
              queue,
-             createCloudWatchClient(config));
+             createCloudWatchClient(config),
+             latencyAggregator);
     }
 
     private static AmazonCloudWatchClient createCloudWatchClient(
@@ -62,13 +69,21 @@ class MetricUploaderThread extends Thread {
     MetricUploaderThread(CloudWatchMetricConfig config,
         BlockingQueue<MetricDatum> queue,
         AmazonCloudWatchClient client)
+    {
+        this(config, queue, client, null);
+    }
+
+    MetricUploaderThread(CloudWatchMetricConfig config,
+        BlockingQueue<MetricDatum> queue,
+        AmazonCloudWatchClient client,
+        LatencyAggregator latencyAggregator)
     {
         super(THREAD_NAME);
         if (config == null || queue == null) {
             throw new IllegalArgumentException();
         }
         this.cloudwatchClient = client;
-        this.qIterator = new BlockingRequestBuilder(config, queue);
+        this.qIterator = new BlockingRequestBuilder(config, queue, latencyAggregator);
         String endpoint = config.getCloudWatchEndPoint();
         if (endpoint != null)
             cloudwatchClient.setEndpoint(endpoint);
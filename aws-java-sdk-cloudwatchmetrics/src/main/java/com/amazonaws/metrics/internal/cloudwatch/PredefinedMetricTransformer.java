@@ -71,6 +71,9 @@ public class PredefinedMetricTransformer {
                 case HttpClientPoolAvailableCount:
                 case HttpClientPoolLeasedCount:
                 case HttpClientPoolPendingCount:
+                case HttpClientBytesSent:
+                case HttpClientBytesReceived:
+                case HttpClientReusedConnectionCount:
                     return metricOfCount(predefined, request, response);
                 case RequestCount:  // intentionally fall through to reuse the same routine as RetryCount
                 case RetryCount:
@@ -87,6 +90,10 @@ public class PredefinedMetricTransformer {
                 case HttpClientReceiveResponseTime:
                 case HttpRequestTime:
                 case HttpSocketReadTime:
+                case HttpClientConnectionAcquireTime:
+                case HttpClientConnectTime:
+                case HttpClientTlsHandshakeTime:
+                case HttpClientTimeToFirstByte:
                     return latencyMetricOf(predefined, request, response, INCLUDE_REQUEST_TYPE);
                 case Exception:
                 case ThrottleException:
@@ -129,12 +136,11 @@ public class PredefinedMetricTransformer {
         TimingInfo ti = m.getTimingInfo();
         // Always retrieve the request count even for retry which is equivalent
         // to the number of requests minus one.
-        Number counter = ti.getCounter(Field.RequestCount.name());
-        if (counter == null) {
+        if (!ti.hasCounter(Field.RequestCount)) {
             // this is possible if one of the request handlers screwed up
             return Collections.emptyList();
         }
-        int requestCount = counter.intValue();
+        int requestCount = (int) ti.getCounterValue(Field.RequestCount);
         if (requestCount < 1) {
             LogFactory.getLog(getClass()).debug(
                 "request count must be at least one");
@@ -163,11 +169,10 @@ public class PredefinedMetricTransformer {
             Field metricType, Request<?> req, Object resp) {
         AWSRequestMetrics m = req.getAWSRequestMetrics();
         TimingInfo ti = m.getTimingInfo();
-        Number counter = ti.getCounter(metricType.name());
-        if (counter == null) {
+        if (!ti.hasCounter(metricType)) {
             return Collections.emptyList();
         }
-        final double count = counter.doubleValue();
+        final double count = ti.getCounterValue(metricType);
         if (count < 1) {
             return Collections.emptyList();
         } else {
@@ -197,6 +202,9 @@ public class PredefinedMetricTransformer {
         AWSRequestMetrics m = req.getAWSRequestMetrics();
         TimingInfo root = m.getTimingInfo();
         final String metricName = metricType.name();
+        if (metricType instanceof Field) {
+            return latencyMetricOf((Field) metricType, root, req, includesRequestType);
+        }
         List<TimingInfo> subMeasures =
             root.getAllSubMeasurements(metricName);
         if (subMeasures != null) {
@@ -229,6 +237,41 @@ public class PredefinedMetricTransformer {
         return Collections.emptyList();
     }
 
+    /**
+     * Returns all the latency metric data recorded for the specified
+     * predefined metric, reading the durations directly off the timing info
+     * rather than through a {@link TimingInfo} per sub-measurement.
+     */
+    private List<MetricDatum> latencyMetricOf(Field metricType, TimingInfo root,
+            Request<?> req, boolean includesRequestType) {
+        final int count = root.getSubMeasurementCount(metricType);
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        List<MetricDatum> result = new ArrayList<MetricDatum>(count);
+        for (int i = 0; i < count; i++) {
+            final long nanos = root.getSubMeasurementNanos(metricType, i);
+            if (nanos < 0) { // being defensive
+                continue;
+            }
+            List<Dimension> dims = new ArrayList<Dimension>();
+            dims.add(new Dimension()
+                    .withName(Dimensions.MetricType.name())
+                    .withValue(metricType.name()));
+            if (includesRequestType) {
+                dims.add(new Dimension()
+                        .withName(Dimensions.RequestType.name())
+                        .withValue(requestType(req)));
+            }
+            result.add(new MetricDatum()
+                .withMetricName(req.getServiceName())
+                .withDimensions(dims)
+                .withUnit(StandardUnit.Milliseconds)
+                .withValue(TimingInfo.durationMilliOf(0, nanos)));
+        }
+        return result;
+    }
+
     /**
      * Returns a request type specific metrics for
      * {@link Field#ClientExecuteTime} which is special in the sense that it
@@ -278,11 +321,19 @@ public class PredefinedMetricTransformer {
         AWSRequestMetrics m = req.getAWSRequestMetrics();
         TimingInfo ti = m.getTimingInfo();
         final String metricName = type.name();
-        Number counter = ti.getCounter(metricName);
-        if (counter == null) {
-            return Collections.emptyList();
+        final int count;
+        if (type instanceof Field) {
+            if (!ti.hasCounter((Field) type)) {
+                return Collections.emptyList();
+            }
+            count = (int) ti.getCounterValue((Field) type);
+        } else {
+            Number counter = ti.getCounter(metricName);
+            if (counter == null) {
+                return Collections.emptyList();
+            }
+            count = counter.intValue();
         }
-        int count = counter.intValue();
         if (count < 1) {
             LogFactory.getLog(getClass()).debug("Count must be at least one");
             return Collections.emptyList();
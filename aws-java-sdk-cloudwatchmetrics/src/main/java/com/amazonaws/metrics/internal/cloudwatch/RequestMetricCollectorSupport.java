@@ -28,6 +28,7 @@ import com.amazonaws.metrics.RequestMetricCollector;
 import com.amazonaws.metrics.RequestMetricType;
 import com.amazonaws.services.cloudwatch.model.MetricDatum;
 import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
 
 /**
  * This is the default implementation of an AWS SDK request metric collection
@@ -41,16 +42,29 @@ public class RequestMetricCollectorSupport extends RequestMetricCollector
     protected final static Log log = LogFactory.getLog(RequestMetricCollectorSupport.class);
     private final BlockingQueue<MetricDatum> queue;
     private final PredefinedMetricTransformer transformer = new PredefinedMetricTransformer();
+    /**
+     * Aggregates the latency metrics instead of queuing them; or null if they
+     * are queued.
+     */
+    private final LatencyAggregator latencyAggregator;
 
     protected RequestMetricCollectorSupport(BlockingQueue<MetricDatum> queue) {
+        this(queue, null);
+    }
+
+    RequestMetricCollectorSupport(BlockingQueue<MetricDatum> queue,
+            LatencyAggregator latencyAggregator) {
         this.queue = queue;
+        this.latencyAggregator = latencyAggregator;
     }
 
     /**
      * Collects the metrics at the end of a request/response cycle, transforms
      * the metric data points into a cloud watch metric datum representation,
      * and then adds it to a memory queue so it will get summarized into the
-     * necessary statistics and uploaded to Amazon CloudWatch.
+     * necessary statistics and uploaded to Amazon CloudWatch. Latency metrics
+     * are recorded into in-memory histograms instead when
+     * {@link CloudWatchMetricConfig#isLatencyAggregationEnabled()}.
      */
     @Override
     public void collectMetrics(Request<?> request, Response<?> response) {
@@ -70,6 +84,10 @@ public class RequestMetricCollectorSupport extends RequestMetricCollector
         for (MetricType type: AwsSdkMetrics.getPredefinedMetrics()) {
             if (!(type instanceof RequestMetricType))
                 continue;
+            if (latencyAggregator != null && LatencyAggregator.isAggregated(type)) {
+                latencyAggregator.record((Field) type, request);
+                continue;
+            }
             PredefinedMetricTransformer transformer = getTransformer();
             for (MetricDatum datum : transformer.toMetricData(type, request, response)) {
                 try {
@@ -38,5 +38,14 @@ public enum Dimensions {
      * JVM used for per-JVM level metrics with a single metric namespace.
      */
     JVM,
+    /**
+     * Host name of the service endpoint a request was sent to, used for
+     * aggregated latency metrics.
+     */
+    Endpoint,
+    /**
+     * Percentile such as p50, p90 or p99 of an aggregated latency metric.
+     */
+    Percentile,
     ;
 }
\ No newline at end of file
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.metrics.internal.cloudwatch.spi.Dimensions;
+import com.amazonaws.services.cloudwatch.model.Dimension;
+import com.amazonaws.services.cloudwatch.model.ListMetricsRequest;
+import com.amazonaws.services.cloudwatch.model.MetricDatum;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.AWSRequestMetricsFullSupport;
+import com.amazonaws.util.TimingInfo;
+
+public class LatencyAggregatorTest {
+    private final LatencyAggregator aggregator = new LatencyAggregator();
+
+    @Test
+    public void drain_ReportsStatisticsAndPercentilesPerKey() {
+        aggregator.record(Field.HttpRequestTime, request("monitoring.us-east-1.amazonaws.com", 10, 20, 30));
+        assertTrue(aggregator.hasLatencies());
+
+        List<MetricDatum> data = aggregator.drain();
+        assertFalse(aggregator.hasLatencies());
+        assertEquals(1 + LatencyAggregator.PERCENTILES.length, data.size());
+
+        MetricDatum statistics = data.get(0);
+        assertEquals("AmazonCloudWatch", statistics.getMetricName());
+        assertEquals(3.0, statistics.getStatisticValues().getSampleCount(), 0.0);
+        assertEquals(60.0, statistics.getStatisticValues().getSum(), 0.0);
+        assertEquals("HttpRequestTime", dimension(statistics, Dimensions.MetricType));
+        assertEquals("ListMetricsRequest", dimension(statistics, Dimensions.RequestType));
+        assertEquals("monitoring.us-east-1.amazonaws.com", dimension(statistics, Dimensions.Endpoint));
+        assertNull(dimension(statistics, Dimensions.Percentile));
+
+        assertEquals("p50", dimension(data.get(1), Dimensions.Percentile));
+        assertEquals(20.0, data.get(1).getValue(), 20.0 / 64);
+        assertEquals("p99", dimension(data.get(3), Dimensions.Percentile));
+        assertEquals(30.0, data.get(3).getValue(), 30.0 / 64);
+    }
+
+    @Test
+    public void histogramsEmptySinceLastDrain_AreEvicted() {
+        aggregator.record(Field.HttpRequestTime, request("monitoring.us-east-1.amazonaws.com", 10));
+        aggregator.record(Field.HttpRequestTime, request("monitoring.us-west-2.amazonaws.com", 10));
+        assertEquals(2, aggregator.size());
+
+        assertEquals(2 * (1 + LatencyAggregator.PERCENTILES.length), aggregator.drain().size());
+        assertEquals(2, aggregator.size());
+
+        aggregator.record(Field.HttpRequestTime, request("monitoring.us-west-2.amazonaws.com", 10));
+        assertEquals(1 + LatencyAggregator.PERCENTILES.length, aggregator.drain().size());
+        assertEquals(1, aggregator.size());
+
+        assertTrue(aggregator.drain().isEmpty());
+        assertEquals(0, aggregator.size());
+    }
+
+    @Test
+    public void endpointDimension_IsCapped() {
+        final int hosts = LatencyAggregator.MAX_ENDPOINTS + 5;
+        for (int i = 0; i < hosts; i++) {
+            aggregator.record(Field.HttpRequestTime, request("bucket-" + i + ".s3.amazonaws.com", 10));
+        }
+        // The hosts beyond the cap share a histogram without the endpoint dimension
+        assertEquals(LatencyAggregator.MAX_ENDPOINTS + 1, aggregator.size());
+
+        final Set<String> endpoints = new HashSet<String>();
+        MetricDatum withoutEndpoint = null;
+        for (MetricDatum datum : aggregator.drain()) {
+            if (datum.getStatisticValues() == null) {
+                continue;
+            }
+            final String endpoint = dimension(datum, Dimensions.Endpoint);
+            if (endpoint == null) {
+                withoutEndpoint = datum;
+            } else {
+                endpoints.add(endpoint);
+            }
+        }
+        assertEquals(LatencyAggregator.MAX_ENDPOINTS, endpoints.size());
+        assertNotNull(withoutEndpoint);
+        assertEquals(5.0, withoutEndpoint.getStatisticValues().getSampleCount(), 0.0);
+    }
+
+    @Test
+    public void endpointsOfEvictedHistograms_AreReleased() {
+        for (int i = 0; i < LatencyAggregator.MAX_ENDPOINTS; i++) {
+            aggregator.record(Field.HttpRequestTime, request("bucket-" + i + ".s3.amazonaws.com", 10));
+        }
+        aggregator.drain();
+        aggregator.drain();
+        assertEquals(0, aggregator.size());
+
+        aggregator.record(Field.HttpRequestTime, request("other.s3.amazonaws.com", 10));
+        assertEquals("other.s3.amazonaws.com", dimension(aggregator.drain().get(0), Dimensions.Endpoint));
+    }
+
+    @Test
+    public void latenciesRecordedWhileEvicting_AreNotLost() throws Exception {
+        final int threads = 4;
+        final int requestsPerThread = 20000;
+        final CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            final Request<?> request = request("host-" + t + ".s3.amazonaws.com", 10);
+            new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < requestsPerThread; i++) {
+                        aggregator.record(Field.HttpRequestTime, request);
+                    }
+                    done.countDown();
+                }
+            }.start();
+        }
+        long count = 0;
+        do {
+            count += sampleCount(aggregator.drain());
+        } while (!done.await(0, TimeUnit.MILLISECONDS));
+        count += sampleCount(aggregator.drain());
+
+        assertEquals(threads * requestsPerThread, count);
+    }
+
+    private static long sampleCount(List<MetricDatum> data) {
+        long count = 0;
+        for (MetricDatum datum : data) {
+            if (datum.getStatisticValues() != null) {
+                count += datum.getStatisticValues().getSampleCount().longValue();
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Returns a request to the given host with the given http request times in milliseconds.
+     */
+    private static Request<?> request(String host, long... millis) {
+        final Request<?> request = new DefaultRequest<Object>(new ListMetricsRequest(), "AmazonCloudWatch");
+        request.setEndpoint(URI.create("https://" + host));
+        request.setAWSRequestMetrics(new AWSRequestMetricsFullSupport());
+        final TimingInfo timingInfo = request.getAWSRequestMetrics().getTimingInfo();
+        for (long m : millis) {
+            timingInfo.addSubMeasurement(Field.HttpRequestTime.name(),
+                TimingInfo.newTimingInfoFullSupport(0, TimeUnit.MILLISECONDS.toNanos(m)));
+        }
+        return request;
+    }
+
+    private static String dimension(MetricDatum datum, Dimensions name) {
+        for (Dimension dimension : datum.getDimensions()) {
+            if (dimension.getName().equals(name.name())) {
+                return dimension.getValue();
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.metrics.internal.cloudwatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.amazonaws.services.cloudwatch.model.StatisticSet;
+
+public class LatencyHistogramTest {
+    private static final int LAST_INDEX = LatencyHistogram.indexOf(LatencyHistogram.MAX_TRACKABLE_MICROS);
+
+    @Test
+    public void smallValues_HaveTheirOwnBucket() {
+        for (int micros = 0; micros < 128; micros++) {
+            assertEquals(micros, LatencyHistogram.indexOf(micros));
+            assertEquals(micros, LatencyHistogram.lowestValueOf(micros));
+        }
+    }
+
+    @Test
+    public void bucketBoundaries_RoundTrip() {
+        for (int i = 0; i < LAST_INDEX; i++) {
+            final long lowest = LatencyHistogram.lowestValueOf(i);
+            final long next = LatencyHistogram.lowestValueOf(i + 1);
+            assertTrue(next > lowest);
+            assertEquals(i, LatencyHistogram.indexOf(lowest));
+            assertEquals(i, LatencyHistogram.indexOf(next - 1));
+        }
+    }
+
+    @Test
+    public void buckets_HaveBoundedRelativeWidth() {
+        final Random random = new Random(42);
+        for (int n = 0; n < 100000; n++) {
+            final long micros = (long) (random.nextDouble() * LatencyHistogram.MAX_TRACKABLE_MICROS);
+            final int index = LatencyHistogram.indexOf(micros);
+            final long lowest = LatencyHistogram.lowestValueOf(index);
+            final long width = LatencyHistogram.lowestValueOf(index + 1) - lowest;
+            assertTrue(lowest <= micros && micros < lowest + width);
+            assertTrue(micros + " in bucket of width " + width, width <= Math.max(1, lowest / 64));
+        }
+    }
+
+    @Test
+    public void percentiles_OfUniformLatencies() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int millis = 1; millis <= 1000; millis++) {
+            histogram.recordNanos(TimeUnit.MILLISECONDS.toNanos(millis));
+        }
+        final LatencyHistogram.Snapshot snapshot = histogram.drain();
+
+        assertEquals(1000, snapshot.getCount());
+        assertMicros(500000, snapshot.getValueAtPercentile(50));
+        assertMicros(900000, snapshot.getValueAtPercentile(90));
+        assertMicros(990000, snapshot.getValueAtPercentile(99));
+        assertEquals(1000000, snapshot.getValueAtPercentile(100));
+        assertMicros(1000, snapshot.getValueAtPercentile(0));
+
+        final StatisticSet statistics = snapshot.toStatisticSet();
+        assertEquals(1000.0, statistics.getSampleCount(), 0.0);
+        assertEquals(500500.0, statistics.getSum(), 0.0);
+        assertEquals(1.0, statistics.getMinimum(), 0.0);
+        assertEquals(1000.0, statistics.getMaximum(), 0.0);
+    }
+
+    @Test
+    public void percentiles_OfSingleValue_AreTheValue() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(TimeUnit.MICROSECONDS.toNanos(123456));
+        final LatencyHistogram.Snapshot snapshot = histogram.drain();
+        assertEquals(123456, snapshot.getValueAtPercentile(50));
+        assertEquals(123456, snapshot.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void drain_ResetsHistogram() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(TimeUnit.MILLISECONDS.toNanos(5));
+        assertEquals(1, histogram.drain().getCount());
+        assertNull(histogram.drain());
+
+        histogram.recordNanos(TimeUnit.MILLISECONDS.toNanos(7));
+        final LatencyHistogram.Snapshot snapshot = histogram.drain();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(7.0, snapshot.toStatisticSet().getMinimum(), 0.0);
+    }
+
+    @Test
+    public void negativeLatencies_AreIgnored() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(-1);
+        assertNull(histogram.drain());
+    }
+
+    @Test
+    public void latenciesAboveOneHour_AreRecordedAsOneHour() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        histogram.recordNanos(TimeUnit.HOURS.toNanos(5));
+        final LatencyHistogram.Snapshot snapshot = histogram.drain();
+        assertEquals(LatencyHistogram.MAX_TRACKABLE_MICROS, snapshot.getValueAtPercentile(50));
+    }
+
+    @Test
+    public void histogramBeingRecordedInto_IsNotRetired() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertTrue(histogram.beginRecording());
+        assertFalse(histogram.retire());
+        histogram.endRecording();
+
+        assertTrue(histogram.retire());
+        assertFalse(histogram.beginRecording());
+    }
+
+    /**
+     * Asserts the given value is within the precision of the histogram of the expected one.
+     */
+    private static void assertMicros(long expected, long actual) {
+        assertEquals(expected, actual, expected / 64.0);
+    }
+}
@@ -2,6 +2,9 @@
     private static class ${memberModel.name}MapEntryUnmarshaller
            implements Unmarshaller<Map.Entry<${memberModel.mapModel.keyType}, ${memberModel.mapModel.valueType}>, StaxUnmarshallerContext> {
 
+        private static final StaxPathExpression KEY_PATH = StaxPathExpression.compile("${memberModel.mapModel.keyLocationName}");
+        private static final StaxPathExpression VALUE_PATH = StaxPathExpression.compile("${memberModel.mapModel.valueLocationName}");
+
         @Override
         public Entry<${memberModel.mapModel.keyType}, ${memberModel.mapModel.valueType}> unmarshall(StaxUnmarshallerContext context) throws Exception {
             int originalDepth = context.getCurrentDepth();
@@ -15,11 +18,11 @@
                 if (xmlEvent.isEndDocument()) return entry;
 
                 if (xmlEvent.isAttribute() || xmlEvent.isStartElement()) {
-                    if (context.testExpression("${memberModel.mapModel.keyLocationName}", targetDepth)) {
+                    if (context.testExpression(KEY_PATH, targetDepth)) {
                         entry.setKey(${memberModel.mapModel.keyType}StaxUnmarshaller.getInstance().unmarshall(context));
                         continue;
                     }
-                    if (context.testExpression("${memberModel.mapModel.valueLocationName}", targetDepth)) {
+                    if (context.testExpression(VALUE_PATH, targetDepth)) {
                         entry.setValue(${memberModel.mapModel.valueModel.variable.simpleType}StaxUnmarshaller.getInstance().unmarshall(context));
                         continue;
                     }
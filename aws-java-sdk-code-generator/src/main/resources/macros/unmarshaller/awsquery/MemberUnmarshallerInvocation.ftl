@@ -1,39 +1,56 @@
-<#macro content shapeVarName memberModel >
+<#-- Path of the elements unmarshalled into the member, relative to the depth of the enclosing shape -->
+<#function expressionPath memberModel>
+    <#local unmarshallerLocationName = memberModel.http.unmarshallLocationName />
+    <#if memberModel.http.additionalUnmarshallingPath?has_content>
+        <#local unmarshallerLocationName = unmarshallerLocationName + "/" + memberModel.http.additionalUnmarshallingPath />
+    </#if>
 
-<#local unmarshallerLocationName = memberModel.http.unmarshallLocationName />
-<#if memberModel.http.additionalUnmarshallingPath?has_content>
-    <#local unmarshallerLocationName = unmarshallerLocationName + "/" + memberModel.http.additionalUnmarshallingPath />
-</#if>
+    <#if memberModel.list>
+        <#if memberModel.http.flattened>
+            <#local listMemberPath = memberModel.listModel.memberLocationName!memberModel.name />
+        <#else>
+            <#local listMemberPath = unmarshallerLocationName + "/" + memberModel.listModel.memberLocationName!"member" />
+        </#if>
 
-<#if memberModel.list>
-    <#if memberModel.http.flattened>
-        <#local listMemberPath = memberModel.listModel.memberLocationName!memberModel.name />
-    <#else>
-        <#local listMemberPath = unmarshallerLocationName + "/" + memberModel.listModel.memberLocationName!"member" />
+        <#if memberModel.listModel.memberAdditionalUnmarshallingPath?has_content>
+            <#local listMemberPath = listMemberPath + "/" + memberModel.listModel.memberAdditionalUnmarshallingPath />
+        </#if>
+        <#return listMemberPath />
+    <#elseif memberModel.map>
+        <#if memberModel.http.flattened>
+            <#return unmarshallerLocationName />
+        </#if>
+        <#return "${unmarshallerLocationName}/entry" />
     </#if>
+    <#return unmarshallerLocationName />
+</#function>
 
-    <#if memberModel.listModel.memberAdditionalUnmarshallingPath?has_content>
-        <#local listMemberPath = listMemberPath + "/" + memberModel.listModel.memberAdditionalUnmarshallingPath />
-    </#if>
-                if (context.testExpression("${listMemberPath}", targetDepth)) {
+<#-- Name of the constant holding the compiled expressionPath of the member -->
+<#function expressionConstant memberModel>
+    <#return memberModel.name?upper_case + "_PATH" />
+</#function>
+
+<#macro expressionConstantDeclaration memberModel >
+    private static final StaxPathExpression ${expressionConstant(memberModel)} = StaxPathExpression.compile("${expressionPath(memberModel)}");
+</#macro>
+
+<#macro content shapeVarName memberModel >
+
+<#if memberModel.list>
+                if (context.testExpression(${expressionConstant(memberModel)}, targetDepth)) {
                     ${shapeVarName}.with${memberModel.name}(${memberModel.listModel.simpleType}StaxUnmarshaller.getInstance().unmarshall(context));
                     continue;
                 }
 
 <#elseif memberModel.map>
-    <#local mapEntryPath = unmarshallerLocationName />
-
-    <#if !memberModel.http.flattened>
-        <#local mapEntryPath = "${unmarshallerLocationName}/entry" />
-    </#if>
-                if (context.testExpression("${mapEntryPath}", targetDepth)) {
+                if (context.testExpression(${expressionConstant(memberModel)}, targetDepth)) {
                     Entry<${memberModel.mapModel.keyType}, ${memberModel.mapModel.valueType}> entry = ${memberModel.name}MapEntryUnmarshaller.getInstance().unmarshall(context);
                     ${shapeVarName}.add${memberModel.name}Entry(entry.getKey(), entry.getValue());
                     continue;
                 }
 
 <#else>
-                if (context.testExpression("${unmarshallerLocationName}", targetDepth)) {
+                if (context.testExpression(${expressionConstant(memberModel)}, targetDepth)) {
                     ${shapeVarName}.set${memberModel.name}(${memberModel.variable.simpleType}StaxUnmarshaller.getInstance().unmarshall(context));
                     continue;
                 }
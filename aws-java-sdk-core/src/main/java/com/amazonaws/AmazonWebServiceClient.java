@@ -167,7 +167,8 @@ public abstract class AmazonWebServiceClient {
     protected AmazonWebServiceClient(AwsSyncClientParams clientParams) {
         this.clientConfiguration = clientParams.getClientConfiguration();
         requestHandler2s = clientParams.getRequestHandlers();
-        client = new AmazonHttpClient(clientConfiguration, clientParams.getRequestMetricCollector(),
+        client = new AmazonHttpClient(clientConfiguration, clientParams.getHttpTransportFactory(),
+                                      clientParams.getRequestMetricCollector(),
                                       !useStrictHostNameVerification(),
                                       calculateCRC32FromCompressedData());
     }
@@ -799,6 +800,16 @@ public abstract class AmazonWebServiceClient {
         this.isImmutable = true;
     }
 
+    /**
+     * Internal only API to warm up connections to the endpoint of the client, as configured by
+     * {@link ClientConfiguration#getConnectionWarmUpCount()}. Only intended for use by the fluent
+     * builders.
+     */
+    @SdkInternalApi
+    public final void warmUpConnections() {
+        client.warmUpConnections(endpoint);
+    }
+
     /**
      * If the client has been marked as immutable then throw an {@link
      * UnsupportedOperationException}, otherwise do nothing. Should be called by each mutating
@@ -14,6 +14,7 @@
  */
 package com.amazonaws;
 
+import com.amazonaws.http.conn.HostGroupStrategy;
 import org.apache.http.annotation.NotThreadSafe;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.ssl.SSLSocketFactory;
@@ -24,11 +25,13 @@ import org.apache.http.conn.ssl.SSLSocketFactory;
 @NotThreadSafe
 public final class ApacheHttpClientConfig {
     private ConnectionSocketFactory sslSocketFactory;
+    private HostGroupStrategy hostGroupStrategy;
 
     ApacheHttpClientConfig() {}
 
     ApacheHttpClientConfig(ApacheHttpClientConfig that) {
         this.sslSocketFactory = that.sslSocketFactory;
+        this.hostGroupStrategy = that.hostGroupStrategy;
     }
 
     /**
@@ -61,4 +64,40 @@ public final class ApacheHttpClientConfig {
         this.sslSocketFactory = sslSocketFactory;
         return this;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the strategy for grouping the target hosts that share pooled
+     * connections and connection limits; or null if connections are pooled
+     * per route.
+     */
+    public HostGroupStrategy getHostGroupStrategy() {
+        return hostGroupStrategy;
+    }
+
+    /**
+     * Sets the strategy for grouping the target hosts that share pooled
+     * connections and connection limits. For example,
+     * {@link com.amazonaws.http.conn.BucketVirtualHostGroupStrategy} lets the
+     * virtual-hosted bucket hostnames of an Amazon S3 region endpoint share
+     * one sub-pool of connections, reused most recently released first.
+     *
+     * @param hostGroupStrategy the host group strategy; or null to pool
+     * connections per route.
+     */
+    public void setHostGroupStrategy(HostGroupStrategy hostGroupStrategy) {
+        this.hostGroupStrategy = hostGroupStrategy;
+    }
+
+    /**
+     * Fluent API for setting the strategy for grouping the target hosts that
+     * share pooled connections and connection limits.
+     *
+     * @param hostGroupStrategy the host group strategy; or null to pool
+     * connections per route.
+     */
+    public ApacheHttpClientConfig withHostGroupStrategy(
+            HostGroupStrategy hostGroupStrategy) {
+        this.hostGroupStrategy = hostGroupStrategy;
+        return this;
+    }
+}
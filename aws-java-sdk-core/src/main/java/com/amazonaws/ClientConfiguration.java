@@ -83,6 +83,11 @@ public class ClientConfiguration {
      */
     public static final boolean DEFAULT_USE_GZIP = false;
 
+    /**
+     * The default on whether to read XML responses through an XMLStreamReader.
+     */
+    public static final boolean DEFAULT_USE_XML_STREAM_READER = false;
+
     /**
      * The default expiration time (in milliseconds) for a connection in the connection pool.
      */
@@ -103,6 +108,11 @@ public class ClientConfiguration {
      */
     public static final boolean DEFAULT_THROTTLE_RETRIES = true;
 
+    /**
+     * The default on whether to use adaptive retries.
+     */
+    public static final boolean DEFAULT_USE_ADAPTIVE_RETRIES = false;
+
     /**
      * The default on whether to cache response metadata.
      */
@@ -113,6 +123,16 @@ public class ClientConfiguration {
      */
     public static final int DEFAULT_RESPONSE_METADATA_CACHE_SIZE = 50;
 
+    /**
+     * The default number of connections to warm up when a client is built; zero for none.
+     */
+    public static final int DEFAULT_CONNECTION_WARM_UP_COUNT = 0;
+
+    /**
+     * The default on whether to warm up connections in the background.
+     */
+    public static final boolean DEFAULT_CONNECTION_WARM_UP_ASYNC = true;
+
 
     /** A prefix to the HTTP user agent header passed with all HTTP requests.  */
     private String userAgentPrefix = DEFAULT_USER_AGENT;
@@ -194,6 +214,8 @@ public class ClientConfiguration {
 
     private boolean throttleRetries = DEFAULT_THROTTLE_RETRIES;
 
+    private boolean useAdaptiveRetries = DEFAULT_USE_ADAPTIVE_RETRIES;
+
     /**
      * Optional size hint (in bytes) for the low level TCP send buffer. This is an advanced option
      * for advanced users who want to tune low level TCP parameters to try and squeeze out more
@@ -220,6 +242,11 @@ public class ClientConfiguration {
      */
     private boolean useGzip = DEFAULT_USE_GZIP;
 
+    /**
+     * Optional whether to unmarshall XML responses of query protocol services in cursor mode.
+     */
+    private boolean useXmlStreamReader = DEFAULT_USE_XML_STREAM_READER;
+
     /**
      * Optional override to control which signature algorithm should be used to sign requests to the
      * service. If not explicitly set, the client will determine the algorithm to use by inspecting
@@ -249,6 +276,19 @@ public class ClientConfiguration {
      */
     private boolean tcpKeepAlive = DEFAULT_TCP_KEEP_ALIVE;
 
+    /**
+     * The number of connections to the endpoint of a client to open, and TLS handshake, in
+     * parallel when the client is built, so that the first requests find them in the connection
+     * pool; or zero to open connections on demand only.
+     */
+    private int connectionWarmUpCount = DEFAULT_CONNECTION_WARM_UP_COUNT;
+
+    /**
+     * Whether connections are warmed up in the background, rather than before the client is
+     * returned by its builder.
+     */
+    private boolean connectionWarmUpAsync = DEFAULT_CONNECTION_WARM_UP_ASYNC;
+
     /**
      * Whether or not to cache response metadata.
      * <p>
@@ -313,6 +353,7 @@ public class ClientConfiguration {
         this.maxErrorRetry = other.maxErrorRetry;
         this.retryPolicy = other.retryPolicy;
         this.throttleRetries = other.throttleRetries;
+        this.useAdaptiveRetries = other.useAdaptiveRetries;
         this.localAddress = other.localAddress;
         this.protocol = other.protocol;
         this.proxyDomain = other.proxyDomain;
@@ -330,6 +371,7 @@ public class ClientConfiguration {
         this.userAgentSuffix = other.userAgentSuffix;
         this.useReaper = other.useReaper;
         this.useGzip = other.useGzip;
+        this.useXmlStreamReader = other.useXmlStreamReader;
         this.socketReceiveBufferSizeHint = other.socketReceiveBufferSizeHint;
         this.socketSendBufferSizeHint = other.socketSendBufferSizeHint;
         this.signerOverride = other.signerOverride;
@@ -341,6 +383,8 @@ public class ClientConfiguration {
         this.connectionTTL = other.connectionTTL;
         this.connectionMaxIdleMillis = other.connectionMaxIdleMillis;
         this.tcpKeepAlive = other.tcpKeepAlive;
+        this.connectionWarmUpCount = other.connectionWarmUpCount;
+        this.connectionWarmUpAsync = other.connectionWarmUpAsync;
         this.secureRandom = other.secureRandom;
         this.headers.clear();
         this.headers.putAll(other.headers);
@@ -1332,6 +1376,52 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Checks if adaptive retries are used
+     * <p>
+     * Adaptive retries rate limit requests on the client side once an endpoint starts throttling
+     * them. The rate limit is shared by all clients of the JVM sending requests to the same
+     * endpoint; it is lowered on every throttling error and raised again as requests succeed,
+     * until requests are no longer limited. Rate limited requests wait before being sent rather
+     * than failing.
+     * </p>
+     *
+     * @return true if adaptive retries will be used
+     */
+    public boolean useAdaptiveRetries() {
+        return useAdaptiveRetries;
+    }
+
+    /**
+     * Sets whether adaptive retries should be used
+     * <p>
+     * Adaptive retries rate limit requests on the client side once an endpoint starts throttling
+     * them. The rate limit is shared by all clients of the JVM sending requests to the same
+     * endpoint; it is lowered on every throttling error and raised again as requests succeed,
+     * until requests are no longer limited. Rate limited requests wait before being sent rather
+     * than failing.
+     * </p>
+     *
+     * @param use
+     *            true if adaptive retries should be used
+     */
+    public void setUseAdaptiveRetries(boolean use) {
+        this.useAdaptiveRetries = use;
+    }
+
+    /**
+     * Sets whether adaptive retries should be used
+     *
+     * @param use
+     *            true if adaptive retries should be used
+     * @return The updated ClientConfiguration object.
+     * @see #setUseAdaptiveRetries(boolean)
+     */
+    public ClientConfiguration withAdaptiveRetries(boolean use) {
+        setUseAdaptiveRetries(use);
+        return this;
+    }
+
     /**
      * Checks if gzip compression is used
      *
@@ -1363,6 +1453,43 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Checks if XML responses of query protocol services (such as Amazon EC2, Amazon SQS and
+     * Amazon SNS) are unmarshalled through a cursor based XMLStreamReader.
+     *
+     * @return if XML responses are read through an XMLStreamReader
+     */
+    public boolean useXmlStreamReader() {
+        return useXmlStreamReader;
+    }
+
+    /**
+     * Sets whether XML responses of query protocol services are unmarshalled through a cursor
+     * based XMLStreamReader instead of an XMLEventReader. This avoids allocating an event object
+     * for every element, attribute and text node of the response. Custom unmarshallers must not
+     * hold on to the events they are handed, as the same event is reused.
+     *
+     * @param use
+     *            whether XML responses should be read through an XMLStreamReader
+     */
+    public void setUseXmlStreamReader(boolean use) {
+        this.useXmlStreamReader = use;
+    }
+
+    /**
+     * Sets whether XML responses of query protocol services are unmarshalled through a cursor
+     * based XMLStreamReader instead of an XMLEventReader.
+     *
+     * @param use
+     *            whether XML responses should be read through an XMLStreamReader
+     * @return The updated ClientConfiguration object.
+     * @see #setUseXmlStreamReader(boolean)
+     */
+    public ClientConfiguration withXmlStreamReader(boolean use) {
+        setUseXmlStreamReader(use);
+        return this;
+    }
+
     /**
      * Returns the optional size hints (in bytes) for the low level TCP send and receive buffers.
      * This is an advanced option for advanced users who want to tune low level TCP parameters to
@@ -1730,6 +1857,74 @@ public class ClientConfiguration {
         return this;
     }
 
+    /**
+     * Returns the number of connections to the endpoint of a client that are opened, and TLS
+     * handshaked, in parallel when the client is built by its builder. Zero, the default, means
+     * connections are only opened on demand.
+     */
+    public int getConnectionWarmUpCount() {
+        return connectionWarmUpCount;
+    }
+
+    /**
+     * Sets the number of connections to the endpoint of a client to open, and TLS handshake, in
+     * parallel when the client is built by its builder. The warm connections are placed in the
+     * connection pool, so that the first requests after start-up don't pay for the connection
+     * setup. The count is capped at the {@link #getMaxConnections() maximum number of
+     * connections}. By default, it is set to {@value #DEFAULT_CONNECTION_WARM_UP_COUNT}, i.e.
+     * connections are only opened on demand.
+     *
+     * @param connectionWarmUpCount
+     *            the number of connections to warm up; or zero for none
+     */
+    public void setConnectionWarmUpCount(int connectionWarmUpCount) {
+        if (connectionWarmUpCount < 0) {
+            throw new IllegalArgumentException("connectionWarmUpCount cannot be negative");
+        }
+        this.connectionWarmUpCount = connectionWarmUpCount;
+    }
+
+    /**
+     * Sets the number of connections to the endpoint of a client to open, and TLS handshake, in
+     * parallel when the client is built by its builder.
+     *
+     * @param connectionWarmUpCount
+     *            the number of connections to warm up; or zero for none
+     * @return The updated ClientConfiguration object.
+     * @see #setConnectionWarmUpCount(int)
+     */
+    public ClientConfiguration withConnectionWarmUpCount(int connectionWarmUpCount) {
+        setConnectionWarmUpCount(connectionWarmUpCount);
+        return this;
+    }
+
+    /**
+     * Returns whether connections are warmed up in the background rather than before the client is
+     * returned by its builder.
+     */
+    public boolean isConnectionWarmUpAsync() {
+        return connectionWarmUpAsync;
+    }
+
+    /**
+     * Sets whether connections are warmed up in the background rather than before the client is
+     * returned by its builder. By default, it is set to {@value #DEFAULT_CONNECTION_WARM_UP_ASYNC}.
+     */
+    public void setConnectionWarmUpAsync(boolean connectionWarmUpAsync) {
+        this.connectionWarmUpAsync = connectionWarmUpAsync;
+    }
+
+    /**
+     * Sets whether connections are warmed up in the background rather than before the client is
+     * returned by its builder.
+     *
+     * @return The updated ClientConfiguration object.
+     */
+    public ClientConfiguration withConnectionWarmUpAsync(boolean connectionWarmUpAsync) {
+        setConnectionWarmUpAsync(connectionWarmUpAsync);
+        return this;
+    }
+
     /**
      * Returns the DnsResolver for resolving AWS IP addresses.
      * Returns the {@link SystemDefaultDnsResolver} by default if not
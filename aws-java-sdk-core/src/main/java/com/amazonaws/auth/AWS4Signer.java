@@ -16,11 +16,14 @@ package com.amazonaws.auth;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.ReadLimitInfo;
+import com.amazonaws.Request;
 import com.amazonaws.SignableRequest;
 import com.amazonaws.auth.internal.AWS4SignerRequestParams;
 import com.amazonaws.auth.internal.AWS4SignerUtils;
+import com.amazonaws.auth.internal.ReusableUtf8Encoder;
 import com.amazonaws.auth.internal.SignerKey;
-import com.amazonaws.internal.FIFOCache;
+import com.amazonaws.auth.internal.SigningKeyCache;
+import com.amazonaws.internal.PayloadDigests;
 import com.amazonaws.log.InternalLogApi;
 import com.amazonaws.log.InternalLogFactory;
 import com.amazonaws.util.BinaryUtils;
@@ -31,7 +34,6 @@ import com.amazonaws.util.StringUtils;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
-import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -45,6 +47,7 @@ import static com.amazonaws.auth.internal.SignerConstants.AWS4_SIGNING_ALGORITHM
 import static com.amazonaws.auth.internal.SignerConstants.AWS4_TERMINATOR;
 import static com.amazonaws.auth.internal.SignerConstants.HOST;
 import static com.amazonaws.auth.internal.SignerConstants.LINE_SEPARATOR;
+import static com.amazonaws.auth.internal.SignerConstants.PRECOMPUTED_CONTENT_SHA256;
 import static com.amazonaws.auth.internal.SignerConstants.PRESIGN_URL_MAX_EXPIRATION_SECONDS;
 import static com.amazonaws.auth.internal.SignerConstants.X_AMZ_ALGORITHM;
 import static com.amazonaws.auth.internal.SignerConstants.X_AMZ_CONTENT_SHA256;
@@ -63,7 +66,7 @@ public class AWS4Signer extends AbstractAWSSigner implements
 
     protected static final InternalLogApi log = InternalLogFactory.getLog(AWS4Signer.class);
     private static final int SIGNER_CACHE_MAX_SIZE = 300;
-    private static final FIFOCache<SignerKey> signerCache = new FIFOCache<SignerKey>(SIGNER_CACHE_MAX_SIZE);
+    private static final SigningKeyCache signerCache = new SigningKeyCache(SIGNER_CACHE_MAX_SIZE);
     private static final List<String> listOfHeadersToIgnoreInLowerCase = Arrays.asList("connection");
 
     /**
@@ -204,18 +207,17 @@ public class AWS4Signer extends AbstractAWSSigner implements
         final String stringToSign = createStringToSign(canonicalRequest,
                 signerParams);
 
-        final byte[] signingKey = deriveSigningKey(sanitizedCredentials,
+        final SignerKey signerKey = deriveSigningKey(sanitizedCredentials,
                 signerParams);
 
-        final byte[] signature = computeSignature(stringToSign, signingKey,
-                signerParams);
+        final byte[] signature = computeSignature(stringToSign, signerKey);
 
         request.addHeader(
                 AUTHORIZATION,
                 buildAuthorizationHeader(request, signature,
                         sanitizedCredentials, signerParams));
 
-        processRequestPayload(request, signature, signingKey,
+        processRequestPayload(request, signature, signerKey.getSigningKey(),
                 signerParams);
     }
 
@@ -260,11 +262,10 @@ public class AWS4Signer extends AbstractAWSSigner implements
         final String stringToSign = createStringToSign(canonicalRequest,
                 signerRequestParams);
 
-        final byte[] signingKey = deriveSigningKey(sanitizedCredentials,
+        final SignerKey signerKey = deriveSigningKey(sanitizedCredentials,
                 signerRequestParams);
 
-        final byte[] signature = computeSignature(stringToSign, signingKey,
-                signerRequestParams);
+        final byte[] signature = computeSignature(stringToSign, signerKey);
 
         request.addParameter(X_AMZ_SIGNATURE, BinaryUtils.toHex(signature));
     }
@@ -281,10 +282,10 @@ public class AWS4Signer extends AbstractAWSSigner implements
         final String path = SdkHttpUtils.appendUri(
                 request.getEndpoint().getPath(), request.getResourcePath());
 
-        final StringBuilder canonicalRequestBuilder = new StringBuilder(request
-                .getHttpMethod().toString());
+        final StringBuilder canonicalRequestBuilder = new StringBuilder(512);
 
-        canonicalRequestBuilder.append(LINE_SEPARATOR)
+        canonicalRequestBuilder.append(request.getHttpMethod().toString())
+                .append(LINE_SEPARATOR)
                 // This would optionally double url-encode the resource path
                 .append(getCanonicalizedResourcePath(path, doubleUrlEncode))
                 .append(LINE_SEPARATOR)
@@ -334,7 +335,7 @@ public class AWS4Signer extends AbstractAWSSigner implements
      * http://docs.aws.amazon
      * .com/general/latest/gr/sigv4-calculate-signature.html
      */
-    private final byte[] deriveSigningKey(AWSCredentials credentials,
+    private final SignerKey deriveSigningKey(AWSCredentials credentials,
             AWS4SignerRequestParams signerRequestParams) {
 
         final String cacheKey = computeSigningCacheKeyName(credentials,
@@ -343,13 +344,11 @@ public class AWS4Signer extends AbstractAWSSigner implements
                 .numberOfDaysSinceEpoch(signerRequestParams
                         .getSigningDateTimeMilli());
 
-        SignerKey signerKey = signerCache.get(cacheKey);
+        final SignerKey cachedSignerKey = signerCache.getSignerKey(cacheKey,
+                daysSinceEpochSigningDate);
 
-        if (signerKey != null) {
-            if (daysSinceEpochSigningDate == signerKey
-                    .getNumberOfDaysSinceEpoch()) {
-                return signerKey.getSigningKey();
-            }
+        if (cachedSignerKey != null) {
+            return cachedSignerKey;
         }
         if (log.isDebugEnabled()) {
             log.debug("Generating a new signing key as the signing key not available in the cache for the date "
@@ -359,9 +358,10 @@ public class AWS4Signer extends AbstractAWSSigner implements
                 signerRequestParams.getFormattedSigningDate(),
                 signerRequestParams.getRegionName(),
                 signerRequestParams.getServiceName());
-        signerCache.add(cacheKey, new SignerKey(
-                daysSinceEpochSigningDate, signingKey));
-        return signingKey;
+        final SignerKey signerKey = new SignerKey(daysSinceEpochSigningDate,
+                signingKey);
+        signerCache.put(cacheKey, signerKey);
+        return signerKey;
     }
 
     /**
@@ -386,35 +386,43 @@ public class AWS4Signer extends AbstractAWSSigner implements
      */
     protected final byte[] computeSignature(String stringToSign,
             byte[] signingKey, AWS4SignerRequestParams signerRequestParams) {
-        return sign(stringToSign.getBytes(Charset.forName("UTF-8")), signingKey,
+        return sign(stringToSign.getBytes(StringUtils.UTF8), signingKey,
                 SigningAlgorithm.HmacSHA256);
     }
 
+    /**
+     * Computes the signature with the HmacSHA256 instances kept by the cached
+     * signing key, so that they are only initialized once per key and are
+     * dropped along with it.
+     */
+    private byte[] computeSignature(String stringToSign, SignerKey signerKey) {
+        try {
+            return signerKey.sign(ReusableUtf8Encoder.forCurrentThread()
+                    .encode(stringToSign));
+        } catch (Exception e) {
+            throw new AmazonClientException(
+                    "Unable to calculate a request signature: "
+                            + e.getMessage(), e);
+        }
+    }
+
     /**
      * Creates the authorization header to be included in the request.
      */
     private String buildAuthorizationHeader(SignableRequest<?> request,
             byte[] signature, AWSCredentials credentials,
             AWS4SignerRequestParams signerParams) {
-        final String signingCredentials = credentials.getAWSAccessKeyId() + "/"
-                + signerParams.getScope();
-
-        final String credential = "Credential="
-                + signingCredentials;
-        final String signerHeaders = "SignedHeaders="
-                + getSignedHeadersString(request);
-        final String signatureHeader = "Signature="
-                + BinaryUtils.toHex(signature);
-
-        final StringBuilder authHeaderBuilder = new StringBuilder();
+        final StringBuilder authHeaderBuilder = new StringBuilder(256);
 
         authHeaderBuilder.append(AWS4_SIGNING_ALGORITHM)
-                         .append(" ")
-                         .append(credential)
-                         .append(", ")
-                         .append(signerHeaders)
-                         .append(", ")
-                         .append(signatureHeader);
+                         .append(" Credential=")
+                         .append(credentials.getAWSAccessKeyId())
+                         .append("/")
+                         .append(signerParams.getScope())
+                         .append(", SignedHeaders=")
+                         .append(getSignedHeadersString(request))
+                         .append(", Signature=")
+                         .append(BinaryUtils.toHex(signature));
 
         return authHeaderBuilder.toString();
     }
@@ -450,7 +458,7 @@ public class AWS4Signer extends AbstractAWSSigner implements
         Collections.sort(sortedHeaders, String.CASE_INSENSITIVE_ORDER);
 
         final Map<String, String> requestHeaders = request.getHeaders();
-        StringBuilder buffer = new StringBuilder();
+        StringBuilder buffer = new StringBuilder(sortedHeaders.size() * 48);
         for (String header : sortedHeaders) {
             if (shouldExcludeHeaderFromSigning(header)) {
                 continue;
@@ -475,7 +483,7 @@ public class AWS4Signer extends AbstractAWSSigner implements
                 .getHeaders().keySet());
         Collections.sort(sortedHeaders, String.CASE_INSENSITIVE_ORDER);
 
-        StringBuilder buffer = new StringBuilder();
+        StringBuilder buffer = new StringBuilder(sortedHeaders.size() * 16);
         for (String header : sortedHeaders) {
             if (shouldExcludeHeaderFromSigning(header)) {
                 continue;
@@ -489,7 +497,12 @@ public class AWS4Signer extends AbstractAWSSigner implements
     }
 
     protected boolean shouldExcludeHeaderFromSigning(String header) {
-        return listOfHeadersToIgnoreInLowerCase.contains(header.toLowerCase());
+        for (String headerToIgnore : listOfHeadersToIgnoreInLowerCase) {
+            if (headerToIgnore.equalsIgnoreCase(header)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     protected void addHostHeader(SignableRequest<?> request) {
@@ -514,7 +527,20 @@ public class AWS4Signer extends AbstractAWSSigner implements
      * relating to content-encoding and content-length.)
      */
     protected String calculateContentHash(SignableRequest<?> request) {
+        if (request instanceof Request) {
+            final String precomputed = ((Request<?>) request)
+                    .getHandlerContext(PRECOMPUTED_CONTENT_SHA256);
+            if (precomputed != null) {
+                return precomputed;
+            }
+        }
         InputStream payloadStream = getBinaryRequestPayloadStream(request);
+        if (PayloadDigests.isSupported(payloadStream)) {
+            // File and buffer backed payloads are hashed in place, no need to read them through.
+            // Only the Content-Length first bytes of the stream are sent when it is set.
+            return BinaryUtils.toHex(hashRemaining(payloadStream,
+                    parseContentLength(request)));
+        }
         ReadLimitInfo info = request.getReadLimitInfo();
         payloadStream.mark(info == null ? -1 : info.getReadLimit());
         String contentSha256 = BinaryUtils.toHex(hash(payloadStream));
@@ -528,6 +554,22 @@ public class AWS4Signer extends AbstractAWSSigner implements
         return contentSha256;
     }
 
+    /**
+     * @return The Content-Length of the request, or -1 if it is not set.
+     */
+    private static long parseContentLength(SignableRequest<?> request) {
+        final String contentLength = request.getHeaders().get("Content-Length");
+        if (contentLength != null) {
+            try {
+                return Long.parseLong(contentLength.trim());
+            } catch (NumberFormatException e) {
+                log.debug("Unable to parse the Content-Length of the request: "
+                        + contentLength);
+            }
+        }
+        return -1;
+    }
+
     /**
      * Subclass could override this method to perform any additional procedure
      * on the request payload, with access to the result from signing the
@@ -585,7 +627,7 @@ public class AWS4Signer extends AbstractAWSSigner implements
     protected byte[] newSigningKey(AWSCredentials credentials,
             String dateStamp, String regionName, String serviceName) {
         byte[] kSecret = ("AWS4" + credentials.getAWSSecretKey())
-                .getBytes(Charset.forName("UTF-8"));
+                .getBytes(StringUtils.UTF8);
         byte[] kDate = sign(dateStamp, kSecret, SigningAlgorithm.HmacSHA256);
         byte[] kRegion = sign(regionName, kDate, SigningAlgorithm.HmacSHA256);
         byte[] kService = sign(serviceName, kRegion,
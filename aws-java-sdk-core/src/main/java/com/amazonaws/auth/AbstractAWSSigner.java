@@ -32,6 +32,8 @@ import com.amazonaws.AmazonClientException;
 import com.amazonaws.ReadLimitInfo;
 import com.amazonaws.SDKGlobalTime;
 import com.amazonaws.SignableRequest;
+import com.amazonaws.auth.internal.ReusableUtf8Encoder;
+import com.amazonaws.internal.PayloadDigests;
 import com.amazonaws.internal.SdkDigestInputStream;
 import com.amazonaws.util.Base64;
 import com.amazonaws.util.BinaryUtils;
@@ -145,7 +147,7 @@ public abstract class AbstractAWSSigner implements Signer {
     private static byte[] doHash(String text) throws AmazonClientException {
         try {
             MessageDigest md = getMessageDigestInstance();
-            md.update(text.getBytes(UTF8));
+            md.update(ReusableUtf8Encoder.forCurrentThread().encode(text));
             return md.digest();
         } catch (Exception e) {
             throw new AmazonClientException(
@@ -171,6 +173,27 @@ public abstract class AbstractAWSSigner implements Signer {
         }
     }
 
+    /**
+     * Hashes at most the given number of bytes of the remaining content of a
+     * stream supported by {@link PayloadDigests}, without consuming it.
+     *
+     * @param length
+     *            The number of bytes to hash, typically the Content-Length of
+     *            the request, or a negative value to hash up to the end of the
+     *            stream.
+     */
+    protected byte[] hashRemaining(InputStream input, long length) throws AmazonClientException {
+        try {
+            MessageDigest md = getMessageDigestInstance();
+            PayloadDigests.digestRemaining(input, length, md);
+            return md.digest();
+        } catch (Exception e) {
+            throw new AmazonClientException(
+                    "Unable to compute hash while signing request: "
+                            + e.getMessage(), e);
+        }
+    }
+
     /**
      * Hashes the binary data using the SHA-256 algorithm.
      *
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth.internal;
+
+import com.amazonaws.annotation.NotThreadSafe;
+import com.amazonaws.annotation.SdkInternalApi;
+import com.amazonaws.util.StringUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Encodes strings to UTF-8 into a buffer that is reused from one call to the next, so that
+ * hashing and signing the canonical request and string to sign doesn't allocate a new byte array
+ * every time. Instances are confined to a thread, see {@link #forCurrentThread()}.
+ */
+@SdkInternalApi
+@NotThreadSafe
+public final class ReusableUtf8Encoder {
+
+    /**
+     * Strings whose encoded form could exceed this size are encoded into a new buffer, so that
+     * threads don't hold on to large buffers.
+     */
+    private static final int MAX_REUSED_CAPACITY = 64 * 1024;
+
+    /**
+     * Upper bound of the number of bytes a char is encoded to in UTF-8; supplementary characters
+     * take 4 bytes but are made of two chars.
+     */
+    private static final int MAX_BYTES_PER_CHAR = 3;
+
+    private static final ThreadLocal<ReusableUtf8Encoder> ENCODERS = new ThreadLocal<ReusableUtf8Encoder>() {
+        @Override
+        protected ReusableUtf8Encoder initialValue() {
+            return new ReusableUtf8Encoder();
+        }
+    };
+
+    // Replace malformed input, as String#getBytes does
+    private final CharsetEncoder encoder = StringUtils.UTF8.newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private ByteBuffer buffer = ByteBuffer.allocate(1024);
+
+    private ReusableUtf8Encoder() {
+    }
+
+    /**
+     * Returns the encoder of the current thread.
+     */
+    public static ReusableUtf8Encoder forCurrentThread() {
+        return ENCODERS.get();
+    }
+
+    /**
+     * Encodes the given text to UTF-8.
+     *
+     * @return Buffer positioned at the start of the encoded bytes, which is only valid until the
+     * next call to this method on the same thread.
+     */
+    public ByteBuffer encode(CharSequence text) {
+        final int maxLength = text.length() * MAX_BYTES_PER_CHAR;
+        final ByteBuffer target;
+        if (maxLength > MAX_REUSED_CAPACITY) {
+            target = ByteBuffer.allocate(maxLength);
+        } else {
+            if (buffer.capacity() < maxLength) {
+                buffer = ByteBuffer.allocate(Math.max(maxLength, buffer.capacity() * 2));
+            }
+            target = buffer;
+        }
+        target.clear();
+        encoder.reset();
+        encoder.encode(CharBuffer.wrap(text), target, true);
+        encoder.flush(target);
+        target.flip();
+        return target;
+    }
+}
@@ -14,6 +14,8 @@
  */
 package com.amazonaws.auth.internal;
 
+import com.amazonaws.handlers.HandlerContextKey;
+
 public final class SignerConstants {
 
     public static final String LINE_SEPARATOR = "\n";
@@ -44,4 +46,11 @@ public final class SignerConstants {
     public static final String AUTHORIZATION = "Authorization";
 
     public static final String HOST = "Host";
+
+    /**
+     * Hex encoded SHA-256 of the request payload, set by callers that already digested the
+     * payload (e.g. while computing its Content-MD5) so that the signer doesn't read it again.
+     */
+    public static final HandlerContextKey<String> PRECOMPUTED_CONTENT_SHA256 =
+            new HandlerContextKey<String>("PrecomputedContentSha256");
 }
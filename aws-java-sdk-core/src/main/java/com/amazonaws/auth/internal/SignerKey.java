@@ -14,19 +14,41 @@
  */
 package com.amazonaws.auth.internal;
 
-import com.amazonaws.annotation.Immutable;
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.auth.SigningAlgorithm;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 
 /**
  * Holds the signing key and the number of days since epoch for the date for
  * which the signing key was generated.
+ * <p>
+ * Signatures computed through {@link #sign(ByteBuffer)} reuse a few HmacSHA256
+ * instances initialized with the signing key. Only this object references
+ * them, so the key material they hold goes away along with it once it is
+ * evicted from the {@link SigningKeyCache}, rather than staying behind in the
+ * threads that signed with it.
  */
-@Immutable
+@ThreadSafe
 public final class SignerKey {
 
+    /**
+     * Maximum number of initialized HmacSHA256 instances kept for reuse;
+     * signatures computed concurrently beyond that initialize their own.
+     */
+    private static final int MAX_POOLED_MACS = Runtime.getRuntime().availableProcessors();
+
     private final long numberOfDaysSinceEpoch;
 
     private final byte[] signingKey;
 
+    private final AtomicReferenceArray<Mac> macs = new AtomicReferenceArray<Mac>(MAX_POOLED_MACS);
+
     public SignerKey(long numberOfDaysSinceEpoch, byte[] signingKey) {
         if (numberOfDaysSinceEpoch <= 0L) {
             throw new IllegalArgumentException(
@@ -54,4 +76,39 @@ public final class SignerKey {
     public byte[] getSigningKey() {
         return signingKey.clone();
     }
+
+    /**
+     * Computes the HmacSHA256 signature of the remaining bytes of the given
+     * buffer with the signing key.
+     */
+    public byte[] sign(ByteBuffer data) throws GeneralSecurityException {
+        final Mac mac = borrowMac();
+        mac.update(data);
+        final byte[] signature = mac.doFinal();
+        // doFinal leaves the Mac initialized with the key; a Mac that failed
+        // midway is dropped instead.
+        returnMac(mac);
+        return signature;
+    }
+
+    private Mac borrowMac() throws GeneralSecurityException {
+        for (int i = 0; i < MAX_POOLED_MACS; i++) {
+            final Mac mac = macs.getAndSet(i, null);
+            if (mac != null) {
+                return mac;
+            }
+        }
+        final String algorithm = SigningAlgorithm.HmacSHA256.toString();
+        final Mac mac = Mac.getInstance(algorithm);
+        mac.init(new SecretKeySpec(signingKey, algorithm));
+        return mac;
+    }
+
+    private void returnMac(Mac mac) {
+        for (int i = 0; i < MAX_POOLED_MACS; i++) {
+            if (macs.compareAndSet(i, null, mac)) {
+                return;
+            }
+        }
+    }
 }
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth.internal;
+
+import com.amazonaws.annotation.SdkInternalApi;
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.metrics.AwsSdkMetrics;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * A bounded, lock-free cache of derived SigV4 signing keys. A signing key is only valid for the
+ * day it was derived for, so lookups for another day miss. When the cache grows past its maximum
+ * size, keys derived for an earlier day are evicted first, then arbitrary keys until the cache is
+ * back within bounds. Hits and misses are counted in {@link AwsSdkMetrics}.
+ */
+@SdkInternalApi
+@ThreadSafe
+public final class SigningKeyCache {
+
+    private final ConcurrentMap<String, SignerKey> keys;
+    private final int maxSize;
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * @param maxSize
+     *            the maximum number of entries of the cache
+     */
+    public SigningKeyCache(int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("maxSize " + maxSize
+                    + " must be at least 1");
+        }
+        this.maxSize = maxSize;
+        this.keys = new ConcurrentHashMap<String, SignerKey>(maxSize * 4 / 3 + 1);
+    }
+
+    /**
+     * Returns the signing key cached under the given name for the given day, or null if there is
+     * none.
+     *
+     * @param daysSinceEpoch
+     *            the day of the signing date, as number of days since epoch
+     */
+    public byte[] get(String name, long daysSinceEpoch) {
+        final SignerKey signerKey = getSignerKey(name, daysSinceEpoch);
+        return signerKey == null ? null : signerKey.getSigningKey();
+    }
+
+    /**
+     * Returns the entry cached under the given name for the given day, or null if there is none.
+     *
+     * @param daysSinceEpoch
+     *            the day of the signing date, as number of days since epoch
+     */
+    public SignerKey getSignerKey(String name, long daysSinceEpoch) {
+        final SignerKey signerKey = keys.get(name);
+        if (signerKey != null && signerKey.getNumberOfDaysSinceEpoch() == daysSinceEpoch) {
+            AwsSdkMetrics.recordSigningKeyCacheHit();
+            return signerKey;
+        }
+        AwsSdkMetrics.recordSigningKeyCacheMiss();
+        return null;
+    }
+
+    /**
+     * Caches the given signing key under the given name, evicting other keys if the cache is
+     * full.
+     */
+    public void put(String name, SignerKey signerKey) {
+        keys.put(name, signerKey);
+        if (keys.size() > maxSize) {
+            evict(name, signerKey.getNumberOfDaysSinceEpoch());
+        }
+    }
+
+    /**
+     * Returns the number of cached signing keys.
+     */
+    public int size() {
+        return keys.size();
+    }
+
+    /**
+     * Evicts the keys of days before the current one, then arbitrary keys other than the one just
+     * added until the cache is within its maximum size. Only one thread evicts at a time;
+     * concurrent callers leave the eviction to it.
+     */
+    private void evict(String addedName, long currentDay) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            final Iterator<Map.Entry<String, SignerKey>> it = keys.entrySet().iterator();
+            while (it.hasNext()) {
+                if (it.next().getValue().getNumberOfDaysSinceEpoch() < currentDay) {
+                    it.remove();
+                }
+            }
+            final Iterator<String> names = keys.keySet().iterator();
+            while (keys.size() > maxSize && names.hasNext()) {
+                if (!names.next().equals(addedName)) {
+                    names.remove();
+                }
+            }
+        } finally {
+            evicting.set(false);
+        }
+    }
+}
@@ -18,6 +18,7 @@ import com.amazonaws.ClientConfiguration;
 import com.amazonaws.annotation.SdkProtectedApi;
 import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.http.transport.SdkHttpTransportFactory;
 import com.amazonaws.metrics.RequestMetricCollector;
 
 import java.util.List;
@@ -36,4 +37,12 @@ public abstract class AwsSyncClientParams {
     public abstract RequestMetricCollector getRequestMetricCollector();
 
     public abstract List<RequestHandler2> getRequestHandlers();
+
+    /**
+     * @return Factory of the transport that sends the requests of the client, or null if they
+     * should be sent with the Apache HTTP client.
+     */
+    public SdkHttpTransportFactory getHttpTransportFactory() {
+        return null;
+    }
 }
@@ -19,6 +19,7 @@ import com.amazonaws.AmazonWebServiceClient;
 import com.amazonaws.ClientConfiguration;
 import com.amazonaws.ClientConfigurationFactory;
 import com.amazonaws.PredefinedClientConfigurations;
+import com.amazonaws.annotation.Beta;
 import com.amazonaws.annotation.NotThreadSafe;
 import com.amazonaws.annotation.SdkInternalApi;
 import com.amazonaws.annotation.SdkProtectedApi;
@@ -28,6 +29,7 @@ import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
 import com.amazonaws.client.AwsAsyncClientParams;
 import com.amazonaws.client.AwsSyncClientParams;
 import com.amazonaws.handlers.RequestHandler2;
+import com.amazonaws.http.transport.SdkHttpTransportFactory;
 import com.amazonaws.metrics.RequestMetricCollector;
 import com.amazonaws.regions.AwsRegionProvider;
 import com.amazonaws.regions.DefaultAwsRegionProviderChain;
@@ -76,6 +78,7 @@ public abstract class AwsClientBuilder<Subclass extends AwsClientBuilder, TypeTo
     private RequestMetricCollector metricsCollector;
     private Region region;
     private List<RequestHandler2> requestHandlers;
+    private SdkHttpTransportFactory httpTransportFactory;
 
     protected AwsClientBuilder(ClientConfigurationFactory clientConfigFactory) {
         this(clientConfigFactory, DEFAULT_REGION_PROVIDER);
@@ -282,6 +285,37 @@ public abstract class AwsClientBuilder<Subclass extends AwsClientBuilder, TypeTo
                 new ArrayList<RequestHandler2>(requestHandlers);
     }
 
+    /**
+     * Gets the factory of the transport that sends the requests of the built client.
+     */
+    public final SdkHttpTransportFactory getHttpTransportFactory() {
+        return this.httpTransportFactory;
+    }
+
+    /**
+     * Sets the factory of the transport that sends the requests of the built client. If not
+     * specified the requests are sent with the Apache HTTP client.
+     *
+     * @param httpTransportFactory Factory of the transport to use.
+     */
+    @Beta
+    public final void setHttpTransportFactory(SdkHttpTransportFactory httpTransportFactory) {
+        this.httpTransportFactory = httpTransportFactory;
+    }
+
+    /**
+     * Sets the factory of the transport that sends the requests of the built client. If not
+     * specified the requests are sent with the Apache HTTP client.
+     *
+     * @param httpTransportFactory Factory of the transport to use.
+     * @return This object for method chaining.
+     */
+    @Beta
+    public final Subclass withHttpTransportFactory(SdkHttpTransportFactory httpTransportFactory) {
+        setHttpTransportFactory(httpTransportFactory);
+        return getSubclass();
+    }
+
     /**
      * Region and endpoint logic is tightly coupled to the client class right now so it's easier to
      * set them after client creation and let the normal logic kick in. Ideally this should resolve
@@ -294,6 +328,7 @@ public abstract class AwsClientBuilder<Subclass extends AwsClientBuilder, TypeTo
         AmazonWebServiceClient client = (AmazonWebServiceClient) clientInterface;
         setRegion(client);
         client.makeImmutable();
+        client.warmUpConnections();
         return clientInterface;
     }
 
@@ -342,12 +377,14 @@ public abstract class AwsClientBuilder<Subclass extends AwsClientBuilder, TypeTo
         private final AWSCredentialsProvider _credentials;
         private final RequestMetricCollector _metricsCollector;
         private final List<RequestHandler2> _requestHandlers;
+        private final SdkHttpTransportFactory _httpTransportFactory;
 
         protected SyncBuilderParams() {
             this._clientConfig = resolveClientConfiguration();
             this._credentials = resolveCredentials();
             this._metricsCollector = metricsCollector;
             this._requestHandlers = resolveRequestHandlers();
+            this._httpTransportFactory = httpTransportFactory;
         }
 
         @Override
@@ -370,6 +407,11 @@ public abstract class AwsClientBuilder<Subclass extends AwsClientBuilder, TypeTo
             return this._requestHandlers;
         }
 
+        @Override
+        public SdkHttpTransportFactory getHttpTransportFactory() {
+            return this._httpTransportFactory;
+        }
+
         @Override
         public ExecutorService getExecutor() {
             throw new UnsupportedOperationException("ExecutorService is not used for sync client.");
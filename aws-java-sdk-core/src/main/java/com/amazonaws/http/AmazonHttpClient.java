@@ -30,6 +30,7 @@ import com.amazonaws.Response;
 import com.amazonaws.ResponseMetadata;
 import com.amazonaws.SDKGlobalTime;
 import com.amazonaws.annotation.SdkInternalApi;
+import com.amazonaws.annotation.SdkProtectedApi;
 import com.amazonaws.annotation.SdkTestInternalApi;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSCredentialsProvider;
@@ -42,9 +43,12 @@ import com.amazonaws.handlers.CredentialsRequestHandler;
 import com.amazonaws.handlers.RequestHandler2;
 import com.amazonaws.http.apache.client.impl.ApacheHttpClientFactory;
 import com.amazonaws.http.apache.client.impl.ConnectionManagerAwareHttpClient;
+import com.amazonaws.http.apache.client.impl.TransportHttpClient;
 import com.amazonaws.http.apache.request.impl.ApacheHttpRequestFactory;
 import com.amazonaws.http.apache.utils.ApacheUtils;
 import com.amazonaws.http.client.HttpClientFactory;
+import com.amazonaws.http.conn.ConnectionWarmer;
+import com.amazonaws.http.conn.SdkConnectionMetrics;
 import com.amazonaws.http.exception.HttpRequestTimeoutException;
 import com.amazonaws.http.request.HttpRequestFactory;
 import com.amazonaws.http.response.AwsResponseHandlerAdapter;
@@ -54,6 +58,8 @@ import com.amazonaws.http.timers.client.ClientExecutionTimer;
 import com.amazonaws.http.timers.client.SdkInterruptedException;
 import com.amazonaws.http.timers.request.HttpRequestAbortTaskTracker;
 import com.amazonaws.http.timers.request.HttpRequestTimer;
+import com.amazonaws.http.transport.SdkHttpTransport;
+import com.amazonaws.http.transport.SdkHttpTransportFactory;
 import com.amazonaws.internal.AmazonWebServiceRequestAdapter;
 import com.amazonaws.internal.CRC32MismatchException;
 import com.amazonaws.internal.ReleasableInputStream;
@@ -64,6 +70,8 @@ import com.amazonaws.metrics.AwsSdkMetrics;
 import com.amazonaws.metrics.RequestMetricCollector;
 import com.amazonaws.retry.RetryPolicy;
 import com.amazonaws.retry.RetryUtils;
+import com.amazonaws.retry.internal.AdaptiveRetryTokenBucket;
+import com.amazonaws.retry.internal.AdaptiveRetryTokenBuckets;
 import com.amazonaws.retry.internal.AuthErrorRetryStrategy;
 import com.amazonaws.retry.internal.AuthRetryParameters;
 import com.amazonaws.util.AWSRequestMetrics;
@@ -294,10 +302,46 @@ public class AmazonHttpClient {
                             RequestMetricCollector requestMetricCollector,
                             boolean useBrowserCompatibleHostNameVerifier,
                             boolean calculateCRC32FromCompressedData) {
+        this(config, null, requestMetricCollector, useBrowserCompatibleHostNameVerifier,
+             calculateCRC32FromCompressedData);
+    }
+
+    /**
+     * Constructs a new AWS client using the specified client configuration options, sending its
+     * requests through the transport created by the given factory.
+     *
+     * @param config                           Configuration options specifying how this client will
+     *                                         communicate with AWS (ex: proxy httpClientSettings,
+     *                                         retry count, etc.).
+     * @param transportFactory                 Factory of the transport that sends the requests; or
+     *                                         null to send them with the Apache HTTP client.
+     * @param requestMetricCollector           client specific request metric collector, which takes
+     *                                         precedence over the one at the AWS SDK level; or null
+     *                                         if there is none.
+     * @param calculateCRC32FromCompressedData The flag indicating whether the CRC32 checksum is
+     *                                         calculated from compressed data or not. It is only
+     *                                         applicable when the header "x-amz-crc32" is set in
+     *                                         the response.
+     */
+    @SdkProtectedApi
+    public AmazonHttpClient(ClientConfiguration config,
+                            SdkHttpTransportFactory transportFactory,
+                            RequestMetricCollector requestMetricCollector,
+                            boolean useBrowserCompatibleHostNameVerifier,
+                            boolean calculateCRC32FromCompressedData) {
         this(config, requestMetricCollector, HttpClientSettings.adapt(config,
                                                                       useBrowserCompatibleHostNameVerifier,
                                                                       calculateCRC32FromCompressedData));
-        this.httpClient = httpClientFactory.create(this.httpClientSettings);
+        if (transportFactory == null) {
+            this.httpClient = httpClientFactory.create(this.httpClientSettings);
+        } else {
+            final SdkHttpTransport transport = transportFactory.create(config);
+            if (transport == null) {
+                throw new IllegalStateException(transportFactory.getClass().getName()
+                                                + " returned a null transport");
+            }
+            this.httpClient = new TransportHttpClient(transport);
+        }
     }
 
     /**
@@ -358,6 +402,34 @@ public class AmazonHttpClient {
         httpClient.getHttpClientConnectionManager().shutdown();
     }
 
+    /**
+     * Opens connections to the given endpoint ahead of the first requests, and places them in the
+     * connection pool. The number of connections, and whether they are opened in the background or
+     * before returning, are configured by {@link ClientConfiguration#getConnectionWarmUpCount()}
+     * and {@link ClientConfiguration#isConnectionWarmUpAsync()}.
+     *
+     * @param endpoint the endpoint to warm up connections to
+     */
+    public void warmUpConnections(URI endpoint) {
+        final int count = httpClientSettings.getConnectionWarmUpCount();
+        if (count <= 0 || endpoint == null || httpClient instanceof TransportHttpClient) {
+            // A custom transport has no connection pool to warm up
+            return;
+        }
+        try {
+            final ConnectionWarmer warmer = new ConnectionWarmer(
+                    httpClient.getHttpClientConnectionManager(), httpClientSettings);
+            if (httpClientSettings.isConnectionWarmUpAsync()) {
+                warmer.warmUpAsync(endpoint, count);
+            } else {
+                warmer.warmUp(endpoint, count);
+            }
+        } catch (RuntimeException e) {
+            // Warm-up is only an optimization, it must never fail the client
+            log.debug("Unable to warm up connections to " + endpoint, e);
+        }
+    }
+
     /**
      * Used to configure the test conditions for injecting intermittent failures to the content
      * input stream.
@@ -592,6 +664,12 @@ public class AmazonHttpClient {
         private final List<RequestHandler2> requestHandler2s;
         private final AWSRequestMetrics awsRequestMetrics;
 
+        /**
+         * Token bucket of adaptive retries for the endpoint of the request, looked up on the first
+         * attempt.
+         */
+        private AdaptiveRetryTokenBucket adaptiveRetryTokenBucket;
+
         private RequestExecutor(Request<?> request, RequestConfig requestConfig,
                                 HttpResponseHandler<AmazonServiceException> errorResponseHandler,
                                 HttpResponseHandler<Output> responseHandler,
@@ -643,6 +721,10 @@ public class AmazonHttpClient {
             setSdkTransactionId(request);
             setUserAgent(request);
 
+            if (config.useXmlStreamReader()) {
+                request.addHandlerContext(StaxResponseHandler.USE_XML_STREAM_READER, Boolean.TRUE);
+            }
+
             ProgressListener listener = requestConfig.getProgressListener();
             // add custom headers
             request.getHeaders().putAll(config.getHeaders());
@@ -1047,10 +1129,14 @@ public class AmazonHttpClient {
             }
             final AWSCredentials credentials = getCredentialsFromContext();
             final ProgressListener listener = requestConfig.getProgressListener();
+            final AdaptiveRetryTokenBucket tokenBucket = getAdaptiveRetryTokenBucket();
 
             if (execOneParams.isRetry()) {
                 pauseBeforeRetry(execOneParams, listener);
             }
+            if (tokenBucket != null) {
+                waitForAdaptiveRetryToken(tokenBucket);
+            }
             updateRetryHeaderInfo(request, execOneParams);
 
             // Sign the request if a signer was provided
@@ -1095,6 +1181,7 @@ public class AmazonHttpClient {
             final HttpRequestAbortTaskTracker requestAbortTaskTracker = httpRequestTimer
                     .startTimer(execOneParams.apacheRequest, getRequestTimeout(requestConfig));
 
+            SdkConnectionMetrics.beginSending(awsRequestMetrics);
             try {
                 execOneParams.apacheResponse = httpClient.execute(execOneParams.apacheRequest, localRequestContext);
                 if (shouldBufferHttpEntity(responseHandler.needsConnectionLeftOpen(),
@@ -1115,6 +1202,7 @@ public class AmazonHttpClient {
                     throw ioe;
                 }
             } finally {
+                SdkConnectionMetrics.endSending(awsRequestMetrics);
                 requestAbortTaskTracker.cancelTask();
                 awsRequestMetrics.endEvent(Field.HttpRequestTime);
             }
@@ -1144,6 +1232,9 @@ public class AmazonHttpClient {
                 } else {
                     retryCapacity.release();
                 }
+                if (tokenBucket != null) {
+                    tokenBucket.onSuccess();
+                }
                 return new Response<Output>(response, httpResponse);
             }
             if (isTemporaryRedirect(execOneParams.apacheResponse)) {
@@ -1170,6 +1261,9 @@ public class AmazonHttpClient {
             awsRequestMetrics.addPropertyWith(Field.AWSRequestID, ase.getRequestId())
                     .addPropertyWith(Field.AWSErrorCode, ase.getErrorCode())
                     .addPropertyWith(Field.StatusCode, ase.getStatusCode());
+            if (tokenBucket != null && RetryUtils.isThrottlingException(ase)) {
+                tokenBucket.onThrottle();
+            }
             // Check whether we should internally retry the auth error
             execOneParams.authRetryParam = null;
             AuthErrorRetryStrategy authRetry = executionContext.getAuthErrorRetryStrategy();
@@ -1295,6 +1389,41 @@ public class AmazonHttpClient {
             }
         }
 
+        /**
+         * Returns the token bucket shared by all clients sending requests to the endpoint of the
+         * request, or null if adaptive retries are disabled.
+         */
+        private AdaptiveRetryTokenBucket getAdaptiveRetryTokenBucket() {
+            final String host = request.getEndpoint() == null ? null : request.getEndpoint().getHost();
+            if (!config.useAdaptiveRetries() || host == null) {
+                return null;
+            }
+            if (adaptiveRetryTokenBucket == null || !adaptiveRetryTokenBucket.getEndpoint().equals(host)) {
+                adaptiveRetryTokenBucket = AdaptiveRetryTokenBuckets.forEndpoint(host);
+            }
+            return adaptiveRetryTokenBucket;
+        }
+
+        /**
+         * Waits until the client side rate limit of adaptive retries lets the attempt be sent.
+         */
+        private void waitForAdaptiveRetryToken(AdaptiveRetryTokenBucket tokenBucket)
+                throws InterruptedException {
+            final long delay = tokenBucket.acquire();
+            if (delay > 0) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Endpoint " + tokenBucket.getEndpoint() + " is rate limited, " +
+                              "will send request in " + delay + "ms");
+                }
+                awsRequestMetrics.startEvent(Field.AdaptiveRetryWaitTime);
+                try {
+                    Thread.sleep(delay);
+                } finally {
+                    awsRequestMetrics.endEvent(Field.AdaptiveRetryWaitTime);
+                }
+            }
+        }
+
         /**
          * Adds Retry information to the {@link #HEADER_SDK_RETRY_INFO} header. Used for analysis of
          * retry policy.
@@ -15,7 +15,9 @@
 package com.amazonaws.http;
 
 import com.amazonaws.AmazonWebServiceResponse;
+import com.amazonaws.Request;
 import com.amazonaws.ResponseMetadata;
+import com.amazonaws.handlers.HandlerContextKey;
 import com.amazonaws.transform.StaxUnmarshallerContext;
 import com.amazonaws.transform.Unmarshaller;
 import com.amazonaws.transform.VoidStaxUnmarshaller;
@@ -31,26 +33,43 @@ import java.util.Map;
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 
 /**
  * Default implementation of HttpResponseHandler that handles a successful
  * response from an AWS service and unmarshalls the result using a StAX
  * unmarshaller.
+ * <p>
+ * The response is read through an {@link XMLEventReader} unless cursor mode is
+ * enabled, either for this handler or for the client through
+ * {@link com.amazonaws.ClientConfiguration#setUseXmlStreamReader(boolean)}, in
+ * which case it is read through an {@link XMLStreamReader} without allocating
+ * an event object per element.
  *
  * @param <T>
  *            Indicates the type being unmarshalled by this response handler.
  */
 public class StaxResponseHandler<T> implements HttpResponseHandler<AmazonWebServiceResponse<T>> {
 
+    /**
+     * Set on requests whose client is configured to unmarshall StAX responses
+     * in cursor mode.
+     */
+    public static final HandlerContextKey<Boolean> USE_XML_STREAM_READER =
+            new HandlerContextKey<Boolean>("UseXmlStreamReader");
+
     /** The StAX unmarshaller to use when handling the response */
     private Unmarshaller<T, StaxUnmarshallerContext> responseUnmarshaller;
 
     /** Shared logger for profiling information */
     private static final Log log = LogFactory.getLog("com.amazonaws.request");
 
-    /** Shared factory for creating XML event readers */
+    /** Shared factory for creating XML event and stream readers */
     private static final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
 
+    /** Whether responses are always read in cursor mode, regardless of the client */
+    private final boolean useXmlStreamReader;
+
     /**
      * Constructs a new response handler that will use the specified StAX
      * unmarshaller to unmarshall the service response and uses the specified
@@ -61,7 +80,25 @@ public class StaxResponseHandler<T> implements HttpResponseHandler<AmazonWebServ
      *            The StAX unmarshaller to use on the response.
      */
     public StaxResponseHandler(Unmarshaller<T, StaxUnmarshallerContext> responseUnmarshaller) {
+        this(responseUnmarshaller, false);
+    }
+
+    /**
+     * Constructs a new response handler that will use the specified StAX
+     * unmarshaller to unmarshall the service response, optionally reading the
+     * response in cursor mode.
+     *
+     * @param responseUnmarshaller
+     *            The StAX unmarshaller to use on the response.
+     * @param useXmlStreamReader
+     *            True to always read the response through an
+     *            {@link XMLStreamReader}, false to leave the choice to the
+     *            client configuration.
+     */
+    public StaxResponseHandler(Unmarshaller<T, StaxUnmarshallerContext> responseUnmarshaller,
+                               boolean useXmlStreamReader) {
         this.responseUnmarshaller = responseUnmarshaller;
+        this.useXmlStreamReader = useXmlStreamReader;
 
         /*
          * Even if the invoked operation just returns null, we still need an
@@ -86,14 +123,21 @@ public class StaxResponseHandler<T> implements HttpResponseHandler<AmazonWebServ
             content = new ByteArrayInputStream("<eof/>".getBytes(StringUtils.UTF8));
         }
 
-        XMLEventReader eventReader;
+        XMLEventReader eventReader = null;
+        XMLStreamReader streamReader = null;
         synchronized (xmlInputFactory) {
-            eventReader = xmlInputFactory.createXMLEventReader(content);
+            if (isCursorMode(response)) {
+                streamReader = xmlInputFactory.createXMLStreamReader(content);
+            } else {
+                eventReader = xmlInputFactory.createXMLEventReader(content);
+            }
         }
 
         try {
             AmazonWebServiceResponse<T> awsResponse = new AmazonWebServiceResponse<T>();
-            StaxUnmarshallerContext unmarshallerContext = new StaxUnmarshallerContext(eventReader, response.getHeaders());
+            StaxUnmarshallerContext unmarshallerContext = streamReader != null
+                    ? new StaxUnmarshallerContext(streamReader, response.getHeaders())
+                    : new StaxUnmarshallerContext(eventReader, response.getHeaders());
             unmarshallerContext.registerMetadataExpression("ResponseMetadata/RequestId", 2, ResponseMetadata.AWS_REQUEST_ID);
             unmarshallerContext.registerMetadataExpression("requestId", 2, ResponseMetadata.AWS_REQUEST_ID);
             registerAdditionalMetadataExpressions(unmarshallerContext);
@@ -115,13 +159,26 @@ public class StaxResponseHandler<T> implements HttpResponseHandler<AmazonWebServ
             return awsResponse;
         } finally {
             try {
-                eventReader.close();
+                if (streamReader != null) {
+                    streamReader.close();
+                } else {
+                    eventReader.close();
+                }
             } catch (XMLStreamException e) {
                 log.warn("Error closing xml parser", e);
             }
         }
     }
 
+    private boolean isCursorMode(HttpResponse response) {
+        if (useXmlStreamReader) {
+            return true;
+        }
+        Request<?> request = response.getRequest();
+        return request != null
+                && Boolean.TRUE.equals(request.getHandlerContext(USE_XML_STREAM_READER));
+    }
+
     /**
      * Create the default {@link ResponseMetadata}. Subclasses may override this to create a
      * subclass of {@link ResponseMetadata}. Currently only SimpleDB does this.
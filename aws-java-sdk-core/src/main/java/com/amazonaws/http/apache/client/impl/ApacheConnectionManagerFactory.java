@@ -18,6 +18,8 @@ import com.amazonaws.SDKGlobalConfiguration;
 import com.amazonaws.http.AmazonHttpClient;
 import com.amazonaws.http.DelegatingDnsResolver;
 import com.amazonaws.http.client.ConnectionManagerFactory;
+import com.amazonaws.http.conn.HostGroupConnectionManager;
+import com.amazonaws.http.conn.HostGroupStrategy;
 import com.amazonaws.http.conn.ssl.SdkTLSSocketFactory;
 import com.amazonaws.http.settings.HttpClientSettings;
 import com.amazonaws.internal.SdkSSLContext;
@@ -64,6 +66,12 @@ public class ApacheConnectionManagerFactory implements
     public HttpClientConnectionManager create(final HttpClientSettings settings) {
         ConnectionSocketFactory sslsf = getPreferredSocketFactory(settings);
 
+        final HostGroupStrategy strategy =
+                settings.getApacheHttpClientConfig().getHostGroupStrategy();
+        if (strategy != null) {
+            return createHostGroupConnectionManager(settings, sslsf, strategy);
+        }
+
         final PoolingHttpClientConnectionManager cm = new
                 PoolingHttpClientConnectionManager(
                 createSocketFactoryRegistry(sslsf),
@@ -81,6 +89,25 @@ public class ApacheConnectionManagerFactory implements
         return cm;
     }
 
+    private HttpClientConnectionManager createHostGroupConnectionManager(
+            HttpClientSettings settings, ConnectionSocketFactory sslsf,
+            HostGroupStrategy strategy) {
+        final HostGroupConnectionManager cm = new HostGroupConnectionManager(
+                createSocketFactoryRegistry(sslsf),
+                DefaultSchemePortResolver.INSTANCE,
+                new DelegatingDnsResolver(settings.getDnsResolver()),
+                settings.getConnectionPoolTTL(),
+                TimeUnit.MILLISECONDS,
+                strategy);
+
+        cm.setDefaultMaxPerRoute(settings.getMaxConnections());
+        cm.setMaxTotal(settings.getMaxConnections());
+        cm.setDefaultSocketConfig(buildSocketConfig(settings));
+        cm.setDefaultConnectionConfig(buildConnectionConfig(settings));
+
+        return cm;
+    }
+
     private ConnectionSocketFactory getPreferredSocketFactory(HttpClientSettings settings) {
         ConnectionSocketFactory sslsf = settings.getApacheHttpClientConfig().getSslSocketFactory();
 
@@ -0,0 +1,263 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.apache.client.impl;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.Header;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpHeaders;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.methods.HttpRequestBase;
+import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.concurrent.Cancellable;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.entity.InputStreamEntity;
+import org.apache.http.impl.execchain.RequestAbortedException;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+import com.amazonaws.annotation.SdkInternalApi;
+import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.http.transport.SdkHttpTransport;
+import com.amazonaws.http.transport.SdkHttpTransportRequest;
+import com.amazonaws.http.transport.SdkHttpTransportResponse;
+import com.amazonaws.util.IOUtils;
+
+/**
+ * Adapts an {@link SdkHttpTransport} to the Apache HTTP client interface the
+ * request pipeline of {@link com.amazonaws.http.AmazonHttpClient} is written
+ * against, so that a transport doesn't have to know about Apache types.
+ * <p>
+ * Aborting a request, as the request timeout does, closes the content of its
+ * response. The transport has no connection pool the SDK can see, so its
+ * connection manager only shuts the transport down.
+ */
+@SdkInternalApi
+public class TransportHttpClient implements ConnectionManagerAwareHttpClient {
+
+    private final SdkHttpTransport transport;
+    private final HttpClientConnectionManager cm;
+
+    public TransportHttpClient(SdkHttpTransport transport) {
+        if (transport == null) {
+            throw new IllegalArgumentException("transport cannot be null");
+        }
+        this.transport = transport;
+        this.cm = new TransportConnectionManager(transport);
+    }
+
+    @Override
+    public HttpResponse execute(HttpUriRequest request, HttpContext context) throws IOException {
+        final HttpRequestBase base = request instanceof HttpRequestBase ? (HttpRequestBase) request : null;
+        if (request.isAborted()) {
+            throw new RequestAbortedException("Request aborted");
+        }
+        final SdkHttpTransportResponse response = transport.execute(toTransportRequest(request));
+        final InputStream content = response.getContent();
+        if (base != null && content != null) {
+            base.setCancellable(new Cancellable() {
+                @Override
+                public boolean cancel() {
+                    IOUtils.closeQuietly(content, null);
+                    return true;
+                }
+            });
+        }
+        return toApacheResponse(response);
+    }
+
+    @Override
+    public HttpResponse execute(HttpUriRequest request) throws IOException {
+        return execute(request, (HttpContext) null);
+    }
+
+    @Override
+    public HttpResponse execute(HttpHost target, HttpRequest request) {
+        throw new UnsupportedOperationException("Only HttpUriRequest is supported");
+    }
+
+    @Override
+    public HttpResponse execute(HttpHost target, HttpRequest request, HttpContext context) {
+        throw new UnsupportedOperationException("Only HttpUriRequest is supported");
+    }
+
+    @Override
+    public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> responseHandler) {
+        throw new UnsupportedOperationException("Response handlers are not supported");
+    }
+
+    @Override
+    public <T> T execute(HttpUriRequest request, ResponseHandler<? extends T> responseHandler,
+                         HttpContext context) {
+        throw new UnsupportedOperationException("Response handlers are not supported");
+    }
+
+    @Override
+    public <T> T execute(HttpHost target, HttpRequest request,
+                         ResponseHandler<? extends T> responseHandler) {
+        throw new UnsupportedOperationException("Response handlers are not supported");
+    }
+
+    @Override
+    public <T> T execute(HttpHost target, HttpRequest request,
+                         ResponseHandler<? extends T> responseHandler, HttpContext context) {
+        throw new UnsupportedOperationException("Response handlers are not supported");
+    }
+
+    @Override
+    @Deprecated
+    public HttpParams getParams() {
+        throw new UnsupportedOperationException("HttpParams are not supported");
+    }
+
+    @Override
+    @Deprecated
+    public ClientConnectionManager getConnectionManager() {
+        throw new UnsupportedOperationException("ClientConnectionManager is not supported");
+    }
+
+    @Override
+    public HttpClientConnectionManager getHttpClientConnectionManager() {
+        return cm;
+    }
+
+    private static SdkHttpTransportRequest toTransportRequest(HttpUriRequest request)
+            throws IOException {
+        final Map<String, String> headers = new LinkedHashMap<String, String>();
+        for (Header header : request.getAllHeaders()) {
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(header.getName())) {
+                continue;
+            }
+            final String value = headers.get(header.getName());
+            headers.put(header.getName(),
+                    value == null ? header.getValue() : value + "," + header.getValue());
+        }
+        InputStream content = null;
+        long contentLength = 0;
+        if (request instanceof HttpEntityEnclosingRequest) {
+            final HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+            if (entity != null) {
+                content = entity.getContent();
+                contentLength = entity.getContentLength();
+                if (entity.getContentType() != null
+                        && request.getFirstHeader(HttpHeaders.CONTENT_TYPE) == null) {
+                    headers.put(HttpHeaders.CONTENT_TYPE, entity.getContentType().getValue());
+                }
+            }
+        }
+        return new SdkHttpTransportRequest(HttpMethodName.fromValue(request.getMethod()),
+                request.getURI(), headers, content, contentLength);
+    }
+
+    private static HttpResponse toApacheResponse(SdkHttpTransportResponse response) {
+        final BasicHttpResponse apacheResponse = new BasicHttpResponse(HttpVersion.HTTP_1_1,
+                response.getStatusCode(), response.getStatusText());
+        long contentLength = -1;
+        for (Entry<String, String> header : response.getHeaders().entrySet()) {
+            apacheResponse.addHeader(header.getKey(), header.getValue());
+            if (HttpHeaders.CONTENT_LENGTH.equalsIgnoreCase(header.getKey())) {
+                try {
+                    contentLength = Long.parseLong(header.getValue().trim());
+                } catch (NumberFormatException e) {
+                    contentLength = -1;
+                }
+            }
+        }
+        if (response.getContent() != null) {
+            final InputStreamEntity entity = new InputStreamEntity(response.getContent(), contentLength);
+            final Header contentType = apacheResponse.getFirstHeader(HttpHeaders.CONTENT_TYPE);
+            if (contentType != null) {
+                entity.setContentType(contentType);
+            }
+            apacheResponse.setEntity(entity);
+        }
+        return apacheResponse;
+    }
+
+    /**
+     * The connection manager of a transport, which has no connections the SDK
+     * can lease; shutting it down shuts the transport down.
+     */
+    private static final class TransportConnectionManager implements HttpClientConnectionManager {
+        private final SdkHttpTransport transport;
+        private boolean isShutDown;
+
+        private TransportConnectionManager(SdkHttpTransport transport) {
+            this.transport = transport;
+        }
+
+        @Override
+        public ConnectionRequest requestConnection(HttpRoute route, Object state) {
+            throw new UnsupportedOperationException("The transport manages its own connections");
+        }
+
+        @Override
+        public void releaseConnection(HttpClientConnection conn, Object newState, long validDuration,
+                                      TimeUnit timeUnit) {
+            throw new UnsupportedOperationException("The transport manages its own connections");
+        }
+
+        @Override
+        public void connect(HttpClientConnection conn, HttpRoute route, int connectTimeout,
+                            HttpContext context) {
+            throw new UnsupportedOperationException("The transport manages its own connections");
+        }
+
+        @Override
+        public void upgrade(HttpClientConnection conn, HttpRoute route, HttpContext context) {
+            throw new UnsupportedOperationException("The transport manages its own connections");
+        }
+
+        @Override
+        public void routeComplete(HttpClientConnection conn, HttpRoute route, HttpContext context) {
+            throw new UnsupportedOperationException("The transport manages its own connections");
+        }
+
+        @Override
+        public void closeIdleConnections(long idletime, TimeUnit tunit) {
+        }
+
+        @Override
+        public void closeExpiredConnections() {
+        }
+
+        @Override
+        public void shutdown() {
+            synchronized (this) {
+                if (isShutDown) {
+                    return;
+                }
+                isShutDown = true;
+            }
+            transport.shutdown();
+        }
+    }
+}
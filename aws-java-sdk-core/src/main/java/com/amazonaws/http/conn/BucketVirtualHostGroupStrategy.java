@@ -0,0 +1,47 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import com.amazonaws.util.StringUtils;
+
+/**
+ * Groups the virtual-hosted bucket hostnames of an Amazon S3 endpoint, such
+ * as {@code bucket.s3-us-west-2.amazonaws.com}, under the hostname of the
+ * endpoint itself, i.e. {@code s3-us-west-2.amazonaws.com}. This keeps the
+ * connections to every bucket of one region endpoint in a single sub-pool,
+ * rather than fragmenting the pool with one route per bucket.
+ */
+public class BucketVirtualHostGroupStrategy implements HostGroupStrategy {
+
+    @Override
+    public String hostGroupOf(String hostName) {
+        if (hostName == null) {
+            return null;
+        }
+        final String host = StringUtils.lowerCase(hostName);
+        final int dot = host.indexOf('.');
+        if (dot <= 0) {
+            return null;
+        }
+        final String endpoint = host.substring(dot + 1);
+        if (!endpoint.startsWith("s3.") && !endpoint.startsWith("s3-")) {
+            return null;
+        }
+        return endpoint.endsWith(".amazonaws.com")
+                || endpoint.endsWith(".amazonaws.com.cn")
+                ? endpoint
+                : null;
+    }
+}
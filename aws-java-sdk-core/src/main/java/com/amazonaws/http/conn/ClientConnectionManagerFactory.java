@@ -14,10 +14,14 @@
  */
 package com.amazonaws.http.conn;
 
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.conn.ConnectionRequest;
 import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.pool.ConnPoolControl;
 
 import java.lang.reflect.InvocationHandler;
@@ -61,7 +65,8 @@ public class ClientConnectionManagerFactory {
     /**
      * The handler behind the dynamic proxy for {@link HttpClientConnectionManager}
      * so that the any returned instance of {@link ConnectionRequest} can
-     * further wrapped for capturing performance metrics.
+     * further wrapped for capturing performance metrics, and the time taken to
+     * open new connections can be captured.
      */
     private static class Handler implements InvocationHandler {
         private final HttpClientConnectionManager orig;
@@ -73,9 +78,12 @@ public class ClientConnectionManagerFactory {
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
             try {
+                if ("connect".equals(method.getName()) && args != null && args.length == 4) {
+                    return connect(method, args);
+                }
                 Object ret = method.invoke(orig, args);
                 return ret instanceof ConnectionRequest
-                        ? ClientConnectionRequestFactory.wrap((ConnectionRequest) ret)
+                        ? ClientConnectionRequestFactory.wrap((ConnectionRequest) ret, routeOf(args))
                         : ret
                         ;
             } catch (InvocationTargetException e) {
@@ -83,5 +91,46 @@ public class ClientConnectionManagerFactory {
                 throw e.getCause();
             }
         }
+
+        /**
+         * Invokes {@link HttpClientConnectionManager#connect}, recording the
+         * time taken into the connection metrics of the route and of the
+         * request.
+         */
+        private Object connect(Method method, Object[] args) throws Exception {
+            final HttpRoute route = routeOf(args);
+            final AWSRequestMetrics requestMetrics =
+                SdkConnectionMetrics.requestMetricsOf((HttpContext) args[3]);
+            if (requestMetrics != null) {
+                requestMetrics.startEvent(Field.HttpClientConnectTime);
+            }
+            final long startNano = System.nanoTime();
+            try {
+                return method.invoke(orig, args);
+            } finally {
+                if (requestMetrics != null) {
+                    requestMetrics.endEvent(Field.HttpClientConnectTime);
+                }
+                SdkConnectionMetrics.RouteMetrics metrics = SdkConnectionMetrics.of(route);
+                if (metrics != null) {
+                    metrics.recordConnect(System.nanoTime() - startNano);
+                }
+            }
+        }
+
+        /**
+         * Returns the route among the given arguments of a connection manager
+         * method; or null if there is none.
+         */
+        private static HttpRoute routeOf(Object[] args) {
+            if (args != null) {
+                for (Object arg : args) {
+                    if (arg instanceof HttpRoute) {
+                        return (HttpRoute) arg;
+                    }
+                }
+            }
+            return null;
+        }
     }
 }
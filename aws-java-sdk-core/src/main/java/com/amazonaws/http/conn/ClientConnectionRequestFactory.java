@@ -22,6 +22,7 @@ import java.lang.reflect.Proxy;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.routing.HttpRoute;
 
 import com.amazonaws.metrics.AwsSdkMetrics;
 import com.amazonaws.metrics.ServiceLatencyProvider;
@@ -40,13 +41,24 @@ class ClientConnectionRequestFactory {
      * @param orig the target instance to be wrapped
      */
     static ConnectionRequest wrap(ConnectionRequest orig) {
+        return wrap(orig, null);
+    }
+
+    /**
+     * Returns a wrapped instance of {@link ConnectionRequest}
+     * to capture the necessary performance metrics, including the
+     * {@link SdkConnectionMetrics} of the given route.
+     * @param orig the target instance to be wrapped
+     * @param route the route of the requested connection; or null if unknown
+     */
+    static ConnectionRequest wrap(ConnectionRequest orig, HttpRoute route) {
         if (orig instanceof Wrapped)
             throw new IllegalArgumentException();
         return (ConnectionRequest) Proxy.newProxyInstance(
                 // https://github.com/aws/aws-sdk-java/pull/48#issuecomment-29454423
                 ClientConnectionRequestFactory.class.getClassLoader(),
                 interfaces,
-                new Handler(orig));
+                new Handler(orig, route));
     }
 
     /**
@@ -57,8 +69,10 @@ class ClientConnectionRequestFactory {
      */
     private static class Handler implements InvocationHandler {
         private final ConnectionRequest orig;
-        Handler(ConnectionRequest orig) {
+        private final HttpRoute route;
+        Handler(ConnectionRequest orig, HttpRoute route) {
             this.orig = orig;
+            this.route = route;
         }
         @Override
         public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
@@ -66,8 +80,11 @@ class ClientConnectionRequestFactory {
                 if ("get".equals(method.getName())) {
                     ServiceLatencyProvider latencyProvider = new ServiceLatencyProvider(
                             AWSServiceMetrics.HttpClientGetConnectionTime);
+                    final long startNano = System.nanoTime();
                     try {
-                        return method.invoke(orig, args);
+                        Object conn = method.invoke(orig, args);
+                        SdkConnectionMetrics.connectionAcquired(route, startNano, System.nanoTime());
+                        return conn;
                     } finally {
                         AwsSdkMetrics.getServiceMetricCollector()
                                 .collectLatency(latencyProvider.endTiming());
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.UnsupportedSchemeException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+
+import com.amazonaws.annotation.SdkInternalApi;
+import com.amazonaws.http.settings.HttpClientSettings;
+
+/**
+ * Opens connections to an endpoint ahead of the first requests, in parallel,
+ * and places them in the connection pool. A connection that fails to open is
+ * logged and skipped; warm-up never fails the client.
+ * <p>
+ * The time taken is logged, and recorded into the {@link SdkConnectionMetrics}
+ * of the route when connection metrics are enabled.
+ */
+@SdkInternalApi
+public class ConnectionWarmer {
+    private static final Log log = LogFactory.getLog(ConnectionWarmer.class);
+    private static final AtomicInteger threadCount = new AtomicInteger();
+
+    private final HttpClientConnectionManager cm;
+    private final HttpClientSettings settings;
+
+    public ConnectionWarmer(HttpClientConnectionManager cm, HttpClientSettings settings) {
+        this.cm = cm;
+        this.settings = settings;
+    }
+
+    /**
+     * Warms up the given number of connections to the given endpoint in the
+     * background.
+     */
+    public void warmUpAsync(final URI endpoint, final int count) {
+        final ExecutorService executor = newExecutor(1);
+        executor.submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return warmUp(endpoint, count);
+            }
+        });
+        executor.shutdown();
+    }
+
+    /**
+     * Warms up the given number of connections to the given endpoint, capped
+     * at the maximum number of connections, and returns the number of
+     * connections that were made ready in the pool.
+     */
+    public int warmUp(URI endpoint, int count) {
+        count = Math.min(count, settings.getMaxConnections());
+        if (count <= 0) {
+            return 0;
+        }
+        if (settings.getProxyHost() != null && settings.getProxyPort() > 0) {
+            log.debug("Skipping connection warm-up to " + endpoint + " via a proxy");
+            return 0;
+        }
+        final HttpRoute route;
+        try {
+            route = routeOf(endpoint);
+        } catch (UnsupportedSchemeException e) {
+            log.debug("Skipping connection warm-up to " + endpoint, e);
+            return 0;
+        }
+        final long startNano = System.nanoTime();
+        final List<HttpClientConnection> leased = lease(route, count);
+        int ready = 0;
+        try {
+            ready = connect(route, leased);
+        } finally {
+            for (HttpClientConnection conn : leased) {
+                cm.releaseConnection(conn, null, settings.getMaxIdleConnectionTime(),
+                        TimeUnit.MILLISECONDS);
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Warmed up " + ready + " of " + count + " connections to "
+                    + route.getTargetHost() + " in "
+                    + TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNano) + " ms");
+        }
+        return ready;
+    }
+
+    /**
+     * Leases up to the given number of connections all at once, so that
+     * each of them is a distinct connection, rather than the same one leased
+     * and released again.
+     */
+    private List<HttpClientConnection> lease(HttpRoute route, int count) {
+        final List<HttpClientConnection> leased = new ArrayList<HttpClientConnection>(count);
+        for (int i = 0; i < count; i++) {
+            try {
+                leased.add(cm.requestConnection(route, null)
+                        .get(settings.getConnectionPoolRequestTimeout(), TimeUnit.MILLISECONDS));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.debug("Unable to lease a connection to warm up", e);
+                break;
+            }
+        }
+        return leased;
+    }
+
+    /**
+     * Opens, in parallel, those of the given connections that are not open
+     * yet, and returns the number of connections that are open.
+     */
+    private int connect(final HttpRoute route, List<HttpClientConnection> leased) {
+        if (leased.isEmpty()) {
+            return 0;
+        }
+        final ExecutorService executor = newExecutor(leased.size());
+        final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>(leased.size());
+        try {
+            for (final HttpClientConnection conn : leased) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        return connect(route, conn);
+                    }
+                }));
+            }
+            int ready = 0;
+            for (Future<Boolean> result : results) {
+                try {
+                    if (result.get()) {
+                        ready++;
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    log.debug("Unable to warm up a connection to " + route.getTargetHost(),
+                            e.getCause());
+                }
+            }
+            return ready;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private boolean connect(HttpRoute route, HttpClientConnection conn) throws Exception {
+        if (conn.isOpen()) {
+            return true;
+        }
+        final HttpClientContext context = HttpClientContext.create();
+        context.setAttribute(HttpClientContext.HTTP_ROUTE, route);
+        final long startNano = System.nanoTime();
+        cm.connect(conn, route, settings.getConnectionTimeout(), context);
+        cm.routeComplete(conn, route, context);
+        // Binds the session buffers of the connection without sending anything,
+        // as the stale connection check of a pooled connection expects them to be.
+        conn.flush();
+        final SdkConnectionMetrics.RouteMetrics metrics = SdkConnectionMetrics.of(route);
+        if (metrics != null) {
+            metrics.recordConnect(System.nanoTime() - startNano);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the route requests to the given endpoint take when there is no
+     * proxy.
+     */
+    private HttpRoute routeOf(URI endpoint) throws UnsupportedSchemeException {
+        HttpHost target = new HttpHost(endpoint.getHost(), endpoint.getPort(), endpoint.getScheme());
+        if (target.getPort() <= 0) {
+            target = new HttpHost(target.getHostName(),
+                    DefaultSchemePortResolver.INSTANCE.resolve(target), target.getSchemeName());
+        }
+        return new HttpRoute(target, settings.getLocalAddress(),
+                "https".equalsIgnoreCase(target.getSchemeName()));
+    }
+
+    private static ExecutorService newExecutor(int threads) {
+        return Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r,
+                        "java-sdk-connection-warm-up-" + threadCount.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+}
@@ -0,0 +1,903 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpConnectionMetrics;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.config.ConnectionConfig;
+import org.apache.http.config.Lookup;
+import org.apache.http.config.SocketConfig;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.DnsResolver;
+import org.apache.http.conn.HttpClientConnectionManager;
+import org.apache.http.conn.HttpClientConnectionOperator;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.SchemePortResolver;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.ssl.DefaultHostnameVerifier;
+import org.apache.http.impl.conn.ConnectionShutdownException;
+import org.apache.http.impl.conn.DefaultHttpClientConnectionOperator;
+import org.apache.http.impl.conn.ManagedHttpClientConnectionFactory;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLSession;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A connection manager that pools connections per group of hosts, as
+ * determined by a {@link HostGroupStrategy}, rather than per route. All the
+ * routes of a host group share one sub-pool and one per-route limit, so that,
+ * for example, the virtual-hosted bucket hostnames of an Amazon S3 region
+ * endpoint reuse each other's connections instead of each paying for its own
+ * TCP and TLS setup.
+ * <p>
+ * Idle connections are reused in last-in-first-out order, which keeps the
+ * most recently used connections warm and lets the rest expire. When a limit
+ * is reached, the least recently used idle connection is closed to make room.
+ */
+@ThreadSafe
+public class HostGroupConnectionManager
+        implements HttpClientConnectionManager, ConnPoolControl<HttpRoute>, Closeable {
+
+    private static final Log log = LogFactory.getLog(HostGroupConnectionManager.class);
+
+    /** Same default as the Apache pooling connection manager. */
+    private static final int DEFAULT_VALIDATE_AFTER_INACTIVITY = 2000;
+
+    private final HostGroupStrategy strategy;
+    private final HttpClientConnectionOperator connectionOperator;
+    private final ManagedHttpClientConnectionFactory connectionFactory =
+            ManagedHttpClientConnectionFactory.INSTANCE;
+    private final HostnameVerifier hostnameVerifier = new DefaultHostnameVerifier();
+    private final long timeToLiveMillis;
+    private final AtomicLong idCounter = new AtomicLong();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    /** Signalled whenever a connection is released or capacity frees up. */
+    private final Condition released = lock.newCondition();
+    /** Sub-pools keyed by the route of their host group. */
+    private final Map<HttpRoute, SubPool> pools = new HashMap<HttpRoute, SubPool>();
+    private final Map<HttpRoute, Integer> maxPerGroup = new HashMap<HttpRoute, Integer>();
+    private final Set<PoolEntry> leased = new HashSet<PoolEntry>();
+    /** Idle connections of all sub-pools, most recently released first. */
+    private final LinkedList<PoolEntry> available = new LinkedList<PoolEntry>();
+    private int pending;
+    private boolean isShutDown;
+
+    private volatile int maxTotal = 20;
+    private volatile int defaultMaxPerRoute = 2;
+    private volatile int validateAfterInactivity = DEFAULT_VALIDATE_AFTER_INACTIVITY;
+    private volatile SocketConfig defaultSocketConfig = SocketConfig.DEFAULT;
+    private volatile ConnectionConfig defaultConnectionConfig = ConnectionConfig.DEFAULT;
+
+    /**
+     * @param socketFactoryRegistry the socket factories by scheme name
+     * @param schemePortResolver resolver for the default port of a scheme
+     * @param dnsResolver resolver for the addresses of a host
+     * @param timeToLive maximum life span of a connection; or zero or less
+     *            for no limit
+     * @param timeUnit unit of the time to live
+     * @param strategy strategy for grouping the hosts that share connections
+     */
+    public HostGroupConnectionManager(
+            Lookup<ConnectionSocketFactory> socketFactoryRegistry,
+            SchemePortResolver schemePortResolver,
+            DnsResolver dnsResolver,
+            long timeToLive,
+            TimeUnit timeUnit,
+            HostGroupStrategy strategy) {
+        if (strategy == null) {
+            throw new IllegalArgumentException("Host group strategy must not be null");
+        }
+        this.strategy = strategy;
+        this.connectionOperator = new DefaultHttpClientConnectionOperator(
+                socketFactoryRegistry, schemePortResolver, dnsResolver);
+        this.timeToLiveMillis = timeToLive > 0 ? timeUnit.toMillis(timeToLive) : 0;
+    }
+
+    @Override
+    public ConnectionRequest requestConnection(final HttpRoute route, final Object state) {
+        if (route == null) {
+            throw new IllegalArgumentException("Route must not be null");
+        }
+        return new PoolConnectionRequest(route, state);
+    }
+
+    /**
+     * A request for a connection of the host group of a route.
+     */
+    private final class PoolConnectionRequest implements ConnectionRequest {
+        private final HttpRoute route;
+        private final Object state;
+        private volatile boolean cancelled;
+
+        private PoolConnectionRequest(HttpRoute route, Object state) {
+            this.route = route;
+            this.state = state;
+        }
+
+        @Override
+        public HttpClientConnection get(long timeout, TimeUnit tunit)
+                throws InterruptedException, ExecutionException,
+                ConnectionPoolTimeoutException {
+            final long deadline = timeout > 0
+                    ? System.currentTimeMillis() + tunit.toMillis(timeout)
+                    : 0;
+            for (;;) {
+                final PoolEntry entry = lease(route, state, deadline, this);
+                if (cancelled) {
+                    release(entry, entry.isReusable());
+                    throw new InterruptedException("Request aborted");
+                }
+                if (!isValid(entry)) {
+                    entry.close();
+                    release(entry, false);
+                    continue;
+                }
+                if (log.isDebugEnabled()) {
+                    log.debug("Connection leased: " + entry);
+                }
+                return new PooledConnection(entry);
+            }
+        }
+
+        @Override
+        public boolean cancel() {
+            cancelled = true;
+            lock.lock();
+            try {
+                released.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Leases an idle connection of the host group of the given route, most
+     * recently released first, or allocates a new unconnected one; blocking
+     * until one is available or the deadline passes. Connections evicted on
+     * the way are closed after the lock is released.
+     */
+    private PoolEntry lease(HttpRoute route, Object state, long deadline,
+                            PoolConnectionRequest request)
+            throws InterruptedException, ConnectionPoolTimeoutException {
+        final HttpRoute key = groupOf(route);
+        for (;;) {
+            final List<PoolEntry> evicted = new ArrayList<PoolEntry>();
+            final PoolEntry entry;
+            lock.lock();
+            try {
+                if (isShutDown) {
+                    throw new IllegalStateException("Connection pool shut down");
+                }
+                final SubPool pool = subPoolOf(key);
+                entry = tryLease(pool, route, state, request, evicted);
+                if (entry == null && evicted.isEmpty()) {
+                    awaitRelease(pool, deadline);
+                }
+            } finally {
+                lock.unlock();
+                closeAll(evicted);
+            }
+            if (entry != null) {
+                return entry;
+            }
+        }
+    }
+
+    /**
+     * Returns an idle connection of the given sub-pool that can serve the
+     * route, or a new one if there is room for it; or null if there is
+     * neither. Idle connections that have to go are moved to the evicted
+     * list for the caller to close. Must be called with the lock held.
+     */
+    private PoolEntry tryLease(SubPool pool, HttpRoute route, Object state,
+                               PoolConnectionRequest request, List<PoolEntry> evicted)
+            throws InterruptedException {
+        final HttpHost target = route.getTargetHost();
+        final long now = System.currentTimeMillis();
+        for (Iterator<PoolEntry> it = pool.available.iterator(); it.hasNext();) {
+            final PoolEntry entry = it.next();
+            if (entry.isExpired(now)) {
+                it.remove();
+                available.remove(entry);
+                evicted.add(entry);
+                continue;
+            }
+            if (equal(state, entry.state) && entry.canServe(target, hostnameVerifier)) {
+                it.remove();
+                available.remove(entry);
+                pool.leased.add(entry);
+                leased.add(entry);
+                return entry;
+            }
+        }
+        if (request.cancelled) {
+            throw new InterruptedException("Request aborted");
+        }
+        if (makeRoom(pool, evicted)) {
+            final PoolEntry entry = new PoolEntry(
+                    "http-outgoing-" + idCounter.getAndIncrement(), pool, route,
+                    connectionFactory.create(route, defaultConnectionConfig),
+                    timeToLiveMillis);
+            pool.leased.add(entry);
+            leased.add(entry);
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Waits for a connection to be released to any sub-pool, or for the
+     * deadline to pass. Must be called with the lock held.
+     */
+    private void awaitRelease(SubPool pool, long deadline)
+            throws InterruptedException, ConnectionPoolTimeoutException {
+        pool.pending++;
+        pending++;
+        try {
+            if (deadline > 0) {
+                final long remaining = deadline - System.currentTimeMillis();
+                if (remaining <= 0 || !released.await(remaining, TimeUnit.MILLISECONDS)) {
+                    throw new ConnectionPoolTimeoutException(
+                            "Timeout waiting for connection from pool");
+                }
+            } else {
+                released.await();
+            }
+        } finally {
+            pool.pending--;
+            pending--;
+        }
+    }
+
+    /**
+     * Returns true if a new connection can be allocated to the given sub-pool,
+     * evicting the least recently used idle connection if that is what it
+     * takes to stay within the limits. Must be called with the lock held.
+     */
+    private boolean makeRoom(SubPool pool, List<PoolEntry> evicted) {
+        final int max = maxPerGroupOf(pool.key);
+        if (pool.leased.size() >= max) {
+            return false;
+        }
+        if (pool.allocated() >= max) {
+            // Idle connections of this group that could not serve the request
+            evictLeastRecentlyUsed(pool.available, evicted);
+        }
+        if (leased.size() >= maxTotal) {
+            return false;
+        }
+        if (leased.size() + available.size() >= maxTotal) {
+            evictLeastRecentlyUsed(available, evicted);
+        }
+        return true;
+    }
+
+    private void evictLeastRecentlyUsed(LinkedList<PoolEntry> entries, List<PoolEntry> evicted) {
+        if (!entries.isEmpty()) {
+            final PoolEntry entry = entries.getLast();
+            available.remove(entry);
+            entry.pool.available.remove(entry);
+            evicted.add(entry);
+        }
+    }
+
+    /**
+     * Closes connections that have been removed from the pool. Must be called
+     * without the lock held, since closing a connection can block on I/O.
+     */
+    private static void closeAll(List<PoolEntry> entries) {
+        for (PoolEntry entry : entries) {
+            entry.close();
+        }
+    }
+
+    /**
+     * Returns false if the given connection has been idle for long enough to
+     * be checked, and turns out to be stale.
+     */
+    private boolean isValid(PoolEntry entry) {
+        final int validateAfter = validateAfterInactivity;
+        if (validateAfter > 0 && entry.connection.isOpen()
+                && entry.updated + validateAfter <= System.currentTimeMillis()) {
+            return !entry.connection.isStale();
+        }
+        return true;
+    }
+
+    /**
+     * Returns the pool entry to the idle connections of its sub-pool, or
+     * closes and discards it if it is not reusable.
+     */
+    private void release(PoolEntry entry, boolean reusable) {
+        final boolean returned;
+        lock.lock();
+        try {
+            leased.remove(entry);
+            entry.pool.leased.remove(entry);
+            returned = reusable && !isShutDown;
+            if (returned) {
+                entry.updated = System.currentTimeMillis();
+                entry.pool.available.addFirst(entry);
+                available.addFirst(entry);
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        if (!returned) {
+            entry.close();
+        }
+    }
+
+    @Override
+    public void releaseConnection(HttpClientConnection managedConn, Object state,
+                                  long keepalive, TimeUnit tunit) {
+        final PoolEntry entry = PooledConnection.detach(managedConn);
+        if (entry == null) {
+            return;
+        }
+        final ManagedHttpClientConnection conn = entry.connection;
+        try {
+            if (conn.isOpen()) {
+                entry.state = state;
+                entry.updateExpiry(keepalive, tunit != null ? tunit : TimeUnit.MILLISECONDS);
+                conn.setSocketTimeout(0);
+            }
+        } finally {
+            release(entry, entry.isReusable());
+            if (log.isDebugEnabled()) {
+                log.debug("Connection released: " + entry);
+            }
+        }
+    }
+
+    @Override
+    public void connect(HttpClientConnection managedConn, HttpRoute route,
+                        int connectTimeout, HttpContext context) throws IOException {
+        final HttpHost host = route.getProxyHost() != null
+                ? route.getProxyHost()
+                : route.getTargetHost();
+        connectionOperator.connect(PooledConnection.entryOf(managedConn).connection,
+                host, route.getLocalSocketAddress(), connectTimeout,
+                defaultSocketConfig, context);
+    }
+
+    @Override
+    public void upgrade(HttpClientConnection managedConn, HttpRoute route,
+                        HttpContext context) throws IOException {
+        connectionOperator.upgrade(PooledConnection.entryOf(managedConn).connection,
+                route.getTargetHost(), context);
+    }
+
+    @Override
+    public void routeComplete(HttpClientConnection managedConn, HttpRoute route,
+                              HttpContext context) throws IOException {
+        PooledConnection.entryOf(managedConn).routeComplete = true;
+    }
+
+    @Override
+    public void closeIdleConnections(long idletime, TimeUnit tunit) {
+        final long cutoff = System.currentTimeMillis()
+                - (idletime > 0 ? tunit.toMillis(idletime) : 0);
+        closeAvailable(cutoff, false);
+    }
+
+    @Override
+    public void closeExpiredConnections() {
+        closeAvailable(System.currentTimeMillis(), true);
+    }
+
+    private void closeAvailable(long time, boolean expired) {
+        final List<PoolEntry> evicted = new ArrayList<PoolEntry>();
+        lock.lock();
+        try {
+            for (Iterator<PoolEntry> it = available.iterator(); it.hasNext();) {
+                final PoolEntry entry = it.next();
+                if (expired ? entry.isExpired(time) : entry.updated <= time) {
+                    it.remove();
+                    entry.pool.available.remove(entry);
+                    evicted.add(entry);
+                }
+            }
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        closeAll(evicted);
+    }
+
+    @Override
+    public void shutdown() {
+        final List<PoolEntry> entries = new ArrayList<PoolEntry>();
+        lock.lock();
+        try {
+            if (isShutDown) {
+                return;
+            }
+            isShutDown = true;
+            entries.addAll(available);
+            entries.addAll(leased);
+            available.clear();
+            leased.clear();
+            pools.clear();
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        for (PoolEntry entry : entries) {
+            entry.shutdown();
+        }
+    }
+
+    @Override
+    public void close() {
+        shutdown();
+    }
+
+    /**
+     * Returns the route identifying the sub-pool of the given route: the
+     * route itself, unless it is a direct route to a host that belongs to a
+     * host group, in which case the target host is replaced by the group.
+     */
+    HttpRoute groupOf(HttpRoute route) {
+        if (route.getProxyHost() != null) {
+            return route;
+        }
+        final HttpHost target = route.getTargetHost();
+        final String group = strategy.hostGroupOf(target.getHostName());
+        if (group == null || group.equalsIgnoreCase(target.getHostName())) {
+            return route;
+        }
+        return new HttpRoute(new HttpHost(group, target.getPort(), target.getSchemeName()),
+                route.getLocalAddress(), route.isSecure());
+    }
+
+    /** Must be called with the lock held. */
+    private SubPool subPoolOf(HttpRoute key) {
+        SubPool pool = pools.get(key);
+        if (pool == null) {
+            pool = new SubPool(key);
+            pools.put(key, pool);
+        }
+        return pool;
+    }
+
+    public void setDefaultSocketConfig(SocketConfig defaultSocketConfig) {
+        this.defaultSocketConfig = defaultSocketConfig != null
+                ? defaultSocketConfig
+                : SocketConfig.DEFAULT;
+    }
+
+    public void setDefaultConnectionConfig(ConnectionConfig defaultConnectionConfig) {
+        this.defaultConnectionConfig = defaultConnectionConfig != null
+                ? defaultConnectionConfig
+                : ConnectionConfig.DEFAULT;
+    }
+
+    /**
+     * Sets the period of inactivity in milliseconds after which an idle
+     * connection is checked for staleness before being leased; or zero or
+     * less to disable the check.
+     */
+    public void setValidateAfterInactivity(int ms) {
+        this.validateAfterInactivity = ms;
+    }
+
+    @Override
+    public void setMaxTotal(int max) {
+        if (max <= 0) {
+            throw new IllegalArgumentException("Max value may not be negative or zero");
+        }
+        this.maxTotal = max;
+    }
+
+    @Override
+    public int getMaxTotal() {
+        return maxTotal;
+    }
+
+    /**
+     * Sets the maximum number of connections of each host group.
+     */
+    @Override
+    public void setDefaultMaxPerRoute(int max) {
+        if (max <= 0) {
+            throw new IllegalArgumentException("Max value may not be negative or zero");
+        }
+        this.defaultMaxPerRoute = max;
+    }
+
+    @Override
+    public int getDefaultMaxPerRoute() {
+        return defaultMaxPerRoute;
+    }
+
+    /**
+     * Sets the maximum number of connections of the host group of the given
+     * route, shared with all the other routes of the group.
+     */
+    @Override
+    public void setMaxPerRoute(HttpRoute route, int max) {
+        if (max <= 0) {
+            throw new IllegalArgumentException("Max value may not be negative or zero");
+        }
+        final HttpRoute key = groupOf(route);
+        lock.lock();
+        try {
+            maxPerGroup.put(key, max);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public int getMaxPerRoute(HttpRoute route) {
+        return maxPerGroupOf(groupOf(route));
+    }
+
+    private int maxPerGroupOf(HttpRoute key) {
+        lock.lock();
+        try {
+            final Integer max = maxPerGroup.get(key);
+            return max != null ? max : defaultMaxPerRoute;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public PoolStats getTotalStats() {
+        lock.lock();
+        try {
+            return new PoolStats(leased.size(), pending, available.size(), maxTotal);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the statistics of the host group of the given route.
+     */
+    @Override
+    public PoolStats getStats(HttpRoute route) {
+        final HttpRoute key = groupOf(route);
+        lock.lock();
+        try {
+            final SubPool pool = pools.get(key);
+            final int max = maxPerGroupOf(key);
+            return pool == null
+                    ? new PoolStats(0, 0, 0, max)
+                    : new PoolStats(pool.leased.size(), pool.pending,
+                            pool.available.size(), max);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    /**
+     * The connections of one host group. Guarded by the lock of the manager.
+     */
+    private static final class SubPool {
+        private final HttpRoute key;
+        private final Set<PoolEntry> leased = new HashSet<PoolEntry>();
+        /** Most recently released first. */
+        private final LinkedList<PoolEntry> available = new LinkedList<PoolEntry>();
+        private int pending;
+
+        private SubPool(HttpRoute key) {
+            this.key = key;
+        }
+
+        private int allocated() {
+            return leased.size() + available.size();
+        }
+    }
+
+    /**
+     * A pooled connection together with its bookkeeping.
+     */
+    private static final class PoolEntry {
+        private final String id;
+        private final SubPool pool;
+        private final HttpRoute route;
+        private final ManagedHttpClientConnection connection;
+        private final long validityDeadline;
+        /** Hosts other than the target of the route the connection was verified for. */
+        private Set<String> verifiedHosts;
+        private volatile Object state;
+        private volatile long updated;
+        private volatile long expiry;
+        private volatile boolean routeComplete;
+
+        private PoolEntry(String id, SubPool pool, HttpRoute route,
+                          ManagedHttpClientConnection connection, long timeToLiveMillis) {
+            this.id = id;
+            this.pool = pool;
+            this.route = route;
+            this.connection = connection;
+            this.updated = System.currentTimeMillis();
+            this.validityDeadline = timeToLiveMillis > 0
+                    ? updated + timeToLiveMillis
+                    : Long.MAX_VALUE;
+            this.expiry = validityDeadline;
+        }
+
+        private void updateExpiry(long time, TimeUnit tunit) {
+            this.updated = System.currentTimeMillis();
+            final long newExpiry = time > 0 ? updated + tunit.toMillis(time) : Long.MAX_VALUE;
+            this.expiry = Math.min(newExpiry, validityDeadline);
+        }
+
+        private boolean isReusable() {
+            return routeComplete && connection.isOpen();
+        }
+
+        private boolean isExpired(long now) {
+            return now >= expiry;
+        }
+
+        /**
+         * Returns true if this connection can carry requests for the given
+         * target host: always for the host it was opened to or for a plain
+         * connection, and otherwise only if the peer certificate of the TLS
+         * session is valid for the host.
+         */
+        private boolean canServe(HttpHost target, HostnameVerifier verifier) {
+            final String host = target.getHostName();
+            if (host.equalsIgnoreCase(route.getTargetHost().getHostName())) {
+                return true;
+            }
+            final SSLSession session = connection.getSSLSession();
+            if (session == null) {
+                return true;
+            }
+            if (verifiedHosts != null && verifiedHosts.contains(host)) {
+                return true;
+            }
+            if (!verifier.verify(host, session)) {
+                return false;
+            }
+            if (verifiedHosts == null) {
+                verifiedHosts = new HashSet<String>();
+            }
+            verifiedHosts.add(host);
+            return true;
+        }
+
+        private void close() {
+            try {
+                connection.close();
+            } catch (IOException e) {
+                log.debug("I/O exception closing connection", e);
+            }
+        }
+
+        private void shutdown() {
+            try {
+                connection.shutdown();
+            } catch (IOException e) {
+                log.debug("I/O exception shutting down connection", e);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "[id: " + id + "][route: " + route + "][group: " + pool.key + "]";
+        }
+    }
+
+    /**
+     * The connection handed out to the client: delegates to the pooled
+     * connection until it is released, after which it is detached.
+     */
+    private static final class PooledConnection implements ManagedHttpClientConnection {
+        private volatile PoolEntry entry;
+
+        private PooledConnection(PoolEntry entry) {
+            this.entry = entry;
+        }
+
+        private static PoolEntry entryOf(HttpClientConnection conn) {
+            final PoolEntry entry = cast(conn).entry;
+            if (entry == null) {
+                throw new ConnectionShutdownException();
+            }
+            return entry;
+        }
+
+        private static PoolEntry detach(HttpClientConnection conn) {
+            final PooledConnection pooled = cast(conn);
+            synchronized (pooled) {
+                final PoolEntry entry = pooled.entry;
+                pooled.entry = null;
+                return entry;
+            }
+        }
+
+        private static PooledConnection cast(HttpClientConnection conn) {
+            if (!(conn instanceof PooledConnection)) {
+                throw new IllegalStateException(
+                        "Unexpected connection proxy class: " + conn.getClass());
+            }
+            return (PooledConnection) conn;
+        }
+
+        private ManagedHttpClientConnection connection() {
+            final PoolEntry current = entry;
+            if (current == null) {
+                throw new ConnectionShutdownException();
+            }
+            return current.connection;
+        }
+
+        @Override
+        public void close() throws IOException {
+            final PoolEntry current = entry;
+            if (current != null) {
+                current.connection.close();
+            }
+        }
+
+        @Override
+        public void shutdown() throws IOException {
+            final PoolEntry current = entry;
+            if (current != null) {
+                current.connection.shutdown();
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            final PoolEntry current = entry;
+            return current != null && current.connection.isOpen();
+        }
+
+        @Override
+        public boolean isStale() {
+            final PoolEntry current = entry;
+            return current == null || current.connection.isStale();
+        }
+
+        @Override
+        public void setSocketTimeout(int timeout) {
+            connection().setSocketTimeout(timeout);
+        }
+
+        @Override
+        public int getSocketTimeout() {
+            return connection().getSocketTimeout();
+        }
+
+        @Override
+        public HttpConnectionMetrics getMetrics() {
+            return connection().getMetrics();
+        }
+
+        @Override
+        public boolean isResponseAvailable(int timeout) throws IOException {
+            return connection().isResponseAvailable(timeout);
+        }
+
+        @Override
+        public void sendRequestHeader(HttpRequest request) throws HttpException, IOException {
+            connection().sendRequestHeader(request);
+        }
+
+        @Override
+        public void sendRequestEntity(HttpEntityEnclosingRequest request)
+                throws HttpException, IOException {
+            connection().sendRequestEntity(request);
+        }
+
+        @Override
+        public HttpResponse receiveResponseHeader() throws HttpException, IOException {
+            return connection().receiveResponseHeader();
+        }
+
+        @Override
+        public void receiveResponseEntity(HttpResponse response)
+                throws HttpException, IOException {
+            connection().receiveResponseEntity(response);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            connection().flush();
+        }
+
+        @Override
+        public InetAddress getLocalAddress() {
+            return connection().getLocalAddress();
+        }
+
+        @Override
+        public int getLocalPort() {
+            return connection().getLocalPort();
+        }
+
+        @Override
+        public InetAddress getRemoteAddress() {
+            return connection().getRemoteAddress();
+        }
+
+        @Override
+        public int getRemotePort() {
+            return connection().getRemotePort();
+        }
+
+        @Override
+        public String getId() {
+            return connection().getId();
+        }
+
+        @Override
+        public void bind(Socket socket) throws IOException {
+            connection().bind(socket);
+        }
+
+        @Override
+        public Socket getSocket() {
+            return connection().getSocket();
+        }
+
+        @Override
+        public SSLSession getSSLSession() {
+            return connection().getSSLSession();
+        }
+
+        @Override
+        public String toString() {
+            final PoolEntry current = entry;
+            return "PooledConnection" + (current != null ? current : "[detached]");
+        }
+    }
+}
@@ -0,0 +1,37 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+/**
+ * Strategy for grouping target hosts whose connections are interchangeable,
+ * so that a {@link HostGroupConnectionManager} can keep a single sub-pool,
+ * with a single set of limits, for all the hosts of a group.
+ * <p>
+ * Connections are only shared between the hosts of a group when the route
+ * is direct (not via a proxy), and when a TLS connection's peer certificate
+ * is valid for the host it is being reused for.
+ *
+ * @see BucketVirtualHostGroupStrategy
+ */
+public interface HostGroupStrategy {
+
+    /**
+     * Returns the name of the group the given host belongs to; or null if
+     * connections to the host should not be shared with any other host.
+     *
+     * @param hostName the name of the target host of a route
+     */
+    String hostGroupOf(String hostName);
+}
@@ -0,0 +1,270 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.conn.routing.RouteInfo;
+import org.apache.http.protocol.HttpContext;
+
+import com.amazonaws.annotation.SdkInternalApi;
+import com.amazonaws.metrics.AwsSdkMetrics;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.TimingInfo;
+
+/**
+ * Connection level metrics of the http client library, aggregated per target
+ * host of the route when {@link AwsSdkMetrics#isHttpConnectionMetricsEnabled()}
+ * and recorded per request into the {@link AWSRequestMetrics} of the request
+ * when request metrics are enabled. Used to tell time spent waiting for a
+ * pooled connection, or opening a new one, from time spent by the service.
+ * At most {@link #MAX_ROUTES} target hosts are aggregated separately.
+ */
+@SdkInternalApi
+@ThreadSafe
+public final class SdkConnectionMetrics {
+    /**
+     * Maximum number of target hosts aggregated separately; the metrics of
+     * routes to other hosts are aggregated under {@link #OTHER_HOSTS}, as some
+     * services (e.g. S3 with virtual hosted buckets) have a host per resource.
+     */
+    static final int MAX_ROUTES = 64;
+    /** Key of the metrics of the routes past {@link #MAX_ROUTES}. */
+    static final String OTHER_HOSTS = "other";
+
+    private static final ConcurrentMap<String, RouteMetrics> routes =
+        new ConcurrentHashMap<String, RouteMetrics>();
+
+    /**
+     * Metrics of the request being sent by the current thread, only set when
+     * they are enabled. The connection manager leases connections without the
+     * context of the request, but on the thread sending the request.
+     */
+    private static final ThreadLocal<AWSRequestMetrics> sendingRequestMetrics =
+        new ThreadLocal<AWSRequestMetrics>();
+
+    /**
+     * Number of requests with metrics enabled being sent, so that threads
+     * leasing connections for other requests don't look up the thread local.
+     */
+    private static final AtomicInteger sendingWithMetrics = new AtomicInteger();
+
+    private SdkConnectionMetrics() {}
+
+    /**
+     * Returns the metrics of the given route; or null if connection metrics
+     * are not enabled.
+     */
+    public static RouteMetrics of(RouteInfo route) {
+        if (route == null || !AwsSdkMetrics.isHttpConnectionMetricsEnabled()) {
+            return null;
+        }
+        String key = route.getTargetHost().toURI();
+        RouteMetrics metrics = routes.get(key);
+        if (metrics == null) {
+            if (routes.size() >= MAX_ROUTES) {
+                key = OTHER_HOSTS;
+                metrics = routes.get(key);
+                if (metrics != null) {
+                    return metrics;
+                }
+            }
+            final RouteMetrics created = new RouteMetrics();
+            metrics = routes.putIfAbsent(key, created);
+            if (metrics == null) {
+                metrics = created;
+            }
+        }
+        return metrics;
+    }
+
+    /**
+     * Returns the request metrics carried by the given http context; or null
+     * if there are none or they are not enabled.
+     */
+    public static AWSRequestMetrics requestMetricsOf(HttpContext context) {
+        final Object metrics = context == null
+                             ? null
+                             : context.getAttribute(AWSRequestMetrics.class.getSimpleName());
+        return metrics instanceof AWSRequestMetrics && ((AWSRequestMetrics) metrics).isEnabled()
+             ? (AWSRequestMetrics) metrics
+             : null;
+    }
+
+    /**
+     * Marks the start of the sending of a request by the current thread, so
+     * that the lease of its connection is recorded into the given request
+     * metrics if they are enabled. Must be followed by
+     * {@link #endSending(AWSRequestMetrics)}.
+     */
+    public static void beginSending(AWSRequestMetrics requestMetrics) {
+        if (requestMetrics.isEnabled()) {
+            sendingRequestMetrics.set(requestMetrics);
+            sendingWithMetrics.incrementAndGet();
+        }
+    }
+
+    /**
+     * Marks the end of the sending of a request by the current thread.
+     */
+    public static void endSending(AWSRequestMetrics requestMetrics) {
+        if (requestMetrics.isEnabled()) {
+            sendingWithMetrics.decrementAndGet();
+            sendingRequestMetrics.remove();
+        }
+    }
+
+    /**
+     * Records the lease of a connection of the given route by the current
+     * thread.
+     */
+    static void connectionAcquired(RouteInfo route, long startNano, long endNano) {
+        final RouteMetrics metrics = of(route);
+        if (metrics != null) {
+            metrics.acquire.record(endNano - startNano);
+        }
+        if (sendingWithMetrics.get() == 0) {
+            return;
+        }
+        final AWSRequestMetrics requestMetrics = sendingRequestMetrics.get();
+        if (requestMetrics != null) {
+            requestMetrics.getTimingInfo().addSubMeasurement(
+                Field.HttpClientConnectionAcquireTime.name(),
+                TimingInfo.newTimingInfoFullSupport(startNano, endNano));
+        }
+    }
+
+    /**
+     * Returns a line per target host describing its connection metrics, in
+     * the order of the target hosts.
+     */
+    public static String[] describe() {
+        final Map<String, RouteMetrics> sorted = new TreeMap<String, RouteMetrics>(routes);
+        final List<String> lines = new ArrayList<String>(sorted.size());
+        for (Map.Entry<String, RouteMetrics> entry : sorted.entrySet()) {
+            lines.add(entry.getKey() + " " + entry.getValue());
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    /**
+     * Discards the connection metrics of all routes.
+     */
+    public static void reset() {
+        routes.clear();
+    }
+
+    /**
+     * Connection metrics of the routes to a target host.
+     */
+    @ThreadSafe
+    public static final class RouteMetrics {
+        private final Latency acquire = new Latency();
+        private final Latency connect = new Latency();
+        private final Latency tlsHandshake = new Latency();
+        private final Latency timeToFirstByte = new Latency();
+        private final AtomicLong reusedCount = new AtomicLong();
+        private final AtomicLong bytesSent = new AtomicLong();
+        private final AtomicLong bytesReceived = new AtomicLong();
+
+        RouteMetrics() {}
+
+        public void recordConnect(long nanos) {
+            connect.record(nanos);
+        }
+
+        public void recordTlsHandshake(long nanos) {
+            tlsHandshake.record(nanos);
+        }
+
+        /**
+         * Records a request sent over a connection and the head of its response.
+         *
+         * @param reused
+         *            true if the connection had been used by earlier requests
+         */
+        public void recordExchange(boolean reused, long timeToFirstByteNanos,
+                long sent, long received) {
+            timeToFirstByte.record(timeToFirstByteNanos);
+            if (reused) {
+                reusedCount.incrementAndGet();
+            }
+            bytesSent.addAndGet(sent);
+            bytesReceived.addAndGet(received);
+        }
+
+        /**
+         * Returns the fraction of requests sent over a reused connection.
+         */
+        public double getReuseRatio() {
+            final long requests = timeToFirstByte.count.get();
+            return requests == 0 ? 0 : (double) reusedCount.get() / requests;
+        }
+
+        @Override
+        public String toString() {
+            final StringBuilder sb = new StringBuilder();
+            acquire.appendTo("acquire", sb);
+            connect.appendTo("connect", sb);
+            tlsHandshake.appendTo("tlsHandshake", sb);
+            timeToFirstByte.appendTo("timeToFirstByte", sb);
+            sb.append("bytesSent=").append(bytesSent.get())
+              .append(", bytesReceived=").append(bytesReceived.get())
+              .append(", reuseRatio=").append(getReuseRatio());
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Count, total and maximum of a latency.
+     */
+    private static final class Latency {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            count.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            long max;
+            while (nanos > (max = maxNanos.get()) && !maxNanos.compareAndSet(max, nanos))
+                ;
+        }
+
+        void appendTo(String name, StringBuilder sb) {
+            final long n = count.get();
+            sb.append(name).append("Count=").append(n)
+              .append(", ").append(name).append("AvgMillis=")
+              .append(n == 0 ? 0 : millisOf(totalNanos.get() / n))
+              .append(", ").append(name).append("MaxMillis=")
+              .append(millisOf(maxNanos.get()))
+              .append(", ");
+        }
+
+        private static double millisOf(long nanos) {
+            return TimeUnit.NANOSECONDS.toMicros(nanos) / 1000.0;
+        }
+    }
+}
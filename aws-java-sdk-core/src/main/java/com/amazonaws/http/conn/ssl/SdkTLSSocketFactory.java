@@ -14,16 +14,20 @@
  */
 package com.amazonaws.http.conn.ssl;
 
+import com.amazonaws.http.conn.SdkConnectionMetrics;
 import com.amazonaws.internal.SdkMetricsSocket;
 import com.amazonaws.internal.SdkSSLMetricsSocket;
 import com.amazonaws.internal.SdkSSLSocket;
 import com.amazonaws.internal.SdkSocket;
 import com.amazonaws.metrics.AwsSdkMetrics;
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
 import com.amazonaws.util.JavaVersionParser;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.HttpHost;
 import org.apache.http.annotation.ThreadSafe;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.protocol.HttpContext;
 
@@ -116,6 +120,35 @@ public class SdkTLSSocketFactory extends SSLConnectionSocketFactory {
         return false;
     }
 
+    /**
+     * {@inheritDoc} Used to capture the time taken by the TLS handshake.
+     */
+    @Override
+    public Socket createLayeredSocket(
+            final Socket socket,
+            final String target,
+            final int port,
+            final HttpContext context) throws IOException {
+        final AWSRequestMetrics requestMetrics = SdkConnectionMetrics.requestMetricsOf(context);
+        if (requestMetrics != null) {
+            requestMetrics.startEvent(Field.HttpClientTlsHandshakeTime);
+        }
+        final long startNano = System.nanoTime();
+        try {
+            return super.createLayeredSocket(socket, target, port, context);
+        } finally {
+            if (requestMetrics != null) {
+                requestMetrics.endEvent(Field.HttpClientTlsHandshakeTime);
+            }
+            SdkConnectionMetrics.RouteMetrics metrics = context == null
+                    ? null
+                    : SdkConnectionMetrics.of(HttpClientContext.adapt(context).getHttpRoute());
+            if (metrics != null) {
+                metrics.recordTlsHandshake(System.nanoTime() - startNano);
+            }
+        }
+    }
+
     public Socket connectSocket(
             final int connectTimeout,
             final Socket socket,
@@ -18,23 +18,32 @@ import java.io.IOException;
 import java.net.Socket;
 
 import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpConnectionMetrics;
 import org.apache.http.HttpException;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.conn.ManagedHttpClientConnection;
 import org.apache.http.protocol.HttpContext;
 import org.apache.http.protocol.HttpRequestExecutor;
 
+import com.amazonaws.http.conn.SdkConnectionMetrics;
+import com.amazonaws.http.conn.SdkConnectionMetrics.RouteMetrics;
 import com.amazonaws.internal.SdkMetricsSocket;
 import com.amazonaws.internal.SdkSSLMetricsSocket;
 import com.amazonaws.util.AWSRequestMetrics;
 import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.TimingInfo;
 
 /**
  * Used to capture the http send-request and receive-response latency metrics
- * of the http client library, with no retries involved.
+ * of the http client library, with no retries involved, and the
+ * {@link SdkConnectionMetrics} of each exchange over a connection.
  */
 public class SdkHttpRequestExecutor extends HttpRequestExecutor {
+    /** Context attribute holding the {@link Exchange} in progress. */
+    static final String EXCHANGE = SdkHttpRequestExecutor.class.getName() + ".exchange";
+
     @Override
     protected HttpResponse doSendRequest(
             final HttpRequest request,
@@ -58,11 +67,23 @@ public class SdkHttpRequestExecutor extends HttpRequestExecutor {
                 sdkSSLMetricsSocket.setMetrics(awsRequestMetrics);
             }
         }
+        final Exchange exchange = startExchange(awsRequestMetrics, conn, context);
         awsRequestMetrics.startEvent(Field.HttpClientSendRequestTime);
+        boolean sent = false;
         try {
-            return super.doSendRequest(request, conn, context);
+            final HttpResponse response = super.doSendRequest(request, conn, context);
+            sent = true;
+            return response;
         } finally {
             awsRequestMetrics.endEvent(Field.HttpClientSendRequestTime);
+            if (exchange != null) {
+                if (sent) {
+                    exchange.sent();
+                } else {
+                    // No response will be received for the exchange
+                    context.removeAttribute(EXCHANGE);
+                }
+            }
         }
     }
 
@@ -78,10 +99,96 @@ public class SdkHttpRequestExecutor extends HttpRequestExecutor {
             return super.doReceiveResponse(request, conn, context);
         }
         awsRequestMetrics.startEvent(Field.HttpClientReceiveResponseTime);
+        boolean received = false;
         try {
-            return super.doReceiveResponse(request, conn, context);
+            final HttpResponse response = super.doReceiveResponse(request, conn, context);
+            received = true;
+            return response;
         } finally {
             awsRequestMetrics.endEvent(Field.HttpClientReceiveResponseTime);
+            final Object exchange = context.removeAttribute(EXCHANGE);
+            // A failed exchange has no time to first byte, and is discarded
+            if (received && exchange instanceof Exchange) {
+                ((Exchange) exchange).received();
+            }
+        }
+    }
+
+    /**
+     * Returns a new exchange recording the connection metrics of the request
+     * about to be sent over the given connection, saved in the given context;
+     * or null if connection metrics are neither enabled for the request nor
+     * for its route.
+     */
+    private Exchange startExchange(AWSRequestMetrics awsRequestMetrics,
+            HttpClientConnection conn, HttpContext context) {
+        final RouteMetrics routeMetrics =
+            SdkConnectionMetrics.of(HttpClientContext.adapt(context).getHttpRoute());
+        final AWSRequestMetrics requestMetrics =
+            awsRequestMetrics.isEnabled() ? awsRequestMetrics : null;
+        final HttpConnectionMetrics connMetrics = conn.getMetrics();
+        if ((routeMetrics == null && requestMetrics == null) || connMetrics == null) {
+            context.removeAttribute(EXCHANGE);
+            return null;
+        }
+        final Exchange exchange = new Exchange(requestMetrics, routeMetrics, connMetrics);
+        context.setAttribute(EXCHANGE, exchange);
+        return exchange;
+    }
+
+    /**
+     * The connection metrics of a request sent over a connection, from the
+     * start of sending the request to the receipt of the response head.
+     */
+    private static final class Exchange {
+        private final AWSRequestMetrics requestMetrics;
+        private final RouteMetrics routeMetrics;
+        private final HttpConnectionMetrics connMetrics;
+        private final long startNano = System.nanoTime();
+        private final boolean reused;
+        private final long sentBefore;
+        private final long receivedBefore;
+        private long sent;
+
+        Exchange(AWSRequestMetrics requestMetrics, RouteMetrics routeMetrics,
+                HttpConnectionMetrics connMetrics) {
+            this.requestMetrics = requestMetrics;
+            this.routeMetrics = routeMetrics;
+            this.connMetrics = connMetrics;
+            this.reused = connMetrics.getRequestCount() > 0;
+            this.sentBefore = connMetrics.getSentBytesCount();
+            this.receivedBefore = connMetrics.getReceivedBytesCount();
+            if (requestMetrics != null && reused) {
+                requestMetrics.incrementCounter(Field.HttpClientReusedConnectionCount);
+            }
+        }
+
+        /** Called once the request has been sent. */
+        void sent() {
+            sent = connMetrics.getSentBytesCount() - sentBefore;
+            if (requestMetrics != null) {
+                addToCounter(Field.HttpClientBytesSent, sent);
+            }
+        }
+
+        /** Called once the head of the response has been received. */
+        void received() {
+            final long endNano = System.nanoTime();
+            final long received = connMetrics.getReceivedBytesCount() - receivedBefore;
+            if (requestMetrics != null) {
+                requestMetrics.getTimingInfo().addSubMeasurement(
+                    Field.HttpClientTimeToFirstByte.name(),
+                    TimingInfo.newTimingInfoFullSupport(startNano, endNano));
+                addToCounter(Field.HttpClientBytesReceived, received);
+            }
+            if (routeMetrics != null) {
+                routeMetrics.recordExchange(reused, endNano - startNano, sent, received);
+            }
+        }
+
+        private void addToCounter(Field field, long delta) {
+            requestMetrics.setCounter(field,
+                requestMetrics.getTimingInfo().getCounterValue(field) + delta);
         }
     }
 }
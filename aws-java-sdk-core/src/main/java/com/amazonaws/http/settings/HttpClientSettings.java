@@ -143,6 +143,14 @@ public class HttpClientSettings {
         return config.getConnectionMaxIdleMillis();
     }
 
+    public int getConnectionWarmUpCount() {
+        return config.getConnectionWarmUpCount();
+    }
+
+    public boolean isConnectionWarmUpAsync() {
+        return config.isConnectionWarmUpAsync();
+    }
+
     public String getProxyWorkstation() {
         return config.getProxyWorkstation();
     }
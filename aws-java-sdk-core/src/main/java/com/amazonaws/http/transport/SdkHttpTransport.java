@@ -0,0 +1,52 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.transport;
+
+import java.io.IOException;
+
+import com.amazonaws.annotation.Beta;
+
+/**
+ * Sends the HTTP requests of a client. By default clients send requests with
+ * the Apache HTTP client; a client built with
+ * {@link com.amazonaws.client.builder.AwsClientBuilder#withHttpTransportFactory(SdkHttpTransportFactory)}
+ * sends them through the transport created by the given factory instead.
+ * <p>
+ * The transport only moves bytes: signing, retries, request and client
+ * execution timeouts, and unmarshalling stay in the SDK. A transport is shared
+ * by all the requests of its client, so it must be safe for concurrent use.
+ */
+@Beta
+public interface SdkHttpTransport {
+
+    /**
+     * Sends the given request and returns the response once its status line
+     * and headers have been received. The content of the response is read by
+     * the SDK afterwards, and closed once it is no longer needed; closing it
+     * early is how the SDK aborts a request that timed out.
+     *
+     * @param request the request to send
+     * @return the response to the request
+     * @throws IOException if the request could not be sent or no response was
+     *             received; the SDK retries it according to its retry policy
+     */
+    SdkHttpTransportResponse execute(SdkHttpTransportRequest request) throws IOException;
+
+    /**
+     * Releases the resources held by this transport. Called once, when the
+     * client is shut down.
+     */
+    void shutdown();
+}
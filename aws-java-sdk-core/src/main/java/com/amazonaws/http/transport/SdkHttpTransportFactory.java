@@ -0,0 +1,35 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.transport;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.annotation.Beta;
+
+/**
+ * Creates the {@link SdkHttpTransport} of a client.
+ */
+@Beta
+public interface SdkHttpTransportFactory {
+
+    /**
+     * Creates the transport of a client.
+     *
+     * @param config the configuration of the client; the transport should
+     *            honor its connection and socket timeouts, maximum number of
+     *            connections and proxy settings where it can
+     * @return the transport; never null
+     */
+    SdkHttpTransport create(ClientConfiguration config);
+}
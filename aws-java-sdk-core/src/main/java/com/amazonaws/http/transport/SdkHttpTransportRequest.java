@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.transport;
+
+import java.io.InputStream;
+import java.net.URI;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.amazonaws.annotation.Beta;
+import com.amazonaws.http.HttpMethodName;
+
+/**
+ * A signed HTTP request, ready to be sent by an {@link SdkHttpTransport}.
+ */
+@Beta
+public class SdkHttpTransportRequest {
+
+    private final HttpMethodName method;
+    private final URI uri;
+    private final Map<String, String> headers;
+    private final InputStream content;
+    private final long contentLength;
+
+    /**
+     * @param method the HTTP method of the request
+     * @param uri the absolute URI of the request, including its query string
+     * @param headers the headers of the request, except Content-Length
+     * @param content the content of the request; or null if it has none
+     * @param contentLength the length of the content; or -1 if it is unknown,
+     *            in which case the content is sent chunked
+     */
+    public SdkHttpTransportRequest(HttpMethodName method, URI uri, Map<String, String> headers,
+                                   InputStream content, long contentLength) {
+        if (method == null) {
+            throw new IllegalArgumentException("method cannot be null");
+        }
+        if (uri == null) {
+            throw new IllegalArgumentException("uri cannot be null");
+        }
+        this.method = method;
+        this.uri = uri;
+        this.headers = Collections.unmodifiableMap(headers == null
+                ? new LinkedHashMap<String, String>()
+                : new LinkedHashMap<String, String>(headers));
+        this.content = content;
+        this.contentLength = content == null ? 0 : contentLength;
+    }
+
+    public HttpMethodName getMethod() {
+        return method;
+    }
+
+    public URI getUri() {
+        return uri;
+    }
+
+    /**
+     * Returns the headers of the request, except Content-Length, which is
+     * given by {@link #getContentLength()}.
+     */
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * Returns the content of the request, or null if it has none. The
+     * transport reads it once per call to {@link SdkHttpTransport#execute};
+     * the SDK resets it before a retry.
+     */
+    public InputStream getContent() {
+        return content;
+    }
+
+    /**
+     * Returns the length of the content, or -1 if it is unknown.
+     */
+    public long getContentLength() {
+        return contentLength;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.transport;
+
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.amazonaws.annotation.Beta;
+
+/**
+ * The response to an {@link SdkHttpTransportRequest}, as received by an
+ * {@link SdkHttpTransport}.
+ */
+@Beta
+public class SdkHttpTransportResponse {
+
+    private final int statusCode;
+    private final String statusText;
+    private final Map<String, String> headers;
+    private final InputStream content;
+
+    /**
+     * @param statusCode the HTTP status code of the response
+     * @param statusText the reason phrase of the response; or null
+     * @param headers the headers of the response
+     * @param content the content of the response; or null if it has none.
+     *            Closing it must release the connection it is read from.
+     */
+    public SdkHttpTransportResponse(int statusCode, String statusText, Map<String, String> headers,
+                                    InputStream content) {
+        this.statusCode = statusCode;
+        this.statusText = statusText;
+        this.headers = Collections.unmodifiableMap(headers == null
+                ? new LinkedHashMap<String, String>()
+                : new LinkedHashMap<String, String>(headers));
+        this.content = content;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    public String getStatusText() {
+        return statusText;
+    }
+
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    public InputStream getContent() {
+        return content;
+    }
+}
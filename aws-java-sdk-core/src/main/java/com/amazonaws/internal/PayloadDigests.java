@@ -0,0 +1,155 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+
+import com.amazonaws.annotation.SdkInternalApi;
+import com.amazonaws.util.ByteBufferInputStream;
+
+/**
+ * Computes message digests over file and {@link ByteBuffer} backed payloads without going through
+ * their input streams. File content is read with positional reads into a direct buffer reused by
+ * the thread, so the position of the stream is left untouched and no mark and reset is needed.
+ * Several digests can be computed in the same pass over the data.
+ */
+@SdkInternalApi
+public final class PayloadDigests {
+
+    /** Size of the direct buffer file content is read into. */
+    static final int READ_BUFFER_SIZE = 256 * 1024;
+
+    /** Size of the windows fed to each digest in turn when computing several digests. */
+    private static final int WINDOW_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(READ_BUFFER_SIZE);
+        }
+    };
+
+    private PayloadDigests() {
+    }
+
+    /**
+     * @return True if the remaining content of the given stream can be digested with {@link
+     * #digestRemaining(InputStream, MessageDigest...)}.
+     */
+    public static boolean isSupported(InputStream in) {
+        return in instanceof ResettableInputStream || in instanceof ByteBufferInputStream;
+    }
+
+    /**
+     * Updates the digests with the content of the stream from its current position to the end,
+     * without consuming it.
+     *
+     * @throws IllegalArgumentException If the stream is not {@link #isSupported(InputStream)
+     *                                  supported}.
+     */
+    public static void digestRemaining(InputStream in, MessageDigest... digests)
+            throws IOException {
+        digestRemaining(in, -1, digests);
+    }
+
+    /**
+     * Updates the digests with at most the given number of bytes of the stream from its current
+     * position, without consuming it. This is the part of the stream sent as the payload of a
+     * request whose Content-Length is the given length.
+     *
+     * @param length Number of bytes to digest, or a negative value to digest up to the end of the
+     *               stream.
+     * @throws IllegalArgumentException If the stream is not {@link #isSupported(InputStream)
+     *                                  supported}.
+     */
+    public static void digestRemaining(InputStream in, long length, MessageDigest... digests)
+            throws IOException {
+        if (in instanceof ResettableInputStream) {
+            final FileChannel channel = ((ResettableInputStream) in).getFileChannel();
+            final long position = channel.position();
+            final long remaining = channel.size() - position;
+            digest(channel, position, length < 0 ? remaining : Math.min(length, remaining),
+                    digests);
+        } else if (in instanceof ByteBufferInputStream) {
+            final ByteBuffer content = ((ByteBufferInputStream) in).remainingContent();
+            if (length >= 0 && length < content.remaining()) {
+                content.limit(content.position() + (int) length);
+            }
+            digest(content, digests);
+        } else {
+            throw new IllegalArgumentException("Unsupported payload stream: " + in);
+        }
+    }
+
+    /**
+     * Updates the digests with the given region of the file backing the stream, independently of
+     * the current position of the stream, which is not changed.
+     */
+    public static void digestRegion(ResettableInputStream in, long position, long length,
+                                    MessageDigest... digests) throws IOException {
+        digest(in.getFileChannel(), position, length, digests);
+    }
+
+    /**
+     * Updates the digests with the given region of the file. The position of the channel is not
+     * changed.
+     */
+    public static void digest(FileChannel channel, long position, long length,
+                              MessageDigest... digests) throws IOException {
+        final long end = position + Math.min(length, Math.max(channel.size() - position, 0));
+        final ByteBuffer buffer = READ_BUFFER.get();
+        long offset = position;
+        while (offset < end) {
+            buffer.clear();
+            if (end - offset < buffer.capacity()) {
+                buffer.limit((int) (end - offset));
+            }
+            final int read = channel.read(buffer, offset);
+            if (read < 0) {
+                break;
+            }
+            offset += read;
+            buffer.flip();
+            digest(buffer, digests);
+        }
+    }
+
+    /**
+     * Updates the digests with the remaining content of the buffer. The position of the buffer is
+     * not changed. When several digests are given, they are fed one small window at a time so the
+     * content is only brought into the CPU caches once.
+     */
+    public static void digest(ByteBuffer buffer, MessageDigest... digests) {
+        if (digests.length == 1) {
+            digests[0].update(buffer.duplicate());
+            return;
+        }
+        final ByteBuffer window = buffer.duplicate();
+        final int end = window.limit();
+        for (int start = window.position(); start < end; ) {
+            final int windowEnd = start + Math.min(WINDOW_SIZE, end - start);
+            for (MessageDigest digest : digests) {
+                window.limit(windowEnd);
+                window.position(start);
+                digest.update(window);
+            }
+            start = windowEnd;
+        }
+    }
+}
@@ -207,6 +207,15 @@ public class ResettableInputStream extends ReleasableInputStream {
         return file;
     }
 
+    /**
+     * Returns the channel of the underlying file, which reflects the current
+     * position of this stream. Used to digest the remaining content without
+     * consuming it.
+     */
+    FileChannel getFileChannel() {
+        return fileChannel;
+    }
+
     /**
      * Convenient factory method to construct a new resettable input stream for
      * the given file, converting any IOException into AmazonClientException.
@@ -24,6 +24,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.amazonaws.regions.Region;
 import com.amazonaws.regions.RegionUtils;
@@ -31,6 +32,7 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import com.amazonaws.SDKGlobalConfiguration;
+import com.amazonaws.annotation.SdkInternalApi;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
@@ -94,6 +96,19 @@ public enum AwsSdkMetrics {
      * </pre>
      */
     public static final String USE_SINGLE_METRIC_NAMESPACE = "useSingleMetricNamespace";
+
+    /**
+     * Used to aggregate the latency metrics of requests in memory, per service,
+     * request type and endpoint, into histograms that are summarized with
+     * percentiles each time metrics are uploaded, instead of queuing a metric
+     * data point per request.
+     *
+     * <pre>
+     * Example:
+     *  -Dcom.amazonaws.sdk.enableDefaultMetrics=aggregateLatencyMetrics
+     * </pre>
+     */
+    public static final String AGGREGATE_LATENCY_METRICS = "aggregateLatencyMetrics";
     /**
      * Used to exclude the generation of JVM metrics when the AWS SDK default
      * metrics is enabled.
@@ -223,6 +238,17 @@ public enum AwsSdkMetrics {
      * </pre>
      */
     private static final String ENABLE_HTTP_SOCKET_READ_METRIC = "enableHttpSocketReadMetric";
+
+    /**
+     * Used to enable the aggregation of the connection metrics of the http
+     * client library per target host, for access via JMX.
+     *
+     * <pre>
+     * Example:
+     *  -Dcom.amazonaws.sdk.enableDefaultMetrics=enableHttpConnectionMetrics
+     * </pre>
+     */
+    private static final String ENABLE_HTTP_CONNECTION_METRICS = "enableHttpConnectionMetrics";
     /**
      * True if the system property {@link #DEFAULT_METRICS_SYSTEM_PROPERTY} has
      * been set; false otherwise.
@@ -247,6 +273,25 @@ public enum AwsSdkMetrics {
      */
     private static volatile boolean httpSocketReadMetricEnabled;
 
+    /**
+     * True if latency metrics are to be aggregated into histograms in memory;
+     * false otherwise.
+     */
+    private static volatile boolean latencyMetricsAggregated;
+
+    /**
+     * True if the connection metrics of the http client library are aggregated
+     * per target host; false otherwise.
+     */
+    private static volatile boolean httpConnectionMetricsEnabled;
+
+    /**
+     * Number of lookups of SigV4 signing keys that were found in, or missing from, the signing
+     * key cache.
+     */
+    private static final AtomicLong signingKeyCacheHitCount = new AtomicLong();
+    private static final AtomicLong signingKeyCacheMissCount = new AtomicLong();
+
     private static volatile Region region;
     private static volatile Integer metricQueueSize;
     private static volatile Long queuePollTimeoutMilli;
@@ -288,6 +333,8 @@ public enum AwsSdkMetrics {
             boolean includePerHostMetrics = false;
             boolean useSingleMetricNamespace = false;
             boolean enableHttpSocketReadMetric = false;
+            boolean aggregateLatencyMetrics = false;
+            boolean enableHttpConnectionMetrics = false;
             for (String s: values) {
                 String part = s.trim();
                 if (!excludeMachineMetrics && EXCLUDE_MACHINE_METRICS.equals(part)) {
@@ -298,6 +345,10 @@ public enum AwsSdkMetrics {
                     useSingleMetricNamespace = true;
                 } else if (!enableHttpSocketReadMetric && ENABLE_HTTP_SOCKET_READ_METRIC.equals(part)) {
                     enableHttpSocketReadMetric = true;
+                } else if (!aggregateLatencyMetrics && AGGREGATE_LATENCY_METRICS.equals(part)) {
+                    aggregateLatencyMetrics = true;
+                } else if (!enableHttpConnectionMetrics && ENABLE_HTTP_CONNECTION_METRICS.equals(part)) {
+                    enableHttpConnectionMetrics = true;
                 } else {
                     String[] pair = part.split("=");
                     if (pair.length == 2) {
@@ -338,6 +389,8 @@ public enum AwsSdkMetrics {
             perHostMetricsIncluded = includePerHostMetrics;
             singleMetricNamespace = useSingleMetricNamespace;
             httpSocketReadMetricEnabled = enableHttpSocketReadMetric;
+            latencyMetricsAggregated = aggregateLatencyMetrics;
+            httpConnectionMetricsEnabled = enableHttpConnectionMetrics;
         }
     }
 
@@ -554,6 +607,28 @@ public enum AwsSdkMetrics {
         AwsSdkMetrics.singleMetricNamespace = singleMetricNamespace;
     }
 
+    /**
+     * Returns true if the default metric collector is to aggregate latency
+     * metrics into histograms in memory; false otherwise.
+     *
+     * @see #AGGREGATE_LATENCY_METRICS
+     */
+    public static boolean isLatencyMetricsAggregated() {
+        return latencyMetricsAggregated;
+    }
+
+    /**
+     * Used to set whether the default metric collector is to aggregate latency
+     * metrics into histograms in memory. Takes effect when the default metric
+     * collector is next started.
+     *
+     * @param latencyMetricsAggregated
+     *            true if latency metrics are to be aggregated; false otherwise.
+     */
+    public static void setLatencyMetricsAggregated(boolean latencyMetricsAggregated) {
+        AwsSdkMetrics.latencyMetricsAggregated = latencyMetricsAggregated;
+    }
+
     /**
      * Returns true if metrics at the AWS SDK level is enabled; false
      * if disabled.
@@ -595,6 +670,23 @@ public enum AwsSdkMetrics {
         return httpSocketReadMetricEnabled;
     }
 
+    /**
+     * Returns true if the connection metrics of the http client library are
+     * aggregated per target host; false otherwise.
+     */
+    public static boolean isHttpConnectionMetricsEnabled() {
+        return httpConnectionMetricsEnabled;
+    }
+
+    /**
+     * Used to set whether the connection metrics of the http client library,
+     * such as the time taken to acquire a connection from the pool, are to be
+     * aggregated per target host for access via JMX. Disabled by default.
+     */
+    public static void setHttpConnectionMetricsEnabled(boolean httpConnectionMetricsEnabled) {
+        AwsSdkMetrics.httpConnectionMetricsEnabled = httpConnectionMetricsEnabled;
+    }
+
     /**
      * Starts the default AWS SDK metric collector, but
      * only if no metric collector is currently in use at the AWS SDK
@@ -877,6 +969,38 @@ public enum AwsSdkMetrics {
         AwsSdkMetrics.hostMetricName = hostMetricName;
     }
 
+    /**
+     * Returns the number of times a SigV4 signing key was found in the signing
+     * key cache since the JVM started.
+     */
+    public static long getSigningKeyCacheHitCount() {
+        return signingKeyCacheHitCount.get();
+    }
+
+    /**
+     * Returns the number of times a SigV4 signing key had to be derived because
+     * it was not in the signing key cache since the JVM started.
+     */
+    public static long getSigningKeyCacheMissCount() {
+        return signingKeyCacheMissCount.get();
+    }
+
+    /**
+     * Records a hit of the signing key cache.
+     */
+    @SdkInternalApi
+    public static void recordSigningKeyCacheHit() {
+        signingKeyCacheHitCount.incrementAndGet();
+    }
+
+    /**
+     * Records a miss of the signing key cache.
+     */
+    @SdkInternalApi
+    public static void recordSigningKeyCacheMiss() {
+        signingKeyCacheMissCount.incrementAndGet();
+    }
+
     /**
      * Used as a registry for the predefined metrics to be captured by the
      * metric collector at the AWS SDK level.
@@ -17,6 +17,7 @@ package com.amazonaws.metrics;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 
+import com.amazonaws.http.conn.SdkConnectionMetrics;
 import com.amazonaws.regions.Regions;
 
 /**
@@ -140,4 +141,28 @@ public class MetricAdmin implements MetricAdminMBean {
     public void setSingleMetricNamespace(boolean singleMetricNamespace) {
         AwsSdkMetrics.setSingleMetricNamespace(singleMetricNamespace);
     }
+    @Override
+    public long getSigningKeyCacheHitCount() {
+        return AwsSdkMetrics.getSigningKeyCacheHitCount();
+    }
+    @Override
+    public long getSigningKeyCacheMissCount() {
+        return AwsSdkMetrics.getSigningKeyCacheMissCount();
+    }
+    @Override
+    public boolean isHttpConnectionMetricsEnabled() {
+        return AwsSdkMetrics.isHttpConnectionMetricsEnabled();
+    }
+    @Override
+    public void setHttpConnectionMetricsEnabled(boolean httpConnectionMetricsEnabled) {
+        AwsSdkMetrics.setHttpConnectionMetricsEnabled(httpConnectionMetricsEnabled);
+    }
+    @Override
+    public String[] getHttpConnectionMetrics() {
+        return SdkConnectionMetrics.describe();
+    }
+    @Override
+    public void resetHttpConnectionMetrics() {
+        SdkConnectionMetrics.reset();
+    }
 }
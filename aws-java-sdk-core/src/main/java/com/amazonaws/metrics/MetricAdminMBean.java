@@ -184,4 +184,40 @@ public interface MetricAdminMBean {
      * Used to set whether a single metric name space is to be used.
      */
     public void setSingleMetricNamespace(boolean singleMetricNamespace);
+
+    /**
+     * Returns the number of times a SigV4 signing key was found in the signing
+     * key cache.
+     */
+    public long getSigningKeyCacheHitCount();
+
+    /**
+     * Returns the number of times a SigV4 signing key had to be derived because
+     * it was not in the signing key cache.
+     */
+    public long getSigningKeyCacheMissCount();
+
+    /**
+     * Returns true if the connection metrics of the http client library are
+     * aggregated per target host; false otherwise.
+     */
+    public boolean isHttpConnectionMetricsEnabled();
+
+    /**
+     * Used to set whether the connection metrics of the http client library
+     * are to be aggregated per target host.
+     */
+    public void setHttpConnectionMetricsEnabled(boolean httpConnectionMetricsEnabled);
+
+    /**
+     * Returns a line per target host with the connection acquire, connect, TLS
+     * handshake and time-to-first-byte latencies, the bytes sent and received,
+     * and the ratio of requests sent over reused connections.
+     */
+    public String[] getHttpConnectionMetrics();
+
+    /**
+     * Discards the connection metrics aggregated so far.
+     */
+    public void resetHttpConnectionMetrics();
 }
\ No newline at end of file
@@ -0,0 +1,237 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry.internal;
+
+import com.amazonaws.annotation.SdkInternalApi;
+import com.amazonaws.annotation.ThreadSafe;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Client side rate limiter shared by all clients sending requests to the same endpoint, used when
+ * adaptive retries are enabled. The bucket stays disabled until the endpoint throttles a request.
+ * From then on every attempt has to take a token before being sent; tokens are refilled at a rate
+ * that is cut on every throttling error and grows back with every successful response. Once the
+ * refill rate comfortably exceeds the rate requests are actually sent at, the bucket disables
+ * itself again.
+ * <p>
+ * While the bucket is disabled, which is most of the time, attempts and successful responses are
+ * only counted, without taking the lock of the bucket.
+ */
+@SdkInternalApi
+@ThreadSafe
+public class AdaptiveRetryTokenBucket implements AdaptiveRetryTokenBucketMBean {
+
+    /**
+     * Lowest refill rate in tokens per second.
+     */
+    static final double MIN_FILL_RATE = 0.5;
+
+    /**
+     * Factor applied to the send rate when a request is throttled.
+     */
+    static final double THROTTLE_DECREASE_FACTOR = 0.7;
+
+    /**
+     * Tokens per second added to the refill rate for every successful response.
+     */
+    static final double SUCCESS_INCREMENT = 0.1;
+
+    /**
+     * The bucket disables itself once the refill rate exceeds the measured send rate by this
+     * factor.
+     */
+    static final double DISABLE_THRESHOLD = 2.0;
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final String endpoint;
+
+    private volatile boolean rateLimiting;
+    private double fillRate;
+    private double maxCapacity;
+    private double currentCapacity;
+    private long lastRefillNanos;
+
+    private volatile long sendRateWindowStartNanos;
+    private final AtomicInteger sendRateWindowCount = new AtomicInteger();
+    private double measuredSendRate;
+
+    private final AtomicLong successCount = new AtomicLong();
+    private long throttleCount;
+
+    public AdaptiveRetryTokenBucket(String endpoint) {
+        this.endpoint = endpoint;
+        this.sendRateWindowStartNanos = nanoTime();
+    }
+
+    /**
+     * Takes a token for an attempt about to be sent. When no token is available, one is reserved
+     * and the caller has to wait for the returned delay before sending the attempt.
+     *
+     * @return Number of milliseconds to wait before sending the attempt, 0 if it can be sent
+     * immediately.
+     */
+    public long acquire() {
+        if (!rateLimiting) {
+            final long now = nanoTime();
+            if (now - sendRateWindowStartNanos >= NANOS_PER_SECOND) {
+                synchronized (this) {
+                    updateMeasuredSendRate(now);
+                }
+            }
+            sendRateWindowCount.incrementAndGet();
+            return 0;
+        }
+        return acquireToken();
+    }
+
+    private synchronized long acquireToken() {
+        final long now = nanoTime();
+        updateMeasuredSendRate(now);
+        sendRateWindowCount.incrementAndGet();
+        if (!rateLimiting) {
+            return 0;
+        }
+        refill(now);
+        currentCapacity -= 1;
+        if (currentCapacity >= 0) {
+            return 0;
+        }
+        return (long) Math.ceil(-currentCapacity / fillRate * 1000);
+    }
+
+    /**
+     * Records a successful response, which grows the refill rate back.
+     */
+    public void onSuccess() {
+        successCount.incrementAndGet();
+        if (rateLimiting) {
+            growFillRate();
+        }
+    }
+
+    private synchronized void growFillRate() {
+        if (!rateLimiting) {
+            return;
+        }
+        final long now = nanoTime();
+        refill(now);
+        fillRate += SUCCESS_INCREMENT;
+        maxCapacity = Math.max(fillRate, 1);
+        updateMeasuredSendRate(now);
+        if (fillRate > DISABLE_THRESHOLD * Math.max(measuredSendRate, MIN_FILL_RATE)) {
+            rateLimiting = false;
+        }
+    }
+
+    /**
+     * Records a throttling error, which cuts the refill rate and drains the bucket.
+     */
+    public synchronized void onThrottle() {
+        throttleCount++;
+        final long now = nanoTime();
+        updateMeasuredSendRate(now);
+        final double sendRate = currentSendRate(now);
+        final double rate = rateLimiting ? Math.min(sendRate, fillRate) : sendRate;
+        fillRate = Math.max(rate * THROTTLE_DECREASE_FACTOR, MIN_FILL_RATE);
+        maxCapacity = Math.max(fillRate, 1);
+        currentCapacity = Math.min(currentCapacity, 0);
+        lastRefillNanos = now;
+        rateLimiting = true;
+    }
+
+    private void refill(long now) {
+        final double elapsedSeconds = (double) (now - lastRefillNanos) / NANOS_PER_SECOND;
+        currentCapacity = Math.min(maxCapacity, currentCapacity + elapsedSeconds * fillRate);
+        lastRefillNanos = now;
+    }
+
+    /**
+     * Folds the number of attempts sent within the last completed window of one second into the
+     * smoothed send rate.
+     */
+    private void updateMeasuredSendRate(long now) {
+        final long elapsed = now - sendRateWindowStartNanos;
+        if (elapsed >= NANOS_PER_SECOND) {
+            final double windowRate =
+                    (double) sendRateWindowCount.getAndSet(0) * NANOS_PER_SECOND / elapsed;
+            measuredSendRate = measuredSendRate == 0
+                    ? windowRate : 0.8 * windowRate + 0.2 * measuredSendRate;
+            sendRateWindowStartNanos = now;
+        }
+    }
+
+    /**
+     * Returns the smoothed send rate, or the rate of the current window if no window has been
+     * completed yet.
+     */
+    private double currentSendRate(long now) {
+        if (measuredSendRate > 0) {
+            return measuredSendRate;
+        }
+        final long elapsed = Math.max(now - sendRateWindowStartNanos, 1);
+        final int count = sendRateWindowCount.get();
+        return Math.min((double) count * NANOS_PER_SECOND / elapsed, count);
+    }
+
+    /**
+     * Overridable for testing.
+     */
+    long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    @Override
+    public boolean isRateLimiting() {
+        return rateLimiting;
+    }
+
+    @Override
+    public synchronized double getFillRate() {
+        return rateLimiting ? fillRate : 0;
+    }
+
+    @Override
+    public synchronized double getAvailableTokens() {
+        if (!rateLimiting) {
+            return 0;
+        }
+        refill(nanoTime());
+        return currentCapacity;
+    }
+
+    @Override
+    public synchronized double getMeasuredSendRate() {
+        return measuredSendRate;
+    }
+
+    @Override
+    public long getSuccessCount() {
+        return successCount.get();
+    }
+
+    @Override
+    public synchronized long getThrottleCount() {
+        return throttleCount;
+    }
+}
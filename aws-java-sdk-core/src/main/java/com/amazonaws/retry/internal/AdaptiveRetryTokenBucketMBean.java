@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry.internal;
+
+/**
+ * JMX view of an {@link AdaptiveRetryTokenBucket}.
+ */
+public interface AdaptiveRetryTokenBucketMBean {
+
+    /**
+     * Returns the endpoint the bucket rate limits.
+     */
+    String getEndpoint();
+
+    /**
+     * Returns true if requests to the endpoint are currently rate limited.
+     */
+    boolean isRateLimiting();
+
+    /**
+     * Returns the rate in tokens per second the bucket is refilled at, or 0 if requests are not
+     * rate limited.
+     */
+    double getFillRate();
+
+    /**
+     * Returns the number of tokens currently available. A negative value is the number of tokens
+     * reserved by requests waiting to be sent.
+     */
+    double getAvailableTokens();
+
+    /**
+     * Returns the smoothed rate in requests per second attempts are sent to the endpoint at.
+     */
+    double getMeasuredSendRate();
+
+    /**
+     * Returns the number of successful responses received from the endpoint.
+     */
+    long getSuccessCount();
+
+    /**
+     * Returns the number of throttling errors received from the endpoint.
+     */
+    long getThrottleCount();
+}
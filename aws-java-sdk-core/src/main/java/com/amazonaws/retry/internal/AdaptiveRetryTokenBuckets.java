@@ -0,0 +1,172 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry.internal;
+
+import com.amazonaws.annotation.SdkInternalApi;
+import com.amazonaws.jmx.MBeans;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import javax.management.ObjectName;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Holds the {@link AdaptiveRetryTokenBucket} of every endpoint so that all clients of the JVM
+ * sending requests to the same endpoint share the same bucket. Each bucket is registered as an
+ * MBean under the {@value #OBJECT_NAME_PREFIX} domain. At most {@value #MAX_BUCKETS} buckets are
+ * kept; the least recently used one is evicted, and its MBean unregistered, beyond that.
+ * <p>
+ * Looking up an existing bucket takes no lock. Only the caller creating a bucket registers its
+ * MBean and evicts the buckets beyond the maximum.
+ */
+@SdkInternalApi
+public final class AdaptiveRetryTokenBuckets {
+
+    static final String OBJECT_NAME_PREFIX = "com.amazonaws.jmx:type=AdaptiveRetryTokenBucket,endpoint=";
+
+    /**
+     * Maximum number of endpoints a bucket is kept for, as some services (e.g. S3 with virtual
+     * hosted buckets) have a host per resource.
+     */
+    static final int MAX_BUCKETS = 256;
+
+    private static final Log LOG = LogFactory.getLog(AdaptiveRetryTokenBuckets.class);
+
+    private static final ConcurrentMap<String, Entry> BUCKETS = new ConcurrentHashMap<String, Entry>();
+
+    /**
+     * Advanced every time a bucket is created; a bucket in use is stamped with its current value.
+     */
+    private static final AtomicLong CLOCK = new AtomicLong();
+
+    /**
+     * Guards the eviction of buckets beyond {@link #MAX_BUCKETS}.
+     */
+    private static final Object EVICTION_LOCK = new Object();
+
+    /**
+     * Entry whose bucket is registered as an MBean, by endpoint. Guarded by itself, so that the
+     * MBean of an evicted bucket and the one of its replacement are never confused.
+     */
+    private static final Map<String, Entry> REGISTERED = new HashMap<String, Entry>();
+
+    private AdaptiveRetryTokenBuckets() {
+    }
+
+    /**
+     * Returns the bucket shared by all clients sending requests to the given endpoint, creating it
+     * on first use.
+     *
+     * @param endpoint Host of the endpoint.
+     */
+    public static AdaptiveRetryTokenBucket forEndpoint(String endpoint) {
+        Entry entry = BUCKETS.get(endpoint);
+        if (entry == null) {
+            final Entry created = new Entry(new AdaptiveRetryTokenBucket(endpoint),
+                                            CLOCK.incrementAndGet());
+            entry = BUCKETS.putIfAbsent(endpoint, created);
+            if (entry == null) {
+                registerMBean(created);
+                evictBeyondMaximum();
+                return created.bucket;
+            }
+        }
+        entry.lastUsed = CLOCK.get();
+        return entry.bucket;
+    }
+
+    static String objectName(String endpoint) {
+        return OBJECT_NAME_PREFIX + ObjectName.quote(endpoint);
+    }
+
+    /**
+     * Evicts the least recently used buckets until at most {@link #MAX_BUCKETS} are left.
+     */
+    private static void evictBeyondMaximum() {
+        synchronized (EVICTION_LOCK) {
+            while (BUCKETS.size() > MAX_BUCKETS) {
+                Map.Entry<String, Entry> eldest = null;
+                for (Map.Entry<String, Entry> candidate : BUCKETS.entrySet()) {
+                    if (eldest == null || candidate.getValue().lastUsed < eldest.getValue().lastUsed) {
+                        eldest = candidate;
+                    }
+                }
+                if (eldest != null && BUCKETS.remove(eldest.getKey(), eldest.getValue())) {
+                    unregisterMBean(eldest.getValue());
+                }
+            }
+        }
+    }
+
+    private static void registerMBean(Entry entry) {
+        final String endpoint = entry.bucket.getEndpoint();
+        final String objectName = objectName(endpoint);
+        synchronized (REGISTERED) {
+            if (BUCKETS.get(endpoint) != entry) {
+                // Evicted already
+                return;
+            }
+            try {
+                if (REGISTERED.remove(endpoint) != null) {
+                    // The MBean of an evicted bucket of the same endpoint is still registered
+                    MBeans.unregisterMBean(objectName);
+                }
+                if (MBeans.registerMBean(objectName, entry.bucket)) {
+                    REGISTERED.put(endpoint, entry);
+                }
+            } catch (Exception e) {
+                LOG.debug("Failed to register mbean " + objectName, e);
+            } catch (LinkageError e) {
+                LOG.debug("JMX is not available, not registering mbean " + objectName, e);
+            }
+        }
+    }
+
+    private static void unregisterMBean(Entry entry) {
+        final String endpoint = entry.bucket.getEndpoint();
+        final String objectName = objectName(endpoint);
+        synchronized (REGISTERED) {
+            if (REGISTERED.get(endpoint) != entry) {
+                return;
+            }
+            REGISTERED.remove(endpoint);
+            try {
+                MBeans.unregisterMBean(objectName);
+            } catch (Exception e) {
+                LOG.debug("Failed to unregister mbean " + objectName, e);
+            } catch (LinkageError e) {
+                LOG.debug("JMX is not available, not unregistering mbean " + objectName, e);
+            }
+        }
+    }
+
+    /**
+     * Bucket of an endpoint along with when it was last used.
+     */
+    private static final class Entry {
+        private final AdaptiveRetryTokenBucket bucket;
+        private volatile long lastUsed;
+
+        Entry(AdaptiveRetryTokenBucket bucket, long lastUsed) {
+            this.bucket = bucket;
+            this.lastUsed = lastUsed;
+        }
+    }
+}
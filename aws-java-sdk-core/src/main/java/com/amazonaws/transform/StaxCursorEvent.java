@@ -0,0 +1,376 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.transform;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import javax.xml.XMLConstants;
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.namespace.QName;
+import javax.xml.stream.Location;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.Characters;
+import javax.xml.stream.events.EndElement;
+import javax.xml.stream.events.StartElement;
+
+import com.amazonaws.annotation.NotThreadSafe;
+import com.amazonaws.annotation.SdkInternalApi;
+
+/**
+ * A single, mutable {@link javax.xml.stream.events.XMLEvent} view over the
+ * current position of an {@link XMLStreamReader}, returned by
+ * {@link StaxUnmarshallerContext#nextEvent()} in cursor mode instead of
+ * allocating a new event object for every element, attribute and text node.
+ * <p>
+ * The view is overwritten by the next call to
+ * {@link StaxUnmarshallerContext#nextEvent()}, so callers must not hold on to
+ * it. Namespace information is taken from the reader's current position rather
+ * than captured with the event.
+ */
+@SdkInternalApi
+@NotThreadSafe
+final class StaxCursorEvent implements StartElement, EndElement, Attribute, Characters {
+
+    private static final String[] EMPTY = new String[0];
+
+    /** Only used to create attribute events, which takes no state from the factory */
+    private static final XMLEventFactory EVENT_FACTORY = XMLEventFactory.newInstance();
+
+    private final XMLStreamReader reader;
+
+    private int eventType = XMLStreamConstants.START_DOCUMENT;
+    private String localName;
+    private String namespaceURI;
+    private String prefix;
+    private String text;
+
+    /** Attributes of the last start element, in document order */
+    private String[] attributeNames = EMPTY;
+    private String[] attributeNamespaces = EMPTY;
+    private String[] attributePrefixes = EMPTY;
+    private String[] attributeValues = EMPTY;
+    private int attributeCount;
+    /** Index of the next attribute to be reported by {@link #nextAttribute()} */
+    private int attributeIndex;
+
+    StaxCursorEvent(XMLStreamReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * Captures the event the reader is currently positioned on, including the
+     * attributes of a start element, so that the reader can be advanced.
+     */
+    void readCurrent() {
+        eventType = reader.getEventType();
+        text = null;
+        switch (eventType) {
+            case XMLStreamConstants.START_ELEMENT:
+                setName(reader.getLocalName(), reader.getNamespaceURI(), reader.getPrefix());
+                captureAttributes();
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                setName(reader.getLocalName(), reader.getNamespaceURI(), reader.getPrefix());
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+            case XMLStreamConstants.SPACE:
+            case XMLStreamConstants.COMMENT:
+                setName(null, null, null);
+                text = reader.getText();
+                break;
+            default:
+                setName(null, null, null);
+                break;
+        }
+    }
+
+    /**
+     * Turns this view into the next attribute of the last start element.
+     *
+     * @return False if all attributes have already been reported.
+     */
+    boolean nextAttribute() {
+        if (attributeIndex >= attributeCount) {
+            return false;
+        }
+        eventType = XMLStreamConstants.ATTRIBUTE;
+        setName(attributeNames[attributeIndex], attributeNamespaces[attributeIndex],
+                attributePrefixes[attributeIndex]);
+        text = attributeValues[attributeIndex];
+        attributeIndex++;
+        return true;
+    }
+
+    /**
+     * @return The local name of the current element or attribute, without
+     *         allocating a {@link QName}.
+     */
+    String getLocalName() {
+        return localName;
+    }
+
+    private void setName(String localName, String namespaceURI, String prefix) {
+        this.localName = localName;
+        this.namespaceURI = namespaceURI;
+        this.prefix = prefix;
+    }
+
+    private void captureAttributes() {
+        final int count = reader.getAttributeCount();
+        if (count > attributeNames.length) {
+            attributeNames = new String[count];
+            attributeNamespaces = new String[count];
+            attributePrefixes = new String[count];
+            attributeValues = new String[count];
+        }
+        for (int i = 0; i < count; i++) {
+            attributeNames[i] = reader.getAttributeLocalName(i);
+            attributeNamespaces[i] = reader.getAttributeNamespace(i);
+            attributePrefixes[i] = reader.getAttributePrefix(i);
+            attributeValues[i] = reader.getAttributeValue(i);
+        }
+        if (count < attributeCount) {
+            Arrays.fill(attributeValues, count, attributeCount, null);
+        }
+        attributeCount = count;
+        attributeIndex = 0;
+    }
+
+    private static QName qname(String namespaceURI, String localName, String prefix) {
+        return new QName(namespaceURI == null ? XMLConstants.NULL_NS_URI : namespaceURI,
+                         localName,
+                         prefix == null ? XMLConstants.DEFAULT_NS_PREFIX : prefix);
+    }
+
+    /*
+     * XMLEvent
+     */
+
+    @Override
+    public int getEventType() {
+        return eventType;
+    }
+
+    @Override
+    public Location getLocation() {
+        return reader.getLocation();
+    }
+
+    @Override
+    public boolean isStartElement() {
+        return eventType == XMLStreamConstants.START_ELEMENT;
+    }
+
+    @Override
+    public boolean isAttribute() {
+        return eventType == XMLStreamConstants.ATTRIBUTE;
+    }
+
+    @Override
+    public boolean isNamespace() {
+        return eventType == XMLStreamConstants.NAMESPACE;
+    }
+
+    @Override
+    public boolean isEndElement() {
+        return eventType == XMLStreamConstants.END_ELEMENT;
+    }
+
+    @Override
+    public boolean isEntityReference() {
+        return eventType == XMLStreamConstants.ENTITY_REFERENCE;
+    }
+
+    @Override
+    public boolean isProcessingInstruction() {
+        return eventType == XMLStreamConstants.PROCESSING_INSTRUCTION;
+    }
+
+    @Override
+    public boolean isCharacters() {
+        return eventType == XMLStreamConstants.CHARACTERS
+                || eventType == XMLStreamConstants.CDATA
+                || eventType == XMLStreamConstants.SPACE;
+    }
+
+    @Override
+    public boolean isStartDocument() {
+        return eventType == XMLStreamConstants.START_DOCUMENT;
+    }
+
+    @Override
+    public boolean isEndDocument() {
+        return eventType == XMLStreamConstants.END_DOCUMENT;
+    }
+
+    @Override
+    public StartElement asStartElement() {
+        checkType(isStartElement(), "StartElement");
+        return this;
+    }
+
+    @Override
+    public EndElement asEndElement() {
+        checkType(isEndElement(), "EndElement");
+        return this;
+    }
+
+    @Override
+    public Characters asCharacters() {
+        checkType(isCharacters(), "Characters");
+        return this;
+    }
+
+    @Override
+    public QName getSchemaType() {
+        return null;
+    }
+
+    @Override
+    public void writeAsEncodedUnicode(Writer writer) throws XMLStreamException {
+        throw new XMLStreamException("Cursor events cannot be written out");
+    }
+
+    private void checkType(boolean matches, String type) {
+        if (!matches) {
+            throw new ClassCastException("Cannot cast " + this + " to " + type);
+        }
+    }
+
+    /*
+     * StartElement, EndElement and Attribute
+     */
+
+    @Override
+    public QName getName() {
+        return localName == null ? null : qname(namespaceURI, localName, prefix);
+    }
+
+    @Override
+    public Iterator<Attribute> getAttributes() {
+        if (!isStartElement() || attributeCount == 0) {
+            return Collections.<Attribute>emptyList().iterator();
+        }
+        final List<Attribute> attributes = new ArrayList<Attribute>(attributeCount);
+        for (int i = 0; i < attributeCount; i++) {
+            attributes.add(EVENT_FACTORY.createAttribute(
+                    qname(attributeNamespaces[i], attributeNames[i], attributePrefixes[i]),
+                    attributeValues[i]));
+        }
+        return attributes.iterator();
+    }
+
+    @Override
+    public Attribute getAttributeByName(QName name) {
+        for (Iterator<Attribute> it = getAttributes(); it.hasNext(); ) {
+            Attribute attribute = it.next();
+            if (attribute.getName().equals(name)) {
+                return attribute;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    @SuppressWarnings("rawtypes")
+    public Iterator getNamespaces() {
+        return Collections.emptyList().iterator();
+    }
+
+    @Override
+    public NamespaceContext getNamespaceContext() {
+        return reader.getNamespaceContext();
+    }
+
+    @Override
+    public String getNamespaceURI(String prefix) {
+        return reader.getNamespaceURI(prefix);
+    }
+
+    @Override
+    public String getValue() {
+        return text;
+    }
+
+    @Override
+    public String getDTDType() {
+        return "CDATA";
+    }
+
+    @Override
+    public boolean isSpecified() {
+        return true;
+    }
+
+    /*
+     * Characters
+     */
+
+    @Override
+    public String getData() {
+        return text;
+    }
+
+    @Override
+    public boolean isWhiteSpace() {
+        if (text == null) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean isCData() {
+        return eventType == XMLStreamConstants.CDATA;
+    }
+
+    @Override
+    public boolean isIgnorableWhiteSpace() {
+        return eventType == XMLStreamConstants.SPACE;
+    }
+
+    @Override
+    public String toString() {
+        switch (eventType) {
+            case XMLStreamConstants.START_ELEMENT:
+                return "<" + localName + ">";
+            case XMLStreamConstants.END_ELEMENT:
+                return "</" + localName + ">";
+            case XMLStreamConstants.ATTRIBUTE:
+                return localName + "='" + text + "'";
+            case XMLStreamConstants.START_DOCUMENT:
+                return "StartDocument";
+            case XMLStreamConstants.END_DOCUMENT:
+                return "EndDocument";
+            default:
+                return text == null ? "XMLEvent[type=" + eventType + "]" : text;
+        }
+    }
+}
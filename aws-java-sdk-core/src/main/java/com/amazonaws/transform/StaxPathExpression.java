@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.transform;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.amazonaws.annotation.Immutable;
+
+/**
+ * A pseudo-xpath expression, such as <code>Reservations/item</code> or
+ * <code>Grantee/@type</code>, compiled once so that it can be tested against
+ * the current position of a {@link StaxUnmarshallerContext} without parsing it
+ * or building strings.
+ *
+ * @see StaxUnmarshallerContext#testExpression(StaxPathExpression, int)
+ */
+@Immutable
+public final class StaxPathExpression {
+
+    /**
+     * Expressions tested as strings are compiled on first use. Generated unmarshallers only
+     * use a bounded set of them, the cap guards against callers building expressions on the fly.
+     */
+    private static final int MAX_CACHED_EXPRESSIONS = 4096;
+
+    private static final ConcurrentMap<String, StaxPathExpression> CACHE =
+            new ConcurrentHashMap<String, StaxPathExpression>();
+
+    private static final String[] NO_ELEMENTS = new String[0];
+
+    private final String expression;
+
+    /** Interned element names the path must end with, attribute excluded. */
+    final String[] elements;
+
+    /** Interned name of the attribute the expression designates, null for an element. */
+    final String attribute;
+
+    /** Number of element levels the expression spans below the starting depth. */
+    final int depthIncrement;
+
+    /** True for the <code>.</code> expression, which matches any position. */
+    final boolean matchesAny;
+
+    /** True for malformed expressions, e.g. with an attribute before an element. */
+    final boolean matchesNone;
+
+    private StaxPathExpression(String expression) {
+        this.expression = expression;
+        this.matchesAny = ".".equals(expression);
+
+        final List<String> elementList = new ArrayList<String>();
+        String attributeName = null;
+        boolean malformed = false;
+        int depth = 0;
+        int start = 0;
+        while (true) {
+            int end = expression.indexOf('/', start);
+            final String segment = expression.substring(start, end < 0 ? expression.length() : end);
+            if (attributeName != null) {
+                // Attributes can only be the last step of a path
+                malformed = true;
+            }
+            if (segment.startsWith("@")) {
+                attributeName = segment.substring(1).intern();
+            } else {
+                elementList.add(segment.intern());
+            }
+            if (end < 0) {
+                break;
+            }
+            // Don't consider attributes a new depth level
+            if (end + 1 >= expression.length() || expression.charAt(end + 1) != '@') {
+                depth++;
+            }
+            start = end + 1;
+        }
+        this.elements = elementList.isEmpty()
+                ? NO_ELEMENTS : elementList.toArray(new String[elementList.size()]);
+        this.attribute = attributeName;
+        this.depthIncrement = depth;
+        this.matchesNone = malformed;
+    }
+
+    /**
+     * Compiles the given pseudo-xpath expression.
+     *
+     * @param expression
+     *            Slash separated element names, optionally ending with an
+     *            attribute name prefixed by <code>@</code>, or <code>.</code>
+     *            to match any position.
+     */
+    public static StaxPathExpression compile(String expression) {
+        if (expression == null) {
+            throw new IllegalArgumentException("expression cannot be null");
+        }
+        return new StaxPathExpression(expression);
+    }
+
+    /**
+     * Returns the compiled form of the expression, reusing previously compiled
+     * instances.
+     */
+    static StaxPathExpression forString(String expression) {
+        StaxPathExpression compiled = CACHE.get(expression);
+        if (compiled == null) {
+            compiled = compile(expression);
+            if (CACHE.size() < MAX_CACHED_EXPRESSIONS) {
+                CACHE.putIfAbsent(expression, compiled);
+            }
+        }
+        return compiled;
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+}
@@ -15,15 +15,16 @@
 package com.amazonaws.transform;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Stack;
 
 import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.events.Attribute;
 import javax.xml.stream.events.XMLEvent;
 
@@ -34,13 +35,27 @@ import javax.xml.stream.events.XMLEvent;
  * response. It also tracks the current position and element depth of the
  * document being parsed and provides utilties for accessing the next XML event
  * from the parser, reading element text, handling attribute XML events, etc.
+ * <p>
+ * A context created over an {@link XMLStreamReader} runs in cursor mode: it
+ * reads the document without allocating an event object per element,
+ * attribute or text node, and {@link #nextEvent()} returns a single reusable
+ * event that is only valid until the next call.
  */
 public class StaxUnmarshallerContext {
 
     private XMLEvent currentEvent;
     private final XMLEventReader eventReader;
 
-    public final Stack<String> stack = new Stack<String>();
+    /** Source of the document in cursor mode, positioned on the event after the current one */
+    private final XMLStreamReader streamReader;
+    private final StaxCursorEvent cursorEvent;
+
+    /** Names of the elements enclosing the current position, indexed by depth */
+    private String[] path = new String[16];
+    private int depth;
+    /** Name of the attribute of the current event, null if not an attribute */
+    private String currentAttribute;
+    /** Lazily built string form of the current position, null when out of date */
     private String stackString = "";
 
     private Map<String, String> metadata = new HashMap<String, String>();
@@ -81,6 +96,37 @@ public class StaxUnmarshallerContext {
      */
     public StaxUnmarshallerContext(XMLEventReader eventReader, Map<String, String> headers) {
         this.eventReader = eventReader;
+        this.streamReader = null;
+        this.cursorEvent = null;
+        this.headers = headers;
+    }
+
+    /**
+     * Constructs a new unmarshaller context in cursor mode, reading the
+     * document from the specified stream reader.
+     *
+     * @param streamReader
+     *            The source of the XML document, positioned at its start.
+     */
+    public StaxUnmarshallerContext(XMLStreamReader streamReader) {
+        this(streamReader, null);
+    }
+
+    /**
+     * Constructs a new unmarshaller context in cursor mode, reading the
+     * document from the specified stream reader, and a set of response
+     * headers.
+     *
+     * @param streamReader
+     *            The source of the XML document, positioned at its start.
+     * @param headers
+     *            The set of response headers associated with this unmarshaller
+     *            context.
+     */
+    public StaxUnmarshallerContext(XMLStreamReader streamReader, Map<String, String> headers) {
+        this.eventReader = null;
+        this.streamReader = streamReader;
+        this.cursorEvent = new StaxCursorEvent(streamReader);
         this.headers = headers;
     }
 
@@ -114,6 +160,9 @@ public class StaxUnmarshallerContext {
             Attribute attribute = (Attribute)currentEvent;
             return attribute.getValue();
         }
+        if (streamReader != null) {
+            return readCursorText();
+        }
 
         StringBuilder sb = new StringBuilder();
         while (true) {
@@ -137,7 +186,7 @@ public class StaxUnmarshallerContext {
      *         document being parsed.
      */
     public int getCurrentDepth() {
-        return stack.size();
+        return depth;
     }
 
     /**
@@ -151,7 +200,7 @@ public class StaxUnmarshallerContext {
      */
     public boolean testExpression(String expression) {
         if (expression.equals(".")) return true;
-        return stackString.endsWith(expression);
+        return getStackString().endsWith(expression);
     }
 
     /**
@@ -170,18 +219,45 @@ public class StaxUnmarshallerContext {
      */
     public boolean testExpression(String expression, int startingStackDepth) {
         if (expression.equals(".")) return true;
+        return testExpression(StaxPathExpression.forString(expression), startingStackDepth);
+    }
 
-        int index = -1;
-        while ((index = expression.indexOf("/", index + 1)) > -1) {
-            // Don't consider attributes a new depth level
-            if (expression.charAt(index + 1) != '@') {
-                startingStackDepth++;
+    /**
+     * Tests the specified precompiled expression against the current position
+     * in the XML document being parsed, and restricts the expression to
+     * matching at the specified stack depth.
+     *
+     * @param expression
+     *            The compiled psuedo-xpath expression to test.
+     * @param startingStackDepth
+     *            The depth in the stack representing where the expression must
+     *            start matching in order for this method to return true.
+     *
+     * @return True if the specified expression matches the current position in
+     *         the XML document, starting from the specified depth.
+     */
+    public boolean testExpression(StaxPathExpression expression, int startingStackDepth) {
+        if (expression.matchesAny) return true;
+        if (expression.matchesNone
+                || startingStackDepth + expression.depthIncrement != depth) {
+            return false;
+        }
+        if (expression.attribute == null
+                ? currentAttribute != null
+                : !expression.attribute.equals(currentAttribute)) {
+            return false;
+        }
+        final String[] elements = expression.elements;
+        if (elements.length > depth) {
+            return false;
+        }
+        for (int i = elements.length - 1, d = depth - 1; i >= 0; i--, d--) {
+            // Names are usually interned by the parser, making this an identity check
+            if (!elements[i].equals(path[d])) {
+                return false;
             }
         }
-
-
-        return (startingStackDepth == getCurrentDepth()
-                && stackString.endsWith("/" + expression));
+        return true;
     }
 
     /**
@@ -193,17 +269,24 @@ public class StaxUnmarshallerContext {
      *         yet).
      */
     public boolean isStartOfDocument() throws XMLStreamException {
+        if (streamReader != null) {
+            return streamReader.getEventType() == XMLStreamConstants.START_DOCUMENT;
+        }
         return eventReader.peek().isStartDocument();
     }
 
     /**
      * Returns the next XML event for the document being parsed.
      *
-     * @return The next XML event for the document being parsed.
+     * @return The next XML event for the document being parsed. In cursor mode
+     *         the same event instance is updated and returned by every call.
      *
      * @throws XMLStreamException
      */
     public XMLEvent nextEvent() throws XMLStreamException {
+        if (streamReader != null) {
+            return nextCursorEvent();
+        }
         if (attributeIterator != null && attributeIterator.hasNext()) {
             currentEvent = (XMLEvent)attributeIterator.next();
         } else {
@@ -256,7 +339,8 @@ public class StaxUnmarshallerContext {
      *            The key under which to store the matching element's data.
      */
     public void registerMetadataExpression(String expression, int targetDepth, String storageKey) {
-        metadataExpressions.add(new MetadataExpression(expression, targetDepth, storageKey));
+        metadataExpressions.add(new MetadataExpression(
+                StaxPathExpression.compile(expression), targetDepth, storageKey));
     }
 
 
@@ -264,16 +348,76 @@ public class StaxUnmarshallerContext {
      * Private Interface
      */
 
+    private XMLEvent nextCursorEvent() throws XMLStreamException {
+        currentEvent = cursorEvent;
+        if (cursorEvent.nextAttribute()) {
+            enterAttribute(cursorEvent.getLocalName());
+        } else {
+            cursorEvent.readCurrent();
+            if (cursorEvent.isStartElement()) {
+                pushElement(cursorEvent.getLocalName());
+            } else if (cursorEvent.isEndElement()) {
+                popElement();
+            }
+            if (streamReader.hasNext()) {
+                streamReader.next();
+            }
+        }
+
+        if (!metadataExpressions.isEmpty() && isCharacters(streamReader.getEventType())) {
+            for (MetadataExpression metadataExpression : metadataExpressions) {
+                if (testExpression(metadataExpression.expression, metadataExpression.targetDepth)) {
+                    metadata.put(metadataExpression.key, streamReader.getText());
+                }
+            }
+        }
+
+        return cursorEvent;
+    }
+
+    /**
+     * Reads the text up to the end of the current element from the stream
+     * reader, concatenating it only if the parser split it into several
+     * events.
+     */
+    private String readCursorText() throws XMLStreamException {
+        String text = "";
+        StringBuilder sb = null;
+        while (true) {
+            final int eventType = streamReader.getEventType();
+            if (isCharacters(eventType)) {
+                if (sb != null) {
+                    sb.append(streamReader.getText());
+                } else if (text.isEmpty()) {
+                    text = streamReader.getText();
+                } else {
+                    sb = new StringBuilder(text).append(streamReader.getText());
+                }
+                streamReader.next();
+            } else if (eventType == XMLStreamConstants.END_ELEMENT) {
+                return sb == null ? text : sb.toString();
+            } else {
+                throw new RuntimeException("Encountered unexpected event type: " + eventType);
+            }
+        }
+    }
+
+    private static boolean isCharacters(int eventType) {
+        return eventType == XMLStreamConstants.CHARACTERS
+                || eventType == XMLStreamConstants.CDATA
+                || eventType == XMLStreamConstants.SPACE;
+    }
+
     /**
      * Simple container for the details of a metadata expression this
      * unmarshaller context is looking for.
      */
     private static class MetadataExpression {
-        public String expression;
+        public StaxPathExpression expression;
         public int targetDepth;
         public String key;
 
-        public MetadataExpression(String expression, int targetDepth, String key) {
+        public MetadataExpression(StaxPathExpression expression, int targetDepth, String key) {
             this.expression = expression;
             this.targetDepth = targetDepth;
             this.key = key;
@@ -284,22 +428,51 @@ public class StaxUnmarshallerContext {
         if (event == null) return;
 
         if (event.isEndElement()) {
-            stack.pop();
-            stackString = "";
-            for (String s : stack) {
-                stackString += "/" + s;
-            }
+            popElement();
         } else if (event.isStartElement()) {
-            stack.push(event.asStartElement().getName().getLocalPart());
-            stackString += "/" + event.asStartElement().getName().getLocalPart();
+            pushElement(event.asStartElement().getName().getLocalPart());
         } else if (event.isAttribute()) {
             Attribute attribute = (Attribute)event;
-            stackString = "";
-            for (String s : stack) {
-                stackString += "/" + s;
+            enterAttribute(attribute.getName().getLocalPart());
+        }
+    }
+
+    private void pushElement(String name) {
+        if (depth == path.length) {
+            path = Arrays.copyOf(path, depth * 2);
+        }
+        path[depth++] = name;
+        currentAttribute = null;
+        stackString = null;
+    }
+
+    private void popElement() {
+        path[--depth] = null;
+        currentAttribute = null;
+        stackString = null;
+    }
+
+    private void enterAttribute(String name) {
+        currentAttribute = name;
+        stackString = null;
+    }
+
+    /**
+     * Builds the string form of the current position, e.g. <code>/a/b/@c</code>,
+     * only needed by the legacy {@link #testExpression(String)}.
+     */
+    private String getStackString() {
+        if (stackString == null) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0; i < depth; i++) {
+                sb.append('/').append(path[i]);
+            }
+            if (currentAttribute != null) {
+                sb.append("/@").append(currentAttribute);
             }
-            stackString += "/@" + attribute.getName().getLocalPart();
+            stackString = sb.toString();
         }
+        return stackString;
     }
 
 }
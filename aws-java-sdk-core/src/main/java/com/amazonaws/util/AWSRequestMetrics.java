@@ -145,6 +145,45 @@ public class AWSRequestMetrics {
         ServiceEndpoint,
         ServiceName,
         StatusCode, // The http status code
+        /**
+         * Number of milliseconds a request waited on the client side rate limit of adaptive
+         * retries before being sent.
+         */
+        AdaptiveRetryWaitTime,
+        /**
+         * Time taken to lease a connection from the connection pool of the
+         * http client library, including any wait for one to be released.
+         */
+        HttpClientConnectionAcquireTime,
+        /**
+         * Time taken to open a new connection, including any TLS handshake.
+         * Not recorded when a pooled connection is reused.
+         */
+        HttpClientConnectTime,
+        /**
+         * Time taken by the TLS handshake of a new connection.
+         */
+        HttpClientTlsHandshakeTime,
+        /**
+         * Time from starting to send a request over a connection until the
+         * head of the response has been received.
+         */
+        HttpClientTimeToFirstByte,
+        /**
+         * Number of bytes written to the connection in sending requests,
+         * including the request lines and headers.
+         */
+        HttpClientBytesSent,
+        /**
+         * Number of bytes read from the connection while receiving the heads of
+         * the responses, including any part of the content that arrived with
+         * them; the rest of the content is read after the response is returned.
+         */
+        HttpClientBytesReceived,
+        /**
+         * Number of requests sent over a connection reused from the pool.
+         */
+        HttpClientReusedConnectionCount,
         ;
     }
 
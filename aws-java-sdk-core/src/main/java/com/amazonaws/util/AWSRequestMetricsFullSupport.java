@@ -28,6 +28,7 @@ import org.apache.http.annotation.NotThreadSafe;
 import com.amazonaws.metrics.AwsSdkMetrics;
 import com.amazonaws.metrics.MetricType;
 import com.amazonaws.metrics.RequestMetricCollector;
+import com.amazonaws.util.AWSRequestMetrics.Field;
 
 /**
  * In contrast to {@link AWSRequestMetrics}, which is intended to be a minimal
@@ -37,14 +38,34 @@ import com.amazonaws.metrics.RequestMetricCollector;
  * This class is instantiated instead of {@link AWSRequestMetrics} when request
  * metric collection is required during a particular service request/response
  * cycle.
+ * <p>
+ * Events, counters and properties of the predefined {@link Field}s are
+ * recorded in arrays indexed by the ordinal of the field, with primitive
+ * nanosecond times, so that recording them doesn't allocate. Those under any
+ * other name are kept in maps created on first use.
  */
 @NotThreadSafe
 public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
+    private static final int FIELD_COUNT = Field.values().length;
+
+    private final TimingInfoFullSupport fullTimingInfo;
+
+    /* Start times of the predefined events being profiled, and whether each has been started. */
+    private final long[] fieldEventStartNanos = new long[FIELD_COUNT];
+    private final boolean[] fieldEventStarted = new boolean[FIELD_COUNT];
+
+    /*
+     * Values of the predefined properties: the value itself, or a PropertyValues
+     * list once a property has several values.
+     */
+    private final Object[] fieldProperties = new Object[FIELD_COUNT];
+    private final boolean[] fieldPropertySet = new boolean[FIELD_COUNT];
+
     /* Stores some key value pairs. */
-    private final Map<String, List<Object>> properties = new HashMap<String, List<Object>>();
+    private Map<String, List<Object>> properties;
     
     /* A map to store events that are being profiled. */
-    private final Map<String, TimingInfo> eventsBeingProfiled = new HashMap<String, TimingInfo>();
+    private Map<String, TimingInfo> eventsBeingProfiled;
     /* Latency Logger */
     private static final Log latencyLogger = LogFactory.getLog("com.amazonaws.latency");
     private static final Object KEY_VALUE_SEPARATOR = "=";
@@ -58,6 +79,7 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
      */
     public AWSRequestMetricsFullSupport() {
         super(TimingInfo.startTimingFullSupport());
+        this.fullTimingInfo = (TimingInfoFullSupport) timingInfo;
     }
     
     /**
@@ -81,6 +103,14 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
      */
     @Override
     public void startEvent(String eventName) {
+        final Field field = TimingInfoFullSupport.fieldOf(eventName);
+        if (field != null) {
+            startFieldEvent(field);
+            return;
+        }
+        if (eventsBeingProfiled == null) {
+            eventsBeingProfiled = new HashMap<String, TimingInfo>();
+        }
         /* This will overwrite past events */
         eventsBeingProfiled.put // ignoring the wall clock time
             (eventName, TimingInfo.startTimingFullSupport(System.nanoTime()));
@@ -88,7 +118,18 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
 
     @Override
     public void startEvent(MetricType f) {
-        startEvent(f.name());
+        final Field field = TimingInfoFullSupport.fieldOf(f);
+        if (field != null) {
+            startFieldEvent(field);
+        } else {
+            startEvent(f.name());
+        }
+    }
+
+    private void startFieldEvent(Field field) {
+        /* This will overwrite past events */
+        fieldEventStartNanos[field.ordinal()] = System.nanoTime();
+        fieldEventStarted[field.ordinal()] = true;
     }
 
     /**
@@ -101,7 +142,12 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
      */
     @Override
     public void endEvent(String eventName) {
-        TimingInfo event = eventsBeingProfiled.get(eventName);
+        final Field field = TimingInfoFullSupport.fieldOf(eventName);
+        if (field != null) {
+            endFieldEvent(field);
+            return;
+        }
+        TimingInfo event = eventsBeingProfiled == null ? null : eventsBeingProfiled.get(eventName);
         /* Somebody tried to end an event that was not started. */
         if (event == null) {
             LogFactory.getLog(getClass()).warn
@@ -118,7 +164,23 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
 
     @Override
     public void endEvent(MetricType f) {
-        endEvent(f.name());
+        final Field field = TimingInfoFullSupport.fieldOf(f);
+        if (field != null) {
+            endFieldEvent(field);
+        } else {
+            endEvent(f.name());
+        }
+    }
+
+    private void endFieldEvent(Field field) {
+        /* Somebody tried to end an event that was not started. */
+        if (!fieldEventStarted[field.ordinal()]) {
+            LogFactory.getLog(getClass()).warn
+                ("Trying to end an event which was never started: " + field.name());
+            return;
+        }
+        fullTimingInfo.addSubMeasurement(field,
+            fieldEventStartNanos[field.ordinal()], System.nanoTime());
     }
 
     /**
@@ -140,7 +202,12 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
 
     @Override
     public void incrementCounter(MetricType f) {
-        incrementCounter(f.name());
+        final Field field = TimingInfoFullSupport.fieldOf(f);
+        if (field != null) {
+            fullTimingInfo.incrementCounter(field);
+        } else {
+            incrementCounter(f.name());
+        }
     }
     
     @Override
@@ -150,7 +217,12 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
 
     @Override
     public void setCounter(MetricType f, long count) {
-        setCounter(f.name(), count);
+        final Field field = TimingInfoFullSupport.fieldOf(f);
+        if (field != null) {
+            fullTimingInfo.setCounter(field, count);
+        } else {
+            setCounter(f.name(), count);
+        }
     }
     
     /**
@@ -169,6 +241,14 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
      */
     @Override
     public void addProperty(String propertyName, Object value) {
+        final Field field = TimingInfoFullSupport.fieldOf(propertyName);
+        if (field != null) {
+            addFieldProperty(field, value);
+            return;
+        }
+        if (properties == null) {
+            properties = new HashMap<String, List<Object>>();
+        }
         List<Object> propertyList = properties.get(propertyName);
         if (propertyList == null) {
             propertyList = new ArrayList<Object>();
@@ -180,7 +260,43 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
 
     @Override
     public void addProperty(MetricType f, Object value) {
-        addProperty(f.name(), value);
+        final Field field = TimingInfoFullSupport.fieldOf(f);
+        if (field != null) {
+            addFieldProperty(field, value);
+        } else {
+            addProperty(f.name(), value);
+        }
+    }
+
+    private void addFieldProperty(Field field, Object value) {
+        final int i = field.ordinal();
+        if (!fieldPropertySet[i]) {
+            fieldProperties[i] = value;
+            fieldPropertySet[i] = true;
+        } else if (fieldProperties[i] instanceof PropertyValues) {
+            ((PropertyValues) fieldProperties[i]).add(value);
+        } else {
+            PropertyValues values = new PropertyValues();
+            values.add(fieldProperties[i]);
+            values.add(value);
+            fieldProperties[i] = values;
+        }
+    }
+
+    /**
+     * Returns the values of a predefined property, or null if it has none.
+     */
+    private List<Object> getFieldProperty(Field field) {
+        final int i = field.ordinal();
+        if (!fieldPropertySet[i]) {
+            return null;
+        }
+        if (fieldProperties[i] instanceof PropertyValues) {
+            return (PropertyValues) fieldProperties[i];
+        }
+        List<Object> values = new ArrayList<Object>(1);
+        values.add(fieldProperties[i]);
+        return values;
     }
 
     @Override
@@ -188,8 +304,16 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
         if (latencyLogger.isInfoEnabled()) {
             StringBuilder builder = new StringBuilder();
 
-            for (Entry<String, List<Object>> entry : properties.entrySet()) {
-                keyValueFormat(entry.getKey(), entry.getValue(), builder);
+            for (Field field : Field.values()) {
+                List<Object> values = getFieldProperty(field);
+                if (values != null) {
+                    keyValueFormat(field.name(), values, builder);
+                }
+            }
+            if (properties != null) {
+                for (Entry<String, List<Object>> entry : properties.entrySet()) {
+                    keyValueFormat(entry.getKey(), entry.getValue(), builder);
+                }
             }
 
             for (Entry<String, Number> entry : timingInfo.getAllCounters()
@@ -210,12 +334,17 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
 
     @Override
     public List<Object> getProperty(String propertyName){
-    	return properties.get(propertyName);
+        final Field field = TimingInfoFullSupport.fieldOf(propertyName);
+        if (field != null) {
+            return getFieldProperty(field);
+        }
+    	return properties == null ? null : properties.get(propertyName);
     }
 
     @Override
     public List<Object> getProperty(MetricType f){
-        return getProperty(f.name());
+        final Field field = TimingInfoFullSupport.fieldOf(f);
+        return field != null ? getFieldProperty(field) : getProperty(f.name());
     }
 
     /** Always returns true. */
@@ -223,4 +352,9 @@ public class AWSRequestMetricsFullSupport extends AWSRequestMetrics {
     public final boolean isEnabled() {
         return true;
     }
+
+    /** The values of a predefined property that has been added more than once. */
+    private static final class PropertyValues extends ArrayList<Object> {
+        private static final long serialVersionUID = 1L;
+    }
 }
@@ -268,4 +268,36 @@ public class TimingInfo {
     public Map<String, Number> getAllCounters() { return Collections.emptyMap(); }
     public void setCounter(String key, long count) {}
     public void incrementCounter(String key) {}
+
+    /**
+     * Returns true if a counter of the given predefined field has been set.
+     */
+    public boolean hasCounter(AWSRequestMetrics.Field field) { return false; }
+
+    /**
+     * Returns the counter of the given predefined field without boxing it, or
+     * zero if it has not been set.
+     */
+    public long getCounterValue(AWSRequestMetrics.Field field) { return 0; }
+
+    /**
+     * Returns the number of sub-measurements of the given predefined field.
+     */
+    public int getSubMeasurementCount(AWSRequestMetrics.Field field) { return 0; }
+
+    /**
+     * Returns the duration in nanoseconds of a sub-measurement of the given
+     * predefined field, without creating a {@link TimingInfo} for it; or
+     * -1 if the sub-measurement has not ended.
+     *
+     * @param index
+     *            the index of the sub-measurement, from zero to
+     *            {@link #getSubMeasurementCount(AWSRequestMetrics.Field)}
+     *            exclusive, in the order they were added.
+     * @throws IndexOutOfBoundsException
+     *             if there is no sub-measurement at that index.
+     */
+    public long getSubMeasurementNanos(AWSRequestMetrics.Field field, int index) {
+        throw new IndexOutOfBoundsException("No sub-measurement " + index + " of " + field);
+    }
 }
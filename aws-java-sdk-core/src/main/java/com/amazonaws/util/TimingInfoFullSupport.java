@@ -14,14 +14,24 @@
  */
 package com.amazonaws.util;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 import org.apache.commons.logging.LogFactory;
 import org.apache.http.annotation.NotThreadSafe;
 
+import com.amazonaws.metrics.MetricType;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+
 /**
  * In contrast to {@link TimingInfo}, which is intended to be a minimal support
  * of the timing info, this class is the full support of timing info including
@@ -30,11 +40,43 @@ import org.apache.http.annotation.NotThreadSafe;
  * This class is instantiated instead of {@link TimingInfo} when
  * request metric collection is required during a particular service
  * request/response cycle.
+ * <p>
+ * Sub-measurements and counters of the predefined {@link Field}s are kept in
+ * arrays indexed by the ordinal of the field, as primitive nanosecond times
+ * and counts, so that recording them allocates nothing. Those under any other
+ * name are kept in maps created on first use. The name based accessors see
+ * both, and the maps they return are read only views over this timing info
+ * rather than copies of it.
  */
 @NotThreadSafe
 class TimingInfoFullSupport extends TimingInfo {
-    private final Map<String, List<TimingInfo>> subMeasurementsByName = new HashMap<String, List<TimingInfo>>();
-    private final Map<String, Number> countersByName = new HashMap<String, Number>();
+    private static final Field[] FIELDS = Field.values();
+    private static final Map<String, Field> FIELDS_BY_NAME = new HashMap<String, Field>();
+    static {
+        for (Field field : FIELDS) {
+            FIELDS_BY_NAME.put(field.name(), field);
+        }
+    }
+    private static final int INITIAL_SUB_MEASUREMENT_CAPACITY = 8;
+
+    /* Counters of the predefined fields, and whether each of them is set. */
+    private final long[] fieldCounters = new long[FIELDS.length];
+    private final boolean[] fieldCounterSet = new boolean[FIELDS.length];
+
+    /* Sub-measurements of the predefined fields, in the order they were added. */
+    private int[] subMeasurementFields = new int[INITIAL_SUB_MEASUREMENT_CAPACITY];
+    private long[] subMeasurementStartNanos = new long[INITIAL_SUB_MEASUREMENT_CAPACITY];
+    private long[] subMeasurementEndNanos = new long[INITIAL_SUB_MEASUREMENT_CAPACITY];
+    private int subMeasurementCount;
+    private final int[] subMeasurementCountsByField = new int[FIELDS.length];
+
+    /* Sub-measurements and counters under any other name. */
+    private Map<String, List<TimingInfo>> subMeasurementsByName;
+    private Map<String, Number> countersByName;
+
+    /* Read only views of all the sub-measurements and counters, created on first use. */
+    private Map<String, List<TimingInfo>> subMeasurementsView;
+    private Map<String, Number> countersView;
 
     /**
      * A private ctor to facilitate the deprecation of using millisecond and
@@ -53,8 +95,58 @@ class TimingInfoFullSupport extends TimingInfo {
         super(startEpochTimeMilli, startTimeNano, endTimeNano);
     }
 
+    /**
+     * Returns the predefined field of the given name, or null if there is none.
+     */
+    static Field fieldOf(String name) {
+        return FIELDS_BY_NAME.get(name);
+    }
+
+    /**
+     * Returns the predefined field of the given metric type, or null if there
+     * is none.
+     */
+    static Field fieldOf(MetricType type) {
+        return type instanceof Field ? (Field) type : fieldOf(type.name());
+    }
+
+    /**
+     * Records a sub-measurement of a predefined field.
+     */
+    void addSubMeasurement(Field field, long startTimeNano, long endTimeNano) {
+        if (subMeasurementCount == subMeasurementFields.length) {
+            final int capacity = subMeasurementCount * 2;
+            subMeasurementFields = Arrays.copyOf(subMeasurementFields, capacity);
+            subMeasurementStartNanos = Arrays.copyOf(subMeasurementStartNanos, capacity);
+            subMeasurementEndNanos = Arrays.copyOf(subMeasurementEndNanos, capacity);
+        }
+        subMeasurementFields[subMeasurementCount] = field.ordinal();
+        subMeasurementStartNanos[subMeasurementCount] = startTimeNano;
+        subMeasurementEndNanos[subMeasurementCount] = endTimeNano;
+        subMeasurementCount++;
+        subMeasurementCountsByField[field.ordinal()]++;
+    }
+
+    void setCounter(Field field, long count) {
+        fieldCounters[field.ordinal()] = count;
+        fieldCounterSet[field.ordinal()] = true;
+    }
+
+    void incrementCounter(Field field) {
+        fieldCounters[field.ordinal()]++;
+        fieldCounterSet[field.ordinal()] = true;
+    }
+
     @Override
     public void addSubMeasurement(String subMeasurementName, TimingInfo ti) {
+        final Field field = fieldOf(subMeasurementName);
+        if (field != null && ti.isEndTimeKnown() && !ti.isStartEpochTimeMilliKnown()) {
+            addSubMeasurement(field, ti.getStartTimeNano(), ti.getEndTimeNano());
+            return;
+        }
+        if (subMeasurementsByName == null) {
+            subMeasurementsByName = new HashMap<String, List<TimingInfo>>();
+        }
         List<TimingInfo> timings = subMeasurementsByName.get(subMeasurementName);
         if (timings == null) {
             timings = new ArrayList<TimingInfo>();
@@ -76,10 +168,21 @@ class TimingInfoFullSupport extends TimingInfo {
 
     @Override
     public TimingInfo getSubMeasurement(String subMesurementName, int index) {
-
-        List<TimingInfo> timings = subMeasurementsByName.get(subMesurementName);
-        if (index < 0 || timings == null || timings.size() == 0
-                || index >= timings.size()) {
+        if (index < 0) {
+            return null;
+        }
+        final Field field = fieldOf(subMesurementName);
+        if (field != null) {
+            final int fieldCount = subMeasurementCountsByField[field.ordinal()];
+            if (index < fieldCount) {
+                final int i = indexOf(field, index);
+                return TimingInfo.unmodifiableTimingInfo(subMeasurementStartNanos[i],
+                        Long.valueOf(subMeasurementEndNanos[i]));
+            }
+            index -= fieldCount;
+        }
+        List<TimingInfo> timings = namedSubMeasurements(subMesurementName);
+        if (timings == null || index >= timings.size()) {
             return null;
         }
 
@@ -88,46 +191,80 @@ class TimingInfoFullSupport extends TimingInfo {
 
     @Override
     public TimingInfo getLastSubMeasurement(String subMeasurementName) {
-
-        if (subMeasurementsByName == null || subMeasurementsByName.size() == 0) {
-            return null;
-        }
-
-        List<TimingInfo> timings = subMeasurementsByName.get(subMeasurementName);
-        if (timings == null || timings.size() == 0) {
-            return null;
+        final Field field = fieldOf(subMeasurementName);
+        List<TimingInfo> timings = namedSubMeasurements(subMeasurementName);
+        int count = timings == null ? 0 : timings.size();
+        if (field != null) {
+            count += subMeasurementCountsByField[field.ordinal()];
         }
-
-        return timings.get(timings.size() - 1);
+        return count == 0 ? null : getSubMeasurement(subMeasurementName, count - 1);
     }
 
     @Override
     public List<TimingInfo> getAllSubMeasurements(String subMeasurementName) {
-        return subMeasurementsByName.get(subMeasurementName);
+        final Field field = fieldOf(subMeasurementName);
+        final List<TimingInfo> named = namedSubMeasurements(subMeasurementName);
+        if (field == null || subMeasurementCountsByField[field.ordinal()] == 0) {
+            return named;
+        }
+        final List<TimingInfo> timings = new ArrayList<TimingInfo>();
+        for (int i = 0; i < subMeasurementCount; i++) {
+            if (subMeasurementFields[i] == field.ordinal()) {
+                timings.add(TimingInfo.unmodifiableTimingInfo(subMeasurementStartNanos[i],
+                        Long.valueOf(subMeasurementEndNanos[i])));
+            }
+        }
+        if (named != null) {
+            timings.addAll(named);
+        }
+        return timings;
     }
 
     @Override
     public Map<String, List<TimingInfo>> getSubMeasurementsByName() {
-        return subMeasurementsByName;
+        if (subMeasurementsView == null) {
+            subMeasurementsView = new SubMeasurementsView();
+        }
+        return subMeasurementsView;
     }
 
     @Override
     public Number getCounter(String key) {
-        return countersByName.get(key);
+        final Field field = fieldOf(key);
+        if (field != null && fieldCounterSet[field.ordinal()]) {
+            return Long.valueOf(fieldCounters[field.ordinal()]);
+        }
+        return countersByName == null ? null : countersByName.get(key);
     }
 
     @Override
     public Map<String, Number> getAllCounters() {
-        return countersByName;
+        if (countersView == null) {
+            countersView = new CountersView();
+        }
+        return countersView;
     }
 
     @Override
     public void setCounter(String key, long count) {
+        final Field field = fieldOf(key);
+        if (field != null) {
+            setCounter(field, count);
+            return;
+        }
+        if (countersByName == null) {
+            countersByName = new HashMap<String, Number>();
+        }
         countersByName.put(key, count);
     }
 
     @Override
     public void incrementCounter(String key) {
+        final Field field = fieldOf(key);
+        if (field != null) {
+            incrementCounter(field);
+            return;
+        }
 
         int count = 0;
         Number counter = getCounter(key);
@@ -138,4 +275,203 @@ class TimingInfoFullSupport extends TimingInfo {
 
         setCounter(key, ++count);
     }
+
+    @Override
+    public boolean hasCounter(Field field) {
+        return fieldCounterSet[field.ordinal()] || getCounter(field.name()) != null;
+    }
+
+    @Override
+    public long getCounterValue(Field field) {
+        if (fieldCounterSet[field.ordinal()]) {
+            return fieldCounters[field.ordinal()];
+        }
+        final Number counter = getCounter(field.name());
+        return counter == null ? 0 : counter.longValue();
+    }
+
+    @Override
+    public int getSubMeasurementCount(Field field) {
+        final List<TimingInfo> named = namedSubMeasurements(field.name());
+        return subMeasurementCountsByField[field.ordinal()]
+                + (named == null ? 0 : named.size());
+    }
+
+    @Override
+    public long getSubMeasurementNanos(Field field, int index) {
+        final int fieldCount = subMeasurementCountsByField[field.ordinal()];
+        if (index >= 0 && index < fieldCount) {
+            final int i = indexOf(field, index);
+            return subMeasurementEndNanos[i] - subMeasurementStartNanos[i];
+        }
+        final List<TimingInfo> named = namedSubMeasurements(field.name());
+        if (index < fieldCount || named == null || index - fieldCount >= named.size()) {
+            throw new IndexOutOfBoundsException("No sub-measurement " + index + " of " + field);
+        }
+        final TimingInfo ti = named.get(index - fieldCount);
+        return ti.isEndTimeKnown() ? ti.getEndTimeNano() - ti.getStartTimeNano() : UNKNOWN;
+    }
+
+    /**
+     * Returns the position in the arrays of the sub-measurement of the field
+     * at the given index among those of the field.
+     */
+    private int indexOf(Field field, int index) {
+        for (int i = 0; i < subMeasurementCount; i++) {
+            if (subMeasurementFields[i] == field.ordinal() && index-- == 0) {
+                return i;
+            }
+        }
+        throw new IllegalStateException();
+    }
+
+    private List<TimingInfo> namedSubMeasurements(String subMeasurementName) {
+        if (subMeasurementsByName == null) {
+            return null;
+        }
+        return subMeasurementsByName.get(subMeasurementName);
+    }
+
+    /**
+     * A read only map over the values recorded in this timing info, keyed by
+     * the names of the predefined fields that have a value followed by the
+     * other names. Values are looked up as the map is read, so the map
+     * reflects values recorded after it was returned.
+     */
+    private abstract class NamedView<V> extends AbstractMap<String, V> {
+        /** Returns true if a value has been recorded for the field of the given ordinal. */
+        abstract boolean hasField(int ordinal);
+
+        /** Returns the values recorded under names other than the predefined fields. */
+        abstract Map<String, ?> named();
+
+        abstract V valueOf(String name);
+
+        @Override
+        public Set<Entry<String, V>> entrySet() {
+            return new AbstractSet<Entry<String, V>>() {
+                @Override
+                public Iterator<Entry<String, V>> iterator() {
+                    return new NamedViewIterator();
+                }
+
+                @Override
+                public int size() {
+                    int size = 0;
+                    for (Iterator<Entry<String, V>> it = iterator(); it.hasNext(); it.next()) {
+                        size++;
+                    }
+                    return size;
+                }
+            };
+        }
+
+        private class NamedViewIterator implements Iterator<Entry<String, V>> {
+            private final Iterator<String> names;
+            private int ordinal = -1;
+            private String next;
+
+            NamedViewIterator() {
+                final Map<String, ?> named = named();
+                names = named == null
+                      ? Collections.<String> emptyList().iterator()
+                      : named.keySet().iterator();
+                advance();
+            }
+
+            private void advance() {
+                while (++ordinal < FIELDS.length) {
+                    if (hasField(ordinal)) {
+                        next = FIELDS[ordinal].name();
+                        return;
+                    }
+                }
+                while (names.hasNext()) {
+                    final String name = names.next();
+                    final Field field = fieldOf(name);
+                    // Already returned with the values of the predefined field
+                    if (field == null || !hasField(field.ordinal())) {
+                        next = name;
+                        return;
+                    }
+                }
+                next = null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            public Entry<String, V> next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                final String name = next;
+                advance();
+                return new SimpleImmutableEntry<String, V>(name, valueOf(name));
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        }
+    }
+
+    private final class SubMeasurementsView extends NamedView<List<TimingInfo>> {
+        @Override
+        boolean hasField(int ordinal) {
+            return subMeasurementCountsByField[ordinal] > 0;
+        }
+
+        @Override
+        Map<String, ?> named() {
+            return subMeasurementsByName;
+        }
+
+        @Override
+        List<TimingInfo> valueOf(String name) {
+            final List<TimingInfo> timings = getAllSubMeasurements(name);
+            return timings == null ? null : Collections.unmodifiableList(timings);
+        }
+
+        @Override
+        public List<TimingInfo> get(Object key) {
+            return key instanceof String ? valueOf((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+    }
+
+    private final class CountersView extends NamedView<Number> {
+        @Override
+        boolean hasField(int ordinal) {
+            return fieldCounterSet[ordinal];
+        }
+
+        @Override
+        Map<String, ?> named() {
+            return countersByName;
+        }
+
+        @Override
+        Number valueOf(String name) {
+            return getCounter(name);
+        }
+
+        @Override
+        public Number get(Object key) {
+            return key instanceof String ? valueOf((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+    }
 }
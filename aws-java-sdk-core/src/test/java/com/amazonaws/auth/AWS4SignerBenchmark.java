@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.SignableRequest;
+import com.amazonaws.http.HttpMethodName;
+
+import java.io.ByteArrayInputStream;
+import java.net.URI;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link AWS4Signer#sign(SignableRequest, AWSCredentials)} for a small JSON request, as
+ * sent to DynamoDB. Run with
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp target/test-classes:target/classes:$(cat cp.txt) org.openjdk.jmh.Main AWS4SignerBenchmark -prof gc
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AWS4SignerBenchmark {
+
+    private static final byte[] PAYLOAD =
+            "{\"TableName\":\"foo\",\"Key\":{\"id\":{\"S\":\"0123456789\"}}}".getBytes();
+
+    private static final URI ENDPOINT = URI.create("https://dynamodb.us-east-1.amazonaws.com");
+
+    private final AWS4Signer signer = new AWS4Signer();
+    private final AWSCredentials credentials = new BasicAWSCredentials("access", "secret");
+
+    @Setup
+    public void setup() {
+        signer.setServiceName("dynamodb");
+        signer.setRegionName("us-east-1");
+        signer.setOverrideDate(new Date());
+    }
+
+    @Benchmark
+    public Request<Void> sign() {
+        Request<Void> request = new DefaultRequest<Void>("dynamodb");
+        request.setHttpMethod(HttpMethodName.POST);
+        request.setEndpoint(ENDPOINT);
+        request.setResourcePath("/");
+        request.addHeader("Content-Type", "application/x-amz-json-1.0");
+        request.addHeader("X-Amz-Target", "DynamoDB_20120810.GetItem");
+        request.setContent(new ByteArrayInputStream(PAYLOAD));
+        signer.sign(request, credentials);
+        return request;
+    }
+}
@@ -14,11 +14,23 @@
  */
 package com.amazonaws.auth;
 
+import com.amazonaws.DefaultRequest;
 import com.amazonaws.SignableRequest;
 import com.amazonaws.auth.internal.AWS4SignerUtils;
+import com.amazonaws.auth.internal.SignerConstants;
+import com.amazonaws.internal.ResettableInputStream;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.ByteBufferInputStream;
+import com.amazonaws.util.IOUtils;
+import com.amazonaws.util.StringUtils;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.net.URI;
+import java.nio.ByteBuffer;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
@@ -27,6 +39,7 @@ import java.util.SimpleTimeZone;
 import java.util.TimeZone;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
@@ -69,6 +82,8 @@ public class AWS4SignerTest {
             "++q4zoqVhgiJOUh9\n" +
             "-----END CERTIFICATE-----";
 
+    private static final String BASIC_CONTENT = "{\"TableName\": \"foo\"}";
+
     private AWS4Signer signer = new AWS4Signer();
 
     @Test
@@ -139,6 +154,154 @@ public class AWS4SignerTest {
         assertEquals(EXPECTED_AMZ_EXPIRES, request.getParameters().get("X-Amz-Expires").get(0));
     }
 
+    /**
+     * Tests that signing with different credentials on the same thread doesn't reuse the signing
+     * key of a previous request.
+     */
+    @Test
+    public void testSigningWithAlternatingCredentials() throws Exception {
+        final String EXPECTED_AUTHORIZATION_HEADER =
+            "AWS4-HMAC-SHA256 Credential=access/19810216/us-east-1/demo/aws4_request, SignedHeaders=host;x-amz-archive-description;x-amz-date, Signature=77fe7c02927966018667f21d1dc3dfad9057e58401cbb9ed64f1b7868288e35a";
+
+        Calendar c = new GregorianCalendar();
+        c.set(1981, 1, 16, 6, 30, 0);
+        c.setTimeZone(TimeZone.getTimeZone("UTC"));
+        signer.setOverrideDate(c.getTime());
+        signer.setServiceName("demo");
+
+        SignableRequest<?> request = generateBasicRequest();
+        signer.sign(request, new BasicAWSCredentials("access", "secret"));
+        assertEquals(EXPECTED_AUTHORIZATION_HEADER, request.getHeaders().get("Authorization"));
+
+        request = generateBasicRequest();
+        signer.sign(request, new BasicAWSCredentials("access", "other-secret"));
+        assertFalse(EXPECTED_AUTHORIZATION_HEADER.equals(request.getHeaders().get("Authorization")));
+
+        request = generateBasicRequest();
+        signer.sign(request, new BasicAWSCredentials("access", "secret"));
+        assertEquals(EXPECTED_AUTHORIZATION_HEADER, request.getHeaders().get("Authorization"));
+    }
+
+    /**
+     * Tests that file and buffer backed payloads, which are hashed in place, are signed the same as
+     * the equivalent in-memory payload.
+     */
+    @Test
+    public void testSigningFileAndBufferBackedPayloads() throws Exception {
+        final String EXPECTED_AUTHORIZATION_HEADER =
+            "AWS4-HMAC-SHA256 Credential=access/19810216/us-east-1/demo/aws4_request, SignedHeaders=host;x-amz-archive-description;x-amz-date, Signature=77fe7c02927966018667f21d1dc3dfad9057e58401cbb9ed64f1b7868288e35a";
+
+        Calendar c = new GregorianCalendar();
+        c.set(1981, 1, 16, 6, 30, 0);
+        c.setTimeZone(TimeZone.getTimeZone("UTC"));
+        signer.setOverrideDate(c.getTime());
+        signer.setServiceName("demo");
+
+        File file = File.createTempFile("AWS4SignerTest", ".json");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(BASIC_CONTENT.getBytes(StringUtils.UTF8));
+        } finally {
+            out.close();
+        }
+        ResettableInputStream fileContent = new ResettableInputStream(file);
+        try {
+            SignableRequest<?> request = generateBasicRequest(fileContent);
+            signer.sign(request, new BasicAWSCredentials("access", "secret"));
+            assertEquals(EXPECTED_AUTHORIZATION_HEADER, request.getHeaders().get("Authorization"));
+            assertEquals(BASIC_CONTENT, IOUtils.toString(fileContent));
+        } finally {
+            fileContent.release();
+        }
+
+        ByteBufferInputStream bufferContent = new ByteBufferInputStream(
+                ByteBuffer.wrap(BASIC_CONTENT.getBytes(StringUtils.UTF8)));
+        SignableRequest<?> request = generateBasicRequest(bufferContent);
+        signer.sign(request, new BasicAWSCredentials("access", "secret"));
+        assertEquals(EXPECTED_AUTHORIZATION_HEADER, request.getHeaders().get("Authorization"));
+        assertEquals(BASIC_CONTENT, IOUtils.toString(bufferContent));
+    }
+
+    /**
+     * Tests that a payload hash provided through the handler context is used instead of reading
+     * the payload.
+     */
+    @Test
+    public void testSigningWithPrecomputedContentHash() throws Exception {
+        final String EXPECTED_AUTHORIZATION_HEADER =
+            "AWS4-HMAC-SHA256 Credential=access/19810216/us-east-1/demo/aws4_request, SignedHeaders=host;x-amz-archive-description;x-amz-date, Signature=77fe7c02927966018667f21d1dc3dfad9057e58401cbb9ed64f1b7868288e35a";
+
+        Calendar c = new GregorianCalendar();
+        c.set(1981, 1, 16, 6, 30, 0);
+        c.setTimeZone(TimeZone.getTimeZone("UTC"));
+        signer.setOverrideDate(c.getTime());
+        signer.setServiceName("demo");
+
+        DefaultRequest<Void> request = new DefaultRequest<Void>("demo");
+        request.setEndpoint(URI.create("http://demo.us-east-1.amazonaws.com"));
+        request.setResourcePath("/");
+        request.addHeader("Host", "demo.us-east-1.amazonaws.com");
+        request.addHeader("x-amz-archive-description", "test  test");
+        request.setContent(new ByteArrayInputStream(new byte[0]) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                throw new AssertionError("Payload should not be read");
+            }
+        });
+        request.addHandlerContext(SignerConstants.PRECOMPUTED_CONTENT_SHA256,
+                BinaryUtils.toHex(signer.hash(BASIC_CONTENT)));
+
+        signer.sign(request, new BasicAWSCredentials("access", "secret"));
+        assertEquals(EXPECTED_AUTHORIZATION_HEADER, request.getHeaders().get("Authorization"));
+    }
+
+    /**
+     * Tests that only the Content-Length first bytes of a file backed payload, which are the ones
+     * sent, are hashed.
+     */
+    @Test
+    public void testSigningFileBackedPayloadShorterThanFile() throws Exception {
+        Calendar c = new GregorianCalendar();
+        c.set(1981, 1, 16, 6, 30, 0);
+        c.setTimeZone(TimeZone.getTimeZone("UTC"));
+        signer.setOverrideDate(c.getTime());
+        signer.setServiceName("demo");
+
+        File file = File.createTempFile("AWS4SignerTest", ".json");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write((BASIC_CONTENT + "trailing content").getBytes(StringUtils.UTF8));
+        } finally {
+            out.close();
+        }
+        ResettableInputStream fileContent = new ResettableInputStream(file);
+        try {
+            DefaultRequest<Void> fileRequest = generateContentLengthRequest(fileContent);
+            signer.sign(fileRequest, new BasicAWSCredentials("access", "secret"));
+
+            DefaultRequest<Void> memoryRequest = generateContentLengthRequest(
+                    new ByteArrayInputStream(BASIC_CONTENT.getBytes(StringUtils.UTF8)));
+            signer.sign(memoryRequest, new BasicAWSCredentials("access", "secret"));
+
+            assertEquals(memoryRequest.getHeaders().get("Authorization"),
+                    fileRequest.getHeaders().get("Authorization"));
+        } finally {
+            fileContent.release();
+        }
+    }
+
+    private DefaultRequest<Void> generateContentLengthRequest(InputStream content) {
+        DefaultRequest<Void> request = new DefaultRequest<Void>("demo");
+        request.setEndpoint(URI.create("http://demo.us-east-1.amazonaws.com"));
+        request.setResourcePath("/");
+        request.addHeader("Host", "demo.us-east-1.amazonaws.com");
+        request.addHeader("Content-Length", String.valueOf(BASIC_CONTENT.length()));
+        request.setContent(content);
+        return request;
+    }
+
     /**
      * Tests that if passed anonymous credentials, signer will not generate a signature
      */
@@ -159,8 +322,12 @@ public class AWS4SignerTest {
     }
 
     private SignableRequest<?> generateBasicRequest() {
+        return generateBasicRequest(new ByteArrayInputStream(BASIC_CONTENT.getBytes()));
+    }
+
+    private SignableRequest<?> generateBasicRequest(InputStream content) {
         return MockRequestBuilder.create()
-                .withContent(new ByteArrayInputStream("{\"TableName\": \"foo\"}".getBytes()))
+                .withContent(content)
                 .withHeader("Host", "demo.us-east-1.amazonaws.com")
                 .withHeader("x-amz-archive-description", "test  test")
                 .withPath("/")
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+
+import com.amazonaws.util.StringUtils;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class ReusableUtf8EncoderTest {
+
+    @Test
+    public void encode_MatchesStringGetBytes() {
+        assertEncodedAsGetBytes("");
+        assertEncodedAsGetBytes("AWS4-HMAC-SHA256\n20160101T000000Z");
+        assertEncodedAsGetBytes("café 中文 😀");
+    }
+
+    @Test
+    public void encodeMalformedInput_ReplacesAsStringGetBytes() {
+        assertEncodedAsGetBytes("lone surrogate \ud83d here");
+    }
+
+    @Test
+    public void encodeAfterLongerText_OnlyReturnsNewText() {
+        assertEncodedAsGetBytes(repeat("long text ", 200));
+        assertEncodedAsGetBytes("short");
+    }
+
+    @Test
+    public void encodeTextLargerThanReusedBuffer_MatchesStringGetBytes() {
+        assertEncodedAsGetBytes(repeat("é", 100000));
+    }
+
+    private static void assertEncodedAsGetBytes(String text) {
+        ByteBuffer encoded = ReusableUtf8Encoder.forCurrentThread().encode(text);
+        byte[] bytes = new byte[encoded.remaining()];
+        encoded.get(bytes);
+        assertArrayEquals(text.getBytes(StringUtils.UTF8), bytes);
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+
+import com.amazonaws.util.StringUtils;
+
+import java.nio.ByteBuffer;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+public class SignerKeyTest {
+
+    private static final byte[] KEY = "signing-key".getBytes(StringUtils.UTF8);
+
+    @Test
+    public void sign_MatchesHmacSha256OfRemainingBytes() throws Exception {
+        SignerKey signerKey = new SignerKey(100, KEY);
+        ByteBuffer data = ByteBuffer.wrap("xxstring-to-sign".getBytes(StringUtils.UTF8));
+        data.position(2);
+
+        assertArrayEquals(hmac("string-to-sign"), signerKey.sign(data));
+    }
+
+    @Test
+    public void sign_Repeatedly_GivesSameSignatures() throws Exception {
+        SignerKey signerKey = new SignerKey(100, KEY);
+
+        for (int i = 0; i < 3; i++) {
+            assertArrayEquals(hmac("a"), signerKey.sign(utf8("a")));
+            assertArrayEquals(hmac("b"), signerKey.sign(utf8("b")));
+        }
+    }
+
+    @Test
+    public void sign_FromManyThreads_GivesSameSignatures() throws Exception {
+        final SignerKey signerKey = new SignerKey(100, KEY);
+        final byte[] expected = hmac("concurrent");
+        final Throwable[] failure = new Throwable[1];
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (int j = 0; j < 1000; j++) {
+                            assertArrayEquals(expected, signerKey.sign(utf8("concurrent")));
+                        }
+                    } catch (Throwable t) {
+                        failure[0] = t;
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertSame(null, failure[0]);
+    }
+
+    private static ByteBuffer utf8(String s) {
+        return ByteBuffer.wrap(s.getBytes(StringUtils.UTF8));
+    }
+
+    private static byte[] hmac(String s) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(KEY, "HmacSHA256"));
+        return mac.doFinal(s.getBytes(StringUtils.UTF8));
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import com.amazonaws.metrics.AwsSdkMetrics;
+
+import org.junit.Test;
+
+public class SigningKeyCacheTest {
+
+    private static final byte[] KEY = {1, 2, 3};
+
+    @Test
+    public void get_CountsHitsAndMisses() {
+        SigningKeyCache cache = new SigningKeyCache(10);
+        long hits = AwsSdkMetrics.getSigningKeyCacheHitCount();
+        long misses = AwsSdkMetrics.getSigningKeyCacheMissCount();
+
+        assertNull(cache.get("key", 100));
+        cache.put("key", new SignerKey(100, KEY));
+        assertArrayEquals(KEY, cache.get("key", 100));
+
+        assertEquals(hits + 1, AwsSdkMetrics.getSigningKeyCacheHitCount());
+        assertEquals(misses + 1, AwsSdkMetrics.getSigningKeyCacheMissCount());
+    }
+
+    @Test
+    public void getSignerKey_ReturnsCachedEntry() {
+        SigningKeyCache cache = new SigningKeyCache(10);
+        SignerKey signerKey = new SignerKey(100, KEY);
+        cache.put("key", signerKey);
+
+        assertSame(signerKey, cache.getSignerKey("key", 100));
+        assertNull(cache.getSignerKey("key", 101));
+    }
+
+    @Test
+    public void getForAnotherDay_Misses() {
+        SigningKeyCache cache = new SigningKeyCache(10);
+        cache.put("key", new SignerKey(100, KEY));
+
+        assertNull(cache.get("key", 101));
+    }
+
+    @Test
+    public void putBeyondMaxSize_EvictsKeysOfEarlierDaysFirst() {
+        SigningKeyCache cache = new SigningKeyCache(3);
+        cache.put("old1", new SignerKey(100, KEY));
+        cache.put("old2", new SignerKey(100, KEY));
+        cache.put("new1", new SignerKey(101, KEY));
+        cache.put("new2", new SignerKey(101, KEY));
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get("new1", 101));
+        assertNotNull(cache.get("new2", 101));
+    }
+
+    @Test
+    public void putBeyondMaxSize_StaysBounded() {
+        SigningKeyCache cache = new SigningKeyCache(3);
+        for (int i = 0; i < 10; i++) {
+            cache.put("key" + i, new SignerKey(100, KEY));
+        }
+        assertEquals(3, cache.size());
+        assertNotNull(cache.get("key9", 100));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void zeroMaxSize_ThrowsException() {
+        new SigningKeyCache(0);
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http;
+
+import com.amazonaws.AmazonWebServiceResponse;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.transform.StaxUnmarshallerContext;
+import com.amazonaws.transform.Unmarshaller;
+import com.amazonaws.util.StringInputStream;
+
+import org.junit.Test;
+
+import javax.xml.stream.events.XMLEvent;
+
+import static org.junit.Assert.assertEquals;
+
+public class StaxResponseHandlerTest {
+
+    private static final String RESPONSE =
+            "<GetQueueUrlResponse>"
+            + "<GetQueueUrlResult><QueueUrl>http://queue</QueueUrl></GetQueueUrlResult>"
+            + "<ResponseMetadata><RequestId>request-id</RequestId></ResponseMetadata>"
+            + "</GetQueueUrlResponse>";
+
+    @Test
+    public void readsEventsByDefault() throws Exception {
+        AmazonWebServiceResponse<String> response = new StaxResponseHandler<String>(
+                new QueueUrlUnmarshaller()).handle(responseFor(new DefaultRequest<Object>("sqs")));
+        assertEquals("http://queue|false", response.getResult());
+        assertEquals("request-id", response.getRequestId());
+    }
+
+    @Test
+    public void readsCursorWhenEnabledOnHandler() throws Exception {
+        AmazonWebServiceResponse<String> response = new StaxResponseHandler<String>(
+                new QueueUrlUnmarshaller(), true).handle(responseFor(null));
+        assertEquals("http://queue|true", response.getResult());
+        assertEquals("request-id", response.getRequestId());
+    }
+
+    @Test
+    public void readsCursorWhenEnabledOnRequest() throws Exception {
+        DefaultRequest<Object> request = new DefaultRequest<Object>("sqs");
+        request.addHandlerContext(StaxResponseHandler.USE_XML_STREAM_READER, Boolean.TRUE);
+        AmazonWebServiceResponse<String> response = new StaxResponseHandler<String>(
+                new QueueUrlUnmarshaller()).handle(responseFor(request));
+        assertEquals("http://queue|true", response.getResult());
+        assertEquals("request-id", response.getRequestId());
+    }
+
+    private static HttpResponse responseFor(DefaultRequest<?> request) throws Exception {
+        HttpResponse response = new HttpResponse(request, null);
+        response.setContent(new StringInputStream(RESPONSE));
+        return response;
+    }
+
+    /**
+     * Reads the queue URL and whether the context handed out the same event
+     * instance twice, as it does in cursor mode.
+     */
+    private static class QueueUrlUnmarshaller
+            implements Unmarshaller<String, StaxUnmarshallerContext> {
+
+        @Override
+        public String unmarshall(StaxUnmarshallerContext context) throws Exception {
+            String queueUrl = null;
+            boolean reusedEvent = false;
+            XMLEvent previous = null;
+            while (true) {
+                XMLEvent event = context.nextEvent();
+                reusedEvent |= event == previous;
+                previous = event;
+                if (event.isEndDocument()) {
+                    return queueUrl + "|" + reusedEvent;
+                }
+                if (event.isStartElement()
+                        && context.testExpression("GetQueueUrlResult/QueueUrl", 2)) {
+                    queueUrl = context.readText();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.any;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static org.junit.Assert.assertEquals;
+import static utils.http.HttpResponseHandlers.stringResponseHandler;
+
+import java.net.ServerSocket;
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.http.AmazonHttpClient;
+import com.amazonaws.http.ExecutionContext;
+import com.amazonaws.http.apache.client.impl.ApacheHttpClientFactory;
+import com.amazonaws.http.apache.client.impl.ConnectionManagerAwareHttpClient;
+import com.amazonaws.http.settings.HttpClientSettings;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.TimingInfo;
+
+import utils.http.WireMockTestBase;
+
+public class ConnectionWarmerTest extends WireMockTestBase {
+    private static final String OPERATION = "/some-operation";
+
+    private ClientConfiguration config;
+    private ConnectionManagerAwareHttpClient httpClient;
+
+    @Before
+    public void setUp() {
+        stubFor(any(urlPathEqualTo(OPERATION)).willReturn(aResponse().withBody("hello")));
+        config = new ClientConfiguration()
+                .withConnectionWarmUpCount(3)
+                .withConnectionWarmUpAsync(false);
+    }
+
+    @After
+    public void tearDown() {
+        if (httpClient != null) {
+            httpClient.getHttpClientConnectionManager().shutdown();
+        }
+    }
+
+    @Test
+    public void warmConnectionsArePlacedInThePool() throws Exception {
+        AmazonHttpClient client = newClient();
+        client.warmUpConnections(endpoint());
+
+        PoolStats stats = poolStats();
+        assertEquals(3, stats.getAvailable());
+        assertEquals(0, stats.getLeased());
+
+        ExecutionContext context = new ExecutionContext(true);
+        client.execute(newGetRequest(OPERATION), stringResponseHandler(), stubErrorHandler(), context);
+        TimingInfo timingInfo = context.getAwsRequestMetrics().getTimingInfo();
+        // The request is sent over a warm connection rather than a new one
+        assertEquals(0, timingInfo.getSubMeasurementCount(Field.HttpClientConnectTime));
+        assertEquals(1, timingInfo.getSubMeasurementCount(Field.HttpClientTimeToFirstByte));
+        assertEquals(3, poolStats().getAvailable());
+    }
+
+    @Test
+    public void warmUpIsCappedAtMaxConnections() {
+        config.withConnectionWarmUpCount(5).withMaxConnections(2);
+        newClient().warmUpConnections(endpoint());
+        assertEquals(2, poolStats().getAvailable());
+    }
+
+    @Test
+    public void warmUpIsDisabledByDefault() {
+        config = new ClientConfiguration();
+        newClient().warmUpConnections(endpoint());
+        assertEquals(0, poolStats().getAvailable());
+    }
+
+    @Test
+    public void warmUpFailuresAreNotPropagated() throws Exception {
+        ServerSocket socket = new ServerSocket(0);
+        int port = socket.getLocalPort();
+        socket.close();
+
+        HttpClientSettings settings = HttpClientSettings.adapt(config);
+        httpClient = new ApacheHttpClientFactory().create(settings);
+        ConnectionWarmer warmer = new ConnectionWarmer(
+                httpClient.getHttpClientConnectionManager(), settings);
+        assertEquals(0, warmer.warmUp(URI.create("http://localhost:" + port), 3));
+        assertEquals(0, poolStats().getAvailable());
+        assertEquals(0, poolStats().getLeased());
+    }
+
+    @Test
+    public void warmUpWithoutAnyLeasedConnectionDoesNothing() throws Exception {
+        config.withMaxConnections(1).withConnectionTimeout(100);
+        HttpClientSettings settings = HttpClientSettings.adapt(config);
+        httpClient = new ApacheHttpClientFactory().create(settings);
+        HttpRoute route = new HttpRoute(new HttpHost("localhost", mockServer.port()));
+        HttpClientConnection conn = httpClient.getHttpClientConnectionManager()
+                .requestConnection(route, null).get(1, TimeUnit.SECONDS);
+
+        ConnectionWarmer warmer = new ConnectionWarmer(
+                httpClient.getHttpClientConnectionManager(), settings);
+        assertEquals(0, warmer.warmUp(endpoint(), 1));
+        assertEquals(1, poolStats().getLeased());
+        httpClient.getHttpClientConnectionManager().releaseConnection(conn, null, 0, TimeUnit.MILLISECONDS);
+    }
+
+    private AmazonHttpClient newClient() {
+        httpClient = new ApacheHttpClientFactory().create(HttpClientSettings.adapt(config));
+        return new AmazonHttpClient(config, httpClient, null);
+    }
+
+    private URI endpoint() {
+        return URI.create("http://localhost:" + mockServer.port());
+    }
+
+    private PoolStats poolStats() {
+        return ((ConnPoolControl<?>) httpClient.getHttpClientConnectionManager()).getTotalStats();
+    }
+}
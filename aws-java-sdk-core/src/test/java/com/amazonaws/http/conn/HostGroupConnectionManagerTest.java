@@ -0,0 +1,268 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.any;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static utils.http.HttpResponseHandlers.stringResponseHandler;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.URI;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpHost;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionPoolTimeoutException;
+import org.apache.http.conn.ManagedHttpClientConnection;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.impl.conn.SystemDefaultDnsResolver;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.Request;
+import com.amazonaws.http.AmazonHttpClient;
+import com.amazonaws.http.ExecutionContext;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.TimingInfo;
+
+import utils.http.WireMockTestBase;
+
+public class HostGroupConnectionManagerTest extends WireMockTestBase {
+    private static final String OPERATION = "/some-operation";
+
+    /** Groups the two names of the loopback interface together. */
+    private static final HostGroupStrategy LOOPBACK = new HostGroupStrategy() {
+        @Override
+        public String hostGroupOf(String hostName) {
+            return "localhost".equals(hostName) || "127.0.0.1".equals(hostName)
+                    ? "loopback"
+                    : null;
+        }
+    };
+
+    private HostGroupConnectionManager cm;
+
+    @Before
+    public void setUp() {
+        stubFor(any(urlPathEqualTo(OPERATION)).willReturn(aResponse().withBody("hello")));
+        cm = new HostGroupConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", PlainConnectionSocketFactory.getSocketFactory())
+                        .build(),
+                DefaultSchemePortResolver.INSTANCE,
+                SystemDefaultDnsResolver.INSTANCE,
+                -1, TimeUnit.MILLISECONDS, LOOPBACK);
+        cm.setMaxTotal(10);
+        cm.setDefaultMaxPerRoute(10);
+    }
+
+    @After
+    public void tearDown() {
+        cm.shutdown();
+    }
+
+    @Test
+    public void connectionsAreSharedAcrossTheHostsOfAGroup() throws Exception {
+        HttpClientConnection first = leaseAndConnect(route("localhost"));
+        String id = idOf(first);
+        cm.releaseConnection(first, null, 0, TimeUnit.MILLISECONDS);
+
+        HttpClientConnection second = lease(route("127.0.0.1"));
+        assertTrue(second.isOpen());
+        assertEquals(id, idOf(second));
+
+        PoolStats stats = cm.getStats(route("localhost"));
+        assertEquals(1, stats.getLeased());
+        assertEquals(0, stats.getAvailable());
+        assertEquals(stats.getLeased(), cm.getStats(route("127.0.0.1")).getLeased());
+    }
+
+    @Test
+    public void connectionsAreNotSharedOutsideAGroup() throws Exception {
+        HttpClientConnection first = leaseAndConnect(route("localhost"));
+        cm.releaseConnection(first, null, 0, TimeUnit.MILLISECONDS);
+
+        HttpClientConnection second = lease(route("localhost.localdomain"));
+        assertFalse(second.isOpen());
+        assertEquals(1, cm.getTotalStats().getAvailable());
+    }
+
+    @Test
+    public void mostRecentlyReleasedConnectionIsReusedFirst() throws Exception {
+        HttpClientConnection first = leaseAndConnect(route("localhost"));
+        HttpClientConnection second = leaseAndConnect(route("127.0.0.1"));
+        String secondId = idOf(second);
+        assertNotEquals(idOf(first), secondId);
+
+        cm.releaseConnection(first, null, 0, TimeUnit.MILLISECONDS);
+        cm.releaseConnection(second, null, 0, TimeUnit.MILLISECONDS);
+
+        assertEquals(secondId, idOf(lease(route("localhost"))));
+    }
+
+    @Test(expected = ConnectionPoolTimeoutException.class)
+    public void limitIsSharedAcrossTheHostsOfAGroup() throws Exception {
+        cm.setMaxPerRoute(route("localhost"), 1);
+        assertEquals(1, cm.getMaxPerRoute(route("127.0.0.1")));
+        leaseAndConnect(route("localhost"));
+        cm.requestConnection(route("127.0.0.1"), null).get(100, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void idleConnectionsAreClosed() throws Exception {
+        HttpClientConnection conn = leaseAndConnect(route("localhost"));
+        cm.releaseConnection(conn, null, 0, TimeUnit.MILLISECONDS);
+        assertEquals(1, cm.getTotalStats().getAvailable());
+
+        cm.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+        assertEquals(0, cm.getTotalStats().getAvailable());
+        assertFalse(lease(route("localhost")).isOpen());
+    }
+
+    @Test(timeout = 10000)
+    public void connectionsAreClosedWithoutHoldingThePool() throws Exception {
+        final CountDownLatch closing = new CountDownLatch(1);
+        final CountDownLatch mayClose = new CountDownLatch(1);
+        final HostGroupConnectionManager blockingCm = new HostGroupConnectionManager(
+                RegistryBuilder.<ConnectionSocketFactory>create()
+                        .register("http", new PlainConnectionSocketFactory() {
+                            @Override
+                            public Socket createSocket(HttpContext context) {
+                                return new Socket() {
+                                    @Override
+                                    public synchronized void close() throws IOException {
+                                        closing.countDown();
+                                        try {
+                                            mayClose.await();
+                                        } catch (InterruptedException e) {
+                                            Thread.currentThread().interrupt();
+                                        }
+                                        super.close();
+                                    }
+                                };
+                            }
+                        })
+                        .build(),
+                DefaultSchemePortResolver.INSTANCE,
+                SystemDefaultDnsResolver.INSTANCE,
+                -1, TimeUnit.MILLISECONDS, LOOPBACK);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            cm.shutdown();
+            cm = blockingCm;
+            HttpClientConnection conn = leaseAndConnect(route("localhost"));
+            cm.releaseConnection(conn, null, 0, TimeUnit.MILLISECONDS);
+
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    blockingCm.closeIdleConnections(0, TimeUnit.MILLISECONDS);
+                }
+            });
+            assertTrue(closing.await(5, TimeUnit.SECONDS));
+
+            // The pool stays usable while the close blocks
+            Future<HttpClientConnection> next = executor.submit(new Callable<HttpClientConnection>() {
+                @Override
+                public HttpClientConnection call() throws Exception {
+                    return lease(route("localhost"));
+                }
+            });
+            assertFalse(next.get(5, TimeUnit.SECONDS).isOpen());
+            assertEquals(0, blockingCm.getTotalStats().getAvailable());
+        } finally {
+            mayClose.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void clientReusesConnectionAcrossTheHostsOfAGroup() throws Exception {
+        ClientConfiguration config = new ClientConfiguration();
+        config.getApacheHttpClientConfig().setHostGroupStrategy(LOOPBACK);
+        AmazonHttpClient client = new AmazonHttpClient(config);
+
+        TimingInfo first = execute(client, newGetRequest(OPERATION));
+        Request<?> request = newGetRequest(OPERATION);
+        request.setEndpoint(URI.create("http://127.0.0.1:" + mockServer.port() + OPERATION));
+        TimingInfo second = execute(client, request);
+
+        assertEquals(0, first.getCounterValue(Field.HttpClientReusedConnectionCount));
+        assertEquals(1, second.getCounterValue(Field.HttpClientReusedConnectionCount));
+        client.shutdown();
+    }
+
+    @Test
+    public void bucketHostnamesAreGroupedByRegionEndpoint() {
+        HostGroupStrategy strategy = new BucketVirtualHostGroupStrategy();
+        assertEquals("s3.amazonaws.com", strategy.hostGroupOf("bucket.s3.amazonaws.com"));
+        assertEquals("s3-us-west-2.amazonaws.com",
+                strategy.hostGroupOf("Bucket.S3-us-west-2.amazonaws.com"));
+        assertEquals("s3.eu-central-1.amazonaws.com",
+                strategy.hostGroupOf("bucket.s3.eu-central-1.amazonaws.com"));
+        assertEquals("s3.cn-north-1.amazonaws.com.cn",
+                strategy.hostGroupOf("bucket.s3.cn-north-1.amazonaws.com.cn"));
+        assertEquals(null, strategy.hostGroupOf("s3.amazonaws.com"));
+        assertEquals(null, strategy.hostGroupOf("dynamodb.us-east-1.amazonaws.com"));
+        assertEquals(null, strategy.hostGroupOf("bucket.s3.example.com"));
+    }
+
+    private HttpRoute route(String hostName) {
+        return new HttpRoute(new HttpHost(hostName, mockServer.port(), "http"));
+    }
+
+    private HttpClientConnection lease(HttpRoute route) throws Exception {
+        return cm.requestConnection(route, null).get(1, TimeUnit.SECONDS);
+    }
+
+    private HttpClientConnection leaseAndConnect(HttpRoute route) throws Exception {
+        HttpClientConnection conn = lease(route);
+        BasicHttpContext context = new BasicHttpContext();
+        cm.connect(conn, route, 1000, context);
+        cm.routeComplete(conn, route, context);
+        return conn;
+    }
+
+    private static String idOf(HttpClientConnection conn) {
+        return ((ManagedHttpClientConnection) conn).getId();
+    }
+
+    private TimingInfo execute(AmazonHttpClient client, Request<?> request) throws Exception {
+        ExecutionContext context = new ExecutionContext(true);
+        client.execute(request, stringResponseHandler(), stubErrorHandler(), context);
+        return context.getAwsRequestMetrics().getTimingInfo();
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.any;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlPathEqualTo;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static utils.http.HttpResponseHandlers.stringResponseHandler;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.http.AmazonHttpClient;
+import com.amazonaws.http.ExecutionContext;
+import com.amazonaws.metrics.AwsSdkMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.TimingInfo;
+
+import utils.http.WireMockTestBase;
+
+public class SdkConnectionMetricsIntegrationTest extends WireMockTestBase {
+    private static final String OPERATION = "/some-operation";
+
+    @Before
+    public void setUp() {
+        stubFor(any(urlPathEqualTo(OPERATION)).willReturn(aResponse().withBody("hello")));
+        AwsSdkMetrics.setHttpConnectionMetricsEnabled(true);
+        SdkConnectionMetrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        AwsSdkMetrics.setHttpConnectionMetricsEnabled(false);
+        SdkConnectionMetrics.reset();
+    }
+
+    @Test
+    public void connectionMetricsAreRecordedPerRequestAndPerRoute() throws Exception {
+        AmazonHttpClient client = new AmazonHttpClient(new ClientConfiguration());
+        TimingInfo first = execute(client);
+        TimingInfo second = execute(client);
+
+        // The first request opens a connection that the second one reuses
+        assertEquals(1, first.getSubMeasurementCount(Field.HttpClientConnectionAcquireTime));
+        assertEquals(1, first.getSubMeasurementCount(Field.HttpClientConnectTime));
+        assertEquals(1, first.getSubMeasurementCount(Field.HttpClientTimeToFirstByte));
+        assertEquals(0, first.getCounterValue(Field.HttpClientReusedConnectionCount));
+        assertTrue(first.getCounterValue(Field.HttpClientBytesSent) > 0);
+        assertTrue(first.getCounterValue(Field.HttpClientBytesReceived) > 0);
+
+        assertEquals(1, second.getSubMeasurementCount(Field.HttpClientConnectionAcquireTime));
+        assertEquals(0, second.getSubMeasurementCount(Field.HttpClientConnectTime));
+        assertEquals(1, second.getCounterValue(Field.HttpClientReusedConnectionCount));
+
+        String[] routes = SdkConnectionMetrics.describe();
+        assertEquals(1, routes.length);
+        assertTrue(routes[0], routes[0].startsWith("http://localhost:" + mockServer.port() + " "));
+        assertTrue(routes[0], routes[0].contains("acquireCount=2"));
+        assertTrue(routes[0], routes[0].contains("connectCount=1"));
+        assertTrue(routes[0], routes[0].contains("timeToFirstByteCount=2"));
+        assertTrue(routes[0], routes[0].contains("reuseRatio=0.5"));
+    }
+
+    @Test
+    public void routeMetricsAreNotAggregatedWhenDisabled() throws Exception {
+        AwsSdkMetrics.setHttpConnectionMetricsEnabled(false);
+        TimingInfo timingInfo = execute(new AmazonHttpClient(new ClientConfiguration()));
+        assertEquals(1, timingInfo.getSubMeasurementCount(Field.HttpClientTimeToFirstByte));
+        assertEquals(0, SdkConnectionMetrics.describe().length);
+    }
+
+    private TimingInfo execute(AmazonHttpClient client) throws Exception {
+        ExecutionContext context = new ExecutionContext(true);
+        client.execute(newGetRequest(OPERATION), stringResponseHandler(), stubErrorHandler(), context);
+        return context.getAwsRequestMetrics().getTimingInfo();
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.conn;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.routing.HttpRoute;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.metrics.AwsSdkMetrics;
+
+public class SdkConnectionMetricsTest {
+
+    @Before
+    public void setUp() {
+        AwsSdkMetrics.setHttpConnectionMetricsEnabled(true);
+        SdkConnectionMetrics.reset();
+    }
+
+    @After
+    public void tearDown() {
+        AwsSdkMetrics.setHttpConnectionMetricsEnabled(false);
+        SdkConnectionMetrics.reset();
+    }
+
+    @Test
+    public void routesPastTheMaximumAreAggregatedTogether() {
+        for (int i = 0; i < SdkConnectionMetrics.MAX_ROUTES; i++) {
+            SdkConnectionMetrics.of(route("host" + i));
+        }
+        SdkConnectionMetrics.RouteMetrics other = SdkConnectionMetrics.of(route("extra1"));
+        assertSame(other, SdkConnectionMetrics.of(route("extra2")));
+        assertNotSame(other, SdkConnectionMetrics.of(route("host0")));
+
+        String[] routes = SdkConnectionMetrics.describe();
+        assertEquals(SdkConnectionMetrics.MAX_ROUTES + 1, routes.length);
+        assertTrue(Arrays.toString(routes),
+                routes[routes.length - 1].startsWith(SdkConnectionMetrics.OTHER_HOSTS + " "));
+    }
+
+    @Test
+    public void routesAreNotAggregatedWhenDisabled() {
+        AwsSdkMetrics.setHttpConnectionMetricsEnabled(false);
+        assertNull(SdkConnectionMetrics.of(route("host")));
+        assertEquals(0, SdkConnectionMetrics.describe().length);
+    }
+
+    private static HttpRoute route(String host) {
+        return new HttpRoute(new HttpHost(host, 80));
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.protocol;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpConnectionMetrics;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.impl.HttpConnectionMetricsImpl;
+import org.apache.http.message.BasicHttpRequest;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.protocol.HttpContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.util.AWSRequestMetrics;
+import com.amazonaws.util.AWSRequestMetrics.Field;
+import com.amazonaws.util.AWSRequestMetricsFullSupport;
+
+public class SdkHttpRequestExecutorTest {
+    private final HttpRequest request = new BasicHttpRequest("GET", "/");
+    private final SdkHttpRequestExecutor executor = new SdkHttpRequestExecutor();
+
+    private AWSRequestMetrics metrics;
+    private HttpContext context;
+
+    @Before
+    public void setUp() {
+        metrics = new AWSRequestMetricsFullSupport();
+        context = new BasicHttpContext();
+        context.setAttribute(AWSRequestMetrics.class.getSimpleName(), metrics);
+    }
+
+    @Test
+    public void successfulExchangeRecordsTimeToFirstByte() throws Exception {
+        StubConnection conn = new StubConnection();
+
+        executor.doSendRequest(request, conn, context);
+        executor.doReceiveResponse(request, conn, context);
+
+        assertEquals(1, metrics.getTimingInfo().getSubMeasurementCount(Field.HttpClientTimeToFirstByte));
+        assertNull(context.getAttribute(SdkHttpRequestExecutor.EXCHANGE));
+    }
+
+    @Test
+    public void failedSendDiscardsTheExchange() throws Exception {
+        StubConnection conn = new StubConnection();
+        conn.isSendFailing = true;
+        try {
+            executor.doSendRequest(request, conn, context);
+            fail("Expected the send failure to surface");
+        } catch (IOException expected) {
+        }
+
+        assertNull(context.getAttribute(SdkHttpRequestExecutor.EXCHANGE));
+        assertEquals(0, metrics.getTimingInfo().getSubMeasurementCount(Field.HttpClientTimeToFirstByte));
+    }
+
+    @Test
+    public void failedReceiveDiscardsTheExchange() throws Exception {
+        StubConnection conn = new StubConnection();
+        conn.isReceiveFailing = true;
+        executor.doSendRequest(request, conn, context);
+        try {
+            executor.doReceiveResponse(request, conn, context);
+            fail("Expected the receive failure to surface");
+        } catch (IOException expected) {
+        }
+
+        assertNull(context.getAttribute(SdkHttpRequestExecutor.EXCHANGE));
+        assertEquals(0, metrics.getTimingInfo().getSubMeasurementCount(Field.HttpClientTimeToFirstByte));
+    }
+
+    /**
+     * Sends and receives nothing, or fails sending or receiving.
+     */
+    private static final class StubConnection implements HttpClientConnection {
+        private final HttpConnectionMetrics metrics = new HttpConnectionMetricsImpl(null, null);
+        private boolean isSendFailing;
+        private boolean isReceiveFailing;
+
+        @Override
+        public void sendRequestHeader(HttpRequest request) throws IOException {
+            if (isSendFailing) {
+                throw new IOException("send failed");
+            }
+        }
+
+        @Override
+        public HttpResponse receiveResponseHeader() throws IOException {
+            if (isReceiveFailing) {
+                throw new IOException("receive failed");
+            }
+            return new BasicHttpResponse(HttpVersion.HTTP_1_1, HttpStatus.SC_NO_CONTENT, "No Content");
+        }
+
+        @Override
+        public boolean isResponseAvailable(int timeout) {
+            return true;
+        }
+
+        @Override
+        public void sendRequestEntity(HttpEntityEnclosingRequest request) {
+        }
+
+        @Override
+        public void receiveResponseEntity(HttpResponse response) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public HttpConnectionMetrics getMetrics() {
+            return metrics;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public boolean isStale() {
+            return false;
+        }
+
+        @Override
+        public void setSocketTimeout(int timeout) {
+        }
+
+        @Override
+        public int getSocketTimeout() {
+            return 0;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
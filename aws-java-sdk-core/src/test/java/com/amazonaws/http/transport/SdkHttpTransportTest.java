@@ -0,0 +1,215 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.http.transport;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.AmazonWebServiceResponse;
+import com.amazonaws.ClientConfiguration;
+import com.amazonaws.DefaultRequest;
+import com.amazonaws.Request;
+import com.amazonaws.http.AmazonHttpClient;
+import com.amazonaws.http.ExecutionContext;
+import com.amazonaws.http.HttpMethodName;
+import com.amazonaws.http.HttpResponse;
+import com.amazonaws.http.HttpResponseHandler;
+import com.amazonaws.util.IOUtils;
+import com.amazonaws.util.StringUtils;
+
+/**
+ * Sends requests through {@link AmazonHttpClient} built with an
+ * {@link SdkHttpTransportFactory} and checks what the transport sees.
+ */
+public class SdkHttpTransportTest {
+
+    private FakeTransport transport;
+    private AmazonHttpClient client;
+
+    @Before
+    public void setUp() {
+        transport = new FakeTransport();
+        client = new AmazonHttpClient(new ClientConfiguration(), new SdkHttpTransportFactory() {
+            @Override
+            public SdkHttpTransport create(ClientConfiguration config) {
+                return transport;
+            }
+        }, null, false, false);
+    }
+
+    @Test
+    public void requestIsSentThroughTransport() throws Exception {
+        transport.respond(200, "hello");
+
+        assertEquals("hello", execute(newRequest("payload")));
+
+        assertEquals(1, transport.requests.size());
+        RecordedRequest sent = transport.requests.get(0);
+        assertEquals(HttpMethodName.PUT, sent.method);
+        assertEquals(URI.create("http://localhost:8080/bucket/key?acl=true"), sent.uri);
+        assertEquals("bar", sent.headers.get("x-foo"));
+        assertNull(sent.headers.get("Content-Length"));
+        assertEquals(7, sent.contentLength);
+        assertEquals("payload", sent.body);
+    }
+
+    @Test
+    public void serverErrorIsRetriedWithSameBody() throws Exception {
+        transport.respond(500, "InternalError");
+        transport.respond(200, "done");
+
+        assertEquals("done", execute(newRequest("payload")));
+
+        assertEquals(2, transport.requests.size());
+        assertEquals("payload", transport.requests.get(0).body);
+        assertEquals("payload", transport.requests.get(1).body);
+    }
+
+    @Test
+    public void clientErrorIsThrown() throws Exception {
+        transport.respond(400, "ValidationError");
+
+        try {
+            execute(newRequest("payload"));
+            fail("Expected AmazonServiceException");
+        } catch (AmazonServiceException expected) {
+            assertEquals(400, expected.getStatusCode());
+            assertEquals("ValidationError", expected.getErrorCode());
+        }
+        assertEquals(1, transport.requests.size());
+    }
+
+    @Test
+    public void shutdownShutsTransportDownOnce() {
+        client.shutdown();
+        client.shutdown();
+
+        assertEquals(1, transport.shutdowns);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void nullTransportIsRejected() {
+        new AmazonHttpClient(new ClientConfiguration(), new SdkHttpTransportFactory() {
+            @Override
+            public SdkHttpTransport create(ClientConfiguration config) {
+                return null;
+            }
+        }, null, false, false);
+    }
+
+    private String execute(Request<?> request) {
+        return client.execute(request, new StringResponseHandler(), new ErrorResponseHandler(),
+                new ExecutionContext()).getAwsResponse();
+    }
+
+    private static Request<?> newRequest(String body) {
+        Request<?> request = new DefaultRequest<Object>("test");
+        request.setEndpoint(URI.create("http://localhost:8080"));
+        request.setResourcePath("/bucket/key");
+        request.setHttpMethod(HttpMethodName.PUT);
+        request.addParameter("acl", "true");
+        request.addHeader("x-foo", "bar");
+        request.addHeader("Content-Length", String.valueOf(body.length()));
+        request.setContent(new ByteArrayInputStream(body.getBytes(StringUtils.UTF8)));
+        return request;
+    }
+
+    private static class RecordedRequest {
+        private HttpMethodName method;
+        private URI uri;
+        private Map<String, String> headers;
+        private long contentLength;
+        private String body;
+    }
+
+    private static class FakeTransport implements SdkHttpTransport {
+        private final List<RecordedRequest> requests = new ArrayList<RecordedRequest>();
+        private final LinkedList<Object[]> responses = new LinkedList<Object[]>();
+        private int shutdowns;
+
+        void respond(int status, String body) {
+            responses.add(new Object[] { status, body });
+        }
+
+        @Override
+        public SdkHttpTransportResponse execute(SdkHttpTransportRequest request) throws IOException {
+            RecordedRequest recorded = new RecordedRequest();
+            recorded.method = request.getMethod();
+            recorded.uri = request.getUri();
+            recorded.headers = request.getHeaders();
+            recorded.contentLength = request.getContentLength();
+            recorded.body = request.getContent() == null ? null : IOUtils.toString(request.getContent());
+            requests.add(recorded);
+
+            Object[] response = responses.removeFirst();
+            return new SdkHttpTransportResponse((Integer) response[0], "",
+                    Collections.<String, String> emptyMap(),
+                    new ByteArrayInputStream(((String) response[1]).getBytes(StringUtils.UTF8)));
+        }
+
+        @Override
+        public void shutdown() {
+            shutdowns++;
+        }
+    }
+
+    private static class StringResponseHandler
+            implements HttpResponseHandler<AmazonWebServiceResponse<String>> {
+        @Override
+        public AmazonWebServiceResponse<String> handle(HttpResponse response) throws Exception {
+            AmazonWebServiceResponse<String> result = new AmazonWebServiceResponse<String>();
+            result.setResult(IOUtils.toString(response.getContent()));
+            return result;
+        }
+
+        @Override
+        public boolean needsConnectionLeftOpen() {
+            return false;
+        }
+    }
+
+    private static class ErrorResponseHandler implements HttpResponseHandler<AmazonServiceException> {
+        @Override
+        public AmazonServiceException handle(HttpResponse response) throws Exception {
+            String code = IOUtils.toString(response.getContent());
+            AmazonServiceException ase = new AmazonServiceException(code);
+            ase.setErrorCode(code);
+            ase.setStatusCode(response.getStatusCode());
+            ase.setErrorType(response.getStatusCode() >= 500
+                    ? AmazonServiceException.ErrorType.Service
+                    : AmazonServiceException.ErrorType.Client);
+            return ase;
+        }
+
+        @Override
+        public boolean needsConnectionLeftOpen() {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,203 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.amazonaws.util.ByteBufferInputStream;
+
+public class PayloadDigestsTest {
+
+    private static byte[] smallContent;
+    private static byte[] largeContent;
+    private static File smallFile;
+    private static File largeFile;
+
+    @BeforeClass
+    public static void setup() throws IOException {
+        final Random random = new Random(42);
+        smallContent = new byte[100 * 1024 + 7];
+        random.nextBytes(smallContent);
+        // Large enough to be read in more than one pass
+        largeContent = new byte[PayloadDigests.READ_BUFFER_SIZE * 3 + 11];
+        random.nextBytes(largeContent);
+        smallFile = writeFile(smallContent);
+        largeFile = writeFile(largeContent);
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        smallFile.delete();
+        largeFile.delete();
+    }
+
+    @Test
+    public void digestRemainingOfSmallFile_MatchesDigestOfContent() throws Exception {
+        assertDigestOfFile(smallFile, smallContent);
+    }
+
+    @Test
+    public void digestRemainingOfLargeFile_MatchesDigestOfContent() throws Exception {
+        assertDigestOfFile(largeFile, largeContent);
+    }
+
+    @Test
+    public void digestRemaining_OnlyDigestsUnreadContent() throws Exception {
+        ResettableInputStream in = new ResettableInputStream(smallFile);
+        try {
+            assertEquals(1000, in.skip(1000));
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            PayloadDigests.digestRemaining(in, md);
+            assertArrayEquals(sha256(Arrays.copyOfRange(smallContent, 1000, smallContent.length)),
+                    md.digest());
+            assertEquals(smallContent[1000] & 0xFF, in.read());
+        } finally {
+            in.release();
+        }
+    }
+
+    @Test
+    public void digestRemainingWithLength_OnlyDigestsRegionOfThatLength() throws Exception {
+        ResettableInputStream in = new ResettableInputStream(largeFile);
+        try {
+            assertEquals(1000, in.skip(1000));
+            final int length = PayloadDigests.READ_BUFFER_SIZE + 5;
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            PayloadDigests.digestRemaining(in, length, md);
+            assertArrayEquals(sha256(Arrays.copyOfRange(largeContent, 1000, 1000 + length)),
+                    md.digest());
+            assertEquals(1000, in.getFileChannel().position());
+        } finally {
+            in.release();
+        }
+    }
+
+    @Test
+    public void digestRemainingWithLengthBeyondEnd_DigestsUpToEnd() throws Exception {
+        ByteBufferInputStream in = new ByteBufferInputStream(ByteBuffer.wrap(smallContent));
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        PayloadDigests.digestRemaining(in, smallContent.length + 100, md);
+        assertArrayEquals(sha256(smallContent), md.digest());
+    }
+
+    @Test
+    public void digestRemainingOfByteBufferInputStreamWithLength_OnlyDigestsThatLength()
+            throws Exception {
+        ByteBufferInputStream in = new ByteBufferInputStream(ByteBuffer.wrap(smallContent));
+        assertEquals(10, in.read(new byte[10]));
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        PayloadDigests.digestRemaining(in, 50, md);
+        assertArrayEquals(sha256(Arrays.copyOfRange(smallContent, 10, 60)), md.digest());
+        assertEquals(smallContent.length - 10, in.available());
+    }
+
+    @Test
+    public void digestFileRegion_LeavesChannelPositionUnchanged() throws Exception {
+        ResettableInputStream in = new ResettableInputStream(largeFile);
+        try {
+            final long offset = PayloadDigests.READ_BUFFER_SIZE / 2;
+            final long length = PayloadDigests.READ_BUFFER_SIZE + 3;
+            MessageDigest md = MessageDigest.getInstance("MD5");
+            PayloadDigests.digest(in.getFileChannel(), offset, length, md);
+            assertArrayEquals(md5(Arrays.copyOfRange(largeContent, (int) offset,
+                    (int) (offset + length))), md.digest());
+            assertEquals(0, in.getFileChannel().position());
+        } finally {
+            in.release();
+        }
+    }
+
+    @Test
+    public void digestByteBuffer_LeavesBufferPositionUnchanged() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(largeContent);
+        buffer.position(5);
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        PayloadDigests.digest(buffer, sha256, md5);
+        final byte[] expected = Arrays.copyOfRange(largeContent, 5, largeContent.length);
+        assertArrayEquals(sha256(expected), sha256.digest());
+        assertArrayEquals(md5(expected), md5.digest());
+        assertEquals(5, buffer.position());
+    }
+
+    @Test
+    public void digestRemainingOfByteBufferInputStream_MatchesDigestOfContent() throws Exception {
+        ByteBufferInputStream in = new ByteBufferInputStream(ByteBuffer.wrap(smallContent));
+        assertEquals(10, in.read(new byte[10]));
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        PayloadDigests.digestRemaining(in, md);
+        assertArrayEquals(sha256(Arrays.copyOfRange(smallContent, 10, smallContent.length)),
+                md.digest());
+        assertEquals(smallContent.length - 10, in.available());
+    }
+
+    @Test
+    public void isSupported() {
+        assertTrue(PayloadDigests.isSupported(new ByteBufferInputStream(ByteBuffer.allocate(1))));
+        assertFalse(PayloadDigests.isSupported(new ByteArrayInputStream(new byte[1])));
+        assertFalse(PayloadDigests.isSupported(null));
+    }
+
+    private static void assertDigestOfFile(File file, byte[] content) throws Exception {
+        ResettableInputStream in = new ResettableInputStream(file);
+        try {
+            assertTrue(PayloadDigests.isSupported(in));
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            MessageDigest md5 = MessageDigest.getInstance("MD5");
+            PayloadDigests.digestRemaining(in, sha256, md5);
+            assertArrayEquals(sha256(content), sha256.digest());
+            assertArrayEquals(md5(content), md5.digest());
+            assertEquals(0, in.getFileChannel().position());
+        } finally {
+            in.release();
+        }
+    }
+
+    private static byte[] sha256(byte[] content) throws Exception {
+        return MessageDigest.getInstance("SHA-256").digest(content);
+    }
+
+    private static byte[] md5(byte[] content) throws Exception {
+        return MessageDigest.getInstance("MD5").digest(content);
+    }
+
+    private static File writeFile(byte[] content) throws IOException {
+        File file = File.createTempFile("PayloadDigestsTest", ".bin");
+        file.deleteOnExit();
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.retry.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import com.amazonaws.jmx.MBeans;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class AdaptiveRetryTokenBucketTest {
+
+    private long now;
+    private AdaptiveRetryTokenBucket bucket;
+
+    @Before
+    public void setup() {
+        now = 0;
+        bucket = new AdaptiveRetryTokenBucket("dynamodb.us-east-1.amazonaws.com") {
+            @Override
+            long nanoTime() {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    public void noThrottling_DoesNotRateLimit() {
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, bucket.acquire());
+            bucket.onSuccess();
+        }
+        assertFalse(bucket.isRateLimiting());
+        assertEquals(1000, bucket.getSuccessCount());
+    }
+
+    @Test
+    public void disabledBucket_DoesNotTakeItsLock() throws Exception {
+        final CountDownLatch locked = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread holder = new Thread() {
+            @Override
+            public void run() {
+                synchronized (bucket) {
+                    locked.countDown();
+                    try {
+                        done.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }
+        };
+        holder.start();
+        try {
+            locked.await();
+            ExecutorService executor = Executors.newSingleThreadExecutor();
+            try {
+                Future<Long> acquired = executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() {
+                        long delay = bucket.acquire();
+                        bucket.onSuccess();
+                        return delay;
+                    }
+                });
+                assertEquals(0L, acquired.get(5, TimeUnit.SECONDS).longValue());
+            } finally {
+                executor.shutdownNow();
+            }
+            assertEquals(1, bucket.getSuccessCount());
+        } finally {
+            done.countDown();
+            holder.join();
+        }
+    }
+
+    @Test
+    public void throttle_EnablesRateLimitBelowSendRate() {
+        sendAtRate(10, 2);
+        bucket.onThrottle();
+
+        assertTrue(bucket.isRateLimiting());
+        assertEquals(7.0, bucket.getFillRate(), 0.01);
+        assertEquals(1, bucket.getThrottleCount());
+        // The bucket is drained, so the next attempt has to wait for a token
+        assertEquals(143, bucket.acquire());
+    }
+
+    @Test
+    public void consecutiveThrottles_KeepCuttingRateDownToMinimum() {
+        sendAtRate(10, 2);
+        for (int i = 0; i < 20; i++) {
+            bucket.onThrottle();
+        }
+        assertEquals(AdaptiveRetryTokenBucket.MIN_FILL_RATE, bucket.getFillRate(), 0.0);
+    }
+
+    @Test
+    public void tokensRefillOverTime() {
+        sendAtRate(10, 2);
+        bucket.onThrottle();
+
+        advance(1000);
+        for (int i = 0; i < 7; i++) {
+            assertEquals(0, bucket.acquire());
+        }
+        assertTrue(bucket.acquire() > 0);
+    }
+
+    @Test
+    public void successes_RaiseRateUntilLimitIsLifted() {
+        sendAtRate(10, 2);
+        bucket.onThrottle();
+        double fillRate = bucket.getFillRate();
+
+        bucket.onSuccess();
+        assertTrue(bucket.getFillRate() > fillRate);
+
+        while (bucket.isRateLimiting()) {
+            bucket.onSuccess();
+        }
+        assertEquals(0, bucket.acquire());
+    }
+
+    @Test
+    public void sameEndpoint_SharesBucketRegisteredInJmx() {
+        AdaptiveRetryTokenBucket first = AdaptiveRetryTokenBuckets.forEndpoint("sqs.us-west-2.amazonaws.com");
+        AdaptiveRetryTokenBucket second = AdaptiveRetryTokenBuckets.forEndpoint("sqs.us-west-2.amazonaws.com");
+
+        assertSame(first, second);
+        assertTrue(MBeans.isRegistered(
+                AdaptiveRetryTokenBuckets.objectName("sqs.us-west-2.amazonaws.com")));
+    }
+
+    @Test
+    public void leastRecentlyUsedBucket_IsEvictedAndUnregisteredBeyondMaximum() {
+        AdaptiveRetryTokenBucket first = AdaptiveRetryTokenBuckets.forEndpoint("evicted.s3.amazonaws.com");
+        AdaptiveRetryTokenBucket kept = AdaptiveRetryTokenBuckets.forEndpoint("kept.s3.amazonaws.com");
+        for (int i = 0; i < AdaptiveRetryTokenBuckets.MAX_BUCKETS - 1; i++) {
+            AdaptiveRetryTokenBuckets.forEndpoint("bucket-" + i + ".s3.amazonaws.com");
+            // Keeps the bucket of the second endpoint in use
+            AdaptiveRetryTokenBuckets.forEndpoint("kept.s3.amazonaws.com");
+        }
+
+        assertFalse(MBeans.isRegistered(AdaptiveRetryTokenBuckets.objectName("evicted.s3.amazonaws.com")));
+        assertTrue(MBeans.isRegistered(AdaptiveRetryTokenBuckets.objectName("kept.s3.amazonaws.com")));
+        assertSame(kept, AdaptiveRetryTokenBuckets.forEndpoint("kept.s3.amazonaws.com"));
+        assertNotSame(first, AdaptiveRetryTokenBuckets.forEndpoint("evicted.s3.amazonaws.com"));
+        assertTrue(MBeans.isRegistered(AdaptiveRetryTokenBuckets.objectName("evicted.s3.amazonaws.com")));
+    }
+
+    @Test
+    public void concurrentLookups_ShareOneBucket() throws Exception {
+        final String endpoint = "kinesis.eu-west-1.amazonaws.com";
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<AdaptiveRetryTokenBucket>> lookups = new ArrayList<Future<AdaptiveRetryTokenBucket>>();
+            for (int i = 0; i < 8; i++) {
+                lookups.add(executor.submit(new Callable<AdaptiveRetryTokenBucket>() {
+                    @Override
+                    public AdaptiveRetryTokenBucket call() throws Exception {
+                        start.await();
+                        return AdaptiveRetryTokenBuckets.forEndpoint(endpoint);
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<AdaptiveRetryTokenBucket> lookup : lookups) {
+                assertSame(lookups.get(0).get(), lookup.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(MBeans.isRegistered(AdaptiveRetryTokenBuckets.objectName(endpoint)));
+    }
+
+    /**
+     * Sends requests at the given rate per second for the given number of seconds.
+     */
+    private void sendAtRate(int rate, int seconds) {
+        for (int i = 0; i < rate * seconds; i++) {
+            assertEquals(0, bucket.acquire());
+            advance(1000 / rate);
+        }
+    }
+
+    private void advance(long millis) {
+        now += TimeUnit.MILLISECONDS.toNanos(millis);
+    }
+}
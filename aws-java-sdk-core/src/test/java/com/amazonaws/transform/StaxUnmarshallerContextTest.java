@@ -0,0 +1,207 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.XMLEvent;
+
+import org.junit.Test;
+
+public class StaxUnmarshallerContextTest {
+
+    private static final String XML =
+            "<DescribeResponse>"
+            + "<reservationSet>"
+            + "<item><reservationId>r-1</reservationId>"
+            + "<grantee type=\"Group\"><uri>all</uri></grantee>"
+            + "</item>"
+            + "</reservationSet>"
+            + "<requestId>abc</requestId>"
+            + "</DescribeResponse>";
+
+    @Test
+    public void testExpression_MatchesElementsAtDepth() throws Exception {
+        StaxUnmarshallerContext context = contextFor(XML);
+        advanceToStartOf(context, "reservationId");
+        assertEquals(4, context.getCurrentDepth());
+
+        assertTrue(context.testExpression("reservationId", 4));
+        assertTrue(context.testExpression("item/reservationId", 3));
+        assertTrue(context.testExpression("reservationSet/item/reservationId", 2));
+        assertTrue(context.testExpression(".", 42));
+
+        assertFalse(context.testExpression("reservationId", 3));
+        assertFalse(context.testExpression("item/reservationId", 4));
+        assertFalse(context.testExpression("Id", 4));
+        assertFalse(context.testExpression("other/reservationId", 3));
+        assertFalse(context.testExpression("@reservationId", 4));
+    }
+
+    @Test
+    public void testExpression_MatchesAttributes() throws Exception {
+        StaxUnmarshallerContext context = contextFor(XML);
+        advanceToStartOf(context, "grantee");
+        assertTrue(context.testExpression("grantee", 4));
+
+        XMLEvent event = context.nextEvent();
+        assertTrue(event.isAttribute());
+        assertEquals(4, context.getCurrentDepth());
+        assertTrue(context.testExpression("@type", 4));
+        assertTrue(context.testExpression("grantee/@type", 4));
+        assertTrue(context.testExpression("item/grantee/@type", 3));
+        assertFalse(context.testExpression("grantee", 4));
+        assertFalse(context.testExpression("@other", 4));
+        assertFalse(context.testExpression("@type/grantee", 4));
+        assertEquals("Group", context.readText());
+
+        context.nextEvent();
+        assertTrue(context.testExpression("uri", 5));
+        assertFalse(context.testExpression("@type", 4));
+    }
+
+    @Test
+    public void testExpression_TracksDepthAcrossEndElements() throws Exception {
+        StaxUnmarshallerContext context = contextFor(XML);
+        advanceToStartOf(context, "requestId");
+        assertEquals(2, context.getCurrentDepth());
+        assertTrue(context.testExpression("requestId", 2));
+        assertTrue(context.testExpression("DescribeResponse/requestId", 1));
+        assertTrue(context.testExpression("/DescribeResponse/requestId"));
+        assertFalse(context.testExpression("item/requestId", 1));
+    }
+
+    @Test
+    public void compiledExpression_MatchesLikeStringExpression() throws Exception {
+        StaxPathExpression expression = StaxPathExpression.compile("item/grantee/@type");
+        StaxUnmarshallerContext context = contextFor(XML);
+        advanceToStartOf(context, "grantee");
+        assertFalse(context.testExpression(expression, 3));
+        context.nextEvent();
+        assertTrue(context.testExpression(expression, 3));
+        assertFalse(context.testExpression(expression, 2));
+        assertEquals("item/grantee/@type", expression.toString());
+    }
+
+    @Test
+    public void metadataExpressions_AreCollected() throws Exception {
+        StaxUnmarshallerContext context = contextFor(XML);
+        context.registerMetadataExpression("DescribeResponse/requestId", 1, "RequestId");
+        while (!context.nextEvent().isEndDocument()) {
+        }
+        assertEquals("abc", context.getMetadata().get("RequestId"));
+    }
+
+    @Test
+    public void cursorMode_ProducesSameEventsAsEventMode() throws Exception {
+        String xml = "<?xml version=\"1.0\"?>\n"
+                + "<DescribeResponse xmlns=\"http://ec2.amazonaws.com/doc/\">\n"
+                + "  <reservationSet>\n"
+                + "    <item><reservationId>r-1 &amp; <![CDATA[<r-2>]]></reservationId>"
+                + "<grantee type=\"Group\"><uri>all</uri></grantee><empty id=\"e\"/></item>\n"
+                + "  </reservationSet>\n"
+                + "  <!-- comment -->\n"
+                + "  <requestId>abc</requestId>\n"
+                + "</DescribeResponse>";
+        assertEquals(trace(contextFor(xml)), trace(cursorContextFor(xml)));
+    }
+
+    @Test
+    public void cursorMode_ReusesEvent() throws Exception {
+        StaxUnmarshallerContext context = cursorContextFor(XML);
+        assertTrue(context.isStartOfDocument());
+        XMLEvent first = context.nextEvent();
+        assertTrue(first.isStartDocument());
+        assertFalse(context.isStartOfDocument());
+        XMLEvent second = context.nextEvent();
+        assertSame(first, second);
+        assertTrue(second.isStartElement());
+        assertEquals("DescribeResponse", second.asStartElement().getName().getLocalPart());
+    }
+
+    @Test
+    public void cursorMode_MatchesAttributesAndCollectsMetadata() throws Exception {
+        StaxUnmarshallerContext context = cursorContextFor(XML);
+        context.registerMetadataExpression("DescribeResponse/requestId", 1, "RequestId");
+        advanceToStartOf(context, "grantee");
+        assertTrue(context.nextEvent().isAttribute());
+        assertTrue(context.testExpression("item/grantee/@type", 3));
+        assertEquals("Group", context.readText());
+        advanceToStartOf(context, "uri");
+        assertEquals("all", context.readText());
+        while (!context.nextEvent().isEndDocument()) {
+        }
+        assertEquals("abc", context.getMetadata().get("RequestId"));
+    }
+
+    /**
+     * Walks the whole document the way generated unmarshallers do, reading the
+     * text of leaf elements and attributes, and records what was seen.
+     */
+    private static String trace(StaxUnmarshallerContext context) throws Exception {
+        StringBuilder trace = new StringBuilder();
+        while (true) {
+            XMLEvent event = context.nextEvent();
+            trace.append(event.getEventType()).append(':').append(context.getCurrentDepth());
+            if (event.isStartElement()) {
+                String name = event.asStartElement().getName().getLocalPart();
+                trace.append(':').append(name);
+                if (name.equals("reservationId") || name.equals("uri")
+                        || name.equals("requestId")) {
+                    trace.append('=').append(context.readText());
+                }
+            } else if (event.isAttribute()) {
+                trace.append(":@").append(((Attribute) event).getName().getLocalPart())
+                        .append('=').append(context.readText());
+            } else if (event.isEndElement()) {
+                trace.append(':').append(event.asEndElement().getName().getLocalPart());
+            } else if (event.isEndDocument()) {
+                return trace.toString();
+            }
+            trace.append('\n');
+        }
+    }
+
+    private static StaxUnmarshallerContext cursorContextFor(String xml) throws Exception {
+        return new StaxUnmarshallerContext(
+                XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(xml)));
+    }
+
+    private static StaxUnmarshallerContext contextFor(String xml) throws Exception {
+        return new StaxUnmarshallerContext(
+                XMLInputFactory.newInstance().createXMLEventReader(new StringReader(xml)));
+    }
+
+    private static void advanceToStartOf(StaxUnmarshallerContext context, String name)
+            throws Exception {
+        while (true) {
+            XMLEvent event = context.nextEvent();
+            if (event.isStartElement()
+                    && name.equals(event.asStartElement().getName().getLocalPart())) {
+                return;
+            }
+            if (event.isEndDocument()) {
+                throw new AssertionError("No element " + name);
+            }
+        }
+    }
+}
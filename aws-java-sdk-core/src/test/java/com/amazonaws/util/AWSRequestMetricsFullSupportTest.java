@@ -0,0 +1,158 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights
+ * Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is
+ * distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either
+ * express or implied. See the License for the specific language
+ * governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.amazonaws.util.AWSRequestMetrics.Field;
+
+public class AWSRequestMetricsFullSupportTest {
+    @Test
+    public void predefinedEventsAreSubMeasurements() {
+        AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+        for (int i = 0; i < 20; i++) {
+            metrics.startEvent(Field.HttpRequestTime);
+            metrics.endEvent(Field.HttpRequestTime);
+        }
+        metrics.startEvent(Field.RequestSigningTime.name());
+        metrics.endEvent(Field.RequestSigningTime.name());
+
+        TimingInfo ti = metrics.getTimingInfo();
+        assertEquals(20, ti.getSubMeasurementCount(Field.HttpRequestTime));
+        assertEquals(1, ti.getSubMeasurementCount(Field.RequestSigningTime));
+        assertEquals(0, ti.getSubMeasurementCount(Field.ResponseProcessingTime));
+        assertEquals(20, ti.getAllSubMeasurements(Field.HttpRequestTime.name()).size());
+        for (int i = 0; i < 20; i++) {
+            long nanos = ti.getSubMeasurementNanos(Field.HttpRequestTime, i);
+            assertTrue(nanos >= 0);
+            TimingInfo sub = ti.getSubMeasurement(Field.HttpRequestTime.name(), i);
+            assertTrue(sub.isEndTimeKnown());
+            assertEquals(nanos, sub.getEndTimeNano() - sub.getStartTimeNano());
+        }
+        assertTrue(ti.getSubMeasurementsByName().containsKey(Field.RequestSigningTime.name()));
+        assertNull(ti.getSubMeasurement(Field.ResponseProcessingTime.name()));
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void subMeasurementNanosOutOfRange() {
+        AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+        metrics.startEvent(Field.HttpRequestTime);
+        metrics.endEvent(Field.HttpRequestTime);
+        metrics.getTimingInfo().getSubMeasurementNanos(Field.HttpRequestTime, 1);
+    }
+
+    @Test
+    public void endingUnstartedEventIsIgnored() {
+        AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+        metrics.endEvent(Field.HttpRequestTime);
+        assertEquals(0, metrics.getTimingInfo().getSubMeasurementCount(Field.HttpRequestTime));
+        assertNull(metrics.getTimingInfo().getAllSubMeasurements(Field.HttpRequestTime.name()));
+    }
+
+    @Test
+    public void predefinedCounters() {
+        AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+        TimingInfo ti = metrics.getTimingInfo();
+        assertFalse(ti.hasCounter(Field.RequestCount));
+        metrics.incrementCounter(Field.RequestCount);
+        metrics.incrementCounter(Field.RequestCount.name());
+        metrics.setCounter(Field.BytesProcessed, 1024);
+        assertTrue(ti.hasCounter(Field.RequestCount));
+        assertEquals(2, ti.getCounterValue(Field.RequestCount));
+        assertEquals(2, ti.getCounter(Field.RequestCount.name()).intValue());
+        assertEquals(1024L, ti.getAllCounters().get(Field.BytesProcessed.name()).longValue());
+        assertEquals(0, ti.getCounterValue(Field.RetryCount));
+    }
+
+    @Test
+    public void customNamesStillRecorded() {
+        AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+        metrics.startEvent("customEvent");
+        metrics.endEvent("customEvent");
+        metrics.incrementCounter("customCounter");
+        metrics.addProperty("customProperty", "value");
+        TimingInfo ti = metrics.getTimingInfo();
+        assertEquals(1, ti.getAllSubMeasurements("customEvent").size());
+        assertEquals(1, ti.getCounter("customCounter").intValue());
+        assertEquals(Arrays.<Object>asList("value"), metrics.getProperty("customProperty"));
+    }
+
+    @Test
+    public void predefinedProperties() {
+        AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+        assertNull(metrics.getProperty(Field.StatusCode));
+        metrics.addProperty(Field.StatusCode, 500);
+        assertEquals(Arrays.<Object>asList(500), metrics.getProperty(Field.StatusCode));
+        metrics.addProperty(Field.StatusCode.name(), 200);
+        List<Object> codes = metrics.getProperty(Field.StatusCode);
+        assertEquals(Arrays.<Object>asList(500, 200), codes);
+    }
+
+    @Test
+    public void subMeasurementsByNameIsLiveView() {
+        AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+        TimingInfo ti = metrics.getTimingInfo();
+        Map<String, List<TimingInfo>> byName = ti.getSubMeasurementsByName();
+        assertTrue(byName.isEmpty());
+
+        metrics.startEvent(Field.HttpRequestTime);
+        metrics.endEvent(Field.HttpRequestTime);
+        metrics.startEvent("customEvent");
+        metrics.endEvent("customEvent");
+        assertEquals(2, byName.size());
+        assertEquals(1, byName.get(Field.HttpRequestTime.name()).size());
+        assertEquals(1, byName.get("customEvent").size());
+        assertTrue(byName.keySet().containsAll(
+                Arrays.asList(Field.HttpRequestTime.name(), "customEvent")));
+        try {
+            byName.get("customEvent").clear();
+            fail("Expected the sub-measurements to be read only");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void allCountersIsLiveView() {
+        AWSRequestMetricsFullSupport metrics = new AWSRequestMetricsFullSupport();
+        TimingInfo ti = metrics.getTimingInfo();
+        Map<String, Number> counters = ti.getAllCounters();
+        assertTrue(counters.isEmpty());
+
+        metrics.incrementCounter(Field.RequestCount);
+        metrics.incrementCounter("customCounter");
+        assertEquals(2, counters.size());
+        assertEquals(1, counters.get(Field.RequestCount.name()).intValue());
+        assertEquals(1, counters.get("customCounter").intValue());
+        try {
+            counters.put("otherCounter", 1);
+            fail("Expected the counters to be read only");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.util;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class ByteBufferInputStreamTest {
+
+    private static final byte[] CONTENT = "0123456789".getBytes(StringUtils.UTF8);
+
+    @Test
+    public void readsRemainingContentWithoutModifyingBuffer() throws Exception {
+        ByteBuffer buffer = ByteBuffer.wrap(CONTENT);
+        buffer.position(2);
+        ByteBufferInputStream in = new ByteBufferInputStream(buffer);
+        assertEquals("23456789", IOUtils.toString(in));
+        assertEquals(-1, in.read());
+        assertEquals(2, buffer.position());
+    }
+
+    @Test
+    public void resetWithoutMark_RestartsAtInitialPosition() throws Exception {
+        ByteBufferInputStream in = new ByteBufferInputStream(ByteBuffer.wrap(CONTENT));
+        assertEquals(3, in.skip(3));
+        in.reset();
+        assertEquals('0', in.read());
+    }
+
+    @Test
+    public void markAndReset() throws Exception {
+        ByteBufferInputStream in = new ByteBufferInputStream(ByteBuffer.wrap(CONTENT));
+        assertEquals(4, in.read(new byte[4]));
+        in.mark(0);
+        byte[] read = new byte[10];
+        assertEquals(6, in.read(read, 0, 10));
+        in.reset();
+        assertEquals(6, in.available());
+        assertEquals('4', in.read());
+    }
+
+    @Test
+    public void remainingContent_IsIndependentOfStream() throws Exception {
+        ByteBufferInputStream in = new ByteBufferInputStream(ByteBuffer.wrap(CONTENT));
+        assertEquals(5, in.skip(5));
+        ByteBuffer remaining = in.remainingContent();
+        assertArrayEquals("56789".getBytes(StringUtils.UTF8), toArray(remaining));
+        assertEquals(5, in.available());
+    }
+
+    private static byte[] toArray(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        return bytes;
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.util;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the lock-free {@link CapacityManager} with the previous lock based implementation
+ * under contended acquire/release, as done by {@code AmazonHttpClient} for every retry-eligible
+ * failure. Run with
+ * <pre>
+ * mvn test-compile dependency:build-classpath -Dmdep.outputFile=cp.txt
+ * java -cp target/test-classes:target/classes:$(cat cp.txt) org.openjdk.jmh.Main CapacityManagerBenchmark
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class CapacityManagerBenchmark {
+
+    private static final int RETRY_COST = 5;
+
+    @Param({"lockFree", "synchronized"})
+    public String implementation;
+
+    /**
+     * Capacity large enough for acquires to succeed, as with a moderate error rate, or small
+     * enough for most of them to fail, as when retries are being throttled.
+     */
+    @Param({"500", "10"})
+    public int maxCapacity;
+
+    private CapacityManager lockFree;
+    private SynchronizedCapacityManager synchronizedManager;
+
+    @Setup
+    public void setup() {
+        lockFree = new CapacityManager(maxCapacity);
+        synchronizedManager = new SynchronizedCapacityManager(maxCapacity);
+    }
+
+    @Benchmark
+    public boolean acquireAndRelease() {
+        if ("lockFree".equals(implementation)) {
+            if (lockFree.acquire(RETRY_COST)) {
+                lockFree.release(RETRY_COST);
+                return true;
+            }
+            return false;
+        } else {
+            if (synchronizedManager.acquire(RETRY_COST)) {
+                synchronizedManager.release(RETRY_COST);
+                return true;
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The previous implementation of {@link CapacityManager}, serializing updates on a monitor.
+     */
+    private static class SynchronizedCapacityManager {
+
+        private volatile int availableCapacity;
+        private final int maxCapacity;
+
+        private final Object lock = new Object();
+
+        SynchronizedCapacityManager(int maxCapacity) {
+            this.maxCapacity = maxCapacity;
+            this.availableCapacity = maxCapacity;
+        }
+
+        boolean acquire(int capacity) {
+            if (availableCapacity < 0) {
+                return true;
+            }
+
+            synchronized (lock) {
+                if (availableCapacity - capacity >= 0) {
+                    availableCapacity -= capacity;
+                    return true;
+                } else {
+                    return false;
+                }
+            }
+        }
+
+        void release(int capacity) {
+            if (availableCapacity >= 0 && availableCapacity != maxCapacity) {
+                synchronized (lock) {
+                    availableCapacity = Math.min((availableCapacity + capacity), maxCapacity);
+                }
+            }
+        }
+    }
+}
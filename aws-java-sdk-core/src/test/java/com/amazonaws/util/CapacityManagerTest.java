@@ -15,6 +15,8 @@
 
 package com.amazonaws.util;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.Assert;
 import org.junit.Test;
 
@@ -69,4 +71,35 @@ public class CapacityManagerTest {
         Assert.assertEquals(mgr.consumedCapacity(), 0);
     }
 
+    /**
+     * Tests that capacity is neither lost nor created when acquired and released
+     * concurrently by many threads.
+     */
+    @Test
+    public void concurrentAcquireAndRelease() throws InterruptedException {
+        final CapacityManager mgr = new CapacityManager(100);
+        final AtomicInteger failedAcquires = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 10000; j++) {
+                        if (mgr.acquire(5)) {
+                            mgr.release(5);
+                        } else {
+                            failedAcquires.incrementAndGet();
+                        }
+                    }
+                }
+            };
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(0, failedAcquires.get());
+        Assert.assertEquals(100, mgr.availableCapacity());
+        Assert.assertEquals(0, mgr.consumedCapacity());
+    }
 }
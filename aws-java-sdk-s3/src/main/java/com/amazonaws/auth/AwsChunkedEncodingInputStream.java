@@ -17,10 +17,23 @@ import static com.amazonaws.util.StringUtils.UTF8;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
@@ -34,6 +47,12 @@ import com.amazonaws.util.BinaryUtils;
 
 /**
  * A wrapper class of InputStream that implements chunked-encoding.
+ * <p>
+ * By default each chunk is hashed and signed by the thread reading this stream. When a read-ahead
+ * window is configured, up to that many upcoming chunks are read in advance and their payload is
+ * hashed on a small shared pool of worker threads, so hashing overlaps with writing the previous
+ * chunks to the socket. The chunk signatures, which are chained, are still computed in order on
+ * the reading thread.
  */
 public final class AwsChunkedEncodingInputStream extends SdkInputStream {
     protected static final String DEFAULT_ENCODING = "UTF-8";
@@ -47,6 +66,25 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
     private static final int SIGNATURE_LENGTH = 64;
     private static final byte[] FINAL_CHUNK = new byte[0];
 
+    /**
+     * Hashes chunk payloads ahead of the reader when a read-ahead window is configured. It is
+     * shared by every stream in the JVM rather than owned by a client: it runs at most
+     * min(4, available processors) daemon threads, which exit after 30 seconds without work, so
+     * it never needs to be shut down.
+     */
+    private static final ThreadPoolExecutor CHUNK_HASHING_EXECUTOR = createChunkHashingExecutor();
+
+    private static final ThreadLocal<MessageDigest> WORKER_SHA256 = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
     private InputStream is = null;
     private final int maxBufferSize;
     private final String dateTime;
@@ -58,6 +96,18 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
     private final MessageDigest sha256;
     private final Mac hmacSha256;
 
+    /** Maximum number of chunks read ahead of the reader, zero to hash and sign serially */
+    private final int readAheadChunks;
+
+    /** Hashes the payload of the chunks read ahead */
+    private final ExecutorService hashingExecutor;
+
+    /** Chunks read ahead, in stream order, whose payload is being hashed */
+    private final Queue<PendingChunk> pendingChunks;
+
+    /** Whether the end of the wrapped stream has been reached by the read-ahead */
+    private boolean isReadAheadComplete = false;
+
     /** Iterator on the current chunk that has been signed */
     private ChunkContentIterator currentChunkIterator;
 
@@ -79,6 +129,13 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
         this(in, DEFAULT_BUFFER_SIZE, kSigning, datetime, keyPath, headerSignature, aws4Signer);
     }
 
+    public AwsChunkedEncodingInputStream(InputStream in, byte[] kSigning,
+            String datetime, String keyPath, String headerSignature,
+            AWS4Signer aws4Signer, int readAheadChunks) {
+        this(in, DEFAULT_BUFFER_SIZE, kSigning, datetime, keyPath, headerSignature, aws4Signer,
+                readAheadChunks);
+    }
+
     /**
      * A wrapper of InputStream that implements pseudo-chunked-encoding.
      * Each chunk will be buffered for the calculation of the chunk signature
@@ -107,6 +164,36 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
     public AwsChunkedEncodingInputStream(InputStream in, int maxBufferSize,
             byte[] kSigning, String datetime, String keyPath,
             String headerSignature, AWS4Signer aws4Signer) {
+        this(in, maxBufferSize, kSigning, datetime, keyPath, headerSignature, aws4Signer, 0);
+    }
+
+    /**
+     * A wrapper of InputStream that implements pseudo-chunked-encoding, reading
+     * up to the given number of chunks ahead of the reader so that their payload
+     * is hashed concurrently on worker threads. The memory held by the read-ahead
+     * is bounded by <code>readAheadChunks</code> times the chunk size (128 KB).
+     * When the wrapped stream does not support mark and reset, the buffer of the
+     * decoded stream is grown by that amount as well, so that the read-ahead does
+     * not make the stream unrepeatable any earlier than <code>maxBufferSize</code>.
+     *
+     * @param readAheadChunks
+     *             Maximum number of chunks read ahead of the reader, zero to
+     *             hash and sign every chunk on the reading thread.
+     * @see #AwsChunkedEncodingInputStream(InputStream, int, byte[], String, String, String, AWS4Signer)
+     */
+    public AwsChunkedEncodingInputStream(InputStream in, int maxBufferSize,
+            byte[] kSigning, String datetime, String keyPath,
+            String headerSignature, AWS4Signer aws4Signer, int readAheadChunks) {
+        this(in, maxBufferSize, kSigning, datetime, keyPath, headerSignature, aws4Signer,
+                readAheadChunks, CHUNK_HASHING_EXECUTOR);
+    }
+
+    AwsChunkedEncodingInputStream(InputStream in, int maxBufferSize,
+            byte[] kSigning, String datetime, String keyPath,
+            String headerSignature, AWS4Signer aws4Signer, int readAheadChunks,
+            ExecutorService hashingExecutor) {
+        if (readAheadChunks < 0)
+            throw new IllegalArgumentException("Read-ahead should not be negative: " + readAheadChunks);
         if (in instanceof AwsChunkedEncodingInputStream) {
             // This could happen when the request is retried, and we need to re-calculate the signatures.
             AwsChunkedEncodingInputStream originalChunkedStream = (AwsChunkedEncodingInputStream)in;
@@ -137,6 +224,9 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
         this.headerSignature = headerSignature;
         this.priorChunkSignature = headerSignature;
         this.aws4Signer = aws4Signer;
+        this.readAheadChunks = readAheadChunks;
+        this.hashingExecutor = hashingExecutor;
+        this.pendingChunks = readAheadChunks > 0 ? new ArrayDeque<PendingChunk>(readAheadChunks) : null;
     }
 
     @Override
@@ -228,7 +318,9 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
                 log.debug("AwsChunkedEncodingInputStream marked at the start of the stream "
                         + "(initializing the buffer since the wrapped stream is not mark-supported).");
             }
-            decodedStreamBuffer = new DecodedStreamBuffer(maxBufferSize);
+            // The chunks read ahead are buffered as well, on top of the ones already sent
+            decodedStreamBuffer = new DecodedStreamBuffer(
+                    maxBufferSize + readAheadChunks * DEFAULT_CHUNK_SIZE);
         }
     }
 
@@ -242,6 +334,7 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
         // Clear up any encoded data
         currentChunkIterator = null;
         priorChunkSignature = headerSignature;
+        discardPendingChunks();
         // Reset the wrapped stream if it is mark-supported,
         // otherwise use our buffered data.
         if (is.markSupported()) {
@@ -292,6 +385,27 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
      *         Returns true if next chunk is the last empty chunk.
      */
     private boolean setUpNextChunk() throws IOException {
+        final byte[] chunkData;
+        final byte[] chunkDigest;
+        if (readAheadChunks > 0) {
+            fillReadAheadWindow();
+            final PendingChunk next = pendingChunks.remove();
+            chunkData = next.data;
+            chunkDigest = next.getDigest();
+        } else {
+            chunkData = readChunkData();
+            chunkDigest = sha256.digest(chunkData);
+        }
+        currentChunkIterator = new ChunkContentIterator(createSignedChunk(chunkData, chunkDigest));
+        return chunkData.length == 0;
+    }
+
+    /**
+     * Reads the next chunk of data from the wrapped stream.
+     * @return
+     *         The data of the chunk, empty once the end of the stream is reached.
+     */
+    private byte[] readChunkData() throws IOException {
         byte[] chunkData = new byte[DEFAULT_CHUNK_SIZE];
         int chunkSizeInBytes = 0;
         while (chunkSizeInBytes < DEFAULT_CHUNK_SIZE) {
@@ -313,22 +427,38 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
                     break;
             }
         }
-        if (chunkSizeInBytes == 0){
-            byte[] signedFinalChunk = createSignedChunk(FINAL_CHUNK);
-            currentChunkIterator = new ChunkContentIterator(signedFinalChunk);
-            return true;
+        if (chunkSizeInBytes == 0) {
+            return FINAL_CHUNK;
         }
-        else {
-            if (chunkSizeInBytes < chunkData.length) {
-                chunkData = Arrays.copyOf(chunkData, chunkSizeInBytes);
+        if (chunkSizeInBytes < chunkData.length) {
+            chunkData = Arrays.copyOf(chunkData, chunkSizeInBytes);
+        }
+        return chunkData;
+    }
+
+    /**
+     * Reads chunks until the read-ahead window is full or the final chunk has
+     * been read, submitting the hashing of each of them to the worker pool.
+     */
+    private void fillReadAheadWindow() throws IOException {
+        while (!isReadAheadComplete && pendingChunks.size() < readAheadChunks) {
+            final byte[] chunkData = readChunkData();
+            pendingChunks.add(new PendingChunk(chunkData, hashingExecutor));
+            isReadAheadComplete = chunkData.length == 0;
+        }
+    }
+
+    private void discardPendingChunks() {
+        if (pendingChunks != null) {
+            for (PendingChunk pending : pendingChunks) {
+                pending.cancel();
             }
-            byte[] signedChunkContent = createSignedChunk(chunkData);
-            currentChunkIterator = new ChunkContentIterator(signedChunkContent);
-            return false;
+            pendingChunks.clear();
+            isReadAheadComplete = false;
         }
     }
 
-    private byte[] createSignedChunk(byte[] chunkData) {
+    private byte[] createSignedChunk(byte[] chunkData, byte[] chunkDigest) {
         StringBuilder chunkHeader = new StringBuilder();
         // chunk-size
         chunkHeader.append(Integer.toHexString(chunkData.length));
@@ -339,7 +469,7 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
                 keyPath + "\n" +
                 priorChunkSignature + "\n" +
                 AbstractAWSSigner.EMPTY_STRING_SHA256_HEX + "\n" +
-                BinaryUtils.toHex(sha256.digest(chunkData));
+                BinaryUtils.toHex(chunkDigest);
         final String chunkSignature =
             BinaryUtils.toHex(aws4Signer.signWithMac(chunkStringToSign, hmacSha256));
         priorChunkSignature = chunkSignature;
@@ -366,4 +496,73 @@ public final class AwsChunkedEncodingInputStream extends SdkInputStream {
     protected InputStream getWrappedInputStream() {
         return is;
     }
+
+    private static ThreadPoolExecutor createChunkHashingExecutor() {
+        final int threads = Math.min(4, Runtime.getRuntime().availableProcessors());
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+                30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    private final AtomicInteger threadCount = new AtomicInteger();
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r,
+                                "aws-sdk-chunk-hashing-" + threadCount.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * A chunk read ahead of the reader whose payload is hashed by the worker pool.
+     */
+    private static final class PendingChunk implements Callable<byte[]> {
+
+        private final byte[] data;
+        private final Future<byte[]> digest;
+
+        private PendingChunk(byte[] data, ExecutorService executor) {
+            this.data = data;
+            Future<byte[]> submitted;
+            try {
+                submitted = executor.submit(this);
+            } catch (RejectedExecutionException e) {
+                submitted = null;
+            }
+            this.digest = submitted;
+        }
+
+        @Override
+        public byte[] call() {
+            return WORKER_SHA256.get().digest(data);
+        }
+
+        /**
+         * Waits for the digest of the chunk payload, computing it on the calling
+         * thread if it could not be handed over to the worker pool.
+         */
+        private byte[] getDigest() throws IOException {
+            if (digest == null) {
+                return call();
+            }
+            try {
+                return digest.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while hashing chunk");
+            } catch (ExecutionException e) {
+                throw new AmazonClientException(
+                        "Unable to hash the chunked data. " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+
+        private void cancel() {
+            if (digest != null) {
+                digest.cancel(false);
+            }
+        }
+    }
 }
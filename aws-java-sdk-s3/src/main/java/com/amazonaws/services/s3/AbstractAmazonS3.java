@@ -17,6 +17,9 @@ package com.amazonaws.services.s3;
 import java.io.File;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Date;
 import java.util.List;
 
@@ -366,6 +369,30 @@ public abstract class AbstractAmazonS3 implements AmazonS3 {
 
     }
 
+    @Override
+    public ObjectMetadata getObject(GetObjectRequest getObjectRequest,
+            ByteBuffer destination) throws AmazonClientException,
+            AmazonServiceException {
+        throw new UnsupportedOperationException("Extend AbstractAmazonS3 to provide an implementation");
+
+    }
+
+    @Override
+    public ObjectMetadata getObject(GetObjectRequest getObjectRequest,
+            WritableByteChannel destination) throws AmazonClientException,
+            AmazonServiceException {
+        throw new UnsupportedOperationException("Extend AbstractAmazonS3 to provide an implementation");
+
+    }
+
+    @Override
+    public ObjectMetadata getObject(GetObjectRequest getObjectRequest,
+            FileChannel destination, long position) throws AmazonClientException,
+            AmazonServiceException {
+        throw new UnsupportedOperationException("Extend AbstractAmazonS3 to provide an implementation");
+
+    }
+
     @Override
     public String getObjectAsString(String bucketName, String key)
             throws AmazonServiceException, AmazonClientException {
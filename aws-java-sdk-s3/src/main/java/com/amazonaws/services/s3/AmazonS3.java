@@ -17,6 +17,9 @@ package com.amazonaws.services.s3;
 import java.io.File;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Date;
 import java.util.List;
 
@@ -2077,6 +2080,114 @@ public interface AmazonS3 extends S3DirectSpi {
     ObjectMetadata getObject(GetObjectRequest getObjectRequest, File destinationFile)
             throws AmazonClientException, AmazonServiceException;
 
+    /**
+     * <p>
+     * Gets the object metadata for the object stored in Amazon S3 under the
+     * specified bucket and key, and writes the object contents into the
+     * specified buffer, starting at its position. The position of the buffer
+     * is advanced past the contents. Returns <code>null</code> if the
+     * specified constraints weren't met.
+     * </p>
+     * <p>
+     * A buffer backed by an array is filled directly from the HTTP response,
+     * without an intermediate copy, and the MD5 check of the contents is
+     * performed as they are read rather than in a second pass. The HTTP
+     * stream resources are closed as soon as the contents have been read.
+     * </p>
+     *
+     * @param getObjectRequest
+     *            The request object containing all the options on how to
+     *            download the Amazon S3 object content.
+     * @param destination
+     *            The buffer to write the object content into. It must have
+     *            room for all of the content.
+     *
+     * @return All S3 object metadata for the specified object.
+     *         Returns <code>null</code> if constraints were specified but not met.
+     *
+     * @throws AmazonClientException
+     *             If any errors are encountered in the client while making the
+     *             request, handling the response, or writing the incoming data
+     *             into the buffer, including when the content doesn't fit.
+     * @throws AmazonServiceException
+     *             If any errors occurred in Amazon S3 while processing the
+     *             request.
+     *
+     * @see AmazonS3#getObject(GetObjectRequest, File)
+     */
+    ObjectMetadata getObject(GetObjectRequest getObjectRequest, ByteBuffer destination)
+            throws AmazonClientException, AmazonServiceException;
+
+    /**
+     * <p>
+     * Gets the object metadata for the object stored in Amazon S3 under the
+     * specified bucket and key, and writes the object contents into the
+     * specified channel. Returns <code>null</code> if the specified
+     * constraints weren't met. The channel is not closed.
+     * </p>
+     * <p>
+     * The MD5 check of the contents is performed as they are read, so the
+     * contents may already have been written to the channel when the check
+     * fails.
+     * </p>
+     *
+     * @param getObjectRequest
+     *            The request object containing all the options on how to
+     *            download the Amazon S3 object content.
+     * @param destination
+     *            The channel to write the object content into.
+     *
+     * @return All S3 object metadata for the specified object.
+     *         Returns <code>null</code> if constraints were specified but not met.
+     *
+     * @throws AmazonClientException
+     *             If any errors are encountered in the client while making the
+     *             request, handling the response, or writing the incoming data
+     *             to the channel.
+     * @throws AmazonServiceException
+     *             If any errors occurred in Amazon S3 while processing the
+     *             request.
+     *
+     * @see AmazonS3#getObject(GetObjectRequest, File)
+     */
+    ObjectMetadata getObject(GetObjectRequest getObjectRequest, WritableByteChannel destination)
+            throws AmazonClientException, AmazonServiceException;
+
+    /**
+     * <p>
+     * Gets the object metadata for the object stored in Amazon S3 under the
+     * specified bucket and key, and writes the object contents into the
+     * specified file channel, starting at the specified position. The
+     * position of the channel itself is not changed, so disjoint regions of
+     * the same file, such as the ranges of an object, can be written
+     * concurrently. Returns <code>null</code> if the specified constraints
+     * weren't met. The channel is not closed.
+     * </p>
+     *
+     * @param getObjectRequest
+     *            The request object containing all the options on how to
+     *            download the Amazon S3 object content.
+     * @param destination
+     *            The channel of the file to write the object content into.
+     * @param position
+     *            The offset in the file of the first byte of the content.
+     *
+     * @return All S3 object metadata for the specified object.
+     *         Returns <code>null</code> if constraints were specified but not met.
+     *
+     * @throws AmazonClientException
+     *             If any errors are encountered in the client while making the
+     *             request, handling the response, or writing the incoming data
+     *             to the file.
+     * @throws AmazonServiceException
+     *             If any errors occurred in Amazon S3 while processing the
+     *             request.
+     *
+     * @see AmazonS3#getObject(GetObjectRequest, File)
+     */
+    ObjectMetadata getObject(GetObjectRequest getObjectRequest, FileChannel destination, long position)
+            throws AmazonClientException, AmazonServiceException;
+
     /**
      * <p>
      * Retrieves and decodes the contents of an S3 object to a String.
@@ -29,12 +29,14 @@ import com.amazonaws.ResetException;
 import com.amazonaws.Response;
 import com.amazonaws.annotation.SdkInternalApi;
 import com.amazonaws.annotation.SdkTestInternalApi;
+import com.amazonaws.auth.AWS4Signer;
 import com.amazonaws.auth.AWSCredentials;
 import com.amazonaws.auth.AWSCredentialsProvider;
 import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
 import com.amazonaws.auth.Presigner;
 import com.amazonaws.auth.Signer;
 import com.amazonaws.auth.SignerFactory;
+import com.amazonaws.auth.internal.SignerConstants;
 import com.amazonaws.event.ProgressEventType;
 import com.amazonaws.event.ProgressInputStream;
 import com.amazonaws.event.ProgressListener;
@@ -45,6 +47,7 @@ import com.amazonaws.http.HttpMethodName;
 import com.amazonaws.http.HttpResponseHandler;
 import com.amazonaws.internal.DefaultServiceEndpointBuilder;
 import com.amazonaws.internal.IdentityEndpointBuilder;
+import com.amazonaws.internal.PayloadDigests;
 import com.amazonaws.internal.ReleasableInputStream;
 import com.amazonaws.internal.ResettableInputStream;
 import com.amazonaws.internal.ServiceEndpointBuilder;
@@ -215,6 +218,7 @@ import com.amazonaws.util.AwsHostNameUtils;
 import com.amazonaws.util.Base16;
 import com.amazonaws.util.Base64;
 import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.ByteBufferInputStream;
 import com.amazonaws.util.DateUtils;
 import com.amazonaws.util.IOUtils;
 import com.amazonaws.util.LengthCheckInputStream;
@@ -238,6 +242,9 @@ import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
@@ -773,7 +780,8 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
         if (listObjectsRequest.getMaxKeys() != null && listObjectsRequest.getMaxKeys().intValue() >= 0) request.addParameter("max-keys", listObjectsRequest.getMaxKeys().toString());
         request.addParameter("encoding-type", shouldSDKDecodeResponse ? Constants.URL_ENCODING : listObjectsRequest.getEncodingType());
 
-        return invoke(request, new Unmarshallers.ListObjectsUnmarshaller(shouldSDKDecodeResponse), listObjectsRequest.getBucketName(), null);
+        return invoke(request, new Unmarshallers.ListObjectsUnmarshaller(shouldSDKDecodeResponse,
+                listObjectsRequest.getObjectSummaryCallback()), listObjectsRequest.getBucketName(), null);
     }
 
     @Override
@@ -812,7 +820,8 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
          */
         final boolean shouldSDKDecodeResponse = listObjectsV2Request.getEncodingType() == Constants.URL_ENCODING;
 
-        return invoke(request, new Unmarshallers.ListObjectsV2Unmarshaller(shouldSDKDecodeResponse), listObjectsV2Request.getBucketName(), null);
+        return invoke(request, new Unmarshallers.ListObjectsV2Unmarshaller(shouldSDKDecodeResponse,
+                listObjectsV2Request.getObjectSummaryCallback()), listObjectsV2Request.getBucketName(), null);
     }
 
 
@@ -1398,6 +1407,48 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
         return s3Object.getObjectMetadata();
     }
 
+    @Override
+    public ObjectMetadata getObject(GetObjectRequest getObjectRequest, ByteBuffer destination)
+            throws AmazonClientException, AmazonServiceException {
+        rejectNull(destination,
+                "The destination buffer parameter must be specified when downloading an object directly to a buffer");
+
+        S3Object s3Object = getObject(getObjectRequest);
+        // getObject can return null if constraints were specified but not met
+        if (s3Object == null) return null;
+
+        ServiceUtils.downloadToByteBuffer(s3Object, destination);
+        return s3Object.getObjectMetadata();
+    }
+
+    @Override
+    public ObjectMetadata getObject(GetObjectRequest getObjectRequest, WritableByteChannel destination)
+            throws AmazonClientException, AmazonServiceException {
+        rejectNull(destination,
+                "The destination channel parameter must be specified when downloading an object directly to a channel");
+
+        S3Object s3Object = getObject(getObjectRequest);
+        // getObject can return null if constraints were specified but not met
+        if (s3Object == null) return null;
+
+        ServiceUtils.downloadToChannel(s3Object, destination);
+        return s3Object.getObjectMetadata();
+    }
+
+    @Override
+    public ObjectMetadata getObject(GetObjectRequest getObjectRequest, FileChannel destination, long position)
+            throws AmazonClientException, AmazonServiceException {
+        rejectNull(destination,
+                "The destination channel parameter must be specified when downloading an object directly to a file channel");
+
+        S3Object s3Object = getObject(getObjectRequest);
+        // getObject can return null if constraints were specified but not met
+        if (s3Object == null) return null;
+
+        ServiceUtils.downloadToFileChannel(s3Object, destination, position);
+        return s3Object.getObjectMetadata();
+    }
+
     @Override
     public String getObjectAsString(String bucketName, String key)
             throws AmazonServiceException, AmazonClientException {
@@ -1458,6 +1509,8 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
         final String key = putObjectRequest.getKey();
         ObjectMetadata metadata = putObjectRequest.getMetadata();
         InputStream input = isOrig;
+        ResettableInputStream fileInput = null;
+        boolean calculatePayloadMD5 = false;
         if (metadata == null)
             metadata = new ObjectMetadata();
         rejectNull(bucketName, "The bucket name parameter must be specified when uploading an object");
@@ -1465,10 +1518,25 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
         // If a file is specified for upload, we need to pull some additional
         // information from it to auto-configure a few options
         if (file == null) {
-            // When input is a FileInputStream, this wrapping enables
-            // unlimited mark-and-reset
-            if (input != null)
+            if (input instanceof ByteBufferInputStream) {
+                // A buffer can be reset without limit, and is digested in
+                // place once the request is created
+                final ByteBufferInputStream bufferInput = (ByteBufferInputStream) input;
+                if (metadata.getRawMetadataValue(Headers.CONTENT_LENGTH) == null) {
+                    metadata.setContentLength(bufferInput.available());
+                } else if (metadata.getContentLength() < bufferInput.available()) {
+                    // Only the declared content is digested, so only that is sent
+                    final ByteBuffer content = bufferInput.remainingContent();
+                    content.limit((int) metadata.getContentLength());
+                    input = new ByteBufferInputStream(content);
+                }
+                calculatePayloadMD5 = metadata.getContentMD5() == null
+                        && !skipMd5CheckStrategy.skipServerSideValidation(putObjectRequest);
+            } else if (input != null) {
+                // When input is a FileInputStream, this wrapping enables
+                // unlimited mark-and-reset
                 input = ReleasableInputStream.wrap(input);
+            }
         } else {
             // Always set the content length, even if it's already set
             metadata.setContentLength(file.length());
@@ -1478,22 +1546,24 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
                 metadata.setContentType(Mimetypes.getInstance().getMimetype(file));
             }
 
-            if (calculateMD5 && !skipMd5CheckStrategy.skipServerSideValidation(putObjectRequest)) {
-                try {
-                    String contentMd5_b64 = Md5Utils.md5AsBase64(file);
-                    metadata.setContentMD5(contentMd5_b64);
-                } catch (Exception e) {
-                    throw new AmazonClientException(
-                            "Unable to calculate MD5 hash: " + e.getMessage(), e);
-                }
-            }
-            input = newResettableInputStream(file, "Unable to find file to upload");
+            // The MD5 is computed once the request is created, in the same pass over the file as
+            // the payload hash the signer may need
+            calculatePayloadMD5 = calculateMD5
+                    && !skipMd5CheckStrategy.skipServerSideValidation(putObjectRequest);
+            input = fileInput = newResettableInputStream(file, "Unable to find file to upload");
         }
         final ProgressListener listener;
         final ObjectMetadata returnedMetadata;
         MD5DigestCalculatingInputStream md5DigestStream = null;
         try {
             Request<PutObjectRequest> request = createRequest(bucketName, key, putObjectRequest, HttpMethodName.PUT);
+            if (fileInput != null || input instanceof ByteBufferInputStream) {
+                final byte[] md5 = digestPayload(request, input, 0,
+                        metadata.getContentLength(), calculatePayloadMD5);
+                if (md5 != null) {
+                    metadata.setContentMD5(Base64.encodeAsString(md5));
+                }
+            }
             // Make backward compatible with buffer size via system property
             final Integer bufsize = Constants.getS3StreamBufferSize();
             if (bufsize != null) {
@@ -2981,11 +3051,21 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
         // Populate the SSE-C parameters to the request header
         populateSSE_C(request, uploadPartRequest.getSSECustomerKey());
         InputStream isCurr = isOrig;
+        byte[] payloadMd5 = null;
         try {
             if (fileOrig == null) {
                 if (isOrig == null) {
                     throw new IllegalArgumentException(
                         "A File or InputStream must be specified when uploading part");
+                } else if (isOrig instanceof ByteBufferInputStream) {
+                    // A buffer can be reset without limit, and is digested in place
+                    payloadMd5 = digestPayload(request, isOrig,
+                            uploadPartRequest.getFileOffset(), partSize,
+                            uploadPartRequest.getMd5Digest() == null
+                                    && !skipMd5CheckStrategy.skipClientSideValidationPerRequest(uploadPartRequest));
+                    if (payloadMd5 != null) {
+                        request.addHeader(Headers.CONTENT_MD5, Base64.encodeAsString(payloadMd5));
+                    }
                 } else {
                     // When isCurr is a FileInputStream, this wrapping enables
                     // unlimited mark-and-reset
@@ -3001,12 +3081,15 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
                         .setReadLimit(bufsize.intValue());
                 }
             } else {
+                final ResettableInputStream fileInput;
                 try {
-                    isCurr = new ResettableInputStream(fileOrig);
+                    isCurr = fileInput = new ResettableInputStream(fileOrig);
                 } catch(IOException e) {
                     throw new IllegalArgumentException("Failed to open file "
                             + fileOrig, e);
                 }
+                digestPayload(request, fileInput, uploadPartRequest.getFileOffset(),
+                        partSize, false);
             }
             isCurr = new InputSubstream(
                     isCurr,
@@ -3014,7 +3097,7 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
                     partSize,
                     uploadPartRequest.isLastPart());
             MD5DigestCalculatingInputStream md5DigestStream = null;
-            if (uploadPartRequest.getMd5Digest() == null
+            if (uploadPartRequest.getMd5Digest() == null && payloadMd5 == null
                     && !skipMd5CheckStrategy.skipClientSideValidationPerRequest(uploadPartRequest)) {
                 /*
                  * If the user hasn't set the content MD5, then we don't want to buffer the whole
@@ -3026,26 +3109,87 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
             final ProgressListener listener = uploadPartRequest.getGeneralProgressListener();
             publishProgress(listener, ProgressEventType.TRANSFER_PART_STARTED_EVENT);
             return doUploadPart(bucketName, key, uploadId, partNumber,
-                    partSize, request, isCurr, md5DigestStream, listener);
+                    partSize, request, isCurr, md5DigestStream, payloadMd5, listener);
         } finally {
             cleanupDataSource(uploadPartRequest, fileOrig, isOrig, isCurr, log);
         }
     }
 
+    /**
+     * Digests a region of a file or buffer to be uploaded in a single pass over its channel or
+     * content. The SHA-256 of the region is handed over to the signer when it is going to sign the
+     * whole payload, rather than having it read the data again, and the MD5 is computed along when
+     * requested.
+     *
+     * @param input A {@link ResettableInputStream} or a {@link ByteBufferInputStream}; the offset
+     *              of a buffer is relative to its remaining content.
+     * @return The MD5 of the region if requested, null otherwise.
+     */
+    private byte[] digestPayload(Request<?> request, InputStream input,
+            long offset, long length, boolean calculateMD5) {
+        final boolean calculateSha256 = isWholePayloadSigned(request);
+        if (!calculateSha256 && !calculateMD5) {
+            return null;
+        }
+        try {
+            final MessageDigest sha256 = calculateSha256 ? MessageDigest.getInstance("SHA-256") : null;
+            final MessageDigest md5 = calculateMD5 ? MessageDigest.getInstance("MD5") : null;
+            final MessageDigest[] digests = sha256 == null ? new MessageDigest[] { md5 }
+                    : md5 == null ? new MessageDigest[] { sha256 }
+                    : new MessageDigest[] { sha256, md5 };
+            if (input instanceof ByteBufferInputStream) {
+                final ByteBuffer content = ((ByteBufferInputStream) input).remainingContent();
+                content.position((int) Math.min(offset, content.limit()));
+                content.limit((int) Math.min(content.position() + length, content.limit()));
+                PayloadDigests.digest(content, digests);
+            } else {
+                PayloadDigests.digestRegion((ResettableInputStream) input, offset, length, digests);
+            }
+            if (sha256 != null) {
+                request.addHandlerContext(SignerConstants.PRECOMPUTED_CONTENT_SHA256,
+                        BinaryUtils.toHex(sha256.digest()));
+            }
+            return md5 == null ? null : md5.digest();
+        } catch (Exception e) {
+            throw new AmazonClientException(
+                    "Unable to calculate hash of data to upload: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return True if the signer {@link #createSigner(Request, String, String)} picks for a
+     *         PutObject or UploadPart request will hash its whole payload, as opposed to signing
+     *         it chunk by chunk, leaving it unsigned or signing with SigV2.
+     */
+    private boolean isWholePayloadSigned(Request<?> request) {
+        URI uri = clientOptions.isAccelerateModeEnabled() ? endpoint : request.getEndpoint();
+        final Signer signer = getSignerByURI(uri);
+        if (signer instanceof AWSS3V4Signer
+                || (!isSignerOverridden() && getSignerRegionOverride() != null)) {
+            return clientOptions.isChunkedEncodingDisabled()
+                    && (clientOptions.isPayloadSigningEnabled()
+                            || !"https".equals(request.getEndpoint().getScheme()));
+        }
+        // A plain SigV4 signer set through a signer override always hashes the whole payload
+        return signer instanceof AWS4Signer;
+    }
+
     private UploadPartResult doUploadPart(final String bucketName,
             final String key, final String uploadId, final int partNumber,
             final long partSize, Request<UploadPartRequest> request,
             InputStream inputStream,
             MD5DigestCalculatingInputStream md5DigestStream,
+            byte[] payloadMd5,
             final ProgressListener listener) {
         try {
             request.setContent(inputStream);
             ObjectMetadata metadata = invoke(request, new S3MetadataResponseHandler(), bucketName, key);
             final String etag = metadata.getETag();
 
-            if (md5DigestStream != null
+            if ((md5DigestStream != null || payloadMd5 != null)
                     && !skipMd5CheckStrategy.skipClientSideValidationPerUploadPartResponse(metadata)) {
-                byte[] clientSideHash = md5DigestStream.getMd5Digest();
+                byte[] clientSideHash = md5DigestStream != null
+                        ? md5DigestStream.getMd5Digest() : payloadMd5;
                 byte[] serverSideHash = BinaryUtils.fromHex(etag);
 
                 if (!Arrays.equals(clientSideHash, serverSideHash)) {
@@ -3935,6 +4079,8 @@ public class AmazonS3Client extends AmazonWebServiceClient implements AmazonS3 {
                 Boolean.valueOf(clientOptions.isChunkedEncodingDisabled()));
         request.addHandlerContext(S3HandlerContextKeys.IS_PAYLOAD_SIGNING_ENABLED,
                 Boolean.valueOf(clientOptions.isPayloadSigningEnabled()));
+        request.addHandlerContext(S3HandlerContextKeys.CHUNK_SIGNING_READ_AHEAD,
+                Integer.valueOf(clientOptions.getChunkSigningReadAhead()));
         resolveRequestEndpoint(request, bucketName, key, endpoint);
         return request;
     }
@@ -29,6 +29,8 @@ public class S3ClientOptions {
     public static final boolean DEFAULT_ACCELERATE_MODE_ENABLED = false;
     /** S3 dualstack endpoint is by default not enabled */
     public static final boolean DEFAULT_DUALSTACK_ENABLED = false;
+    /** Chunks are by default hashed and signed serially */
+    public static final int DEFAULT_CHUNK_SIGNING_READ_AHEAD = 0;
 
     /*
      * TODO: make it final after we remove the deprecated setters.
@@ -38,6 +40,7 @@ public class S3ClientOptions {
     private final boolean accelerateModeEnabled;
     private final boolean payloadSigningEnabled;
     private final boolean dualstackEnabled;
+    private final int chunkSigningReadAhead;
 
     /**
      * @return a new S3ClientOptions builder.
@@ -54,12 +57,14 @@ public class S3ClientOptions {
         private boolean accelerateModeEnabled = DEFAULT_ACCELERATE_MODE_ENABLED;
         private boolean payloadSigningEnabled = DEFAULT_PAYLOAD_SIGNING_ENABLED;
         private boolean dualstackEnabled = DEFAULT_DUALSTACK_ENABLED;
+        private int chunkSigningReadAhead = DEFAULT_CHUNK_SIGNING_READ_AHEAD;
 
         private Builder() {}
 
         public S3ClientOptions build() {
             return new S3ClientOptions(pathStyleAccess, chunkedEncodingDisabled,
-                    accelerateModeEnabled, payloadSigningEnabled, dualstackEnabled);
+                    accelerateModeEnabled, payloadSigningEnabled, dualstackEnabled,
+                    chunkSigningReadAhead);
         }
         /**
          * <p>
@@ -163,6 +168,37 @@ public class S3ClientOptions {
             this.dualstackEnabled = true;
             return this;
         }
+
+        /**
+         * <p>
+         * Configures the number of chunks that may be read ahead of the HTTP client when uploading
+         * with chunked encoding, so that their payload is hashed on a small pool of worker threads
+         * while the previous chunks are being sent.
+         * </p>
+         * <p>
+         * The default behavior is to hash and sign each chunk on the thread sending the request.
+         * Setting a read-ahead is recommended when large objects are uploaded over fast links and
+         * the sending thread becomes bound by the payload hashing. Each chunk read ahead holds up
+         * to 128 KB of memory per upload.
+         * </p>
+         * <p>
+         * The worker pool is shared by all the clients of the JVM and is not tied to the lifetime
+         * of a client. It runs at most min(4, available processors) daemon threads, which exit
+         * after 30 seconds without work, so shutting down a client does not need to stop it. When
+         * the pool is busy, the chunks wait for a free worker and are hashed in order.
+         * </p>
+         *
+         * @param chunkSigningReadAhead
+         *            Maximum number of chunks read ahead, zero to disable the read-ahead
+         * @return this Builder instance that can be used for method chaining
+         */
+        public Builder setChunkSigningReadAhead(int chunkSigningReadAhead) {
+            if (chunkSigningReadAhead < 0) {
+                throw new IllegalArgumentException("chunkSigningReadAhead should not be negative");
+            }
+            this.chunkSigningReadAhead = chunkSigningReadAhead;
+            return this;
+        }
     }
 
     /**
@@ -176,6 +212,7 @@ public class S3ClientOptions {
         this.accelerateModeEnabled = DEFAULT_ACCELERATE_MODE_ENABLED;
         this.payloadSigningEnabled = DEFAULT_PAYLOAD_SIGNING_ENABLED;
         this.dualstackEnabled = DEFAULT_DUALSTACK_ENABLED;
+        this.chunkSigningReadAhead = DEFAULT_CHUNK_SIGNING_READ_AHEAD;
     }
 
     /**
@@ -189,15 +226,17 @@ public class S3ClientOptions {
         this.accelerateModeEnabled = other.accelerateModeEnabled;
         this.payloadSigningEnabled = other.payloadSigningEnabled;
         this.dualstackEnabled = other.dualstackEnabled;
+        this.chunkSigningReadAhead = other.chunkSigningReadAhead;
     }
 
     private S3ClientOptions(boolean pathStyleAccess, boolean chunkedEncodingDisabled, boolean accelerateModeEnabled,
-                            boolean payloadSigningEnabled, boolean dualstackEnabled) {
+                            boolean payloadSigningEnabled, boolean dualstackEnabled, int chunkSigningReadAhead) {
         this.pathStyleAccess = pathStyleAccess;
         this.chunkedEncodingDisabled = chunkedEncodingDisabled;
         this.accelerateModeEnabled = accelerateModeEnabled;
         this.payloadSigningEnabled = payloadSigningEnabled;
         this.dualstackEnabled = dualstackEnabled;
+        this.chunkSigningReadAhead = chunkSigningReadAhead;
     }
 
     /**
@@ -294,6 +333,18 @@ public class S3ClientOptions {
         return dualstackEnabled;
     }
 
+    /**
+     * <p>
+     * Returns the number of chunks that may be read ahead of the HTTP client when uploading with
+     * chunked encoding, so that their payload is hashed concurrently.
+     * </p>
+     *
+     * @return The maximum number of chunks read ahead, zero if chunks are hashed and signed serially
+     */
+    public int getChunkSigningReadAhead() {
+        return chunkSigningReadAhead;
+    }
+
     /**
      * @deprecated Use {@link S3ClientOptions#builder()} to build new
      *             S3ClientOptions instead.
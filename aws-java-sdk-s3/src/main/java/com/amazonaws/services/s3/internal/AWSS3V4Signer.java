@@ -61,7 +61,8 @@ public class AWSS3V4Signer extends AWS4Signer {
                     request.getContent(), signingKey,
                     signerRequestParams.getFormattedSigningDateTime(),
                     signerRequestParams.getScope(),
-                    BinaryUtils.toHex(signature), this);
+                    BinaryUtils.toHex(signature), this,
+                    getChunkSigningReadAhead(request));
             request.setContent(chunkEncodededStream);
         }
     }
@@ -152,6 +153,19 @@ public class AWSS3V4Signer extends AWS4Signer {
         return false;
     }
 
+    /**
+     * @return The number of chunks that may be read ahead and hashed concurrently, zero if none.
+     */
+    private int getChunkSigningReadAhead(SignableRequest<?> signableRequest) {
+        if (signableRequest instanceof Request) {
+            Request<?> request = (Request<?>) signableRequest;
+            Integer readAhead = request
+                    .getHandlerContext(S3HandlerContextKeys.CHUNK_SIGNING_READ_AHEAD);
+            return readAhead == null ? 0 : readAhead;
+        }
+        return 0;
+    }
+
     /**
      * @return True if payload signing is explicitly enabled.
      */
@@ -31,6 +31,10 @@ import java.io.OutputStream;
 import java.net.MalformedURLException;
 import java.net.SocketException;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
@@ -49,6 +53,7 @@ import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
 import com.amazonaws.services.s3.transfer.exception.FileLockException;
 import com.amazonaws.util.BinaryUtils;
 import com.amazonaws.util.DateUtils;
@@ -432,6 +437,164 @@ public class ServiceUtils {
         return s3Object;
     }
 
+    /**
+     * Writes the content of the given S3 object into the file channel,
+     * starting at the given position. The position of the channel itself is
+     * not changed, so multiple threads may write disjoint regions of the same
+     * channel concurrently.
+     *
+     * @param s3Object
+     *                 The S3 object whose content is to be written.
+     * @param channel
+     *                 The channel of the destination file.
+     * @param position
+     *                 The offset in the destination file of the first byte of
+     *                 the content.
+     * @return The number of bytes written.
+     */
+    public static long downloadToFileChannel(S3Object s3Object, FileChannel channel, long position) {
+        return copyToChannel(s3Object, new PositionedFileChannel(channel, position), "disk");
+    }
+
+    /**
+     * Writes the content of the given S3 object into the buffer, starting at
+     * its position, and advances the position past the content. A buffer
+     * backed by an array is read into directly, without an intermediate copy.
+     * The content is read to its end, so that an MD5 check of the stream of
+     * the object is performed as it is read.
+     *
+     * @param s3Object
+     *                 The S3 object whose content is to be written.
+     * @param destination
+     *                 The buffer to write the content into.
+     * @return The number of bytes written.
+     * @throws AmazonClientException
+     *                 If the content doesn't fit into the remaining space of
+     *                 the buffer, in which case the content of the buffer
+     *                 past its original position is undefined.
+     */
+    public static long downloadToByteBuffer(S3Object s3Object, ByteBuffer destination) {
+        final S3ObjectInputStream content = s3Object.getObjectContent();
+        final int start = destination.position();
+        try {
+            if (destination.hasArray()) {
+                byte[] array = destination.array();
+                int bytesRead;
+                while (destination.hasRemaining()
+                        && (bytesRead = content.read(array,
+                                destination.arrayOffset() + destination.position(),
+                                destination.remaining())) > -1) {
+                    destination.position(destination.position() + bytesRead);
+                }
+            } else {
+                byte[] buffer = new byte[Math.min(128 * KB, Math.max(destination.remaining(), 1))];
+                int bytesRead;
+                while (destination.hasRemaining()
+                        && (bytesRead = content.read(buffer, 0,
+                                Math.min(buffer.length, destination.remaining()))) > -1) {
+                    destination.put(buffer, 0, bytesRead);
+                }
+            }
+            if (!destination.hasRemaining() && content.read() != -1) {
+                content.abort();
+                throw new AmazonClientException(
+                        "Unable to store object contents in the buffer: the object is larger than the "
+                                + (destination.position() - start) + " bytes remaining in the buffer");
+            }
+        } catch (IOException e) {
+            content.abort();
+            throw new AmazonClientException(
+                    "Unable to store object contents in the buffer: " + e.getMessage(), e);
+        } finally {
+            closeQuietly(content, LOG);
+        }
+        return destination.position() - start;
+    }
+
+    /**
+     * Writes the content of the given S3 object into the channel. The content
+     * is read to its end, so that an MD5 check of the stream of the object is
+     * performed as it is read.
+     *
+     * @param s3Object
+     *                 The S3 object whose content is to be written.
+     * @param channel
+     *                 The channel to write the content into.
+     * @return The number of bytes written.
+     */
+    public static long downloadToChannel(S3Object s3Object, WritableByteChannel channel) {
+        return copyToChannel(s3Object, channel, "the channel");
+    }
+
+    /**
+     * Copies the content of the given S3 object into the channel, aborting
+     * the content stream if the channel fails or is closed, and closing it
+     * once done.
+     *
+     * @param destination
+     *                 Description of the channel for the error message.
+     */
+    private static long copyToChannel(S3Object s3Object, WritableByteChannel channel,
+            String destination) {
+        final S3ObjectInputStream content = s3Object.getObjectContent();
+        long bytesWritten = 0;
+        try {
+            byte[] buffer = new byte[128 * KB];
+            ByteBuffer byteBuffer = ByteBuffer.wrap(buffer);
+            int bytesRead;
+            while ((bytesRead = content.read(buffer)) > -1) {
+                // Not every channel checks it is open on write, e.g. those
+                // of Channels.newChannel(OutputStream) before Java 9
+                if (!channel.isOpen()) {
+                    throw new ClosedChannelException();
+                }
+                byteBuffer.clear();
+                byteBuffer.limit(bytesRead);
+                while (byteBuffer.hasRemaining()) {
+                    bytesWritten += channel.write(byteBuffer);
+                }
+            }
+        } catch (IOException e) {
+            content.abort();
+            throw new AmazonClientException(
+                    "Unable to store object contents to " + destination + ": " + e.getMessage(), e);
+        } finally {
+            closeQuietly(content, LOG);
+        }
+        return bytesWritten;
+    }
+
+    /**
+     * Writes to a file channel at an absolute position, which it advances
+     * itself, leaving the position of the file channel unchanged.
+     */
+    private static final class PositionedFileChannel implements WritableByteChannel {
+        private final FileChannel channel;
+        private long position;
+
+        PositionedFileChannel(FileChannel channel, long position) {
+            this.channel = channel;
+            this.position = position;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int written = channel.write(src, position);
+            position += written;
+            return written;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
     /**
      * Append the data in sourceFile to destinationFile.
      *
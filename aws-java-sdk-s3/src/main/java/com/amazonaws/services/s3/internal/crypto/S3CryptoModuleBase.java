@@ -84,6 +84,7 @@ import com.amazonaws.services.s3.model.S3ObjectId;
 import com.amazonaws.services.s3.model.UploadObjectRequest;
 import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.amazonaws.services.s3.model.UploadPartResult;
+import com.amazonaws.util.ByteBufferInputStream;
 import com.amazonaws.util.IOUtils;
 import com.amazonaws.util.LengthCheckInputStream;
 import com.amazonaws.util.json.Jackson;
@@ -686,6 +687,8 @@ public abstract class S3CryptoModuleBase<T extends MultipartUploadCryptoContext>
         } else if (request.getInputStream() != null
                 && metadata.getRawMetadataValue(Headers.CONTENT_LENGTH) != null) {
             return metadata.getContentLength();
+        } else if (request.getInputStream() instanceof ByteBufferInputStream) {
+            return ((ByteBufferInputStream) request.getInputStream()).available();
         }
         return -1;
     }
@@ -0,0 +1,682 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.iterable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+/**
+ * Provides a way to iterate over a large number of Amazon S3 objects in a
+ * "foreach" statement while listing several partitions of the keyspace
+ * concurrently. For example:
+ *
+ * <pre class="brush: java">
+ * ExecutorService executor = Executors.newFixedThreadPool(16);
+ * for ( S3ObjectSummary summary : ParallelS3Objects.inBucket(s3, &quot;my-bucket&quot;, executor)
+ *                                                   .withPartitionDepth(2)
+ *                                                   .withMaxConcurrency(16) ) {
+ *     System.out.printf(&quot;Object with key '%s'\n&quot;, summary.getKey());
+ * }
+ * </pre>
+ * <p>
+ * The keyspace is partitioned in one of two ways:
+ * <ul>
+ * <li>By prefix discovery (the default): the first
+ * {@link #withPartitionDepth(int) partition depth} levels of the key hierarchy
+ * are listed with a delimiter, and every common prefix found becomes a
+ * partition of its own which is listed concurrently with the others.</li>
+ * <li>By {@link #withPartitionBoundaries(String...) boundary keys}: each
+ * range between two consecutive boundaries is listed concurrently, starting
+ * after the lower boundary.</li>
+ * </ul>
+ * Each partition is listed a page at a time on the given executor, with at
+ * most {@link #withMaxConcurrency(int) max concurrency} requests in flight.
+ * Listing stops running ahead of the iterator once
+ * {@link #withMaxBufferedSummaries(int) max buffered summaries} are waiting
+ * to be consumed, so the listing tasks never block a thread of the executor.
+ * <p>
+ * With {@link Ordering#KEY_ORDER} the summaries are returned in the same
+ * order as {@link S3Objects} would return them. With {@link Ordering#UNORDERED}
+ * they are returned as soon as any partition has listed them, which keeps
+ * every partition busy regardless of where the iterator is.
+ * <p>
+ * The executor should run the tasks on threads other than the one iterating.
+ * Iterators are not thread safe. If a request fails, the exception is thrown
+ * by the next call to the iterator and no more requests are started.
+ */
+public class ParallelS3Objects implements Iterable<S3ObjectSummary> {
+
+    /**
+     * The order in which the object summaries are returned.
+     */
+    public static enum Ordering {
+        /** In ascending key order, as returned by Amazon S3. */
+        KEY_ORDER,
+        /** In ascending key order within a partition, but in no particular order across them. */
+        UNORDERED
+    }
+
+    public static final String DEFAULT_DELIMITER = "/";
+    public static final int DEFAULT_PARTITION_DEPTH = 1;
+    public static final int DEFAULT_MAX_CONCURRENCY = 8;
+    public static final int DEFAULT_MAX_BUFFERED_SUMMARIES = 10000;
+
+    /** Orders keys the way Amazon S3 does, by the UTF-8 bytes of the key */
+    private static final Comparator<String> KEY_COMPARATOR = new Comparator<String>() {
+        @Override
+        public int compare(String a, String b) {
+            int i = 0;
+            int j = 0;
+            while (i < a.length() && j < b.length()) {
+                final int ca = a.codePointAt(i);
+                final int cb = b.codePointAt(j);
+                if (ca != cb) {
+                    return ca < cb ? -1 : 1;
+                }
+                i += Character.charCount(ca);
+                j += Character.charCount(cb);
+            }
+            return (a.length() - i) - (b.length() - j);
+        }
+    };
+
+    /**
+     * Orders partitions by the next key they can return, so that pages are
+     * listed ahead in the order the iterator consumes them. A child partition
+     * comes before its parent resuming right after the child's prefix.
+     */
+    private static final Comparator<Partition> PARTITION_COMPARATOR = new Comparator<Partition>() {
+        @Override
+        public int compare(Partition a, Partition b) {
+            int result = KEY_COMPARATOR.compare(a.position(), b.position());
+            if (result == 0) {
+                result = a.depth - b.depth;
+            }
+            if (result == 0) {
+                result = a.id < b.id ? -1 : (a.id == b.id ? 0 : 1);
+            }
+            return result;
+        }
+    };
+
+    private final AmazonS3 s3;
+    private final String bucketName;
+    private final Executor executor;
+    private String prefix = null;
+    private Integer batchSize = null;
+    private String delimiter = DEFAULT_DELIMITER;
+    private int partitionDepth = DEFAULT_PARTITION_DEPTH;
+    private List<String> partitionBoundaries = Collections.emptyList();
+    private Ordering ordering = Ordering.KEY_ORDER;
+    private int maxConcurrency = DEFAULT_MAX_CONCURRENCY;
+    private int maxBufferedSummaries = DEFAULT_MAX_BUFFERED_SUMMARIES;
+
+    private ParallelS3Objects(AmazonS3 s3, String bucketName, Executor executor) {
+        if (executor == null) {
+            throw new IllegalArgumentException("executor must not be null");
+        }
+        this.s3 = s3;
+        this.bucketName = bucketName;
+        this.executor = executor;
+    }
+
+    /**
+     * Constructs an iterable that covers all the objects in an Amazon S3
+     * bucket.
+     *
+     * @param s3
+     *            The Amazon S3 client.
+     * @param bucketName
+     *            The bucket name.
+     * @param executor
+     *            The executor running the list requests.
+     * @return An iterator for object summaries.
+     */
+    public static ParallelS3Objects inBucket(AmazonS3 s3, String bucketName, Executor executor) {
+        return new ParallelS3Objects(s3, bucketName, executor);
+    }
+
+    /**
+     * Constructs an iterable that covers the objects in an Amazon S3 bucket
+     * where the key begins with the given prefix.
+     *
+     * @param s3
+     *            The Amazon S3 client.
+     * @param bucketName
+     *            The bucket name.
+     * @param prefix
+     *            The prefix.
+     * @param executor
+     *            The executor running the list requests.
+     * @return An iterator for object summaries.
+     */
+    public static ParallelS3Objects withPrefix(AmazonS3 s3, String bucketName, String prefix,
+                                               Executor executor) {
+        ParallelS3Objects objects = new ParallelS3Objects(s3, bucketName, executor);
+        objects.prefix = prefix;
+        return objects;
+    }
+
+    /**
+     * Sets the batch size, i.e., how many {@link S3ObjectSummary}s will be
+     * fetched at once by each list request.
+     *
+     * @param batchSize
+     *            How many object summaries to fetch at once.
+     */
+    public ParallelS3Objects withBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+        return this;
+    }
+
+    /**
+     * Sets the delimiter used to discover the prefixes partitioning the
+     * keyspace, "/" by default.
+     *
+     * @param delimiter
+     *            The delimiter of the key hierarchy.
+     */
+    public ParallelS3Objects withDelimiter(String delimiter) {
+        if (delimiter == null || delimiter.length() == 0) {
+            throw new IllegalArgumentException("delimiter must not be empty");
+        }
+        this.delimiter = delimiter;
+        return this;
+    }
+
+    /**
+     * Sets how many levels of the key hierarchy are listed with a delimiter to
+     * discover partitions, 1 by default. Zero lists the whole keyspace as a
+     * single partition.
+     *
+     * @param partitionDepth
+     *            The number of levels of prefixes to discover.
+     */
+    public ParallelS3Objects withPartitionDepth(int partitionDepth) {
+        if (partitionDepth < 0) {
+            throw new IllegalArgumentException("partitionDepth must not be negative");
+        }
+        this.partitionDepth = partitionDepth;
+        return this;
+    }
+
+    /**
+     * Partitions the keyspace into the ranges between the given keys instead
+     * of discovering prefixes, for buckets whose keys do not form a hierarchy.
+     * Each range starts after its lower boundary and includes its upper
+     * boundary.
+     *
+     * @param boundaries
+     *            The keys splitting the keyspace, in any order.
+     */
+    public ParallelS3Objects withPartitionBoundaries(String... boundaries) {
+        List<String> sorted = new ArrayList<String>(Arrays.asList(boundaries));
+        Collections.sort(sorted, KEY_COMPARATOR);
+        for (int i = sorted.size() - 1; i > 0; i--) {
+            if (sorted.get(i).equals(sorted.get(i - 1))) {
+                sorted.remove(i);
+            }
+        }
+        this.partitionBoundaries = Collections.unmodifiableList(sorted);
+        return this;
+    }
+
+    /**
+     * Sets the order in which the summaries are returned,
+     * {@link Ordering#KEY_ORDER} by default.
+     *
+     * @param ordering
+     *            The order of the summaries.
+     */
+    public ParallelS3Objects withOrdering(Ordering ordering) {
+        if (ordering == null) {
+            throw new IllegalArgumentException("ordering must not be null");
+        }
+        this.ordering = ordering;
+        return this;
+    }
+
+    /**
+     * Sets the maximum number of list requests in flight at once for a single
+     * iterator.
+     *
+     * @param maxConcurrency
+     *            The maximum number of concurrent list requests.
+     */
+    public ParallelS3Objects withMaxConcurrency(int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive");
+        }
+        this.maxConcurrency = maxConcurrency;
+        return this;
+    }
+
+    /**
+     * Sets the number of listed summaries waiting to be consumed above which
+     * no more pages are listed ahead of the iterator. As a page is listed as a
+     * whole, up to one extra page per concurrent request may be buffered.
+     *
+     * @param maxBufferedSummaries
+     *            The soft limit of summaries buffered by an iterator.
+     */
+    public ParallelS3Objects withMaxBufferedSummaries(int maxBufferedSummaries) {
+        if (maxBufferedSummaries < 1) {
+            throw new IllegalArgumentException("maxBufferedSummaries must be positive");
+        }
+        this.maxBufferedSummaries = maxBufferedSummaries;
+        return this;
+    }
+
+    public Integer getBatchSize() {
+        return batchSize;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    public String getBucketName() {
+        return bucketName;
+    }
+
+    public AmazonS3 getS3() {
+        return s3;
+    }
+
+    public String getDelimiter() {
+        return delimiter;
+    }
+
+    public int getPartitionDepth() {
+        return partitionDepth;
+    }
+
+    public List<String> getPartitionBoundaries() {
+        return partitionBoundaries;
+    }
+
+    public Ordering getOrdering() {
+        return ordering;
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    public int getMaxBufferedSummaries() {
+        return maxBufferedSummaries;
+    }
+
+    @Override
+    public Iterator<S3ObjectSummary> iterator() {
+        return new ParallelObjectIterator();
+    }
+
+    /**
+     * A part of the keyspace listed one page at a time. All fields except the
+     * immutable ones are guarded by the lock of the iterator.
+     */
+    private static class Partition {
+        /** Unique within an iterator, only used to order partitions */
+        private final long id;
+        private final String prefix;
+        /** Levels of prefixes still to discover, listed without delimiter once zero */
+        private final int depth;
+        /** Inclusive upper bound of a range partition, null if unbounded */
+        private final String upperBound;
+        private String marker;
+
+        /**
+         * Summaries and child partitions in key order, only used for
+         * {@link Ordering#KEY_ORDER}.
+         */
+        private final LinkedList<Object> items = new LinkedList<Object>();
+        private boolean fetching;
+        private boolean exhausted;
+
+        private Partition(long id, String prefix, int depth, String marker, String upperBound) {
+            this.id = id;
+            this.prefix = prefix;
+            this.depth = depth;
+            this.marker = marker;
+            this.upperBound = upperBound;
+        }
+
+        /**
+         * @return A key no greater than the next key this partition can
+         *         return.
+         */
+        private String position() {
+            if (marker != null) {
+                return marker;
+            }
+            return prefix == null ? "" : prefix;
+        }
+    }
+
+    private class ParallelObjectIterator implements Iterator<S3ObjectSummary> {
+
+        private final Object lock = new Object();
+
+        /** Partitions with pages left to list, in key order */
+        private final TreeSet<Partition> active = new TreeSet<Partition>(PARTITION_COMPARATOR);
+
+        /** Path from the root to the partition being read, for KEY_ORDER */
+        private final LinkedList<Partition> path = new LinkedList<Partition>();
+
+        /** Summaries ready to be returned, for UNORDERED */
+        private final LinkedList<S3ObjectSummary> ready = new LinkedList<S3ObjectSummary>();
+
+        /** Partition whose next page the iterator is waiting for, if any */
+        private Partition demanded;
+        private int inFlight;
+        private int buffered;
+        private RuntimeException failure;
+        private S3ObjectSummary next;
+        private long partitionCount;
+
+        private ParallelObjectIterator() {
+            final Partition root;
+            if (partitionBoundaries.isEmpty()) {
+                root = newPartition(prefix, partitionDepth, null, null);
+                active.add(root);
+            } else {
+                root = newPartition(prefix, 0, null, null);
+                root.exhausted = true;
+                String lowerBound = null;
+                for (String boundary : partitionBoundaries) {
+                    addRange(root, lowerBound, boundary);
+                    lowerBound = boundary;
+                }
+                addRange(root, lowerBound, null);
+            }
+            path.add(root);
+            final List<Partition> toSubmit;
+            synchronized (lock) {
+                toSubmit = schedule();
+            }
+            submitAll(toSubmit);
+        }
+
+        private void addRange(Partition root, String lowerBound, String upperBound) {
+            Partition range = newPartition(prefix, 0, lowerBound, upperBound);
+            root.items.add(range);
+            active.add(range);
+        }
+
+        private Partition newPartition(String prefix, int depth, String marker, String upperBound) {
+            return new Partition(partitionCount++, prefix, depth, marker, upperBound);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null) {
+                next = take();
+            }
+            return next != null;
+        }
+
+        @Override
+        public S3ObjectSummary next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            S3ObjectSummary summary = next;
+            next = null;
+            return summary;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        /**
+         * Returns the next summary, waiting for it to be listed if needed, or
+         * null once all partitions have been listed.
+         */
+        private S3ObjectSummary take() {
+            while (true) {
+                final S3ObjectSummary summary;
+                final List<Partition> toSubmit;
+                synchronized (lock) {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    summary = ordering == Ordering.KEY_ORDER
+                            ? takeInKeyOrder()
+                            : ready.poll();
+                    if (summary != null) {
+                        buffered--;
+                    } else if (ordering == Ordering.KEY_ORDER ? path.isEmpty()
+                            : active.isEmpty() && inFlight == 0) {
+                        return null;
+                    }
+                    toSubmit = schedule();
+                    if (summary == null && toSubmit == null) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            throw new AbortedException("Interrupted while waiting for a listing", e);
+                        }
+                        continue;
+                    }
+                }
+                submitAll(toSubmit);
+                if (summary != null) {
+                    return summary;
+                }
+            }
+        }
+
+        /**
+         * Walks the partition tree depth first, returning null and setting the
+         * demanded partition when the next page has not been listed yet.
+         */
+        private S3ObjectSummary takeInKeyOrder() {
+            demanded = null;
+            while (!path.isEmpty()) {
+                final Partition current = path.getLast();
+                if (current.items.isEmpty()) {
+                    if (!current.exhausted) {
+                        demanded = current;
+                        return null;
+                    }
+                    path.removeLast();
+                    continue;
+                }
+                final Object item = current.items.removeFirst();
+                if (item instanceof Partition) {
+                    path.add((Partition) item);
+                } else {
+                    return (S3ObjectSummary) item;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * Marks the next page of as many partitions as the concurrency and
+         * buffering limits allow as being listed, the demanded one first. Must
+         * be called with the lock held.
+         *
+         * @return The partitions to {@link #submitAll(List) submit} once the
+         *         lock is released; or null if there are none.
+         */
+        private List<Partition> schedule() {
+            if (failure != null) {
+                return null;
+            }
+            List<Partition> toSubmit = null;
+            if (demanded != null && !demanded.fetching && !demanded.exhausted
+                    && inFlight < maxConcurrency) {
+                toSubmit = startFetching(toSubmit, demanded);
+            }
+            for (Partition partition : active) {
+                if (inFlight >= maxConcurrency || buffered >= maxBufferedSummaries) {
+                    break;
+                }
+                if (!partition.fetching) {
+                    toSubmit = startFetching(toSubmit, partition);
+                }
+            }
+            return toSubmit;
+        }
+
+        private List<Partition> startFetching(List<Partition> toSubmit, Partition partition) {
+            partition.fetching = true;
+            inFlight++;
+            if (toSubmit == null) {
+                toSubmit = new ArrayList<Partition>(maxConcurrency);
+            }
+            toSubmit.add(partition);
+            return toSubmit;
+        }
+
+        /**
+         * Submits the listing of the given partitions to the executor. Must be
+         * called without the lock held, as the executor may run the tasks in
+         * the calling thread.
+         */
+        private void submitAll(List<Partition> toSubmit) {
+            if (toSubmit == null) {
+                return;
+            }
+            for (Partition partition : toSubmit) {
+                submit(partition);
+            }
+        }
+
+        private void submit(final Partition partition) {
+            try {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        fetch(partition);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                fail(partition, new AmazonClientException("Unable to submit a list request", e));
+            }
+        }
+
+        /**
+         * Lists the next page of the partition, outside of the lock.
+         */
+        private void fetch(Partition partition) {
+            final ObjectListing listing;
+            try {
+                ListObjectsRequest request = new ListObjectsRequest()
+                        .withBucketName(bucketName)
+                        .withPrefix(partition.prefix)
+                        .withMarker(partition.marker)
+                        .withMaxKeys(batchSize);
+                if (partition.depth > 0) {
+                    request.setDelimiter(delimiter);
+                }
+                listing = s3.listObjects(request);
+            } catch (RuntimeException e) {
+                fail(partition, e);
+                return;
+            } catch (Error e) {
+                fail(partition, new AmazonClientException("Unable to list objects", e));
+                throw e;
+            }
+            final List<Partition> toSubmit;
+            synchronized (lock) {
+                partition.fetching = false;
+                inFlight--;
+                addPage(partition, listing);
+                toSubmit = schedule();
+                lock.notifyAll();
+            }
+            submitAll(toSubmit);
+        }
+
+        private void fail(Partition partition, RuntimeException e) {
+            synchronized (lock) {
+                partition.fetching = false;
+                inFlight--;
+                if (failure == null) {
+                    failure = e;
+                }
+                lock.notifyAll();
+            }
+        }
+
+        /**
+         * Merges the summaries and common prefixes of a page, which are each
+         * sorted, so that the child partitions take the place of their keys.
+         */
+        private void addPage(Partition partition, ObjectListing listing) {
+            final Iterator<S3ObjectSummary> summaries = listing.getObjectSummaries().iterator();
+            final Iterator<String> prefixes = listing.getCommonPrefixes().iterator();
+            S3ObjectSummary summary = summaries.hasNext() ? summaries.next() : null;
+            String commonPrefix = prefixes.hasNext() ? prefixes.next() : null;
+            boolean pastUpperBound = false;
+
+            while (summary != null || commonPrefix != null) {
+                if (commonPrefix == null
+                        || summary != null && KEY_COMPARATOR.compare(summary.getKey(), commonPrefix) < 0) {
+                    if (partition.upperBound != null
+                            && KEY_COMPARATOR.compare(summary.getKey(), partition.upperBound) > 0) {
+                        pastUpperBound = true;
+                        break;
+                    }
+                    if (ordering == Ordering.KEY_ORDER) {
+                        partition.items.add(summary);
+                    } else {
+                        ready.add(summary);
+                    }
+                    buffered++;
+                    summary = summaries.hasNext() ? summaries.next() : null;
+                } else {
+                    Partition child = newPartition(commonPrefix, partition.depth - 1, null, null);
+                    if (ordering == Ordering.KEY_ORDER) {
+                        partition.items.add(child);
+                    }
+                    active.add(child);
+                    commonPrefix = prefixes.hasNext() ? prefixes.next() : null;
+                }
+            }
+
+            // Re-inserted as its position in the active partitions changes with the marker
+            active.remove(partition);
+            partition.marker = listing.getNextMarker();
+            if (pastUpperBound || !listing.isTruncated() || partition.marker == null) {
+                partition.exhausted = true;
+            } else {
+                active.add(partition);
+            }
+        }
+    }
+}
@@ -16,10 +16,12 @@ package com.amazonaws.services.s3.model;
 
 import com.amazonaws.AmazonWebServiceRequest;
 import com.amazonaws.event.ProgressListener;
+import com.amazonaws.util.ByteBufferInputStream;
 
 import java.io.File;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 /**
  * Abstract base class for a put object or put object like request.
@@ -688,6 +690,43 @@ public abstract class AbstractPutObjectRequest extends AmazonWebServiceRequest i
         return t;
     }
 
+    /**
+     * Sets the data to be uploaded to Amazon S3 to the remaining content of
+     * the given buffer, which may be a direct buffer. The buffer itself is
+     * never modified, so the upload can be retried and signed without
+     * buffering or copying the data, and the content length defaults to the
+     * number of bytes remaining in the buffer. The input stream of this
+     * request is set to a {@link ByteBufferInputStream} over the buffer.
+     *
+     * @param content
+     *            The buffer containing the data to be uploaded to Amazon S3.
+     *
+     * @see AbstractPutObjectRequest#setInputStream(InputStream)
+     */
+    public void setByteBuffer(ByteBuffer content) {
+        setInputStream(content == null ? null : new ByteBufferInputStream(content));
+    }
+
+    /**
+     * Sets the data to be uploaded to Amazon S3 to the remaining content of
+     * the given buffer, and returns this {@link AbstractPutObjectRequest},
+     * enabling additional method calls to be chained together.
+     *
+     * @param content
+     *            The buffer containing the data to be uploaded to Amazon S3.
+     *
+     * @return This PutObjectRequest, so that additional method calls can be
+     *         chained together.
+     *
+     * @see AbstractPutObjectRequest#setByteBuffer(ByteBuffer)
+     */
+    public <T extends AbstractPutObjectRequest> T withByteBuffer(
+            ByteBuffer content) {
+        setByteBuffer(content);
+        @SuppressWarnings("unchecked") T t = (T)this;
+        return t;
+    }
+
     /**
      * Sets the optional redirect location for the new object.
      *
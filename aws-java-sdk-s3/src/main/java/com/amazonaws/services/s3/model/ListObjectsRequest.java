@@ -116,6 +116,12 @@ public class ListObjectsRequest extends AmazonWebServiceRequest implements Seria
      */
     private String encodingType;
 
+    /**
+     * Optional callback receiving the object summaries while the response is
+     * parsed, instead of collecting them into the listing.
+     */
+    private transient S3ObjectSummaryCallback objectSummaryCallback;
+
 
     /**
      * Constructs a new {@link ListObjectsRequest} object.
@@ -469,4 +475,49 @@ public class ListObjectsRequest extends AmazonWebServiceRequest implements Seria
         return this;
     }
 
+    /**
+     * Returns the optional callback receiving the object summaries of the
+     * listing while the response is parsed.
+     *
+     * @return The callback, or null if object summaries are collected into the
+     *         listing.
+     */
+    public S3ObjectSummaryCallback getObjectSummaryCallback() {
+        return objectSummaryCallback;
+    }
+
+    /**
+     * Sets an optional callback that receives each object summary of the
+     * listing as soon as it is parsed from the response. The summaries are
+     * then not collected into the returned listing, so that a page of results
+     * never has to be held in memory as a whole; the next marker of a
+     * truncated listing is still set.
+     *
+     * @param objectSummaryCallback
+     *            The callback receiving the object summaries, or null to
+     *            collect them into the listing.
+     */
+    public void setObjectSummaryCallback(S3ObjectSummaryCallback objectSummaryCallback) {
+        this.objectSummaryCallback = objectSummaryCallback;
+    }
+
+    /**
+     * Sets an optional callback that receives each object summary of the
+     * listing as soon as it is parsed from the response, instead of
+     * collecting them into the returned listing.
+     *
+     * @param objectSummaryCallback
+     *            The callback receiving the object summaries, or null to
+     *            collect them into the listing.
+     *
+     * @return This {@link ListObjectsRequest}, enabling additional method
+     *         calls to be chained together.
+     *
+     * @see #setObjectSummaryCallback(S3ObjectSummaryCallback)
+     */
+    public ListObjectsRequest withObjectSummaryCallback(S3ObjectSummaryCallback objectSummaryCallback) {
+        setObjectSummaryCallback(objectSummaryCallback);
+        return this;
+    }
+
 }
@@ -81,6 +81,12 @@ public class ListObjectsV2Request extends AmazonWebServiceRequest implements Ser
      */
     private String startAfter;
 
+    /**
+     * Optional callback receiving the object summaries while the response is
+     * parsed, instead of collecting them into the listing.
+     */
+    private transient S3ObjectSummaryCallback objectSummaryCallback;
+
     /**
      * Gets the name of the Amazon S3 bucket whose
      * objects are to be listed.
@@ -411,4 +417,49 @@ public class ListObjectsV2Request extends AmazonWebServiceRequest implements Ser
         setStartAfter(startAfter);
         return this;
     }
+
+    /**
+     * Returns the optional callback receiving the object summaries of the
+     * listing while the response is parsed.
+     *
+     * @return The callback, or null if object summaries are collected into the
+     *         listing.
+     */
+    public S3ObjectSummaryCallback getObjectSummaryCallback() {
+        return objectSummaryCallback;
+    }
+
+    /**
+     * Sets an optional callback that receives each object summary of the
+     * listing as soon as it is parsed from the response. The summaries are
+     * then not collected into the returned listing, so that a page of results
+     * never has to be held in memory as a whole; the next continuation
+     * token of a truncated listing is still set.
+     *
+     * @param objectSummaryCallback
+     *            The callback receiving the object summaries, or null to
+     *            collect them into the listing.
+     */
+    public void setObjectSummaryCallback(S3ObjectSummaryCallback objectSummaryCallback) {
+        this.objectSummaryCallback = objectSummaryCallback;
+    }
+
+    /**
+     * Sets an optional callback that receives each object summary of the
+     * listing as soon as it is parsed from the response, instead of
+     * collecting them into the returned listing.
+     *
+     * @param objectSummaryCallback
+     *            The callback receiving the object summaries, or null to
+     *            collect them into the listing.
+     *
+     * @return This {@link ListObjectsV2Request}, enabling additional method
+     *         calls to be chained together.
+     *
+     * @see #setObjectSummaryCallback(S3ObjectSummaryCallback)
+     */
+    public ListObjectsV2Request withObjectSummaryCallback(S3ObjectSummaryCallback objectSummaryCallback) {
+        setObjectSummaryCallback(objectSummaryCallback);
+        return this;
+    }
 }
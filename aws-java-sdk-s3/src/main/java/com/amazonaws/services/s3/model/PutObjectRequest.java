@@ -17,6 +17,9 @@ package com.amazonaws.services.s3.model;
 import java.io.File;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
+
+import com.amazonaws.util.ByteBufferInputStream;
 
 /**
  * <p>
@@ -161,6 +164,29 @@ public class PutObjectRequest extends AbstractPutObjectRequest implements Serial
         super(bucketName, key, input, metadata);
     }
 
+    /**
+     * Constructs a new
+     * {@link PutObjectRequest} object to upload the remaining content of a
+     * buffer, which may be a direct buffer, to the specified bucket and key.
+     * The buffer is never modified, so the upload can be retried and signed
+     * without buffering or copying the data. The content length defaults to
+     * the number of bytes remaining in the buffer.
+     *
+     * @param bucketName
+     *            The name of an existing bucket to which the new object will be
+     *            uploaded.
+     * @param key
+     *            The key under which to store the new object.
+     * @param content
+     *            The buffer containing the data to upload to Amazon S3.
+     * @param metadata
+     *            The object metadata, or null.
+     */
+    public PutObjectRequest(String bucketName, String key, ByteBuffer content,
+            ObjectMetadata metadata) {
+        super(bucketName, key, new ByteBufferInputStream(content), metadata);
+    }
+
     /**
      * Returns a clone (as deep as possible) of this request object.
      */
@@ -226,6 +252,12 @@ public class PutObjectRequest extends AbstractPutObjectRequest implements Serial
         return super.withInputStream(inputStream);
     }
 
+    @Override
+    @SuppressWarnings("unchecked")
+    public PutObjectRequest  withByteBuffer(ByteBuffer content) {
+        return super.withByteBuffer(content);
+    }
+
     @Override
     @SuppressWarnings("unchecked")
     public PutObjectRequest withRedirectLocation(String redirectLocation) {
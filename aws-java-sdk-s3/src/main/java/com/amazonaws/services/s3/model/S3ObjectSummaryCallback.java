@@ -0,0 +1,39 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.model;
+
+/**
+ * Receives the {@link S3ObjectSummary}s of an object listing one at a time,
+ * while the response from Amazon S3 is being parsed, so that a listing page
+ * never has to be held in memory as a whole.
+ * <p>
+ * The callback is invoked on the thread executing the list request. If
+ * reading a response fails part way and the request is retried, summaries of
+ * the failed attempt may be delivered again.
+ *
+ * @see ListObjectsRequest#setObjectSummaryCallback(S3ObjectSummaryCallback)
+ * @see ListObjectsV2Request#setObjectSummaryCallback(S3ObjectSummaryCallback)
+ */
+public interface S3ObjectSummaryCallback {
+
+    /**
+     * Called for each object summary of the listing, in the order returned by
+     * Amazon S3.
+     *
+     * @param objectSummary
+     *            The summary of the next object of the listing.
+     */
+    public void objectSummary(S3ObjectSummary objectSummary);
+}
@@ -17,9 +17,11 @@ package com.amazonaws.services.s3.model;
 import java.io.File;
 import java.io.InputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 
 import com.amazonaws.AmazonWebServiceRequest;
 import com.amazonaws.event.ProgressListener;
+import com.amazonaws.util.ByteBufferInputStream;
 
 /**
  * Contains the parameters used for the UploadPart operation on Amazon S3.
@@ -150,6 +152,43 @@ public class UploadPartRequest extends AmazonWebServiceRequest implements
         return this;
     }
 
+    /**
+     * Sets the data to upload for the new part to the remaining content of
+     * the given buffer, which may be a direct buffer, and sets the part size
+     * to the number of bytes remaining in it. The buffer itself is never
+     * modified, so the part can be retried and signed without buffering or
+     * copying the data. The input stream of this request is set to a
+     * {@link ByteBufferInputStream} over the buffer.
+     *
+     * @param content
+     *            the buffer containing the data to upload for the new part.
+     */
+    public void setByteBuffer(ByteBuffer content) {
+        if (content == null) {
+            setInputStream(null);
+        } else {
+            setInputStream(new ByteBufferInputStream(content));
+            setPartSize(content.remaining());
+        }
+    }
+
+    /**
+     * Sets the data to upload for the new part to the remaining content of
+     * the given buffer, and returns this updated object so that additional
+     * method calls can be chained together.
+     *
+     * @param content
+     *            the buffer containing the data to upload for the new part.
+     *
+     * @return The updated UploadPartRequest object.
+     *
+     * @see UploadPartRequest#setByteBuffer(ByteBuffer)
+     */
+    public UploadPartRequest withByteBuffer(ByteBuffer content) {
+        setByteBuffer(content);
+        return this;
+    }
+
     /**
      * Returns the name of the bucket containing the existing, initiated
      * multipart upload, with which this new part will be associated.
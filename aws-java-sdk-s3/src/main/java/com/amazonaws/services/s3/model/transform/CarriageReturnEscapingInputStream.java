@@ -0,0 +1,143 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.model.transform;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.amazonaws.internal.SdkFilterInputStream;
+
+/**
+ * Replaces every carriage return (\r) of a UTF-8 encoded XML document with
+ * an explicit XML character entity while it is being read, to prevent the SAX
+ * parser from misinterpreting 0x0D characters as 0x0A. As the 0x0D byte never
+ * occurs within a multi-byte UTF-8 sequence, the document is escaped without
+ * being decoded or buffered as a whole.
+ */
+class CarriageReturnEscapingInputStream extends SdkFilterInputStream {
+
+    private static final byte CARRIAGE_RETURN = '\r';
+    private static final byte[] ESCAPED_CARRIAGE_RETURN = {'&', '#', '0', '1', '3', ';'};
+    private static final int BUFFER_SIZE = 8192;
+
+    private final byte[] buffer = new byte[BUFFER_SIZE];
+    private int position;
+    private int limit;
+    /** Number of bytes of the current escape sequence not yet returned */
+    private int pendingEscape;
+
+    CarriageReturnEscapingInputStream(InputStream in) {
+        super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+        abortIfNeeded();
+        if (pendingEscape == 0 && position == limit && !fill()) {
+            return -1;
+        }
+        if (pendingEscape > 0) {
+            return ESCAPED_CARRIAGE_RETURN[ESCAPED_CARRIAGE_RETURN.length - pendingEscape--];
+        }
+        final byte b = buffer[position++];
+        if (b == CARRIAGE_RETURN) {
+            pendingEscape = ESCAPED_CARRIAGE_RETURN.length - 1;
+            return ESCAPED_CARRIAGE_RETURN[0];
+        }
+        return b & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        abortIfNeeded();
+        if (len == 0) {
+            return 0;
+        }
+        int written = 0;
+        while (written < len) {
+            if (pendingEscape > 0) {
+                final int count = Math.min(pendingEscape, len - written);
+                System.arraycopy(ESCAPED_CARRIAGE_RETURN,
+                        ESCAPED_CARRIAGE_RETURN.length - pendingEscape, b, off + written, count);
+                pendingEscape -= count;
+                written += count;
+                continue;
+            }
+            // Only block on the underlying stream if nothing could be returned yet
+            if (position == limit && (written > 0 || !fill())) {
+                break;
+            }
+            int end = position;
+            final int maxEnd = Math.min(limit, position + len - written);
+            while (end < maxEnd && buffer[end] != CARRIAGE_RETURN) {
+                end++;
+            }
+            System.arraycopy(buffer, position, b, off + written, end - position);
+            written += end - position;
+            position = end;
+            if (end < maxEnd) {
+                position++;
+                pendingEscape = ESCAPED_CARRIAGE_RETURN.length;
+            }
+        }
+        return written == 0 ? -1 : written;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        abortIfNeeded();
+        long skipped = 0;
+        while (skipped < n && read() != -1) {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    @Override
+    public int available() throws IOException {
+        abortIfNeeded();
+        return pendingEscape + (limit - position);
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    @Override
+    public synchronized void mark(int readlimit) {
+    }
+
+    @Override
+    public synchronized void reset() throws IOException {
+        throw new IOException("mark/reset not supported");
+    }
+
+    /**
+     * @return False if the end of the underlying stream was reached.
+     */
+    private boolean fill() throws IOException {
+        int read;
+        do {
+            read = in.read(buffer, 0, buffer.length);
+        } while (read == 0);
+        if (read < 0) {
+            return false;
+        }
+        position = 0;
+        limit = read;
+        return true;
+    }
+}
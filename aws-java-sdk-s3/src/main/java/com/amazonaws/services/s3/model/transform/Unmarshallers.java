@@ -58,14 +58,22 @@ public class Unmarshallers {
             Unmarshaller<ObjectListing, InputStream> {
 
         private final boolean shouldSDKDecodeResponse;
+        private final S3ObjectSummaryCallback objectSummaryCallback;
 
         public ListObjectsUnmarshaller(final boolean shouldSDKDecodeResponse) {
+            this(shouldSDKDecodeResponse, null);
+        }
+
+        public ListObjectsUnmarshaller(final boolean shouldSDKDecodeResponse,
+                final S3ObjectSummaryCallback objectSummaryCallback) {
             this.shouldSDKDecodeResponse = shouldSDKDecodeResponse;
+            this.objectSummaryCallback = objectSummaryCallback;
         }
 
         public ObjectListing unmarshall(InputStream in) throws Exception {
             return new XmlResponsesSaxParser()
-                    .parseListBucketObjectsResponse(in, shouldSDKDecodeResponse).getObjectListing();
+                    .parseListBucketObjectsResponse(in, shouldSDKDecodeResponse,
+                            objectSummaryCallback).getObjectListing();
         }
     }
 
@@ -76,14 +84,22 @@ public class Unmarshallers {
             Unmarshaller<ListObjectsV2Result, InputStream> {
 
         private final boolean shouldSDKDecodeResponse;
+        private final S3ObjectSummaryCallback objectSummaryCallback;
 
         public ListObjectsV2Unmarshaller(final boolean shouldSDKDecodeResponse) {
+            this(shouldSDKDecodeResponse, null);
+        }
+
+        public ListObjectsV2Unmarshaller(final boolean shouldSDKDecodeResponse,
+                final S3ObjectSummaryCallback objectSummaryCallback) {
             this.shouldSDKDecodeResponse = shouldSDKDecodeResponse;
+            this.objectSummaryCallback = objectSummaryCallback;
         }
 
         public ListObjectsV2Result unmarshall(InputStream in) throws Exception {
             return new XmlResponsesSaxParser()
-                    .parseListObjectsV2Response(in, shouldSDKDecodeResponse).getResult();
+                    .parseListObjectsV2Response(in, shouldSDKDecodeResponse,
+                            objectSummaryCallback).getResult();
         }
     }
 
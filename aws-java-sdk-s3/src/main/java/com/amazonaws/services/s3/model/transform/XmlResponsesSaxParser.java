@@ -19,10 +19,7 @@ package com.amazonaws.services.s3.model.transform;
 
 import com.amazonaws.services.s3.model.*;
 
-import static com.amazonaws.util.StringUtils.UTF8;
-
 import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -140,52 +137,13 @@ public class XmlResponsesSaxParser {
                 log.debug("Sanitizing XML document destined for handler " + handler.getClass());
             }
 
-            InputStream sanitizedInputStream = null;
-
-            try {
-
-                /*
-                 * Read object listing XML document from input stream provided into a
-                 * string buffer, so we can replace troublesome characters before
-                 * sending the document to the XML parser.
-                 */
-                StringBuilder listingDocBuffer = new StringBuilder();
-                BufferedReader br = new BufferedReader(
-                    new InputStreamReader(inputStream, Constants.DEFAULT_ENCODING));
-
-                char[] buf = new char[8192];
-                int read = -1;
-                while ((read = br.read(buf)) != -1) {
-                    listingDocBuffer.append(buf, 0, read);
-                }
-                br.close();
-
-                /*
-                 * Replace any carriage return (\r) characters with explicit XML
-                 * character entities, to prevent the SAX parser from
-                 * misinterpreting 0x0D characters as 0x0A and being unable to
-                 * parse the XML.
-                 */
-                String listingDoc = listingDocBuffer.toString().replaceAll("\r", "&#013;");
-
-                sanitizedInputStream = new ByteArrayInputStream(
-                    listingDoc.getBytes(UTF8));
-
-            } catch (IOException e) {
-                throw e;
-
-            } catch (Throwable t) {
-                try {
-                    inputStream.close();
-                } catch (IOException e) {
-                    if (log.isErrorEnabled()) {
-                        log.error("Unable to close response InputStream after failure sanitizing XML document", e);
-                    }
-                }
-                throw new AmazonClientException("Failed to sanitize XML document destined for handler "
-                    + handler.getClass(), t);
-            }
-            return sanitizedInputStream;
+            /*
+             * Replace any carriage return (\r) characters with explicit XML
+             * character entities while the document is streamed to the
+             * parser, to prevent the SAX parser from misinterpreting 0x0D
+             * characters as 0x0A and being unable to parse the XML.
+             */
+            return new CarriageReturnEscapingInputStream(inputStream);
         }
     }
 
@@ -266,7 +224,27 @@ public class XmlResponsesSaxParser {
      */
     public ListBucketHandler parseListBucketObjectsResponse(InputStream inputStream, final boolean shouldSDKDecodeResponse)
             throws IOException {
-        ListBucketHandler handler = new ListBucketHandler(shouldSDKDecodeResponse);
+        return parseListBucketObjectsResponse(inputStream, shouldSDKDecodeResponse, null);
+    }
+
+    /**
+     * Parses a ListBucket response XML document from an input stream, handing
+     * the object summaries to the specified callback as they are parsed.
+     *
+     * @param inputStream
+     *            XML data input stream.
+     * @param objectSummaryCallback
+     *            Callback receiving the object summaries instead of the
+     *            object listing, or null to collect them into the listing.
+     * @return the XML handler object populated with data parsed from the XML
+     *         stream.
+     * @throws AmazonClientException
+     */
+    public ListBucketHandler parseListBucketObjectsResponse(InputStream inputStream,
+            final boolean shouldSDKDecodeResponse, S3ObjectSummaryCallback objectSummaryCallback)
+            throws IOException {
+        ListBucketHandler handler = new ListBucketHandler(shouldSDKDecodeResponse,
+                objectSummaryCallback);
         parseXmlInputStream(handler, sanitizeXmlDocument(handler, inputStream));
 
         return handler;
@@ -283,7 +261,28 @@ public class XmlResponsesSaxParser {
      */
     public ListObjectsV2Handler parseListObjectsV2Response(InputStream inputStream, final boolean shouldSDKDecodeResponse)
             throws IOException {
-        ListObjectsV2Handler handler = new ListObjectsV2Handler(shouldSDKDecodeResponse);
+        return parseListObjectsV2Response(inputStream, shouldSDKDecodeResponse, null);
+    }
+
+    /**
+     * Parses a ListBucketV2 response XML document from an input stream,
+     * handing the object summaries to the specified callback as they are
+     * parsed.
+     *
+     * @param inputStream
+     *            XML data input stream.
+     * @param objectSummaryCallback
+     *            Callback receiving the object summaries instead of the
+     *            result, or null to collect them into the result.
+     * @return the XML handler object populated with data parsed from the XML
+     *         stream.
+     * @throws AmazonClientException
+     */
+    public ListObjectsV2Handler parseListObjectsV2Response(InputStream inputStream,
+            final boolean shouldSDKDecodeResponse, S3ObjectSummaryCallback objectSummaryCallback)
+            throws IOException {
+        ListObjectsV2Handler handler = new ListObjectsV2Handler(shouldSDKDecodeResponse,
+                objectSummaryCallback);
         parseXmlInputStream(handler, sanitizeXmlDocument(handler, inputStream));
 
         return handler;
@@ -483,12 +482,26 @@ public class XmlResponsesSaxParser {
         private final ObjectListing objectListing = new ObjectListing();
         private final boolean shouldSDKDecodeResponse;
 
+        private final S3ObjectSummaryCallback objectSummaryCallback;
+
         private S3ObjectSummary currentObject = null;
+        private S3ObjectSummary lastObject = null;
         private Owner currentOwner = null;
         private String lastKey = null;
 
         public ListBucketHandler(final boolean shouldSDKDecodeResponse) {
+            this(shouldSDKDecodeResponse, null);
+        }
+
+        /**
+         * @param objectSummaryCallback
+         *            Callback receiving the object summaries as they are
+         *            parsed instead of collecting them, may be null.
+         */
+        public ListBucketHandler(final boolean shouldSDKDecodeResponse,
+                final S3ObjectSummaryCallback objectSummaryCallback) {
             this.shouldSDKDecodeResponse = shouldSDKDecodeResponse;
+            this.objectSummaryCallback = objectSummaryCallback;
         }
 
         public ObjectListing getObjectListing() {
@@ -530,10 +543,8 @@ public class XmlResponsesSaxParser {
                         && objectListing.getNextMarker() == null) {
 
                         String nextMarker = null;
-                        if (!objectListing.getObjectSummaries().isEmpty()) {
-                            nextMarker = objectListing.getObjectSummaries()
-                                .get(objectListing.getObjectSummaries().size() - 1)
-                                .getKey();
+                        if (lastObject != null) {
+                            nextMarker = lastObject.getKey();
 
                         } else if (!objectListing.getCommonPrefixes().isEmpty()) {
                             nextMarker = objectListing.getCommonPrefixes()
@@ -594,7 +605,12 @@ public class XmlResponsesSaxParser {
                     }
 
                 } else if (name.equals("Contents")) {
-                    objectListing.getObjectSummaries().add(currentObject);
+                    if (objectSummaryCallback != null) {
+                        objectSummaryCallback.objectSummary(currentObject);
+                    } else {
+                        objectListing.getObjectSummaries().add(currentObject);
+                    }
+                    lastObject = currentObject;
                     currentObject = null;
                 }
             }
@@ -649,12 +665,26 @@ public class XmlResponsesSaxParser {
         private final ListObjectsV2Result result = new ListObjectsV2Result();
         private final boolean shouldSDKDecodeResponse;
 
+        private final S3ObjectSummaryCallback objectSummaryCallback;
+
         private S3ObjectSummary currentObject = null;
+        private S3ObjectSummary lastObject = null;
         private Owner currentOwner = null;
         private String lastKey = null;
 
         public ListObjectsV2Handler(final boolean shouldSDKDecodeResponse) {
+            this(shouldSDKDecodeResponse, null);
+        }
+
+        /**
+         * @param objectSummaryCallback
+         *            Callback receiving the object summaries as they are
+         *            parsed instead of collecting them, may be null.
+         */
+        public ListObjectsV2Handler(final boolean shouldSDKDecodeResponse,
+                final S3ObjectSummaryCallback objectSummaryCallback) {
             this.shouldSDKDecodeResponse = shouldSDKDecodeResponse;
+            this.objectSummaryCallback = objectSummaryCallback;
         }
 
         public ListObjectsV2Result getResult() {
@@ -696,10 +726,8 @@ public class XmlResponsesSaxParser {
                             && result.getNextContinuationToken() == null) {
 
                         String nextContinuationToken = null;
-                        if (!result.getObjectSummaries().isEmpty()) {
-                            nextContinuationToken = result.getObjectSummaries()
-                                    .get(result.getObjectSummaries().size() - 1)
-                                    .getKey();
+                        if (lastObject != null) {
+                            nextContinuationToken = lastObject.getKey();
 
                         } else {
                             log.error("S3 response indicates truncated results, "
@@ -760,7 +788,12 @@ public class XmlResponsesSaxParser {
                     }
 
                 } else if (name.equals("Contents")) {
-                    result.getObjectSummaries().add(currentObject);
+                    if (objectSummaryCallback != null) {
+                        objectSummaryCallback.objectSummary(currentObject);
+                    } else {
+                        result.getObjectSummaries().add(currentObject);
+                    }
+                    lastObject = currentObject;
                     currentObject = null;
                 }
             }
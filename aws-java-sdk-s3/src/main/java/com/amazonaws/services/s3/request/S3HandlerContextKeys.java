@@ -38,4 +38,12 @@ public class S3HandlerContextKeys {
     public static final HandlerContextKey<Boolean> IS_PAYLOAD_SIGNING_ENABLED = new HandlerContextKey<Boolean>(
             "IsPayloadSigningEnabled");
 
+    /**
+     * Context provided to {@link AWSS3V4Signer} to determine how many chunks may be read ahead and
+     * hashed concurrently when chunked encoding is used. Derived from the value set in {@link
+     * S3ClientOptions}
+     */
+    public static final HandlerContextKey<Integer> CHUNK_SIGNING_READ_AHEAD = new HandlerContextKey<Integer>(
+            "ChunkSigningReadAhead");
+
 }
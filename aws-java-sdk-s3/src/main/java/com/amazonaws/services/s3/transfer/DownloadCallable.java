@@ -15,13 +15,20 @@
 package com.amazonaws.services.s3.transfer;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.net.SocketException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.ExecutorService;
@@ -35,18 +42,23 @@ import org.apache.commons.logging.LogFactory;
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.annotation.SdkInternalApi;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Encryption;
 import com.amazonaws.services.s3.internal.FileLocks;
 import com.amazonaws.services.s3.internal.ServiceUtils;
 import com.amazonaws.services.s3.internal.ServiceUtils.RetryableS3DownloadTask;
+import com.amazonaws.services.s3.internal.SkipMd5CheckStrategy;
 import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.S3Object;
 import com.amazonaws.services.s3.transfer.Transfer.TransferState;
 import com.amazonaws.services.s3.transfer.exception.FileLockException;
 import com.amazonaws.services.s3.transfer.internal.AbstractTransfer;
+import com.amazonaws.services.s3.transfer.internal.AdaptiveTransferTuner;
 import com.amazonaws.services.s3.transfer.internal.DownloadImpl;
 import com.amazonaws.services.s3.transfer.internal.DownloadMonitor;
 import com.amazonaws.services.s3.transfer.internal.DownloadPartCallable;
+import com.amazonaws.util.BinaryUtils;
 import com.amazonaws.util.IOUtils;
+import com.amazonaws.util.Md5Utils;
 
 @SdkInternalApi
 final class DownloadCallable implements Callable<File> {
@@ -63,9 +75,29 @@ final class DownloadCallable implements Callable<File> {
     private final ScheduledExecutorService timedExecutor;
     /** The thread pool in which parts are downloaded downloaded. */
     private final ExecutorService executor;
-    private final List<Future<File>> futureFiles;
+    private final List<FutureTask<Integer>> futureParts;
+    /** The number of futureParts this thread has run, or found started by the thread pool. */
+    private int startedParts;
+    /** Guards runningParts, and is notified when a part stops running. */
+    private final Object partsLock = new Object();
+    /** The number of futureParts currently running, in any thread. */
+    private int runningParts;
     private final boolean isDownloadParallel;
     private Integer lastFullyMergedPartNumber;
+    /** The parts that have been written into dstfile, indexed by part number. */
+    private final BitSet completedParts;
+    /**
+     * The size of each byte range for a parallel download of an object that
+     * was not uploaded in parts, or null to download the parts of a multipart
+     * object.
+     */
+    private final Long rangedPartSize;
+    /** The maximum number of byte ranges of this download fetched at the same time. */
+    private final int maxRangedDownloadConcurrency;
+    /** Whether the file of a ranged download is checked against the MD5 of the object. */
+    private final boolean verifyRangedDownload;
+    /** Tunes the number of parts in flight if adaptive tuning is enabled, otherwise null. */
+    private final AdaptiveTransferTuner tuner;
     private final boolean resumeOnRetry;
 
     private long expectedFileLength;
@@ -76,7 +108,10 @@ final class DownloadCallable implements Callable<File> {
             long expectedFileLength, long timeout,
             ScheduledExecutorService timedExecutor,
             ExecutorService executor,
-            Integer lastFullyDownloadedPartNumber, boolean isDownloadParallel, boolean resumeOnRetry)
+            Integer lastFullyDownloadedPartNumber, int[][] completedPartRanges,
+            Long rangedPartSize, int maxRangedDownloadConcurrency, boolean verifyRangedDownload,
+            AdaptiveTransferTuner tuner,
+            boolean isDownloadParallel, boolean resumeOnRetry)
     {
         if (s3 == null || latch == null || req == null || dstfile == null || download == null)
             throw new IllegalArgumentException();
@@ -91,8 +126,13 @@ final class DownloadCallable implements Callable<File> {
         this.timeout = timeout;
         this.timedExecutor = timedExecutor;
         this.executor = executor;
-        this.futureFiles = new ArrayList<Future<File>>();
+        this.futureParts = new ArrayList<FutureTask<Integer>>();
         this.lastFullyMergedPartNumber = lastFullyDownloadedPartNumber;
+        this.completedParts = toPartSet(completedPartRanges);
+        this.rangedPartSize = rangedPartSize;
+        this.maxRangedDownloadConcurrency = Math.max(1, maxRangedDownloadConcurrency);
+        this.verifyRangedDownload = verifyRangedDownload;
+        this.tuner = tuner;
         this.isDownloadParallel = isDownloadParallel;
         this.resumeOnRetry = resumeOnRetry;
     }
@@ -127,7 +167,14 @@ final class DownloadCallable implements Callable<File> {
             download.setState(TransferState.InProgress);
             ServiceUtils.createParentDirectoryIfNecessary(dstfile);
 
-            if (isDownloadParallel) {
+            if (isDownloadParallel && rangedPartSize != null) {
+                long objectLength = download.getObjectMetadata().getContentLength();
+                downloadInParallel((int) ((objectLength + rangedPartSize - 1) / rangedPartSize));
+                if (verifyRangedDownload) {
+                    verifyRangedDownloadIntegrity();
+                }
+                download.setState(TransferState.Completed);
+            } else if (isDownloadParallel) {
                 downloadInParallel(ServiceUtils.getPartCount(req, s3));
                 download.setState(TransferState.Completed);
             } else {
@@ -138,7 +185,7 @@ final class DownloadCallable implements Callable<File> {
             return dstfile;
         } catch (Throwable t) {
             // Cancel all the futures
-            for (Future<File> f : futureFiles) {
+            for (Future<Integer> f : futureParts) {
                 f.cancel(true);
             }
             // Downloads aren't allowed to move from canceled to failed
@@ -167,82 +214,298 @@ final class DownloadCallable implements Callable<File> {
     }
 
     /**
-     * Downloads each part of the object into a seperate file synchronously and
-     * combines all the files into a single file.
+     * Downloads the parts of the object concurrently, each part being written
+     * at its own offset in the pre-sized destination file. Every completed part
+     * is recorded, in whatever order the parts finish, so that a paused
+     * download only fetches the missing parts when resumed.
+     * <p>
+     * A part is either a part of a multipart object, fetched by part number,
+     * or a byte range of {@link #rangedPartSize} bytes of any other object.
      */
     private void downloadInParallel(int partCount) throws Exception {
         if (lastFullyMergedPartNumber == null) {
             lastFullyMergedPartNumber = 0;
         }
+        if (lastFullyMergedPartNumber > 0) {
+            completedParts.set(1, lastFullyMergedPartNumber + 1);
+        }
 
-        for (int i = lastFullyMergedPartNumber + 1; i <= partCount; i++) {
-            GetObjectRequest getPartRequest = new GetObjectRequest(req.getBucketName(), req.getKey(),
-                    req.getVersionId()).withUnmodifiedSinceConstraint(req.getUnmodifiedSinceConstraint())
-                            .withModifiedSinceConstraint(req.getModifiedSinceConstraint())
-                            .withResponseHeaders(req.getResponseHeaders()).withSSECustomerKey(req.getSSECustomerKey())
-                            .withGeneralProgressListener(req.getGeneralProgressListener());
+        if (!FileLocks.lock(dstfile)) {
+            throw new FileLockException("Fail to lock " + dstfile);
+        }
+        RandomAccessFile raf = null;
+        boolean allPartsDone = false;
+        try {
+            raf = prepareDestinationFile();
+            updatePersistableTransfer();
 
-            getPartRequest.setMatchingETagConstraints(req.getMatchingETagConstraints());
-            getPartRequest.setNonmatchingETagConstraints(req.getNonmatchingETagConstraints());
-            getPartRequest.setRequesterPays(req.isRequesterPays());
+            List<Integer> remainingParts = new ArrayList<Integer>();
+            for (int i = 1; i <= partCount; i++) {
+                if (!completedParts.get(i)) {
+                    remainingParts.add(i);
+                }
+            }
+            final BlockingQueue<Future<Integer>> doneParts = new LinkedBlockingQueue<Future<Integer>>();
+            int partsInFlight = 0;
+            int nextPart = 0;
+            while (nextPart < remainingParts.size() || partsInFlight > 0) {
+                while (nextPart < remainingParts.size() && partsInFlight < getMaxPartsInFlight()) {
+                    FutureTask<Integer> part = new DownloadPartTask(
+                            newDownloadPartCallable(remainingParts.get(nextPart++), raf), doneParts);
+                    futureParts.add(part);
+                    executor.execute(part);
+                    partsInFlight++;
+                }
+                completedParts.set(takeDonePart(doneParts).get());
+                partsInFlight--;
+                updatePersistableTransfer();
+            }
+            allPartsDone = true;
+        } finally {
+            // The parts still running write to raf, and the lock keeps other
+            // downloads off dstfile until they are stopped
+            if (!allPartsDone) {
+                cancelPartsAndWait();
+            }
+            IOUtils.closeQuietly(raf, LOG);
+            FileLocks.unlock(dstfile);
+        }
+    }
 
-            futureFiles.add(
-                    executor.submit(new DownloadPartCallable(s3, getPartRequest.withPartNumber(i), dstfile)));
+    /**
+     * Waits for a part in flight to be done. Meanwhile, the parts the thread
+     * pool hasn't started yet are downloaded in this thread, so downloads
+     * waiting on their parts can't hold every thread of a busy pool while the
+     * parts are still queued.
+     */
+    private Future<Integer> takeDonePart(BlockingQueue<Future<Integer>> doneParts) throws InterruptedException {
+        Future<Integer> part = doneParts.poll();
+        while (part == null && startedParts < futureParts.size()) {
+            // Does nothing if the thread pool has started the part already
+            futureParts.get(startedParts++).run();
+            part = doneParts.poll();
         }
+        return part != null ? part : doneParts.take();
+    }
 
-        combineFiles();
+    /**
+     * Cancels the parts not done yet, and waits for the ones already running
+     * to stop. Cancelling a part only interrupts its thread, so a part may
+     * still be writing to the destination file when its future is done.
+     */
+    private void cancelPartsAndWait() {
+        for (Future<Integer> f : futureParts) {
+            f.cancel(true);
+        }
+        boolean interrupted = false;
+        synchronized (partsLock) {
+            while (runningParts > 0) {
+                try {
+                    partsLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
     }
 
     /**
-     * Merges all the individual part Files into dstFile
+     * A part of a parallel download, counted in runningParts while it runs
+     * and queued into doneParts once it is done.
      */
-    private void combineFiles() throws Exception {
-        truncateDestinationFileIfNecessary();
+    private final class DownloadPartTask extends FutureTask<Integer> {
+        private final BlockingQueue<Future<Integer>> doneParts;
+
+        private DownloadPartTask(DownloadPartCallable callable, BlockingQueue<Future<Integer>> doneParts) {
+            super(callable);
+            this.doneParts = doneParts;
+        }
 
-        for (Future<File> f : futureFiles) {
-            File partFile = f.get();
-            ServiceUtils.appendFile(partFile, dstfile);
-            download.updatePersistableTransfer(++lastFullyMergedPartNumber);
+        @Override
+        public void run() {
+            synchronized (partsLock) {
+                if (isDone()) {
+                    return;
+                }
+                runningParts++;
+            }
             try {
-                if (!partFile.delete()) {
-                    LOG.warn("The file " + partFile.getAbsolutePath() + " could not be deleted.");
+                super.run();
+            } finally {
+                synchronized (partsLock) {
+                    runningParts--;
+                    partsLock.notifyAll();
                 }
-            } catch (SecurityException exception) {
-                LOG.warn("SecurityException denied delete access to file " + partFile.getAbsolutePath());
             }
         }
+
+        @Override
+        protected void done() {
+            doneParts.add(this);
+        }
     }
 
     /**
-     * If only partial part object is merged into the dstFile(due to pause
-     * operation), adjust the file length so that the part starts writing from
-     * the correct position.
+     * Returns the number of parts of this download queued or in flight at a
+     * time. With adaptive tuning, the parts of all transfers together are also
+     * bounded by the part slots of the tuner.
      */
-    private void truncateDestinationFileIfNecessary() {
-        RandomAccessFile raf = null;
-        if (!FileLocks.lock(dstfile)) {
-            throw new FileLockException("Fail to lock " + dstfile);
+    private int getMaxPartsInFlight() {
+        if (tuner != null) {
+            return tuner.getConcurrency();
+        }
+        return rangedPartSize == null ? Integer.MAX_VALUE : maxRangedDownloadConcurrency;
+    }
+
+    private DownloadPartCallable newDownloadPartCallable(int part, RandomAccessFile raf) {
+        GetObjectRequest getPartRequest = new GetObjectRequest(req.getBucketName(), req.getKey(),
+                req.getVersionId()).withUnmodifiedSinceConstraint(req.getUnmodifiedSinceConstraint())
+                        .withModifiedSinceConstraint(req.getModifiedSinceConstraint())
+                        .withResponseHeaders(req.getResponseHeaders()).withSSECustomerKey(req.getSSECustomerKey())
+                        .withGeneralProgressListener(req.getGeneralProgressListener());
+
+        getPartRequest.setMatchingETagConstraints(req.getMatchingETagConstraints());
+        getPartRequest.setNonmatchingETagConstraints(req.getNonmatchingETagConstraints());
+        getPartRequest.setRequesterPays(req.isRequesterPays());
+
+        if (rangedPartSize == null) {
+            getPartRequest.setPartNumber(part);
+        } else {
+            getPartRequest.setRange(firstByteOfPart(part), lastByteOfPart(part));
+            // Ranges are separate requests, make sure they all come from the same object
+            if (getPartRequest.getMatchingETagConstraints().isEmpty()
+                    && download.getObjectMetadata().getETag() != null) {
+                getPartRequest.setMatchingETagConstraints(
+                        Collections.singletonList(download.getObjectMetadata().getETag()));
+            }
+        }
+        return new DownloadPartCallable(s3, getPartRequest, part, raf.getChannel(), tuner);
+    }
+
+    /**
+     * Returns the offset in the object of the first byte of the given part.
+     */
+    private long firstByteOfPart(int part) {
+        if (rangedPartSize != null) {
+            return (part - 1) * rangedPartSize;
         }
+        return part == 1 ? 0 : ServiceUtils.getLastByteInPart(s3, req, part - 1) + 1;
+    }
 
+    /**
+     * Returns the offset in the object of the last byte of the given part.
+     */
+    private long lastByteOfPart(int part) {
+        if (rangedPartSize != null) {
+            return Math.min(part * rangedPartSize, download.getObjectMetadata().getContentLength()) - 1;
+        }
+        return ServiceUtils.getLastByteInPart(s3, req, part);
+    }
+
+    /**
+     * A ranged download can't rely on the per-response MD5 check, and S3 only
+     * has the MD5 of the whole object, so the whole file is checked against
+     * the ETag of a non-multipart object once all the ranges have been
+     * written. Since the check was asked for, the download fails if the file
+     * can't be hashed.
+     */
+    private void verifyRangedDownloadIntegrity() {
+        if (s3 instanceof AmazonS3Encryption
+                || SkipMd5CheckStrategy.INSTANCE.skipClientSideValidation(req, download.getObjectMetadata())) {
+            return;
+        }
+        byte[] clientSideHash;
+        FileInputStream in = null;
         try {
+            in = new FileInputStream(dstfile);
+            clientSideHash = Md5Utils.computeMD5Hash(in);
+        } catch (IOException e) {
+            throw new AmazonClientException("Unable to calculate MD5 hash to validate download of '"
+                    + dstfile.getAbsolutePath() + "': " + e.getMessage(), e);
+        } finally {
+            IOUtils.closeQuietly(in, LOG);
+        }
+        byte[] serverSideHash = BinaryUtils.fromHex(download.getObjectMetadata().getETag());
+        if (!Arrays.equals(clientSideHash, serverSideHash)) {
+            throw new AmazonClientException("Unable to verify integrity of data download.  " +
+                    "Client calculated content hash didn't match hash calculated by Amazon S3.  " +
+                    "The data stored in '" + dstfile.getAbsolutePath() + "' may be corrupt.");
+        }
+    }
+
+    /**
+     * Opens dstfile and sizes it to the length of the object so that parts can
+     * be written at their offset as they arrive. For a resumed download, checks
+     * that the parts written before the pause are still there and counts them
+     * towards the progress.
+     */
+    private RandomAccessFile prepareDestinationFile() {
+        RandomAccessFile raf = null;
+        try {
+            long completedBytes = 0;
+            long requiredLength = 0;
+            for (int start = completedParts.nextSetBit(1); start >= 0;
+                    start = completedParts.nextSetBit(start)) {
+                int end = completedParts.nextClearBit(start) - 1;
+                long firstByte = firstByteOfPart(start);
+                long lastByte = lastByteOfPart(end);
+                completedBytes += lastByte - firstByte + 1;
+                requiredLength = lastByte + 1;
+                start = end + 1;
+            }
+            if (dstfile.length() < requiredLength) {
+                throw new AmazonClientException(
+                        "File " + dstfile.getAbsolutePath() + " has been modified since last pause.");
+            }
+
             raf = new RandomAccessFile(dstfile, "rw");
-            if (lastFullyMergedPartNumber == 0) {
+            if (completedBytes == 0) {
                 raf.setLength(0);
-            } else {
-                long lastByte = ServiceUtils.getLastByteInPart(s3, req, lastFullyMergedPartNumber);
-                if (dstfile.length() < lastByte) {
-                    throw new AmazonClientException(
-                            "File " + dstfile.getAbsolutePath() + " has been modified since last pause.");
-                }
-                raf.setLength(lastByte + 1);
-                download.getProgress().updateProgress(lastByte + 1);
             }
-        } catch (Exception e) {
-            throw new AmazonClientException("Unable to append part file to dstfile " + e.getMessage(), e);
-        } finally {
+            raf.setLength(download.getObjectMetadata().getContentLength());
+            download.getProgress().updateProgress(completedBytes);
+            return raf;
+        } catch (IOException e) {
             IOUtils.closeQuietly(raf, LOG);
-            FileLocks.unlock(dstfile);
+            throw new AmazonClientException("Unable to prepare dstfile " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            IOUtils.closeQuietly(raf, LOG);
+            throw e;
+        }
+    }
+
+    /**
+     * Publishes the completed parts, keeping the last fully merged part number
+     * as the contiguous prefix of completed parts.
+     */
+    private void updatePersistableTransfer() {
+        lastFullyMergedPartNumber = completedParts.nextClearBit(1) - 1;
+        download.updatePersistableTransfer(lastFullyMergedPartNumber, toPartRanges(completedParts), rangedPartSize);
+    }
+
+    private static BitSet toPartSet(int[][] partRanges) {
+        BitSet parts = new BitSet();
+        if (partRanges != null) {
+            for (int[] range : partRanges) {
+                if (range != null && range.length == 2 && range[0] >= 1 && range[0] <= range[1]) {
+                    parts.set(range[0], range[1] + 1);
+                }
+            }
+        }
+        return parts;
+    }
+
+    private static int[][] toPartRanges(BitSet parts) {
+        List<int[]> ranges = new ArrayList<int[]>();
+        for (int start = parts.nextSetBit(1); start >= 0; ) {
+            int end = parts.nextClearBit(start) - 1;
+            ranges.add(new int[] { start, end });
+            start = parts.nextSetBit(end + 1);
         }
+        return ranges.toArray(new int[ranges.size()][]);
     }
 
     /**
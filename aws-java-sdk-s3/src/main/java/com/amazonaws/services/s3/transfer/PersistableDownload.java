@@ -15,6 +15,7 @@
 package com.amazonaws.services.s3.transfer;
 
 import com.amazonaws.services.s3.model.ResponseHeaderOverrides;
+import com.fasterxml.jackson.annotation.JsonCreator;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
 /**
@@ -75,11 +76,37 @@ public final class PersistableDownload extends PersistableTransfer {
     @JsonProperty
     private final long lastModifiedTime;
 
+    /**
+     * The inclusive ranges of part numbers that have been successfully written
+     * into the downloaded file, in ascending order. Parts of a parallel
+     * download complete out of order, so this may contain parts beyond
+     * {@link #lastFullyDownloadedPartNumber}.
+     */
+    @JsonProperty
+    private final int[][] completedPartRanges;
+
+    /**
+     * The size of each byte range when the object is downloaded with parallel
+     * range requests, in which case the parts in {@link #completedPartRanges}
+     * are byte ranges of this size. Null if the parts are those of a multipart
+     * object.
+     */
+    @JsonProperty
+    private final Long rangedPartSize;
+
 
     public PersistableDownload() {
-        this(null, null, null, null, null, false, null, null, 0L);
+        this(null, null, null, null, null, false, null, null, 0L, null, null);
+    }
+
+    public PersistableDownload(String bucketName, String key, String versionId, long[] range,
+            ResponseHeaderOverrides responseHeaders, boolean isRequesterPays, String file,
+            Integer lastFullyDownloadedPartNumber, long lastModifiedTime) {
+        this(bucketName, key, versionId, range, responseHeaders, isRequesterPays, file,
+                lastFullyDownloadedPartNumber, lastModifiedTime, null, null);
     }
 
+    @JsonCreator
     public PersistableDownload(
             @JsonProperty(value = "bucketName") String bucketName,
             @JsonProperty(value = "key") String key,
@@ -89,7 +116,9 @@ public final class PersistableDownload extends PersistableTransfer {
             @JsonProperty(value = "isRequesterPays") boolean isRequesterPays,
             @JsonProperty(value = "file") String file,
             @JsonProperty(value = "lastFullyDownloadedPartNumber") Integer lastFullyDownloadedPartNumber,
-            @JsonProperty(value = "lastModifiedTime") long lastModifiedTime) {
+            @JsonProperty(value = "lastModifiedTime") long lastModifiedTime,
+            @JsonProperty(value = "completedPartRanges") int[][] completedPartRanges,
+            @JsonProperty(value = "rangedPartSize") Long rangedPartSize) {
         this.bucketName = bucketName;
         this.key = key;
         this.versionId = versionId;
@@ -99,6 +128,8 @@ public final class PersistableDownload extends PersistableTransfer {
         this.file = file;
         this.lastFullyDownloadedPartNumber = lastFullyDownloadedPartNumber;
         this.lastModifiedTime = lastModifiedTime;
+        this.completedPartRanges = copyOf(completedPartRanges);
+        this.rangedPartSize = rangedPartSize;
     }
 
     /**
@@ -169,4 +200,32 @@ public final class PersistableDownload extends PersistableTransfer {
     Long getlastModifiedTime() {
         return lastModifiedTime;
     }
+
+    /**
+     * Returns the inclusive ranges of part numbers that were successfully
+     * written into the downloaded file, or null if only
+     * {@link #getLastFullyDownloadedPartNumber()} was recorded.
+     */
+    int[][] getCompletedPartRanges() {
+        return copyOf(completedPartRanges);
+    }
+
+    /**
+     * Returns the size of each byte range of a ranged parallel download, or
+     * null if the parts are those of a multipart object.
+     */
+    Long getRangedPartSize() {
+        return rangedPartSize;
+    }
+
+    private static int[][] copyOf(int[][] ranges) {
+        if (ranges == null) {
+            return null;
+        }
+        int[][] copy = new int[ranges.length][];
+        for (int i = 0; i < ranges.length; i++) {
+            copy[i] = ranges[i] == null ? null : ranges[i].clone();
+        }
+        return copy;
+    }
 }
@@ -26,6 +26,8 @@ import com.amazonaws.event.ProgressListener;
 import com.amazonaws.event.ProgressListenerChain;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Client;
+import com.amazonaws.services.s3.AmazonS3Encryption;
+import com.amazonaws.services.s3.Headers;
 import com.amazonaws.services.s3.internal.FileLocks;
 import com.amazonaws.services.s3.internal.Mimetypes;
 import com.amazonaws.services.s3.internal.ServiceUtils;
@@ -43,9 +45,11 @@ import com.amazonaws.services.s3.model.PutObjectRequest;
 import com.amazonaws.services.s3.model.S3ObjectSummary;
 import com.amazonaws.services.s3.transfer.Transfer.TransferState;
 import com.amazonaws.services.s3.transfer.exception.FileLockException;
+import com.amazonaws.services.s3.transfer.internal.AdaptiveTransferTuner;
 import com.amazonaws.services.s3.transfer.internal.CopyCallable;
 import com.amazonaws.services.s3.transfer.internal.CopyImpl;
 import com.amazonaws.services.s3.transfer.internal.CopyMonitor;
+import com.amazonaws.services.s3.transfer.internal.DirectoryTransferEngine;
 import com.amazonaws.services.s3.transfer.internal.DownloadImpl;
 import com.amazonaws.services.s3.transfer.internal.DownloadMonitor;
 import com.amazonaws.services.s3.transfer.internal.MultipleFileDownloadImpl;
@@ -65,12 +69,15 @@ import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Stack;
+import java.util.concurrent.Callable;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
@@ -148,6 +155,9 @@ public class TransferManager {
     /** The thread pool in which transfers are uploaded or downloaded. */
     private final ExecutorService executorService;
 
+    /** Tunes part size and concurrency when adaptive tuning is enabled, lazily created. */
+    private AdaptiveTransferTuner adaptiveTuner;
+
     /**
      * Thread used for periodically checking transfers and updating their state, as well as enforcing
      * timeouts.
@@ -316,7 +326,10 @@ public class TransferManager {
      */
     public void setConfiguration(TransferManagerConfiguration configuration) {
         checkMutability();
-        this.configuration = configuration;
+        synchronized (this) {
+            this.configuration = configuration;
+            this.adaptiveTuner = null;
+        }
     }
 
     /**
@@ -329,6 +342,23 @@ public class TransferManager {
         return configuration;
     }
 
+    /**
+     * Returns the tuner shared by the transfers of this TransferManager, or
+     * null if adaptive tuning isn't enabled in the configuration.
+     */
+    @SdkInternalApi
+    public synchronized AdaptiveTransferTuner getAdaptiveTuner() {
+        if (!configuration.isAdaptiveTuningEnabled()) {
+            return null;
+        }
+        if (adaptiveTuner == null) {
+            adaptiveTuner = new AdaptiveTransferTuner(configuration.getMaxAdaptiveConcurrency(),
+                    configuration.getMinimumUploadPartSize(),
+                    Math.max(configuration.getMinimumUploadPartSize(), configuration.getMaxAdaptivePartSize()));
+        }
+        return adaptiveTuner;
+    }
+
     /**
      * Returns the underlying Amazon S3 client used to make requests to
      * Amazon S3.
@@ -488,7 +518,7 @@ public class TransferManager {
      */
     public Upload upload(final PutObjectRequest putObjectRequest)
             throws AmazonServiceException, AmazonClientException {
-        return doUpload(putObjectRequest, null, null, null);
+        return doUpload(putObjectRequest, null, null, null, null);
     }
 
     /**
@@ -536,7 +566,7 @@ public class TransferManager {
     public Upload upload(final PutObjectRequest putObjectRequest,
             final S3ProgressListener progressListener)
             throws AmazonServiceException, AmazonClientException {
-        return doUpload(putObjectRequest, null, progressListener, null);
+        return doUpload(putObjectRequest, null, progressListener, null, null);
     }
 
     /**
@@ -571,6 +601,9 @@ public class TransferManager {
      * @param progressListener
      *            An optional callback listener to receive the progress of the
      *            upload.
+     * @param engine
+     *            The engine of the directory upload this file is part of, or
+     *            null if the upload is scheduled on its own.
      *
      * @return A new <code>Upload</code> object to use to check the state of the
      *         upload, listen for progress notifications, and otherwise manage
@@ -586,7 +619,8 @@ public class TransferManager {
     private Upload doUpload(final PutObjectRequest putObjectRequest,
             final TransferStateChangeListener stateListener,
             final S3ProgressListener progressListener,
-            final PersistableUpload persistableUpload) throws AmazonServiceException,
+            final PersistableUpload persistableUpload,
+            final DirectoryTransferEngine engine) throws AmazonServiceException,
             AmazonClientException {
 
         appendSingleObjectUserAgent(putObjectRequest);
@@ -636,9 +670,24 @@ public class TransferManager {
          * multiple parallel uploads submitted. This may result in a delay for
          * processing the complete multi part upload request.
          */
-        UploadCallable uploadCallable = new UploadCallable(this, executorService,
+        final boolean isMultipartUpload = TransferManagerUtils.shouldUseMultipartUpload(
+                putObjectRequest, configuration);
+        ExecutorService partExecutor = executorService;
+        if (engine != null && isMultipartUpload) {
+            partExecutor = engine.newPartExecutor(
+                    TransferManagerUtils.calculateOptimalPartSize(putObjectRequest, configuration));
+        }
+        UploadCallable uploadCallable = new UploadCallable(this, partExecutor,
                                                            upload, putObjectRequest, listenerChain, multipartUploadId,
                                                            transferProgress);
+        if (engine != null && !isMultipartUpload) {
+            engine.addBatched(upload, TransferManagerUtils.getContentLength(putObjectRequest),
+                    uploadCallable);
+            return upload;
+        }
+        if (engine != null) {
+            engine.register(upload);
+        }
         UploadMonitor watcher = UploadMonitor.create(this, upload, executorService,
                                                      uploadCallable, putObjectRequest, listenerChain);
         upload.setMonitor(watcher);
@@ -955,7 +1004,7 @@ public class TransferManager {
                              final File file, final S3ProgressListener progressListener,
                              final long timeoutMillis, final boolean resumeOnRetry) {
         return doDownload(getObjectRequest, file, null, progressListener,
-                OVERWRITE_MODE, timeoutMillis, null, 0L, resumeOnRetry);
+                OVERWRITE_MODE, timeoutMillis, null, null, null, 0L, resumeOnRetry, null);
     }
 
     /**
@@ -973,8 +1022,8 @@ public class TransferManager {
             final long lastModifiedTimeRecordedDuringPause)
     {
         return doDownload(getObjectRequest, file, stateListener, s3progressListener,
-                resumeExistingDownload, timeoutMillis, lastFullyDownloadedPart,
-                lastModifiedTimeRecordedDuringPause, false);
+                resumeExistingDownload, timeoutMillis, lastFullyDownloadedPart, null, null,
+                lastModifiedTimeRecordedDuringPause, false, null);
     }
 
     /**
@@ -989,8 +1038,11 @@ public class TransferManager {
             final boolean resumeExistingDownload,
             final long timeoutMillis,
             final Integer lastFullyDownloadedPart,
+            final int[][] completedPartRanges,
+            final Long rangedPartSizeRecordedDuringPause,
             final long lastModifiedTimeRecordedDuringPause,
-            final boolean resumeOnRetry)
+            final boolean resumeOnRetry,
+            final DirectoryTransferEngine engine)
     {
         assertParameterNotNull(getObjectRequest,
                 "A valid GetObjectRequest must be provided to initiate download");
@@ -1035,9 +1087,25 @@ public class TransferManager {
         }
 
         final long origStartingByte = startingByte;
-        final boolean isDownloadParallel =
-                TransferManagerUtils.isDownloadParallelizable(s3, getObjectRequest, ServiceUtils.getPartCount(getObjectRequest, s3))
-                        && !configuration.isDisableParallelDownloads();
+        final Integer partCount = ServiceUtils.getPartCount(getObjectRequest, s3);
+        // Objects that were not uploaded in parts are split into ranges instead.
+        // A resumed parallel download stays parallel, with the ranges it was
+        // paused with, since its file is already allocated to the full size.
+        // A resumed serial download stays serial, appending to its file.
+        final AdaptiveTransferTuner tuner = getAdaptiveTuner();
+        Long rangedPartSize = null;
+        if (partCount == null) {
+            if (rangedPartSizeRecordedDuringPause != null) {
+                rangedPartSize = rangedPartSizeRecordedDuringPause;
+            } else if (!resumeExistingDownload
+                    && TransferManagerUtils.isRangedDownloadParallelizable(s3, getObjectRequest,
+                            objectMetadata.getContentLength(), configuration)) {
+                rangedPartSize = tuner != null ? tuner.getPartSize() : configuration.getRangedDownloadPartSize();
+            }
+        }
+        final boolean isDownloadParallel = rangedPartSize != null
+                || (TransferManagerUtils.isDownloadParallelizable(s3, getObjectRequest, partCount)
+                        && (!configuration.isDisableParallelDownloads() || lastFullyDownloadedPart != null));
 
         // We still pass the unfiltered listener chain into DownloadImpl
         final DownloadImpl download = new DownloadImpl(description, transferProgress, listenerChain, null,
@@ -1083,12 +1151,31 @@ public class TransferManager {
                     "Unable to determine the range for download operation.");
         }
 
+        // A download of a directory queues its requests with the rest of the
+        // directory: the parts of a parallel download, or else the whole
+        // download, which then doesn't wait on anything else.
+        ExecutorService partExecutor = executorService;
+        ExecutorService downloadExecutor = executorService;
+        if (engine != null) {
+            engine.register(download);
+            if (!isDownloadParallel) {
+                downloadExecutor = engine.newPartExecutor(totalBytesToDownload);
+            } else if (rangedPartSize != null) {
+                partExecutor = engine.newPartExecutor(rangedPartSize);
+            } else {
+                partExecutor = engine.newPartExecutor(objectMetadata.getContentLength() / partCount + 1);
+            }
+        }
+
         final CountDownLatch latch = new CountDownLatch(1);
-        Future<?> future = executorService.submit(
+        Future<?> future = downloadExecutor.submit(
             new DownloadCallable(s3, latch,
                 getObjectRequest, resumeExistingDownload,
                 download, file, origStartingByte, fileLength, timeoutMillis, timedThreadPool,
-                executorService, lastFullyDownloadedPart, isDownloadParallel, resumeOnRetry));
+                partExecutor, lastFullyDownloadedPart, completedPartRanges, rangedPartSize,
+                configuration.getMaxRangedDownloadConcurrency(),
+                configuration.isRangedDownloadIntegrityCheckEnabled(), tuner, isDownloadParallel,
+                resumeOnRetry));
         download.setMonitor(new DownloadMonitor(download, future));
         latch.countDown();
         return download;
@@ -1133,6 +1220,9 @@ public class TransferManager {
             boolean resumeOnRetry) {
         if ( keyPrefix == null )
             keyPrefix = "";
+        if (configuration.getMaxDirectoryTransferRequests() > 0) {
+            return downloadDirectoryInBatches(bucketName, keyPrefix, destinationDirectory, resumeOnRetry);
+        }
         List<S3ObjectSummary> objectSummaries = new LinkedList<S3ObjectSummary>();
         Stack<String> commonPrefixes = new Stack<String>();
         commonPrefixes.add(keyPrefix);
@@ -1213,7 +1303,7 @@ public class TransferManager {
                             req,
                             f,
                             transferListener, null, false, 0,
-                            null, 0L, resumeOnRetry));
+                            null, null, null, 0L, resumeOnRetry, null));
         }
 
         if ( downloads.isEmpty() ) {
@@ -1227,6 +1317,134 @@ public class TransferManager {
         return multipleFileDownload;
     }
 
+    /**
+     * Downloads a virtual directory with a {@link DirectoryTransferEngine},
+     * which starts on the objects of each page of the listing while the next
+     * one is fetched.
+     */
+    private MultipleFileDownload downloadDirectoryInBatches(String bucketName, String keyPrefix,
+            File destinationDirectory, boolean resumeOnRetry) {
+        /* This is the hook for adding additional progress listeners */
+        ProgressListenerChain additionalListeners = new ProgressListenerChain();
+        TransferProgress transferProgress = new TransferProgress();
+        ProgressListener listener = new MultipleFileTransferProgressUpdatingListener(
+                transferProgress, additionalListeners);
+
+        List<DownloadImpl> downloads = new ArrayList<DownloadImpl>();
+        String description = "Downloading from " + bucketName + "/" + keyPrefix;
+        MultipleFileDownloadImpl multipleFileDownload = new MultipleFileDownloadImpl(description, transferProgress,
+                additionalListeners, keyPrefix, bucketName, downloads);
+        multipleFileDownload.setMonitor(new MultipleFileTransferMonitor(multipleFileDownload, downloads));
+        DirectoryTransferEngine engine = new DirectoryTransferEngine(executorService, multipleFileDownload,
+                configuration);
+
+        Stack<String> commonPrefixes = new Stack<String>();
+        commonPrefixes.add(keyPrefix);
+        long totalSize = 0;
+        try {
+            do {
+                String prefix = commonPrefixes.pop();
+                ObjectListing listObjectsResponse = null;
+
+                do {
+                    if ( listObjectsResponse == null ) {
+                        ListObjectsRequest listObjectsRequest = new ListObjectsRequest().withBucketName(bucketName)
+                                .withDelimiter(DEFAULT_DELIMITER).withPrefix(prefix);
+                        listObjectsResponse = s3.listObjects(listObjectsRequest);
+                    } else {
+                        listObjectsResponse = s3.listNextBatchOfObjects(listObjectsResponse);
+                    }
+
+                    for ( S3ObjectSummary s : listObjectsResponse.getObjectSummaries() ) {
+                        if ( s.getKey().equals(prefix)
+                                || listObjectsResponse.getCommonPrefixes().contains(s.getKey() + DEFAULT_DELIMITER) ) {
+                            log.debug("Skipping download for object " + s.getKey()
+                                    + " since it is also a virtual directory");
+                            continue;
+                        }
+                        File f = new File(destinationDirectory, s.getKey());
+                        GetObjectRequest req = new GetObjectRequest(s.getBucketName(), s.getKey())
+                                .<GetObjectRequest>withGeneralProgressListener(listener);
+                        if (s.getSize() < configuration.getRangedDownloadThreshold()) {
+                            downloads.add(addBatchedDownload(req, f, s, engine));
+                        } else {
+                            // Resuming on retry appends to the file, which rules
+                            // out downloading the object in parallel parts.
+                            if (resumeOnRetry) {
+                                req.setRange(0L);
+                            }
+                            downloads.add((DownloadImpl) doDownload(req, f, engine, null, false, 0,
+                                    null, null, null, 0L, resumeOnRetry, engine));
+                        }
+                        totalSize += s.getSize();
+                    }
+                    transferProgress.setTotalBytesToTransfer(totalSize);
+
+                    commonPrefixes.addAll(listObjectsResponse.getCommonPrefixes());
+                } while ( listObjectsResponse.isTruncated() );
+            } while ( !commonPrefixes.isEmpty() );
+        } catch (RuntimeException e) {
+            // The caller never gets hold of the downloads queued so far
+            abortDownloads(downloads);
+            throw e;
+        }
+
+        engine.walkComplete();
+        return multipleFileDownload;
+    }
+
+    /**
+     * Cancels the downloads of a directory download that failed before its
+     * listing was complete.
+     */
+    private static void abortDownloads(List<DownloadImpl> downloads) {
+        for (DownloadImpl download : downloads) {
+            if (!download.isDone()) {
+                try {
+                    download.abort();
+                } catch (IOException e) {
+                    log.warn("Unable to abort the download of " + download.getKey(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Queues the download of a small object of a directory in a batch. The
+     * size, ETag and last modified time from the listing stand in for the
+     * object metadata, so the object is downloaded with a single request.
+     */
+    private DownloadImpl addBatchedDownload(final GetObjectRequest getObjectRequest, final File file,
+            S3ObjectSummary summary, DirectoryTransferEngine engine) {
+        appendSingleObjectUserAgent(getObjectRequest);
+        String description = "Downloading from " + getObjectRequest.getBucketName() + "/" + getObjectRequest.getKey();
+
+        TransferProgress transferProgress = new TransferProgress();
+        transferProgress.setTotalBytesToTransfer(summary.getSize());
+        S3ProgressListenerChain listenerChain = new S3ProgressListenerChain(
+                new TransferProgressUpdatingListener(transferProgress),
+                getObjectRequest.getGeneralProgressListener(), null);
+        getObjectRequest
+                .setGeneralProgressListener(new ProgressListenerChain(new TransferCompletionFilter(), listenerChain));
+
+        ObjectMetadata objectMetadata = new ObjectMetadata();
+        objectMetadata.setContentLength(summary.getSize());
+        objectMetadata.setLastModified(summary.getLastModified());
+        objectMetadata.setHeader(Headers.ETAG, summary.getETag());
+
+        final DownloadImpl download = new DownloadImpl(description, transferProgress, listenerChain, null,
+                engine, getObjectRequest, file, objectMetadata, false);
+        engine.addBatched(download, summary.getSize(), new Callable<File>() {
+            @Override
+            public File call() {
+                download.setState(TransferState.InProgress);
+                s3.getObject(getObjectRequest, file);
+                return file;
+            }
+        });
+        return download;
+    }
+
     /**
      * Uploads all files in the directory given to the bucket named, optionally
      * recursing for all subdirectories.
@@ -1297,6 +1515,11 @@ public class TransferManager {
             throw new IllegalArgumentException("Must provide a directory to upload");
         }
 
+        if (configuration.getMaxDirectoryTransferRequests() > 0) {
+            return uploadFilesInBatches(bucketName, virtualDirectoryKeyPrefix, directory, null,
+                    includeSubdirectories, metadataProvider);
+        }
+
         List<File> files = new LinkedList<File>();
         listFiles(directory, files, includeSubdirectories);
 
@@ -1384,6 +1607,11 @@ public class TransferManager {
             virtualDirectoryKeyPrefix = virtualDirectoryKeyPrefix + "/";
         }
 
+        if (configuration.getMaxDirectoryTransferRequests() > 0) {
+            return uploadFilesInBatches(bucketName, virtualDirectoryKeyPrefix, directory,
+                    files == null ? Collections.<File>emptyList() : files, false, metadataProvider);
+        }
+
         /* This is the hook for adding additional progress listeners */
         ProgressListenerChain additionalListeners = new ProgressListenerChain();
         TransferProgress progress = new TransferProgress();
@@ -1442,7 +1670,7 @@ public class TransferManager {
                                     virtualDirectoryKeyPrefix + key, f)
                                     .withMetadata(metadata)
                                     .<PutObjectRequest> withGeneralProgressListener(
-                                            listener), transferListener, null, null));
+                                            listener), transferListener, null, null, null));
                 }
             }
             progress.setTotalBytesToTransfer(totalSize);
@@ -1454,6 +1682,115 @@ public class TransferManager {
         return multipleFileUpload;
     }
 
+    /**
+     * Uploads files with a {@link DirectoryTransferEngine}. If no list of
+     * files is given, the directory is walked instead, and each file is
+     * queued as soon as it is found.
+     */
+    private MultipleFileUpload uploadFilesInBatches(String bucketName, String virtualDirectoryKeyPrefix,
+            File directory, List<File> files, boolean includeSubdirectories,
+            ObjectMetadataProvider metadataProvider) {
+        if (virtualDirectoryKeyPrefix == null || virtualDirectoryKeyPrefix.length() == 0) {
+            virtualDirectoryKeyPrefix = "";
+        } else if ( !virtualDirectoryKeyPrefix.endsWith("/") ) {
+            virtualDirectoryKeyPrefix = virtualDirectoryKeyPrefix + "/";
+        }
+
+        /* This is the hook for adding additional progress listeners */
+        ProgressListenerChain additionalListeners = new ProgressListenerChain();
+        TransferProgress progress = new TransferProgress();
+        ProgressListener listener = new MultipleFileTransferProgressUpdatingListener(
+                progress, additionalListeners);
+
+        List<UploadImpl> uploads = new ArrayList<UploadImpl>();
+        MultipleFileUploadImpl multipleFileUpload = new MultipleFileUploadImpl("Uploading etc", progress,
+                additionalListeners, virtualDirectoryKeyPrefix, bucketName, uploads);
+        multipleFileUpload.setMonitor(new MultipleFileTransferMonitor(multipleFileUpload, uploads));
+        DirectoryTransferEngine engine = new DirectoryTransferEngine(executorService, multipleFileUpload,
+                configuration);
+
+        int startingPosition = directory.getAbsolutePath().length();
+        if (!(directory.getAbsolutePath().endsWith(File.separator)))
+            startingPosition++;
+
+        long totalSize = 0;
+        try {
+            if (files != null) {
+                for (File f : files) {
+                    totalSize += addDirectoryUpload(bucketName, virtualDirectoryKeyPrefix, f, startingPosition,
+                            metadataProvider, listener, engine, uploads);
+                }
+                progress.setTotalBytesToTransfer(totalSize);
+            } else {
+                Stack<File> directories = new Stack<File>();
+                directories.push(directory);
+                do {
+                    File[] found = directories.pop().listFiles();
+                    if (found == null) {
+                        continue;
+                    }
+                    for (File f : found) {
+                        if (f.isDirectory()) {
+                            if (includeSubdirectories) {
+                                directories.push(f);
+                            }
+                        } else {
+                            totalSize += addDirectoryUpload(bucketName, virtualDirectoryKeyPrefix, f,
+                                    startingPosition, metadataProvider, listener, engine, uploads);
+                        }
+                    }
+                    progress.setTotalBytesToTransfer(totalSize);
+                } while (!directories.isEmpty());
+            }
+        } catch (RuntimeException e) {
+            // The caller never gets hold of the uploads queued so far
+            abortUploads(uploads);
+            throw e;
+        }
+
+        engine.walkComplete();
+        return multipleFileUpload;
+    }
+
+    /**
+     * Cancels the uploads of a directory upload that failed before all its
+     * files were found.
+     */
+    private static void abortUploads(List<UploadImpl> uploads) {
+        for (UploadImpl upload : uploads) {
+            if (!upload.isDone()) {
+                upload.abort();
+            }
+        }
+    }
+
+    /**
+     * Queues the upload of a file of a directory, and returns the number of
+     * bytes it adds to the directory upload.
+     */
+    private long addDirectoryUpload(String bucketName, String virtualDirectoryKeyPrefix, File f,
+            int startingPosition, ObjectMetadataProvider metadataProvider, ProgressListener listener,
+            DirectoryTransferEngine engine, List<UploadImpl> uploads) {
+        // Check, if file, since only files can be uploaded.
+        if (!f.isFile()) {
+            return 0;
+        }
+        String key = f.getAbsolutePath()
+                .substring(startingPosition)
+                .replaceAll("\\\\", "/");
+
+        ObjectMetadata metadata = new ObjectMetadata();
+        if (metadataProvider != null) {
+            metadataProvider.provideObjectMetadata(f, metadata);
+        }
+
+        PutObjectRequest putObjectRequest = new PutObjectRequest(bucketName,
+                virtualDirectoryKeyPrefix + key, f).withMetadata(metadata);
+        putObjectRequest.setGeneralProgressListener(listener);
+        uploads.add((UploadImpl) doUpload(putObjectRequest, engine, null, null, engine));
+        return metadata.getContentLength();
+    }
+
     /**
      * Lists files in the directory given and adds them to the result list
      * passed in, optionally adding subdirectories recursively.
@@ -1739,6 +2076,12 @@ public class TransferManager {
      * Otherwise, the copy is scheduled and started as soon as resources become
      * available.
      * </p>
+     * <p>
+     * If relaying copies is enabled in the {@link TransferManagerConfiguration},
+     * the source object is read through <code>srcS3</code> and uploaded through
+     * this transfer manager's client instead of being copied by Amazon S3.
+     * <code>srcS3</code> then must not decrypt on the client side.
+     * </p>
      *
      * @param copyObjectRequest   The request containing all the parameters for the copy.
      * @param srcS3               An AmazonS3 client constructed for the region in which the source
@@ -1750,6 +2093,8 @@ public class TransferManager {
      *                                request or handling the response.
      * @throws AmazonServiceException If any errors occurred in Amazon S3 while processing the
      *                                request.
+     * @throws IllegalArgumentException If copies are relayed and <code>srcS3</code> is an
+     *                                {@link AmazonS3Encryption} client.
      */
     public Copy copy(final CopyObjectRequest copyObjectRequest, final AmazonS3 srcS3,
                      final TransferStateChangeListener stateChangeListener) throws
@@ -1767,6 +2112,12 @@ public class TransferManager {
         assertParameterNotNull(copyObjectRequest.getDestinationKey(),
                                "The destination object key must be specified when a copy request is initiated.");
         assertParameterNotNull(srcS3, "The srcS3 parameter is mandatory");
+        // A relay is sized from the stored length of the source, which is not
+        // the length of what a decrypting client reads
+        if (configuration.isRelayCopyEnabled() && srcS3 instanceof AmazonS3Encryption) {
+            throw new IllegalArgumentException(
+                    "Copies can't be relayed from a client that decrypts on the client side");
+        }
 
         String description =
                 "Copying object from " + copyObjectRequest.getSourceBucketName() + "/" +
@@ -1787,8 +2138,8 @@ public class TransferManager {
                 new TransferProgressUpdatingListener(transferProgress));
         CopyImpl copy = new CopyImpl(description, transferProgress, listenerChain,
                                      stateChangeListener);
-        CopyCallable copyCallable = new CopyCallable(this, executorService, copy, copyObjectRequest,
-                                                     metadata, listenerChain);
+        CopyCallable copyCallable = new CopyCallable(this, srcS3, executorService, copy,
+                                                     copyObjectRequest, metadata, listenerChain);
         CopyMonitor watcher = CopyMonitor
                 .create(this, copy, executorService, copyCallable, copyObjectRequest,
                         listenerChain);
@@ -1823,7 +2174,7 @@ public class TransferManager {
                 .getMutlipartUploadThreshold());
         return doUpload(new PutObjectRequest(persistableUpload.getBucketName(),
                 persistableUpload.getKey(), new File(persistableUpload.getFile())), null, null,
-                persistableUpload);
+                persistableUpload, null);
     }
 
     /**
@@ -1861,7 +2212,9 @@ public class TransferManager {
         return doDownload(request, new File(persistableDownload.getFile()), null, null,
                 APPEND_MODE, 0,
                 persistableDownload.getLastFullyDownloadedPartNumber(),
-                persistableDownload.getlastModifiedTime());
+                persistableDownload.getCompletedPartRanges(),
+                persistableDownload.getRangedPartSize(),
+                persistableDownload.getlastModifiedTime(), false, null);
     }
 
     /**
@@ -45,6 +45,42 @@ public class TransferManagerConfiguration {
     @SdkTestInternalApi
     static final long DEFAULT_MINIMUM_COPY_PART_SIZE = 100 * MB;
 
+    /** Default size threshold for downloading a non multipart object with parallel range requests. */
+    @SdkTestInternalApi
+    static final long DEFAULT_RANGED_DOWNLOAD_THRESHOLD = 16 * MB;
+
+    /** Default size of each range of a parallel range download. */
+    @SdkTestInternalApi
+    static final long DEFAULT_RANGED_DOWNLOAD_PART_SIZE = 8 * MB;
+
+    /** Default maximum number of ranges of a single download fetched at the same time. */
+    @SdkTestInternalApi
+    static final int DEFAULT_MAX_RANGED_DOWNLOAD_CONCURRENCY = 10;
+
+    /** Default size of each part of a streaming upload. */
+    @SdkTestInternalApi
+    static final long DEFAULT_STREAMING_UPLOAD_PART_SIZE = 16 * MB;
+
+    /** Amazon S3 rejects parts smaller than this, except for the last part of an upload. */
+    @SdkTestInternalApi
+    static final long MINIMUM_STREAMING_UPLOAD_PART_SIZE = 5 * MB;
+
+    /** Default upper bound of the number of parts in flight per transfer when tuning adaptively. */
+    @SdkTestInternalApi
+    static final int DEFAULT_MAX_ADAPTIVE_CONCURRENCY = 64;
+
+    /** Default upper bound of the part size when tuning adaptively. */
+    @SdkTestInternalApi
+    static final long DEFAULT_MAX_ADAPTIVE_PART_SIZE = 256 * MB;
+
+    /** Default maximum number of bytes a directory transfer has in flight. */
+    @SdkTestInternalApi
+    static final long DEFAULT_MAX_DIRECTORY_TRANSFER_BYTES = 256 * MB;
+
+    /** Default maximum number of small files transferred by a single task of a directory transfer. */
+    @SdkTestInternalApi
+    static final int DEFAULT_DIRECTORY_TRANSFER_BATCH_SIZE = 64;
+
     /**
      * The minimum part size for upload parts. Decreasing the minimum part size
      * will cause multipart uploads to be split into a larger number of smaller
@@ -83,17 +119,98 @@ public class TransferManagerConfiguration {
      */
     private long multipartCopyPartSize = DEFAULT_MINIMUM_COPY_PART_SIZE;
 
+    /**
+     * The size threshold, in bytes, for when to download an object that was
+     * not uploaded in parts with parallel range requests. Multipart objects
+     * are always downloaded part by part in parallel.
+     */
+    private long rangedDownloadThreshold = DEFAULT_RANGED_DOWNLOAD_THRESHOLD;
+
+    /**
+     * The size in bytes of each range request of a parallel range download.
+     */
+    private long rangedDownloadPartSize = DEFAULT_RANGED_DOWNLOAD_PART_SIZE;
+
+    /**
+     * The maximum number of range requests of a single download that are in
+     * flight at the same time.
+     */
+    private int maxRangedDownloadConcurrency = DEFAULT_MAX_RANGED_DOWNLOAD_CONCURRENCY;
+
+    /**
+     * Whether a parallel range download is checked against the MD5 of the
+     * object, by hashing the whole file once all the ranges are written.
+     */
+    private boolean rangedDownloadIntegrityCheckEnabled = false;
+
+    /**
+     * The number of part buffers of a streaming upload, or zero to disable
+     * streaming uploads. A streaming upload reads an input stream of unknown
+     * length into these buffers and uploads the parts in parallel as they
+     * fill up, using at most this many times the part size of memory.
+     */
+    private int streamingUploadBufferCount = 0;
+
+    /**
+     * The size in bytes of each part of a streaming upload.
+     */
+    private long streamingUploadPartSize = DEFAULT_STREAMING_UPLOAD_PART_SIZE;
+
+    /**
+     * Option to tune the number of parts in flight and the part size from
+     * the measured throughput of the parts, instead of using fixed values.
+     */
+    private boolean adaptiveTuningEnabled = false;
+
+    /**
+     * The upper bound of the number of parts of a transfer in flight when
+     * tuning adaptively.
+     */
+    private int maxAdaptiveConcurrency = DEFAULT_MAX_ADAPTIVE_CONCURRENCY;
+
+    /**
+     * The upper bound of the part size in bytes when tuning adaptively. The
+     * lower bound is the minimum upload part size.
+     */
+    private long maxAdaptivePartSize = DEFAULT_MAX_ADAPTIVE_PART_SIZE;
+
+    /**
+     * The maximum number of requests a directory transfer has in flight, or
+     * zero to schedule each file of a directory transfer on its own.
+     */
+    private int maxDirectoryTransferRequests = 0;
+
+    /**
+     * The maximum number of bytes held by the requests a directory transfer
+     * has in flight.
+     */
+    private long maxDirectoryTransferBytes = DEFAULT_MAX_DIRECTORY_TRANSFER_BYTES;
+
+    /**
+     * Whether copies read the source object through the source client and
+     * upload it through the destination client, rather than asking Amazon S3
+     * to copy it.
+     */
+    private boolean relayCopyEnabled = false;
+
+    /**
+     * The maximum number of small files transferred one after the other by a
+     * single task of a directory transfer.
+     */
+    private int directoryTransferBatchSize = DEFAULT_DIRECTORY_TRANSFER_BATCH_SIZE;
+
     /**
      * Option to disable parallel downloads. By default, the value is set to false.
      *
      * <p>
      * TransferManager automatically detects and downloads a multipart object
-     * in parallel. Setting this option to true will disable parallel downloads.
+     * in parallel, and downloads other objects over the ranged download
+     * threshold with parallel range requests. Setting this option to true will
+     * disable parallel downloads.
      * </p>
      * <p>
-     * During parallel downloads, each part is downloaded to a temporary file, gets merged
-     * into the final destination file and will be deleted. These temporary files uses disk space temporarily.
-     * Disable parallel downloads if your system do not have enough space to store these files during download.
+     * During parallel downloads, the destination file is allocated to the full
+     * size of the object up front and each part is written at its offset.
      * </p>
      * <p>
      * Disabling parallel downloads might reduce performance for large files.
@@ -254,12 +371,13 @@ public class TransferManagerConfiguration {
      *
      * <p>
      * TransferManager automatically detects and downloads a multipart object
-     * in parallel. Setting this option to true will disable parallel downloads.
+     * in parallel, and downloads other objects over the ranged download
+     * threshold with parallel range requests. Setting this option to true will
+     * disable parallel downloads.
      * </p>
      * <p>
-     * During parallel downloads, each part is downloaded to a temporary file, gets merged
-     * into the final destination file and will be deleted. These temporary files uses disk space temporarily.
-     * Disable parallel downloads if your system do not have enough space to store these files during download.
+     * During parallel downloads, the destination file is allocated to the full
+     * size of the object up front and each part is written at its offset.
      * </p>
      * <p>
      * Disabling parallel downloads might reduce performance for large files.
@@ -276,12 +394,13 @@ public class TransferManagerConfiguration {
      *
      * <p>
      * TransferManager automatically detects and downloads a multipart object
-     * in parallel. Setting this option to true will disable parallel downloads.
+     * in parallel, and downloads other objects over the ranged download
+     * threshold with parallel range requests. Setting this option to true will
+     * disable parallel downloads.
      * </p>
      * <p>
-     * During parallel downloads, each part is downloaded to a temporary file, gets merged
-     * into the final destination file and will be deleted. These temporary files uses disk space temporarily.
-     * Disable parallel downloads if your system do not have enough space to store these files during download.
+     * During parallel downloads, the destination file is allocated to the full
+     * size of the object up front and each part is written at its offset.
      * </p>
      * <p>
      * Disabling parallel downloads might reduce performance for large files.
@@ -292,4 +411,413 @@ public class TransferManagerConfiguration {
     public void setDisableParallelDownloads(boolean disableParallelDownloads) {
         this.disableParallelDownloads = disableParallelDownloads;
     }
-}
\ No newline at end of file
+
+    /**
+     * Returns the size threshold in bytes for when to download an object that
+     * was not uploaded in parts with parallel range requests.
+     *
+     * @return The size threshold in bytes for parallel range downloads.
+     */
+    public long getRangedDownloadThreshold() {
+        return rangedDownloadThreshold;
+    }
+
+    /**
+     * Sets the size threshold in bytes for when to download an object that
+     * was not uploaded in parts with parallel range requests. Objects over
+     * this size are split into ranges of the ranged download part size,
+     * while smaller objects are downloaded with a single request. Multipart
+     * objects are always downloaded part by part in parallel.
+     *
+     * @param rangedDownloadThreshold
+     *            The size threshold in bytes for parallel range downloads.
+     * @throws IllegalArgumentException
+     *             If rangedDownloadThreshold is not positive.
+     */
+    public void setRangedDownloadThreshold(long rangedDownloadThreshold) {
+        if (rangedDownloadThreshold <= 0) {
+            throw new IllegalArgumentException("rangedDownloadThreshold must be positive");
+        }
+        this.rangedDownloadThreshold = rangedDownloadThreshold;
+    }
+
+    /**
+     * Returns the size in bytes of each range request of a parallel range
+     * download.
+     *
+     * @return The size in bytes of each range of a parallel range download.
+     */
+    public long getRangedDownloadPartSize() {
+        return rangedDownloadPartSize;
+    }
+
+    /**
+     * Sets the size in bytes of each range request of a parallel range
+     * download. Each range is retried on its own, so smaller ranges lose less
+     * data on a failure but cost more requests.
+     *
+     * @param rangedDownloadPartSize
+     *            The size in bytes of each range of a parallel range download.
+     * @throws IllegalArgumentException
+     *             If rangedDownloadPartSize is not positive.
+     */
+    public void setRangedDownloadPartSize(long rangedDownloadPartSize) {
+        if (rangedDownloadPartSize <= 0) {
+            throw new IllegalArgumentException("rangedDownloadPartSize must be positive");
+        }
+        this.rangedDownloadPartSize = rangedDownloadPartSize;
+    }
+
+    /**
+     * Returns the maximum number of range requests of a single download that
+     * are in flight at the same time.
+     *
+     * @return The maximum number of concurrent range requests per download.
+     */
+    public int getMaxRangedDownloadConcurrency() {
+        return maxRangedDownloadConcurrency;
+    }
+
+    /**
+     * Sets the maximum number of range requests of a single download that
+     * are in flight at the same time. The requests also share the thread
+     * pool of the TransferManager, which bounds the overall concurrency.
+     *
+     * @param maxRangedDownloadConcurrency
+     *            The maximum number of concurrent range requests per download.
+     * @throws IllegalArgumentException
+     *             If maxRangedDownloadConcurrency is not positive.
+     */
+    public void setMaxRangedDownloadConcurrency(int maxRangedDownloadConcurrency) {
+        if (maxRangedDownloadConcurrency <= 0) {
+            throw new IllegalArgumentException("maxRangedDownloadConcurrency must be positive");
+        }
+        this.maxRangedDownloadConcurrency = maxRangedDownloadConcurrency;
+    }
+
+    /**
+     * Returns true if a parallel range download is checked against the MD5 of
+     * the object once all its ranges are written. By default, the value is
+     * set to false.
+     *
+     * @return True if parallel range downloads are checked, otherwise false.
+     */
+    public boolean isRangedDownloadIntegrityCheckEnabled() {
+        return rangedDownloadIntegrityCheckEnabled;
+    }
+
+    /**
+     * Sets whether a parallel range download is checked against the MD5 of
+     * the object once all its ranges are written.
+     * <p>
+     * Amazon S3 only returns the MD5 of a whole object, in the ETag of an
+     * object that was not uploaded in parts, so the ranges can't be checked
+     * one by one. When enabled, the downloaded file is read back and hashed
+     * after the last range is written, and the download fails if the hash
+     * doesn't match or can't be computed. This costs a second pass over the
+     * file. Multipart objects and objects encrypted with SSE-KMS or SSE-C
+     * have no MD5 ETag and are never checked.
+     * </p>
+     *
+     * @param rangedDownloadIntegrityCheckEnabled
+     *            True to check parallel range downloads, otherwise false.
+     */
+    public void setRangedDownloadIntegrityCheckEnabled(boolean rangedDownloadIntegrityCheckEnabled) {
+        this.rangedDownloadIntegrityCheckEnabled = rangedDownloadIntegrityCheckEnabled;
+    }
+
+    /**
+     * Returns the number of part buffers of a streaming upload. Zero, the
+     * default, means streaming uploads are disabled.
+     *
+     * @return The number of part buffers of a streaming upload.
+     */
+    public int getStreamingUploadBufferCount() {
+        return streamingUploadBufferCount;
+    }
+
+    /**
+     * Sets the number of part buffers of a streaming upload, or zero to
+     * disable streaming uploads.
+     * <p>
+     * When enabled, uploads from an input stream whose content length isn't
+     * set in the object metadata are read into this many direct buffers of the
+     * streaming upload part size, and each part is uploaded in parallel as
+     * soon as its buffer is full. Reading the stream waits while all the
+     * buffers are in flight, so an upload never uses more than this many
+     * times the part size of memory and never spills to disk. A stream
+     * shorter than one part is uploaded with a single request.
+     * </p>
+     * <p>
+     * Streaming uploads are not used with client side encryption, since the
+     * parts of an encrypted upload must be uploaded in order.
+     * </p>
+     *
+     * @param streamingUploadBufferCount
+     *            The number of part buffers of a streaming upload.
+     * @throws IllegalArgumentException
+     *             If streamingUploadBufferCount is negative.
+     */
+    public void setStreamingUploadBufferCount(int streamingUploadBufferCount) {
+        if (streamingUploadBufferCount < 0) {
+            throw new IllegalArgumentException("streamingUploadBufferCount must not be negative");
+        }
+        this.streamingUploadBufferCount = streamingUploadBufferCount;
+    }
+
+    /**
+     * Returns the size in bytes of each part of a streaming upload.
+     *
+     * @return The size in bytes of each part of a streaming upload.
+     */
+    public long getStreamingUploadPartSize() {
+        return streamingUploadPartSize;
+    }
+
+    /**
+     * Sets the size in bytes of each part of a streaming upload. Since the
+     * length of the stream is unknown, the part size bounds the size of the
+     * object to 10,000 parts of this size. Every part but the last one is
+     * uploaded at this size, so it can't be less than the 5 MB minimum part
+     * size of Amazon S3.
+     *
+     * @param streamingUploadPartSize
+     *            The size in bytes of each part of a streaming upload.
+     * @throws IllegalArgumentException
+     *             If streamingUploadPartSize is less than 5 MB, or larger
+     *             than a buffer can hold.
+     */
+    public void setStreamingUploadPartSize(long streamingUploadPartSize) {
+        if (streamingUploadPartSize < MINIMUM_STREAMING_UPLOAD_PART_SIZE) {
+            throw new IllegalArgumentException("streamingUploadPartSize must be at least "
+                    + MINIMUM_STREAMING_UPLOAD_PART_SIZE + " bytes");
+        }
+        if (streamingUploadPartSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("streamingUploadPartSize must be at most "
+                    + Integer.MAX_VALUE + " bytes");
+        }
+        this.streamingUploadPartSize = streamingUploadPartSize;
+    }
+
+    /**
+     * Returns true if the number of parts in flight and the part size are
+     * tuned from the measured throughput of the parts. By default, the value
+     * is set to false.
+     *
+     * @return True if adaptive tuning is enabled, otherwise false.
+     */
+    public boolean isAdaptiveTuningEnabled() {
+        return adaptiveTuningEnabled;
+    }
+
+    /**
+     * Sets the option to tune the number of parts in flight and the part size
+     * from the measured throughput of the parts, so that the same
+     * configuration makes good use of both slow and fast hosts.
+     * <p>
+     * TransferManager measures the throughput of every part it transfers.
+     * The number of parts in flight grows while it increases the aggregate
+     * throughput, between one and the maximum adaptive concurrency, and the
+     * part size follows the throughput of a single part, between the minimum
+     * upload part size and the maximum adaptive part size.
+     * </p>
+     * <p>
+     * Tuning applies to parallel downloads and streaming uploads. Uploads of
+     * files keep a fixed part size so that they can be paused and resumed.
+     * The number of parts in flight is also bounded by the size of the thread
+     * pool of the TransferManager.
+     * </p>
+     *
+     * @param adaptiveTuningEnabled
+     *            True to enable adaptive tuning.
+     */
+    public void setAdaptiveTuningEnabled(boolean adaptiveTuningEnabled) {
+        this.adaptiveTuningEnabled = adaptiveTuningEnabled;
+    }
+
+    /**
+     * Returns the upper bound of the number of parts of a transfer in flight
+     * when tuning adaptively.
+     *
+     * @return The maximum number of parts in flight per transfer.
+     */
+    public int getMaxAdaptiveConcurrency() {
+        return maxAdaptiveConcurrency;
+    }
+
+    /**
+     * Sets the upper bound of the number of parts of a transfer in flight
+     * when tuning adaptively.
+     *
+     * @param maxAdaptiveConcurrency
+     *            The maximum number of parts in flight per transfer.
+     * @throws IllegalArgumentException
+     *             If maxAdaptiveConcurrency is not positive.
+     */
+    public void setMaxAdaptiveConcurrency(int maxAdaptiveConcurrency) {
+        if (maxAdaptiveConcurrency <= 0) {
+            throw new IllegalArgumentException("maxAdaptiveConcurrency must be positive");
+        }
+        this.maxAdaptiveConcurrency = maxAdaptiveConcurrency;
+    }
+
+    /**
+     * Returns the upper bound of the part size in bytes when tuning
+     * adaptively.
+     *
+     * @return The maximum part size in bytes.
+     */
+    public long getMaxAdaptivePartSize() {
+        return maxAdaptivePartSize;
+    }
+
+    /**
+     * Sets the upper bound of the part size in bytes when tuning adaptively.
+     * The part size of a streaming upload is also bounded by the streaming
+     * upload part size, which is the size of its buffers.
+     *
+     * @param maxAdaptivePartSize
+     *            The maximum part size in bytes.
+     * @throws IllegalArgumentException
+     *             If maxAdaptivePartSize is not positive.
+     */
+    public void setMaxAdaptivePartSize(long maxAdaptivePartSize) {
+        if (maxAdaptivePartSize <= 0) {
+            throw new IllegalArgumentException("maxAdaptivePartSize must be positive");
+        }
+        this.maxAdaptivePartSize = maxAdaptivePartSize;
+    }
+
+    /**
+     * Returns the maximum number of requests a directory upload or download
+     * has in flight. Zero, the default, means each file of a directory
+     * transfer is scheduled on its own.
+     *
+     * @return The maximum number of requests of a directory transfer in flight.
+     */
+    public int getMaxDirectoryTransferRequests() {
+        return maxDirectoryTransferRequests;
+    }
+
+    /**
+     * Sets the maximum number of requests a directory upload or download has
+     * in flight, or zero to schedule each file of a directory transfer on its
+     * own.
+     * <p>
+     * When set, the small files of a directory transfer are grouped into
+     * batches that are each transferred by a single task, without looking up
+     * the metadata of each object to download first, and the parts of its
+     * large files are queued next to the batches. Large files and batches
+     * take turns, and at most this many of their requests, holding at most
+     * the maximum directory transfer bytes, are in flight at a time. Files
+     * are transferred as they are found, while the rest of the directory is
+     * still being walked.
+     * </p>
+     * <p>
+     * Files below the multipart upload threshold, and objects below the
+     * ranged download threshold, are small. A file transferred in a batch
+     * can't be paused.
+     * </p>
+     *
+     * @param maxDirectoryTransferRequests
+     *            The maximum number of requests of a directory transfer in
+     *            flight.
+     * @throws IllegalArgumentException
+     *             If maxDirectoryTransferRequests is negative.
+     */
+    public void setMaxDirectoryTransferRequests(int maxDirectoryTransferRequests) {
+        if (maxDirectoryTransferRequests < 0) {
+            throw new IllegalArgumentException("maxDirectoryTransferRequests must not be negative");
+        }
+        this.maxDirectoryTransferRequests = maxDirectoryTransferRequests;
+    }
+
+    /**
+     * Returns the maximum number of bytes held by the requests a directory
+     * transfer has in flight.
+     *
+     * @return The maximum number of bytes of a directory transfer in flight.
+     */
+    public long getMaxDirectoryTransferBytes() {
+        return maxDirectoryTransferBytes;
+    }
+
+    /**
+     * Sets the maximum number of bytes held by the requests a directory
+     * transfer has in flight. A request that holds more than this many bytes
+     * is sent once nothing else is in flight.
+     *
+     * @param maxDirectoryTransferBytes
+     *            The maximum number of bytes of a directory transfer in flight.
+     * @throws IllegalArgumentException
+     *             If maxDirectoryTransferBytes is not positive.
+     */
+    public void setMaxDirectoryTransferBytes(long maxDirectoryTransferBytes) {
+        if (maxDirectoryTransferBytes <= 0) {
+            throw new IllegalArgumentException("maxDirectoryTransferBytes must be positive");
+        }
+        this.maxDirectoryTransferBytes = maxDirectoryTransferBytes;
+    }
+
+    /**
+     * Returns the maximum number of small files transferred one after the
+     * other by a single task of a directory transfer.
+     *
+     * @return The maximum number of files of a batch.
+     */
+    public int getDirectoryTransferBatchSize() {
+        return directoryTransferBatchSize;
+    }
+
+    /**
+     * Sets the maximum number of small files transferred one after the other
+     * by a single task of a directory transfer. A batch is also closed once
+     * its files add up to the minimum upload part size.
+     *
+     * @param directoryTransferBatchSize
+     *            The maximum number of files of a batch.
+     * @throws IllegalArgumentException
+     *             If directoryTransferBatchSize is not positive.
+     */
+    public void setDirectoryTransferBatchSize(int directoryTransferBatchSize) {
+        if (directoryTransferBatchSize <= 0) {
+            throw new IllegalArgumentException("directoryTransferBatchSize must be positive");
+        }
+        this.directoryTransferBatchSize = directoryTransferBatchSize;
+    }
+
+    /**
+     * Returns whether copies read the source object through the source client
+     * and upload it through the destination client, rather than asking Amazon
+     * S3 to copy it.
+     *
+     * @return True if copies are relayed through this client.
+     */
+    public boolean isRelayCopyEnabled() {
+        return relayCopyEnabled;
+    }
+
+    /**
+     * Sets whether copies read the source object through the source client
+     * and upload it through the destination client, rather than asking Amazon
+     * S3 to copy it. Relaying works where a server-side copy can't, such as
+     * between partitions, or when the destination client encrypts on the
+     * client side.
+     * <p>
+     * A relayed copy above the multipart upload threshold is split into
+     * parts, each of which is streamed from a ranged GET of the source
+     * straight into an upload part request, so the copy holds no more than
+     * the buffers of the parts in flight and nothing is written to disk.
+     * The parts are relayed in parallel, except into an encrypting client,
+     * which uploads them one after the other. The source is read as it is
+     * stored, so copies from a source client that decrypts on the client
+     * side are rejected.
+     * </p>
+     *
+     * @param relayCopyEnabled
+     *            True to relay copies through this client.
+     */
+    public void setRelayCopyEnabled(boolean relayCopyEnabled) {
+        this.relayCopyEnabled = relayCopyEnabled;
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer.internal;
+
+import static com.amazonaws.services.s3.internal.Constants.MB;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.annotation.SdkInternalApi;
+import com.amazonaws.annotation.ThreadSafe;
+
+/**
+ * Tunes the number of parts in flight and the part size of the transfers of a
+ * TransferManager from the throughput of the parts that complete.
+ * <p>
+ * Concurrency is tuned by hill climbing on the aggregate throughput, measured
+ * once every slot has completed a part: it keeps growing while each step
+ * improves the throughput, and steps back as soon as one doesn't. It is then
+ * held, and probed upwards again periodically or when the throughput drops,
+ * since the network may have changed.
+ * The part size follows the throughput of a single part so that each part
+ * takes about {@link #TARGET_PART_DURATION_NANOS} to transfer, which keeps the
+ * per request overhead small on fast hosts without starving slow ones.
+ * <p>
+ * The concurrency bounds the parts in flight across all the transfers sharing
+ * the tuner: each part takes one of the part slots of the tuner while it is
+ * being transferred.
+ */
+@SdkInternalApi
+@ThreadSafe
+public class AdaptiveTransferTuner {
+
+    private static final Log LOG = LogFactory.getLog(AdaptiveTransferTuner.class);
+
+    private static final int INITIAL_CONCURRENCY = 4;
+    private static final long TARGET_PART_DURATION_NANOS = TimeUnit.SECONDS.toNanos(1);
+    private static final long MIN_WINDOW_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    /** Required relative gain before a change of concurrency is considered an improvement. */
+    private static final double IMPROVEMENT = 1.05;
+    /** Relative loss of throughput at a held concurrency after which it is probed again. */
+    private static final double REGRESSION = 0.9;
+    /** Number of windows a concurrency is held before probing upwards again. */
+    private static final int PROBE_INTERVAL = 20;
+    /** Weight of the latest part in the moving average of the single part throughput. */
+    private static final double ALPHA = 0.2;
+
+    private final int maxConcurrency;
+    private final long minPartSize;
+    private final long maxPartSize;
+
+    private int concurrency;
+    /** Concurrency and throughput of the previous window, or zero before the first one. */
+    private int previousConcurrency;
+    private double previousThroughput;
+    private int heldWindows;
+
+    private long windowStart = -1;
+    private long windowBytes;
+    private int windowParts;
+
+    /** Moving average of the throughput of a single part, in bytes per second. */
+    private double partThroughput;
+
+    /** One permit per part that may currently be in flight, resized with the concurrency. */
+    private final PartSlots partSlots;
+
+    /**
+     * @param maxConcurrency Upper bound of the number of parts in flight.
+     * @param minPartSize    Lower bound of the part size, in bytes.
+     * @param maxPartSize    Upper bound of the part size, in bytes.
+     */
+    public AdaptiveTransferTuner(int maxConcurrency, long minPartSize, long maxPartSize) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be positive: " + maxConcurrency);
+        }
+        if (minPartSize <= 0 || maxPartSize < minPartSize) {
+            throw new IllegalArgumentException(
+                    "Invalid part size bounds: [" + minPartSize + ", " + maxPartSize + "]");
+        }
+        this.maxConcurrency = maxConcurrency;
+        this.minPartSize = minPartSize;
+        this.maxPartSize = maxPartSize;
+        this.concurrency = Math.min(INITIAL_CONCURRENCY, maxConcurrency);
+        this.partSlots = new PartSlots(concurrency);
+    }
+
+    /**
+     * Waits until fewer than {@link #getConcurrency()} parts are in flight
+     * across the transfers sharing this tuner, and takes a slot for a part.
+     * Must be followed by {@link #releasePartSlot()} once the part is done.
+     */
+    public void acquirePartSlot() throws InterruptedException {
+        partSlots.acquire();
+    }
+
+    /**
+     * Releases the slot taken by {@link #acquirePartSlot()}.
+     */
+    public void releasePartSlot() {
+        partSlots.release();
+    }
+
+    /**
+     * Returns the number of part slots free; negative while more parts are in
+     * flight than the concurrency allows since it was reduced.
+     */
+    int getAvailablePartSlots() {
+        return partSlots.availablePermits();
+    }
+
+    /**
+     * Returns the number of parts that should currently be in flight.
+     */
+    public synchronized int getConcurrency() {
+        return concurrency;
+    }
+
+    /**
+     * Returns the size in bytes of the next parts, rounded up to a whole
+     * number of megabytes, or the minimum part size until a part completed.
+     */
+    public synchronized long getPartSize() {
+        if (partThroughput <= 0) {
+            return minPartSize;
+        }
+        long partSize = (long) (partThroughput * TARGET_PART_DURATION_NANOS / TimeUnit.SECONDS.toNanos(1));
+        partSize = (partSize + MB - 1) / MB * MB;
+        return Math.max(minPartSize, Math.min(maxPartSize, partSize));
+    }
+
+    /**
+     * Records a part that was transferred.
+     *
+     * @param bytes        The number of bytes in the part.
+     * @param elapsedNanos The time it took to transfer the part.
+     */
+    public void partCompleted(long bytes, long elapsedNanos) {
+        partCompleted(bytes, elapsedNanos, System.nanoTime());
+    }
+
+    synchronized void partCompleted(long bytes, long elapsedNanos, long now) {
+        if (elapsedNanos > 0) {
+            double throughput = bytes * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+            partThroughput = partThroughput <= 0 ? throughput
+                    : ALPHA * throughput + (1 - ALPHA) * partThroughput;
+        }
+        if (windowStart < 0) {
+            // The first window starts when the first part started
+            windowStart = now - elapsedNanos;
+        }
+        windowBytes += bytes;
+        windowParts++;
+
+        long windowNanos = now - windowStart;
+        if (windowParts < concurrency || windowNanos < MIN_WINDOW_NANOS) {
+            return;
+        }
+        adjustConcurrency(windowBytes * (double) TimeUnit.SECONDS.toNanos(1) / windowNanos);
+        windowStart = now;
+        windowBytes = 0;
+        windowParts = 0;
+    }
+
+    private void adjustConcurrency(double throughput) {
+        final int current = concurrency;
+        if (previousConcurrency == 0) {
+            grow();
+        } else if (current > previousConcurrency) {
+            if (throughput > previousThroughput * IMPROVEMENT) {
+                grow();
+            } else {
+                // The last step didn't pay off
+                concurrency = previousConcurrency;
+                heldWindows = 0;
+            }
+        } else if (++heldWindows >= PROBE_INTERVAL || throughput < previousThroughput * REGRESSION) {
+            grow();
+            heldWindows = 0;
+        }
+        previousConcurrency = current;
+        previousThroughput = throughput;
+        partSlots.resize(current, concurrency);
+        if (LOG.isDebugEnabled() && current != concurrency) {
+            LOG.debug("Adjusted concurrency from " + current + " to " + concurrency
+                    + " at " + (long) throughput + " bytes/s");
+        }
+    }
+
+    private void grow() {
+        concurrency = Math.min(maxConcurrency, Math.max(concurrency + 1, concurrency * 3 / 2));
+    }
+
+    /**
+     * A fair semaphore whose number of permits can be reduced below the number
+     * of slots in use, in which case slots are only handed out again once
+     * enough of them have been released.
+     */
+    private static final class PartSlots extends Semaphore {
+        private static final long serialVersionUID = 1L;
+
+        PartSlots(int permits) {
+            super(permits, true);
+        }
+
+        void resize(int from, int to) {
+            if (to > from) {
+                release(to - from);
+            } else if (to < from) {
+                reducePermits(from - to);
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer.internal;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import com.amazonaws.annotation.SdkInternalApi;
+import com.amazonaws.annotation.ThreadSafe;
+
+/**
+ * A fixed number of direct buffers of the same size, used to hold the parts
+ * of a streaming upload. Buffers are allocated on first use and recycled
+ * once released, so the memory used never exceeds capacity times buffer size.
+ */
+@SdkInternalApi
+@ThreadSafe
+class ByteBufferPool {
+
+    private final Deque<ByteBuffer> freeBuffers = new ArrayDeque<ByteBuffer>();
+    private final int capacity;
+    private final int bufferSize;
+    private int allocated;
+
+    ByteBufferPool(int capacity, int bufferSize) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        if (bufferSize <= 0) {
+            throw new IllegalArgumentException("bufferSize must be positive: " + bufferSize);
+        }
+        this.capacity = capacity;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Returns a cleared buffer, or null if all the buffers of the pool are in
+     * use.
+     */
+    synchronized ByteBuffer tryAcquire() {
+        ByteBuffer buffer = freeBuffers.pollFirst();
+        if (buffer == null) {
+            if (allocated == capacity) {
+                return null;
+            }
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+            allocated++;
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Returns the given buffer, previously acquired from this pool, to the
+     * pool.
+     */
+    synchronized void release(ByteBuffer buffer) {
+        freeBuffers.addFirst(buffer);
+    }
+
+    int getBufferSize() {
+        return bufferSize;
+    }
+}
@@ -20,6 +20,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.Future;
+import java.util.concurrent.RunnableFuture;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.event.ProgressEventType;
@@ -109,13 +110,18 @@ public class CompleteMultipartUpload implements Callable<UploadResult> {
     /**
      * Collects the Part ETags for initiating the complete multi-part upload
      * request. This is blocking as it waits until all the upload part threads
-     * complete.
+     * complete. A part the thread pool hasn't started yet is uploaded in this
+     * thread instead, so uploads waiting to complete can't hold every thread
+     * of a busy pool while their parts are still queued.
      */
     private List<PartETag> collectPartETags() {
 
         final List<PartETag> partETags = new ArrayList<PartETag>();
         partETags.addAll(eTagsBeforeResume);
         for (Future<PartETag> future : futures) {
+            if (future instanceof RunnableFuture) {
+                ((RunnableFuture<?>) future).run();
+            }
             try {
                 partETags.add(future.get());
             } catch (Exception e) {
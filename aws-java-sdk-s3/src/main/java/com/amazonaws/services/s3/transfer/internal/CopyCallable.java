@@ -16,6 +16,7 @@ package com.amazonaws.services.s3.transfer.internal;
 
 import static com.amazonaws.event.SDKProgressPublisher.publishProgress;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -28,17 +29,28 @@ import java.util.concurrent.Future;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.event.ProgressEventType;
 import com.amazonaws.event.ProgressListenerChain;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Encryption;
 import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.internal.Constants;
 import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
 import com.amazonaws.services.s3.model.CopyObjectRequest;
 import com.amazonaws.services.s3.model.CopyObjectResult;
 import com.amazonaws.services.s3.model.CopyPartRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
 import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.model.UploadPartRequest;
 import com.amazonaws.services.s3.transfer.Transfer.TransferState;
 import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.TransferManagerConfiguration;
@@ -60,6 +72,11 @@ import com.amazonaws.services.s3.transfer.model.CopyResult;
  * operation is carried out in a single request where the Amazon S3 object is
  * transferred as one chunk from the source bucket to the destination bucket.
  * </p>
+ * <p>
+ * If relaying copies is enabled, the object is read through the source client
+ * and uploaded through the destination client instead, either as one chunk or
+ * as multiple upload part requests that each stream a range of the source.
+ * </p>
  *
  */
 public class CopyCallable implements Callable<CopyResult> {
@@ -69,6 +86,8 @@ public class CopyCallable implements Callable<CopyResult> {
      * requests are initiated.
      */
     private final AmazonS3 s3;
+    /** A reference to the Amazon S3 client the source object is read from. */
+    private final AmazonS3 srcS3;
     /** Thread pool used during multi-part copy is performed. */
     private final ExecutorService threadPool;
     /** A reference to the original copy request received. */
@@ -80,6 +99,15 @@ public class CopyCallable implements Callable<CopyResult> {
     private final CopyImpl copy;
 
     private static final Log log = LogFactory.getLog(CopyCallable.class);
+
+    /** The metadata a client encrypting on the client side stores with an object. */
+    private static final String[] ENCRYPTION_HEADERS = {
+            Headers.CRYPTO_CEK_ALGORITHM, Headers.CRYPTO_IV,
+            Headers.CRYPTO_KEY, Headers.CRYPTO_KEY_V2,
+            Headers.CRYPTO_KEYWRAP_ALGORITHM, Headers.CRYPTO_TAG_LENGTH,
+            Headers.MATERIALS_DESCRIPTION,
+            Headers.UNENCRYPTED_CONTENT_LENGTH,
+            Headers.UNENCRYPTED_CONTENT_MD5 };
     /**
      * <code>TransferManager</code> configuration that provides details on when
      * to use multi-part copy, part size etc.,
@@ -97,7 +125,16 @@ public class CopyCallable implements Callable<CopyResult> {
             ExecutorService threadPool, CopyImpl copy,
             CopyObjectRequest copyObjectRequest, ObjectMetadata metadata,
             ProgressListenerChain progressListenerChain) {
+        this(transferManager, transferManager.getAmazonS3Client(), threadPool,
+                copy, copyObjectRequest, metadata, progressListenerChain);
+    }
+
+    public CopyCallable(TransferManager transferManager, AmazonS3 srcS3,
+            ExecutorService threadPool, CopyImpl copy,
+            CopyObjectRequest copyObjectRequest, ObjectMetadata metadata,
+            ProgressListenerChain progressListenerChain) {
         this.s3 = transferManager.getAmazonS3Client();
+        this.srcS3 = srcS3;
         this.configuration = transferManager.getConfiguration();
         this.threadPool = threadPool;
         this.copyObjectRequest = copyObjectRequest;
@@ -120,12 +157,23 @@ public class CopyCallable implements Callable<CopyResult> {
      * @return True if this CopyCallable is processing a multi-part copy.
      */
     public boolean isMultipartCopy() {
+        if (configuration.isRelayCopyEnabled()) {
+            return metadata.getContentLength() > configuration
+                    .getMultipartUploadThreshold();
+        }
         return (metadata.getContentLength() > configuration
                 .getMultipartCopyThreshold());
     }
 
     public CopyResult call() throws Exception {
         copy.setState(TransferState.InProgress);
+        if (configuration.isRelayCopyEnabled()) {
+            if (isMultipartCopy()) {
+                publishProgress(listenerChain, ProgressEventType.TRANSFER_STARTED_EVENT);
+                return relayInParts();
+            }
+            return relayInOneChunk();
+        }
         if (isMultipartCopy()) {
             publishProgress(listenerChain, ProgressEventType.TRANSFER_STARTED_EVENT);
             copyInParts();
@@ -169,7 +217,8 @@ public class CopyCallable implements Callable<CopyResult> {
         final String bucketName = copyObjectRequest.getDestinationBucketName();
         final String key = copyObjectRequest.getDestinationKey();
 
-        multipartUploadId = initiateMultipartUpload(copyObjectRequest);
+        multipartUploadId = initiateMultipartUpload(copyObjectRequest,
+                newCopyMetadata(copyObjectRequest));
 
         long optimalPartSize = getOptimalPartSize(metadata.getContentLength());
 
@@ -221,7 +270,8 @@ public class CopyCallable implements Callable<CopyResult> {
     /**
      * Initiates a multipart upload and returns the upload id
      */
-    private String initiateMultipartUpload(CopyObjectRequest origReq) {
+    private String initiateMultipartUpload(CopyObjectRequest origReq,
+            ObjectMetadata newObjectMetadata) {
 
         InitiateMultipartUploadRequest req = new InitiateMultipartUploadRequest(
                 origReq.getDestinationBucketName(),
@@ -236,6 +286,18 @@ public class CopyCallable implements Callable<CopyResult> {
            .withRequestMetricCollector(origReq.getRequestMetricCollector())
            ;
 
+        req.setObjectMetadata(newObjectMetadata);
+
+        String uploadId = s3.initiateMultipartUpload(req).getUploadId();
+        log.debug("Initiated new multipart upload: " + uploadId);
+
+        return uploadId;
+    }
+
+    /**
+     * Returns the metadata of the object created by a multipart copy.
+     */
+    private ObjectMetadata newCopyMetadata(CopyObjectRequest origReq) {
         ObjectMetadata newObjectMetadata = origReq.getNewObjectMetadata();
         if (newObjectMetadata == null){
             newObjectMetadata = new ObjectMetadata();
@@ -244,27 +306,231 @@ public class CopyCallable implements Callable<CopyResult> {
             newObjectMetadata.setContentType(metadata.getContentType());
         }
 
-        req.setObjectMetadata(newObjectMetadata);
-
         populateMetadataWithEncryptionParams(metadata,newObjectMetadata);
+        return newObjectMetadata;
+    }
 
-        String uploadId = s3.initiateMultipartUpload(req).getUploadId();
-        log.debug("Initiated new multipart upload: " + uploadId);
+    /**
+     * Uploads the source object, read through the source client, to the
+     * destination in one single request.
+     */
+    private CopyResult relayInOneChunk() {
+        S3Object source = srcS3.getObject(newRelayGetRequest());
+        if (source == null) {
+            throw sourceChanged();
+        }
+        S3ObjectInputStream content = source.getObjectContent();
+        PutObjectResult putObjectResult;
+        try {
+            ObjectMetadata newObjectMetadata = newRelayMetadata();
+            newObjectMetadata.setContentLength(metadata.getContentLength());
+            PutObjectRequest req = new PutObjectRequest(
+                    copyObjectRequest.getDestinationBucketName(),
+                    copyObjectRequest.getDestinationKey(), content,
+                    newObjectMetadata)
+                    .withCannedAcl(copyObjectRequest.getCannedAccessControlList())
+                    .withAccessControlList(copyObjectRequest.getAccessControlList())
+                    .withStorageClass(copyObjectRequest.getStorageClass())
+                    .withSSECustomerKey(copyObjectRequest.getDestinationSSECustomerKey())
+                    .withSSEAwsKeyManagementParams(copyObjectRequest.getSSEAwsKeyManagementParams());
+            req.setGeneralProgressListener(listenerChain);
+            req.setRequestMetricCollector(copyObjectRequest.getRequestMetricCollector());
+            putObjectResult = s3.putObject(req);
+        } finally {
+            closeSource(content);
+        }
 
-        return uploadId;
+        CopyResult copyResult = newCopyResult();
+        copyResult.setETag(putObjectResult.getETag());
+        copyResult.setVersionId(putObjectResult.getVersionId());
+        return copyResult;
+    }
+
+    /**
+     * Uploads the source object to the destination as multiple upload part
+     * requests, each streaming a range of the source read through the source
+     * client. Parts are relayed in parallel and completed by the
+     * {@link CopyMonitor}, in which case null is returned; an encrypting
+     * destination client needs its parts in order, so they are relayed one
+     * after the other and the upload is completed here.
+     */
+    private CopyResult relayInParts() throws Exception {
+        final String bucketName = copyObjectRequest.getDestinationBucketName();
+        final String key = copyObjectRequest.getDestinationKey();
+        final boolean serial = s3 instanceof AmazonS3Encryption;
+
+        multipartUploadId = initiateMultipartUpload(copyObjectRequest,
+                newRelayMetadata());
+
+        final long contentLength = metadata.getContentLength();
+        long partSize = Math.max(
+                (long) Math.ceil((double) contentLength
+                        / (double) Constants.MAXIMUM_UPLOAD_PARTS),
+                configuration.getMinimumUploadPartSize());
+        if (serial) {
+            // Encrypted parts must be a multiple of the cipher block size
+            partSize = partSize + 31 - (partSize + 31) % 32;
+        }
+        log.debug("Calculated relay part size: " + partSize);
+
+        try {
+            List<PartETag> partETags = new ArrayList<PartETag>();
+            int partNumber = 1;
+            for (long offset = 0; offset < contentLength; offset += partSize, partNumber++) {
+                if (threadPool.isShutdown())
+                    throw new CancellationException(
+                            "TransferManager has been shutdown");
+                long size = Math.min(partSize, contentLength - offset);
+                GetObjectRequest getPartRequest = newRelayGetRequest();
+                getPartRequest.setRange(offset, offset + size - 1);
+                UploadPartRequest uploadPartRequest = new UploadPartRequest()
+                        .withBucketName(bucketName)
+                        .withKey(key)
+                        .withUploadId(multipartUploadId)
+                        .withPartNumber(partNumber)
+                        .withPartSize(size)
+                        .withLastPart(offset + size >= contentLength)
+                        .withSSECustomerKey(copyObjectRequest.getDestinationSSECustomerKey());
+                uploadPartRequest.setGeneralProgressListener(listenerChain);
+                uploadPartRequest.setRequestMetricCollector(copyObjectRequest.getRequestMetricCollector());
+                RelayPartCallable part = new RelayPartCallable(srcS3,
+                        getPartRequest, s3, uploadPartRequest);
+                if (serial) {
+                    partETags.add(part.call());
+                } else {
+                    futures.add(threadPool.submit(part));
+                }
+            }
+            if (!serial) {
+                return null;
+            }
+            CompleteMultipartUploadRequest req = new CompleteMultipartUploadRequest(
+                    bucketName, key, multipartUploadId, partETags)
+                    .withGeneralProgressListener(copyObjectRequest.getGeneralProgressListener())
+                    .withRequestMetricCollector(copyObjectRequest.getRequestMetricCollector());
+            CompleteMultipartUploadResult res = s3.completeMultipartUpload(req);
+
+            CopyResult copyResult = newCopyResult();
+            copyResult.setETag(res.getETag());
+            copyResult.setVersionId(res.getVersionId());
+            return copyResult;
+        } catch (Exception e) {
+            publishProgress(listenerChain, ProgressEventType.TRANSFER_FAILED_EVENT);
+            for (Future<PartETag> future : futures) {
+                future.cancel(true);
+            }
+            try {
+                s3.abortMultipartUpload(new AbortMultipartUploadRequest(
+                        bucketName, key, multipartUploadId));
+            } catch (Exception e2) {
+                log.info(
+                        "Unable to abort multipart upload, you may need to manually remove uploaded parts: "
+                                + e2.getMessage(), e2);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a request that reads the source object through the source
+     * client, failing if the object no longer matches the one the copy was
+     * sized from.
+     */
+    private GetObjectRequest newRelayGetRequest() {
+        GetObjectRequest req = new GetObjectRequest(
+                copyObjectRequest.getSourceBucketName(),
+                copyObjectRequest.getSourceKey(),
+                copyObjectRequest.getSourceVersionId())
+                .withSSECustomerKey(copyObjectRequest.getSourceSSECustomerKey());
+        List<String> matchingETags = copyObjectRequest.getMatchingETagConstraints();
+        if (matchingETags != null && !matchingETags.isEmpty()) {
+            req.setMatchingETagConstraints(new ArrayList<String>(matchingETags));
+        } else if (metadata.getETag() != null) {
+            req.withMatchingETagConstraint(metadata.getETag());
+        }
+        List<String> nonmatchingETags = copyObjectRequest.getNonmatchingETagConstraints();
+        if (nonmatchingETags != null) {
+            req.setNonmatchingETagConstraints(new ArrayList<String>(nonmatchingETags));
+        }
+        req.setModifiedSinceConstraint(copyObjectRequest.getModifiedSinceConstraint());
+        req.setUnmodifiedSinceConstraint(copyObjectRequest.getUnmodifiedSinceConstraint());
+        req.setRequestMetricCollector(copyObjectRequest.getRequestMetricCollector());
+        return req;
+    }
+
+    /**
+     * Returns the metadata of the object created by a relayed copy: the new
+     * object metadata of the request, or else the metadata of the source
+     * object. The encryption metadata of the source is kept unless the
+     * destination client encrypts on the client side, as the bytes are
+     * relayed as stored.
+     */
+    private ObjectMetadata newRelayMetadata() {
+        ObjectMetadata newObjectMetadata;
+        if (copyObjectRequest.getNewObjectMetadata() != null) {
+            newObjectMetadata = copyObjectRequest.getNewObjectMetadata().clone();
+        } else {
+            newObjectMetadata = new ObjectMetadata();
+            if (metadata.getUserMetadata() != null) {
+                newObjectMetadata.setUserMetadata(
+                        new HashMap<String, String>(metadata.getUserMetadata()));
+            }
+            newObjectMetadata.setContentEncoding(metadata.getContentEncoding());
+            newObjectMetadata.setContentDisposition(metadata.getContentDisposition());
+            newObjectMetadata.setCacheControl(metadata.getCacheControl());
+        }
+        if (newObjectMetadata.getContentType() == null) {
+            newObjectMetadata.setContentType(metadata.getContentType());
+        }
+        if (s3 instanceof AmazonS3Encryption) {
+            Map<String, String> userMetadata = newObjectMetadata.getUserMetadata();
+            if (userMetadata != null) {
+                for (String header : ENCRYPTION_HEADERS) {
+                    userMetadata.remove(header);
+                }
+            }
+        } else {
+            populateMetadataWithEncryptionParams(metadata, newObjectMetadata);
+        }
+        return newObjectMetadata;
+    }
+
+    /**
+     * Reads the end of the source so that the connection can be reused, or
+     * aborts it if there is more to read.
+     */
+    private static void closeSource(S3ObjectInputStream content) {
+        try {
+            if (content.read() != -1)
+                content.abort();
+            content.close();
+        } catch (IOException e) {
+            content.abort();
+            log.debug("Unable to close the source of the copy", e);
+        }
+    }
+
+    private CopyResult newCopyResult() {
+        CopyResult copyResult = new CopyResult();
+        copyResult.setSourceBucketName(copyObjectRequest.getSourceBucketName());
+        copyResult.setSourceKey(copyObjectRequest.getSourceKey());
+        copyResult.setDestinationBucketName(copyObjectRequest
+                .getDestinationBucketName());
+        copyResult.setDestinationKey(copyObjectRequest.getDestinationKey());
+        return copyResult;
+    }
+
+    private AmazonClientException sourceChanged() {
+        return new AmazonClientException("The source object "
+                + copyObjectRequest.getSourceBucketName() + "/"
+                + copyObjectRequest.getSourceKey()
+                + " changed while it was being copied");
     }
 
     private void populateMetadataWithEncryptionParams(ObjectMetadata source, ObjectMetadata destination) {
         Map<String, String> userMetadataSource = source.getUserMetadata();
         Map<String, String> userMetadataDestination = destination.getUserMetadata();
 
-        String[] headersToCopy = { Headers.CRYPTO_CEK_ALGORITHM,
-                Headers.CRYPTO_IV, Headers.CRYPTO_KEY, Headers.CRYPTO_KEY_V2,
-                Headers.CRYPTO_KEYWRAP_ALGORITHM, Headers.CRYPTO_TAG_LENGTH,
-                Headers.MATERIALS_DESCRIPTION,
-                Headers.UNENCRYPTED_CONTENT_LENGTH,
-                Headers.UNENCRYPTED_CONTENT_MD5 };
-
         if (userMetadataSource != null) {
             if(userMetadataDestination == null){
                 userMetadataDestination= new HashMap<String,String>();
@@ -272,7 +538,7 @@ public class CopyCallable implements Callable<CopyResult> {
             }
 
             String headerValue;
-            for(String header : headersToCopy){
+            for(String header : ENCRYPTION_HEADERS){
                 headerValue = userMetadataSource.get(header);
                 if(headerValue != null){
                     userMetadataDestination.put(header, headerValue);
@@ -72,6 +72,16 @@ public class CopyMonitor implements Callable<CopyResult>, TransferMonitor {
         this.future = future;
     }
 
+    /**
+     * Sets the future of the monitor itself, unless the monitor has already
+     * run and handed over to the completion of a multipart copy.
+     */
+    private synchronized void setInitialFuture(Future<CopyResult> future) {
+        if (this.future == null) {
+            this.future = future;
+        }
+    }
+
     public synchronized boolean isDone() {
         return isCopyDone;
     }
@@ -106,7 +116,7 @@ public class CopyMonitor implements Callable<CopyResult>, TransferMonitor {
         CopyMonitor copyMonitor = new CopyMonitor(manager, transfer,
                 threadPool, multipartCopyCallable, copyObjectRequest,
                 progressListenerChain);
-        copyMonitor.setFuture(threadPool.submit(copyMonitor));
+        copyMonitor.setInitialFuture(threadPool.submit(copyMonitor));
         return copyMonitor;
     }
 
@@ -0,0 +1,461 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer.internal;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.amazonaws.annotation.SdkInternalApi;
+import com.amazonaws.annotation.ThreadSafe;
+import com.amazonaws.services.s3.transfer.Transfer;
+import com.amazonaws.services.s3.transfer.Transfer.TransferState;
+import com.amazonaws.services.s3.transfer.TransferManagerConfiguration;
+
+/**
+ * Schedules the files of a directory upload or download, and the parts of its
+ * large files, from a single work queue.
+ * <p>
+ * Files below the multipart threshold are grouped into batches as the
+ * directory is walked, and each batch is one task that transfers its files
+ * one after the other, so a tree of many small files costs a task per batch
+ * rather than per file. The parts of each large file are queued in a lane of
+ * their own and the batches share another; the lanes take turns, so neither
+ * large files nor small ones can crowd the others out of the thread pool. At
+ * most {@link TransferManagerConfiguration#getMaxDirectoryTransferRequests()}
+ * tasks, together holding at most
+ * {@link TransferManagerConfiguration#getMaxDirectoryTransferBytes()} bytes,
+ * are handed to the thread pool at a time.
+ * <p>
+ * The engine is the state change listener of every file of the directory
+ * transfer, and collates its final state once the walk is complete and every
+ * file is done.
+ */
+@SdkInternalApi
+@ThreadSafe
+public class DirectoryTransferEngine implements TransferStateChangeListener {
+
+    private final ExecutorService threadPool;
+    private final MultipleFileTransfer<?> transfer;
+    private final int maxRequests;
+    private final long maxBytes;
+    private final int batchSize;
+    private final long batchBytes;
+
+    /** Lanes with queued tasks, in the order in which they take their turns. */
+    private final Deque<Lane> readyLanes = new ArrayDeque<Lane>();
+    private final Lane batchLane = new Lane(0);
+    private int requestsInFlight;
+    private long bytesInFlight;
+
+    /** The batch being filled by the walk. */
+    private List<FileTransfer> batch = new ArrayList<FileTransfer>();
+    private long batchedBytes;
+
+    /** Files that have been added to the directory transfer and are not done yet. */
+    private final Set<Transfer> pendingFiles = Collections.newSetFromMap(new IdentityHashMap<Transfer, Boolean>());
+    private boolean walkComplete;
+
+    public DirectoryTransferEngine(ExecutorService threadPool, MultipleFileTransfer<?> transfer,
+            TransferManagerConfiguration configuration) {
+        this.threadPool = threadPool;
+        this.transfer = transfer;
+        this.maxRequests = Math.max(1, configuration.getMaxDirectoryTransferRequests());
+        this.maxBytes = configuration.getMaxDirectoryTransferBytes();
+        this.batchSize = Math.max(1, configuration.getDirectoryTransferBatchSize());
+        this.batchBytes = configuration.getMinimumUploadPartSize();
+    }
+
+    /**
+     * Adds a file that is transferred by its own monitor, with its parts
+     * submitted to an executor returned by {@link #newPartExecutor(long)}.
+     * Must be called before the file's transfer can change state.
+     */
+    public synchronized void register(AbstractTransfer file) {
+        pendingFiles.add(file);
+    }
+
+    /**
+     * Returns an executor for the parts of a single large file, which queues
+     * them in a lane of their own. Each part is accounted for as the given
+     * number of bytes against the limit of bytes in flight.
+     */
+    public ExecutorService newPartExecutor(long partSize) {
+        return new Lane(partSize);
+    }
+
+    /**
+     * Adds a small file to the current batch. The work transfers the file in
+     * a single request; the file is marked completed when it returns, or
+     * failed when it throws.
+     */
+    public void addBatched(AbstractTransfer file, long bytes, Callable<?> work) {
+        FileTransfer fileTransfer = new FileTransfer(file, work);
+        file.setMonitor(fileTransfer);
+        List<FileTransfer> full = null;
+        long fullBytes = 0;
+        synchronized (this) {
+            pendingFiles.add(file);
+            if (bytes >= batchBytes) {
+                full = Collections.singletonList(fileTransfer);
+                fullBytes = bytes;
+            } else {
+                batch.add(fileTransfer);
+                batchedBytes += bytes;
+                if (batch.size() >= batchSize || batchedBytes >= batchBytes) {
+                    full = batch;
+                    fullBytes = batchedBytes;
+                    batch = new ArrayList<FileTransfer>();
+                    batchedBytes = 0;
+                }
+            }
+        }
+        if (full != null) {
+            batchLane.enqueue(new Batch(full), fullBytes);
+        }
+    }
+
+    /**
+     * Signals that every file of the directory transfer has been added, and
+     * submits the last, partially filled batch.
+     */
+    public void walkComplete() {
+        List<FileTransfer> last;
+        long lastBytes;
+        boolean allDone;
+        synchronized (this) {
+            last = batch;
+            lastBytes = batchedBytes;
+            batch = new ArrayList<FileTransfer>();
+            batchedBytes = 0;
+            walkComplete = true;
+            allDone = pendingFiles.isEmpty();
+        }
+        if (!last.isEmpty()) {
+            batchLane.enqueue(new Batch(last), lastBytes);
+        }
+        if (allDone) {
+            collateFinalState();
+        }
+    }
+
+    @Override
+    public void transferStateChanged(Transfer file, TransferState state) {
+        if (state == TransferState.Waiting) {
+            return;
+        }
+        if (state != TransferState.InProgress) {
+            boolean allDone;
+            synchronized (this) {
+                // A file may be reported done more than once, e.g. when it is
+                // aborted while its request is failing.
+                if (!pendingFiles.remove(file)) {
+                    return;
+                }
+                allDone = walkComplete && pendingFiles.isEmpty();
+            }
+            if (allDone) {
+                collateFinalState();
+                return;
+            }
+        }
+        synchronized (transfer) {
+            if (!transfer.isDone() && transfer.getState() != TransferState.InProgress) {
+                transfer.setState(TransferState.InProgress);
+            }
+        }
+    }
+
+    private void collateFinalState() {
+        synchronized (transfer) {
+            if (!transfer.isDone()) {
+                transfer.collateFinalState();
+            }
+        }
+    }
+
+    /**
+     * Hands queued tasks to the thread pool, taking one from each lane in
+     * turn, for as long as the limits allow. A task is always dispatched
+     * when nothing is in flight, however many bytes it holds.
+     */
+    private void dispatch() {
+        for (;;) {
+            List<Task> ready = new ArrayList<Task>();
+            synchronized (this) {
+                while (requestsInFlight < maxRequests && !readyLanes.isEmpty()) {
+                    Lane lane = readyLanes.peekFirst();
+                    Task next = lane.queue.peekFirst();
+                    if (requestsInFlight > 0 && bytesInFlight + next.bytes > maxBytes) {
+                        break;
+                    }
+                    readyLanes.pollFirst();
+                    lane.queue.pollFirst();
+                    if (!lane.queue.isEmpty()) {
+                        readyLanes.addLast(lane);
+                    }
+                    requestsInFlight++;
+                    bytesInFlight += next.bytes;
+                    lane.running++;
+                    ready.add(next);
+                }
+            }
+            if (ready.isEmpty()) {
+                return;
+            }
+            boolean rejected = false;
+            for (Task task : ready) {
+                try {
+                    threadPool.execute(task);
+                } catch (RejectedExecutionException e) {
+                    // The TransferManager has been shut down
+                    task.cancel();
+                    release(task);
+                    rejected = true;
+                }
+            }
+            if (!rejected) {
+                return;
+            }
+        }
+    }
+
+    private synchronized void release(Task task) {
+        requestsInFlight--;
+        bytesInFlight -= task.bytes;
+        task.lane.running--;
+        if (task.lane.isShutdown) {
+            // Wakes up Lane.awaitTermination
+            notifyAll();
+        }
+    }
+
+    private final class Task implements Runnable {
+        private final Lane lane;
+        private final Runnable command;
+        private final long bytes;
+
+        Task(Lane lane, Runnable command, long bytes) {
+            this.lane = lane;
+            this.command = command;
+            this.bytes = bytes;
+        }
+
+        @Override
+        public void run() {
+            try {
+                command.run();
+            } finally {
+                release(this);
+                dispatch();
+            }
+        }
+
+        void cancel() {
+            if (command instanceof Batch) {
+                ((Batch) command).cancel();
+            } else if (command instanceof Future) {
+                ((Future<?>) command).cancel(false);
+            }
+        }
+    }
+
+    /**
+     * The queue of one large file's parts, or of the batches. Tasks submitted
+     * to it are run by the thread pool of the TransferManager once it is the
+     * lane's turn.
+     * <p>
+     * Shutting a lane down only affects the tasks of the lane, the thread pool
+     * is shut down with the TransferManager. The lane is shut down as well
+     * once the thread pool is.
+     */
+    private final class Lane extends AbstractExecutorService {
+        private final Deque<Task> queue = new ArrayDeque<Task>();
+        private final long taskBytes;
+        /** The number of tasks of this lane handed to the thread pool and not done yet. */
+        private int running;
+        private boolean isShutdown;
+
+        Lane(long taskBytes) {
+            this.taskBytes = taskBytes;
+        }
+
+        void enqueue(Runnable command, long bytes) {
+            synchronized (DirectoryTransferEngine.this) {
+                if (isShutdown) {
+                    throw new RejectedExecutionException("The lane has been shut down");
+                }
+                if (queue.isEmpty()) {
+                    readyLanes.addLast(this);
+                }
+                queue.addLast(new Task(this, command, bytes));
+            }
+            dispatch();
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            enqueue(command, taskBytes);
+        }
+
+        /**
+         * Rejects new tasks. The tasks already queued are still run.
+         */
+        @Override
+        public void shutdown() {
+            synchronized (DirectoryTransferEngine.this) {
+                isShutdown = true;
+                DirectoryTransferEngine.this.notifyAll();
+            }
+        }
+
+        /**
+         * Rejects new tasks and removes the queued ones, which are returned.
+         * Tasks already handed to the thread pool are left to finish.
+         */
+        @Override
+        public List<Runnable> shutdownNow() {
+            List<Runnable> removed = new ArrayList<Runnable>();
+            synchronized (DirectoryTransferEngine.this) {
+                isShutdown = true;
+                for (Task task : queue) {
+                    removed.add(task.command);
+                }
+                queue.clear();
+                readyLanes.remove(this);
+                DirectoryTransferEngine.this.notifyAll();
+            }
+            return removed;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            synchronized (DirectoryTransferEngine.this) {
+                if (isShutdown) {
+                    return true;
+                }
+            }
+            return threadPool.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            synchronized (DirectoryTransferEngine.this) {
+                if (isShutdown && queue.isEmpty() && running == 0) {
+                    return true;
+                }
+            }
+            return threadPool.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            final long deadline = System.nanoTime() + unit.toNanos(timeout);
+            synchronized (DirectoryTransferEngine.this) {
+                while (!isShutdown || !queue.isEmpty() || running > 0) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    if (threadPool.isTerminated()) {
+                        return true;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(DirectoryTransferEngine.this, remaining);
+                }
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Transfers the files of a batch one after the other.
+     */
+    private static final class Batch implements Runnable {
+        private final List<FileTransfer> files;
+
+        Batch(List<FileTransfer> files) {
+            this.files = files;
+        }
+
+        @Override
+        public void run() {
+            for (FileTransfer file : files) {
+                file.future.run();
+                // Aborting a file interrupts the thread transferring it, which
+                // must not carry over to the next file of the batch.
+                Thread.interrupted();
+            }
+        }
+
+        void cancel() {
+            for (FileTransfer file : files) {
+                if (file.future.cancel(false)) {
+                    file.transfer.setState(TransferState.Canceled);
+                }
+            }
+        }
+    }
+
+    /**
+     * The monitor of a file transferred as part of a batch.
+     */
+    private static final class FileTransfer implements Callable<Object>, TransferMonitor {
+        private final AbstractTransfer transfer;
+        private final Callable<?> work;
+        private final FutureTask<Object> future = new FutureTask<Object>(this);
+
+        FileTransfer(AbstractTransfer transfer, Callable<?> work) {
+            this.transfer = transfer;
+            this.work = work;
+        }
+
+        @Override
+        public Object call() throws Exception {
+            try {
+                Object result = work.call();
+                if (!future.isCancelled()) {
+                    transfer.setState(TransferState.Completed);
+                }
+                return result;
+            } catch (Exception e) {
+                if (!future.isCancelled()) {
+                    transfer.setState(TransferState.Failed);
+                }
+                throw e;
+            }
+        }
+
+        @Override
+        public Future<?> getFuture() {
+            return future;
+        }
+
+        @Override
+        public boolean isDone() {
+            return future.isDone();
+        }
+    }
+}
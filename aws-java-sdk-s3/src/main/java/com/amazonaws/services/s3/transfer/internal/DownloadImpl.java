@@ -41,6 +41,18 @@ public class DownloadImpl extends AbstractTransfer implements Download {
      */
     private Integer lastFullyDownloadedPartNumber;
 
+    /**
+     * The ranges of parts that have been successfully written into the
+     * downloaded file, including those beyond lastFullyDownloadedPartNumber.
+     */
+    private int[][] completedPartRanges;
+
+    /**
+     * The size of each byte range of a ranged parallel download, or null if
+     * the parts are those of a multipart object.
+     */
+    private Long rangedPartSize;
+
     private final GetObjectRequest getObjectRequest;
     private final File file;
     private final ObjectMetadata objectMetadata;
@@ -106,8 +118,24 @@ public class DownloadImpl extends AbstractTransfer implements Download {
      */
     @SdkInternalApi
     public void updatePersistableTransfer(Integer lastFullyDownloadedPartNumber) {
+        updatePersistableTransfer(lastFullyDownloadedPartNumber, null, null);
+    }
+
+    /**
+     * Only for internal use.
+     * For parallel downloads, updates the persistableTransfer each time a
+     * part is successfully written into the download file, recording every
+     * completed part and not just the contiguous prefix. For a ranged
+     * download, the parts are byte ranges of rangedPartSize bytes.
+     * Then notify the listeners that new persistableTransfer is available.
+     */
+    @SdkInternalApi
+    public void updatePersistableTransfer(Integer lastFullyDownloadedPartNumber,
+            int[][] completedPartRanges, Long rangedPartSize) {
         synchronized (this) {
             this.lastFullyDownloadedPartNumber = lastFullyDownloadedPartNumber;
+            this.completedPartRanges = completedPartRanges;
+            this.rangedPartSize = rangedPartSize;
         }
 
         persistableDownload = captureDownloadState(getObjectRequest, file);
@@ -123,6 +151,23 @@ public class DownloadImpl extends AbstractTransfer implements Download {
         return lastFullyDownloadedPartNumber;
     }
 
+    /**
+     * For parallel downloads, returns the ranges of part numbers that were
+     * successfully written into the download file.
+     * Returns null for serial downloads.
+     */
+    public synchronized int[][] getCompletedPartRanges() {
+        return completedPartRanges;
+    }
+
+    /**
+     * For ranged parallel downloads, returns the size of each byte range.
+     * Returns null otherwise.
+     */
+    public synchronized Long getRangedPartSize() {
+        return rangedPartSize;
+    }
+
     /**
      * Cancels this download.
      *
@@ -190,7 +235,8 @@ public class DownloadImpl extends AbstractTransfer implements Download {
                     getObjectRequest.getVersionId(), getObjectRequest.getRange(),
                     getObjectRequest.getResponseHeaders(), getObjectRequest.isRequesterPays(),
                     file.getAbsolutePath(), getLastFullyDownloadedPartNumber(),
-                    getObjectMetadata().getLastModified().getTime());
+                    getObjectMetadata().getLastModified().getTime(),
+                    getCompletedPartRanges(), getRangedPartSize());
         }
         return null;
     }
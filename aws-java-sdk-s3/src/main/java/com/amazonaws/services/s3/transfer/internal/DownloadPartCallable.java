@@ -14,51 +14,106 @@
  */
 package com.amazonaws.services.s3.transfer.internal;
 
-import java.io.File;
+import java.net.SocketException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
 import java.util.concurrent.Callable;
 
+import javax.net.ssl.SSLProtocolException;
+
 import com.amazonaws.AmazonClientException;
+import com.amazonaws.annotation.SdkInternalApi;
 import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.internal.ServiceUtils;
 import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.S3Object;
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
 /**
- * Helper class to get a part from s3,
- * write the part data to a temporary file and
- * return the temporary file.
+ * Helper class to get a part from s3 and write the part data into the
+ * destination file at the offset given by the Content-Range of the part.
+ * The part is either a part of a multipart object or a byte range of the
+ * object. The destination channel is shared by all the parts of a download,
+ * each of which writes its own region of the pre-sized file.
+ * Returns the number of the downloaded part.
  */
-public class DownloadPartCallable implements Callable<File> {
+@SdkInternalApi
+public class DownloadPartCallable implements Callable<Integer> {
     private static final Log LOG = LogFactory.getLog(DownloadPartCallable.class);
-    private static final String TEMP_FILE_MIDDLE_NAME = ".part.";
 
     private final AmazonS3 s3;
     private final GetObjectRequest getPartRequest;
-    private final File destinationFile;
-    private final String destinationFilePath;
-    private File partFile;
+    private final int partNumber;
+    private final FileChannel destinationChannel;
+    /**
+     * Bounds the parts in flight and measures the throughput of the part if
+     * adaptive tuning is enabled, otherwise null.
+     */
+    private final AdaptiveTransferTuner tuner;
 
-    public DownloadPartCallable(AmazonS3 s3, GetObjectRequest getPartRequest, File destinationFile) {
+    public DownloadPartCallable(AmazonS3 s3, GetObjectRequest getPartRequest, int partNumber,
+            FileChannel destinationChannel, AdaptiveTransferTuner tuner) {
         this.s3 = s3;
         this.getPartRequest = getPartRequest;
-        this.destinationFile = destinationFile;
-        this.destinationFilePath = destinationFile.getAbsolutePath();
+        this.partNumber = partNumber;
+        this.destinationChannel = destinationChannel;
+        this.tuner = tuner;
     }
 
-    public File call() throws Exception {
-        partFile = File.createTempFile(destinationFile.getName(),
-                TEMP_FILE_MIDDLE_NAME + getPartRequest.getPartNumber().toString(),
-                new File(destinationFilePath.substring(0, destinationFilePath.lastIndexOf(File.separator))));
+    public Integer call() throws Exception {
+        if (tuner == null) {
+            return download();
+        }
+        tuner.acquirePartSlot();
         try {
-            partFile.deleteOnExit();
-        } catch (SecurityException exception) {
-            LOG.warn("SecurityException denied delete access to file " + partFile.getAbsolutePath());
+            return download();
+        } finally {
+            tuner.releasePartSlot();
         }
+    }
 
-        if (s3.getObject(getPartRequest, partFile) == null) {
-            throw new AmazonClientException(
-                    "There is no object in S3 satisfying this request. The getObject method returned null");
+    private Integer download() throws Exception {
+        boolean hasRetried = false;
+        for (;;) {
+            final long startTime = System.nanoTime();
+            S3Object part = s3.getObject(getPartRequest);
+            if (part == null) {
+                throw new AmazonClientException(
+                        "There is no object in S3 satisfying this request. The getObject method returned null");
+            }
+            try {
+                Long[] contentRange = part.getObjectMetadata().getContentRange();
+                if (contentRange == null) {
+                    throw new AmazonClientException("Unable to determine the position of part " + partNumber
+                            + " in the object: the response has no Content-Range");
+                }
+                long expectedLength = contentRange[1] - contentRange[0] + 1;
+                long bytesWritten = ServiceUtils.downloadToFileChannel(part, destinationChannel, contentRange[0]);
+                if (bytesWritten != expectedLength) {
+                    throw new AmazonClientException("Part " + partNumber + " was truncated: expected "
+                            + expectedLength + " bytes but received " + bytesWritten);
+                }
+                if (tuner != null) {
+                    tuner.partCompleted(bytesWritten, System.nanoTime() - startTime);
+                }
+                return partNumber;
+            } catch (AmazonClientException ace) {
+                // Same one-time retry as for serial downloads, except that a
+                // closed channel means the whole download is being cancelled.
+                final Throwable cause = ace.getCause();
+                if (!ace.isRetryable() || hasRetried
+                        || (cause instanceof SocketException && !"Connection reset".equals(cause.getMessage()))
+                        || cause instanceof SSLProtocolException
+                        || cause instanceof ClosedChannelException) {
+                    throw ace;
+                }
+                LOG.info("Retry the download of part " + partNumber + " of object " + part.getKey()
+                        + " (bucket " + part.getBucketName() + ")", ace);
+                hasRetried = true;
+            } finally {
+                part.getObjectContent().abort();
+            }
         }
-        return partFile;
     }
 }
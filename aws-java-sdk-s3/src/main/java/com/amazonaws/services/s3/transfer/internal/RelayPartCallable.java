@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer.internal;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+
+/**
+ * An implementation of the Callable interface responsible for relaying a part
+ * of a copy: the part's range of the source object is read with a GET request
+ * through the source client and streamed straight into an upload part request
+ * through the destination client, without being buffered as a whole.
+ */
+public class RelayPartCallable implements Callable<PartETag> {
+
+    private static final Log log = LogFactory.getLog(RelayPartCallable.class);
+
+    /** Reference to the Amazon S3 client the part is read from. */
+    private final AmazonS3 srcS3;
+    /** Ranged get request that reads the part from the source object. */
+    private final GetObjectRequest getPartRequest;
+    /** Reference to the Amazon S3 client the part is uploaded through. */
+    private final AmazonS3 s3;
+    /** Upload part request to be sent with the content of the part. */
+    private final UploadPartRequest uploadPartRequest;
+
+    public RelayPartCallable(AmazonS3 srcS3, GetObjectRequest getPartRequest,
+            AmazonS3 s3, UploadPartRequest uploadPartRequest) {
+        this.srcS3 = srcS3;
+        this.getPartRequest = getPartRequest;
+        this.s3 = s3;
+        this.uploadPartRequest = uploadPartRequest;
+    }
+
+    public PartETag call() throws Exception {
+        try {
+            return relay();
+        } catch (AmazonClientException e) {
+            // The body is streamed, so the client can only replay the
+            // buffered start of it; a part that broke off further in is
+            // read again from the source instead.
+            if (e instanceof AmazonServiceException || Thread.currentThread().isInterrupted())
+                throw e;
+            log.debug("Relaying part " + uploadPartRequest.getPartNumber()
+                    + " again after: " + e.getMessage());
+            return relay();
+        }
+    }
+
+    private PartETag relay() {
+        S3Object part = srcS3.getObject(getPartRequest);
+        if (part == null) {
+            throw new AmazonClientException(
+                    "The source object " + getPartRequest.getBucketName() + "/"
+                            + getPartRequest.getKey()
+                            + " changed while it was being copied");
+        }
+        S3ObjectInputStream content = part.getObjectContent();
+        try {
+            uploadPartRequest.setInputStream(content);
+            return s3.uploadPart(uploadPartRequest).getPartETag();
+        } finally {
+            uploadPartRequest.setInputStream(null);
+            closeSource(content);
+        }
+    }
+
+    /**
+     * Reads the end of the part's range so that the connection can be reused,
+     * or aborts it if there is more to read.
+     */
+    private void closeSource(S3ObjectInputStream content) {
+        try {
+            if (content.read() != -1)
+                content.abort();
+            content.close();
+        } catch (IOException e) {
+            content.abort();
+            log.debug("Unable to close the source of part "
+                    + uploadPartRequest.getPartNumber(), e);
+        }
+    }
+}
@@ -136,6 +136,32 @@ public class TransferManagerUtils {
         return (contentLength > configuration.getMultipartUploadThreshold());
     }
 
+    /**
+     * Returns true if the specified request is a stream of unknown length
+     * that should be uploaded in parts as it is read, using a fixed number of
+     * part buffers.
+     *
+     * @param s3
+     *            The Amazon s3 client.
+     * @param putObjectRequest
+     *            The request containing all the details of the upload.
+     * @param configuration
+     *            Configuration settings controlling how transfer manager
+     *            processes requests.
+     *
+     * @return True if the request should be uploaded as a stream of parts.
+     */
+    public static boolean isStreamingUpload(AmazonS3 s3, PutObjectRequest putObjectRequest,
+            TransferManagerConfiguration configuration) {
+        // Encrypted parts depend on each other, so they can't be uploaded in parallel.
+        return configuration.getStreamingUploadBufferCount() > 0
+                && configuration.getStreamingUploadPartSize() > 0
+                && !(s3 instanceof AmazonS3Encryption)
+                && getRequestFile(putObjectRequest) == null
+                && putObjectRequest.getInputStream() != null
+                && getContentLength(putObjectRequest) < 0;
+    }
+
     /**
      * Convenience method for getting the file specified in a request.
      */
@@ -210,4 +236,35 @@ public class TransferManagerUtils {
         }
         return true;
     }
+
+    /**
+     * Returns true if the specified download request for an object that was
+     * not uploaded in parts can be split into parallel range requests.
+     *
+     * @param s3
+     *            The Amazon s3 client.
+     * @param getObjectRequest
+     *            The request to check.
+     * @param objectLength
+     *            The length of the object to download.
+     * @param configuration
+     *            The configuration of the TransferManager.
+     *
+     * @return True if this request can use parallel range downloads.
+     */
+    public static boolean isRangedDownloadParallelizable(final AmazonS3 s3,
+            final GetObjectRequest getObjectRequest, long objectLength,
+            TransferManagerConfiguration configuration) {
+        ValidationUtils.assertNotNull(s3, "S3 client");
+        ValidationUtils.assertNotNull(getObjectRequest, "GetObjectRequest");
+
+        if (s3 instanceof AmazonS3Encryption || getObjectRequest.getRange() != null
+                || getObjectRequest.getPartNumber() != null
+                || configuration.isDisableParallelDownloads()
+                || configuration.getRangedDownloadPartSize() <= 0) {
+            return false;
+        }
+        return objectLength >= configuration.getRangedDownloadThreshold()
+                && objectLength > configuration.getRangedDownloadPartSize();
+    }
 }
@@ -15,8 +15,13 @@
 package com.amazonaws.services.s3.transfer.internal;
 
 import static com.amazonaws.event.SDKProgressPublisher.publishProgress;
+import static com.amazonaws.services.s3.internal.Constants.MAXIMUM_UPLOAD_PARTS;
 
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
@@ -24,11 +29,14 @@ import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 
+import com.amazonaws.AmazonClientException;
 import com.amazonaws.event.ProgressEventType;
 import com.amazonaws.event.ProgressListenerChain;
 import com.amazonaws.services.s3.AmazonS3;
@@ -40,6 +48,7 @@ import com.amazonaws.services.s3.model.EncryptedInitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.EncryptedPutObjectRequest;
 import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
 import com.amazonaws.services.s3.model.ListPartsRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
 import com.amazonaws.services.s3.model.PartETag;
 import com.amazonaws.services.s3.model.PartListing;
 import com.amazonaws.services.s3.model.PartSummary;
@@ -52,6 +61,7 @@ import com.amazonaws.services.s3.transfer.TransferManager;
 import com.amazonaws.services.s3.transfer.TransferManagerConfiguration;
 import com.amazonaws.services.s3.transfer.TransferProgress;
 import com.amazonaws.services.s3.transfer.model.UploadResult;
+import com.amazonaws.util.ByteBufferInputStream;
 
 public class UploadCallable implements Callable<UploadResult> {
     private final AmazonS3 s3;
@@ -65,6 +75,8 @@ public class UploadCallable implements Callable<UploadResult> {
     private final List<Future<PartETag>> futures = new ArrayList<Future<PartETag>>();
     private final ProgressListenerChain listener;
     private final TransferProgress transferProgress;
+    /** Tunes streaming uploads if adaptive tuning is enabled, otherwise null. */
+    private final AdaptiveTransferTuner tuner;
 
     /**
      * ETags retrieved from Amazon S3 for a multi-part upload id. These parts
@@ -74,6 +86,12 @@ public class UploadCallable implements Callable<UploadResult> {
 
     private PersistableUpload persistableUpload;
 
+    /**
+     * True once a stream of unknown length turned out to be larger than a
+     * part and is being uploaded in parts.
+     */
+    private volatile boolean isStreamedInParts;
+
     public UploadCallable(TransferManager transferManager,
             ExecutorService threadPool, UploadImpl upload,
             PutObjectRequest origReq,
@@ -81,6 +99,7 @@ public class UploadCallable implements Callable<UploadResult> {
             TransferProgress transferProgress) {
         this.s3 = transferManager.getAmazonS3Client();
         this.configuration = transferManager.getConfiguration();
+        this.tuner = transferManager.getAdaptiveTuner();
 
         this.threadPool = threadPool;
         this.origReq = origReq;
@@ -111,12 +130,14 @@ public class UploadCallable implements Callable<UploadResult> {
      * @return True if this UploadCallable is processing a multipart upload.
      */
     public boolean isMultipartUpload() {
-        return TransferManagerUtils.shouldUseMultipartUpload(origReq, configuration);
+        return isStreamedInParts || TransferManagerUtils.shouldUseMultipartUpload(origReq, configuration);
     }
 
     public UploadResult call() throws Exception {
         upload.setState(TransferState.InProgress);
-        if ( isMultipartUpload() ) {
+        if (TransferManagerUtils.isStreamingUpload(s3, origReq, configuration)) {
+            return uploadStream();
+        } else if ( isMultipartUpload() ) {
             publishProgress(listener, ProgressEventType.TRANSFER_STARTED_EVENT);
             return uploadInParts();
         } else {
@@ -128,11 +149,15 @@ public class UploadCallable implements Callable<UploadResult> {
      * Uploads the given request in a single chunk and returns the result.
      */
     private UploadResult uploadInOneChunk() {
-        PutObjectResult putObjectResult = s3.putObject(origReq);
+        return uploadInOneChunk(origReq);
+    }
+
+    private UploadResult uploadInOneChunk(PutObjectRequest putObjectRequest) {
+        PutObjectResult putObjectResult = s3.putObject(putObjectRequest);
 
         UploadResult uploadResult = new UploadResult();
-        uploadResult.setBucketName(origReq.getBucketName());
-        uploadResult.setKey(origReq.getKey());
+        uploadResult.setBucketName(putObjectRequest.getBucketName());
+        uploadResult.setKey(putObjectRequest.getKey());
         uploadResult.setETag(putObjectResult.getETag());
         uploadResult.setVersionId(putObjectResult.getVersionId());
         return uploadResult;
@@ -201,6 +226,217 @@ public class UploadCallable implements Callable<UploadResult> {
         }
     }
 
+    /**
+     * Uploads a stream of unknown length by reading it into a fixed number of
+     * part buffers and uploading each part from the thread pool as soon as its
+     * buffer is full, so the stream never touches disk. When all the buffers
+     * are in flight, reading waits for the oldest part, running it in this
+     * thread if the thread pool hasn't started it yet, which bounds the memory
+     * used and keeps the upload from starving a busy thread pool. A stream
+     * shorter than one part is uploaded in a single request.
+     */
+    private UploadResult uploadStream() throws Exception {
+        final ReadableByteChannel in = Channels.newChannel(origReq.getInputStream());
+        final ByteBufferPool buffers = new ByteBufferPool(configuration.getStreamingUploadBufferCount(),
+                (int) Math.min(configuration.getStreamingUploadPartSize(), Integer.MAX_VALUE));
+        final List<FutureTask<PartETag>> parts = new ArrayList<FutureTask<PartETag>>();
+        try {
+            ByteBuffer buffer = buffers.tryAcquire();
+            limitToPartSize(buffer);
+            boolean isEndOfStream = fill(in, buffer);
+            buffer.flip();
+            if (isEndOfStream) {
+                return uploadInOneChunk(newPutObjectRequest(buffer));
+            }
+
+            isStreamedInParts = true;
+            publishProgress(listener, ProgressEventType.TRANSFER_STARTED_EVENT);
+            multipartUploadId = initiateMultipartUpload(origReq, false);
+
+            while (buffer.hasRemaining()) {
+                if (parts.size() == MAXIMUM_UPLOAD_PARTS) {
+                    throw new AmazonClientException("The stream is larger than " + MAXIMUM_UPLOAD_PARTS
+                            + " parts of " + buffers.getBufferSize() + " bytes; increase the streaming upload part size");
+                }
+                FutureTask<PartETag> part = newUploadPartTask(buffers, buffer, parts.size() + 1, isEndOfStream);
+                parts.add(part);
+                futures.add(part);
+                threadPool.execute(part);
+                if (isEndOfStream) {
+                    break;
+                }
+                buffer = acquireBuffer(buffers, parts);
+                limitToPartSize(buffer);
+                isEndOfStream = fill(in, buffer);
+                buffer.flip();
+            }
+
+            final List<PartETag> partETags = new ArrayList<PartETag>();
+            for (FutureTask<PartETag> part : parts) {
+                partETags.add(awaitPart(part));
+            }
+            CompleteMultipartUploadRequest req =
+                new CompleteMultipartUploadRequest(
+                    origReq.getBucketName(), origReq.getKey(), multipartUploadId,
+                        partETags)
+                .withGeneralProgressListener(origReq.getGeneralProgressListener())
+                .withRequestMetricCollector(origReq.getRequestMetricCollector())
+                ;
+            CompleteMultipartUploadResult res = s3.completeMultipartUpload(req);
+
+            UploadResult uploadResult = new UploadResult();
+            uploadResult.setBucketName(res.getBucketName());
+            uploadResult.setKey(res.getKey());
+            uploadResult.setETag(res.getETag());
+            uploadResult.setVersionId(res.getVersionId());
+            return uploadResult;
+        } catch (Exception e) {
+            for (FutureTask<PartETag> part : parts) {
+                part.cancel(true);
+            }
+            if (isStreamedInParts) {
+                publishProgress(listener, ProgressEventType.TRANSFER_FAILED_EVENT);
+                performAbortMultipartUpload();
+            }
+            throw e;
+        } finally {
+            try {
+                origReq.getInputStream().close();
+            } catch (Exception e) {
+                log.warn("Unable to cleanly close input stream: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * Reads from the channel until the buffer is full or the end of the
+     * stream is reached.
+     *
+     * @return True if the end of the stream was reached.
+     */
+    private static boolean fill(ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * With adaptive tuning, only fills the buffer up to the tuned part size.
+     */
+    private void limitToPartSize(ByteBuffer buffer) {
+        if (tuner != null) {
+            buffer.limit((int) Math.min(buffer.capacity(), tuner.getPartSize()));
+        }
+    }
+
+    /**
+     * Returns a free part buffer, waiting for the oldest part in flight to be
+     * uploaded while there is none, or while adaptive tuning wants fewer parts
+     * in flight. A part that has failed by then fails the upload right away,
+     * rather than once the rest of the stream has been read.
+     * <p>
+     * The parts of all transfers together are bounded by the part slots of the
+     * tuner; this only keeps a single upload from buffering more parts than
+     * could be in flight at once.
+     */
+    private ByteBuffer acquireBuffer(ByteBufferPool buffers, List<FutureTask<PartETag>> parts)
+            throws Exception {
+        int oldest = 0;
+        for (;;) {
+            if (threadPool.isShutdown()) throw new CancellationException("TransferManager has been shutdown");
+            while (oldest < parts.size() && parts.get(oldest).isDone()) {
+                awaitPart(parts.get(oldest++));
+            }
+            int inFlight = 0;
+            for (int i = oldest; i < parts.size(); i++) {
+                if (parts.get(i).isDone()) {
+                    awaitPart(parts.get(i));
+                } else {
+                    inFlight++;
+                }
+            }
+            if (tuner == null || inFlight < tuner.getConcurrency()) {
+                ByteBuffer buffer = buffers.tryAcquire();
+                if (buffer != null) {
+                    return buffer;
+                }
+            }
+            if (oldest < parts.size()) {
+                awaitPart(parts.get(oldest));
+            }
+        }
+    }
+
+    /**
+     * Waits for the given part to be uploaded, uploading it in this thread if
+     * the thread pool hasn't started it yet.
+     */
+    private static PartETag awaitPart(FutureTask<PartETag> part) throws Exception {
+        part.run();
+        try {
+            return part.get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw (Error) cause;
+        }
+    }
+
+    private FutureTask<PartETag> newUploadPartTask(final ByteBufferPool buffers, final ByteBuffer buffer,
+            int partNumber, boolean isLastPart) {
+        final UploadPartRequest request = new UploadPartRequest()
+            .withBucketName(origReq.getBucketName())
+            .withKey(origReq.getKey())
+            .withUploadId(multipartUploadId)
+            .withInputStream(new ByteBufferInputStream(buffer))
+            .withPartNumber(partNumber)
+            .withPartSize(buffer.remaining())
+            .withLastPart(isLastPart);
+        TransferManager.appendMultipartUserAgent(request);
+        if (origReq.getSSECustomerKey() != null) request.setSSECustomerKey(origReq.getSSECustomerKey());
+        request.withGeneralProgressListener(origReq.getGeneralProgressListener())
+               .withRequestMetricCollector(origReq.getRequestMetricCollector());
+
+        return new FutureTask<PartETag>(new Callable<PartETag>() {
+            public PartETag call() throws Exception {
+                try {
+                    if (tuner == null) {
+                        return s3.uploadPart(request).getPartETag();
+                    }
+                    tuner.acquirePartSlot();
+                    try {
+                        final long startTime = System.nanoTime();
+                        PartETag partETag = s3.uploadPart(request).getPartETag();
+                        tuner.partCompleted(request.getPartSize(), System.nanoTime() - startTime);
+                        return partETag;
+                    } finally {
+                        tuner.releasePartSlot();
+                    }
+                } finally {
+                    buffers.release(buffer);
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns a copy of the original request that uploads the content of the
+     * given buffer.
+     */
+    private PutObjectRequest newPutObjectRequest(ByteBuffer buffer) {
+        ObjectMetadata metadata = origReq.getMetadata().clone();
+        metadata.setContentLength(buffer.remaining());
+        PutObjectRequest request = origReq.clone()
+            .withInputStream(new ByteBufferInputStream(buffer))
+            .withMetadata(metadata);
+        return request;
+    }
+
     /**
      * Performs an
      * {@link AmazonS3#abortMultipartUpload(AbortMultipartUploadRequest)}
@@ -290,7 +526,9 @@ public class UploadCallable implements Callable<UploadResult> {
                 transferProgress.updateProgress(summary.getSize());
                 continue;
             }
-            futures.add(threadPool.submit(new UploadPartCallable(s3, request)));
+            FutureTask<PartETag> part = new FutureTask<PartETag>(new UploadPartCallable(s3, request));
+            futures.add(part);
+            threadPool.execute(part);
         }
     }
 
@@ -19,6 +19,7 @@ import java.util.concurrent.Future;
 
 import com.amazonaws.AmazonClientException;
 import com.amazonaws.AmazonServiceException;
+import com.amazonaws.event.ProgressEventType;
 import com.amazonaws.event.ProgressListenerChain;
 import com.amazonaws.services.s3.transfer.PauseResult;
 import com.amazonaws.services.s3.transfer.PauseStatus;
@@ -88,6 +89,16 @@ public class UploadImpl extends AbstractTransfer implements Upload {
      */
     private PauseResult<PersistableUpload> pause(
             final boolean forceCancelTransfers) throws AmazonClientException {
+        if (!(monitor instanceof UploadMonitor)) {
+            // A file uploaded in a batch of a directory upload is a single
+            // request, with nothing to resume.
+            PauseStatus pauseStatus = TransferManagerUtils.determinePauseStatus(
+                    getState(), forceCancelTransfers);
+            if (forceCancelTransfers) {
+                abort();
+            }
+            return new PauseResult<PersistableUpload>(pauseStatus);
+        }
         UploadMonitor uploadMonitor = (UploadMonitor) monitor;
         return uploadMonitor.pause(forceCancelTransfers);
     }
@@ -109,6 +120,13 @@ public class UploadImpl extends AbstractTransfer implements Upload {
      */
     @Override
     public void abort() {
+        if (!(monitor instanceof UploadMonitor)) {
+            if (monitor.getFuture().cancel(true)) {
+                setState(TransferState.Canceled);
+                fireProgressEvent(ProgressEventType.TRANSFER_CANCELED_EVENT);
+            }
+            return;
+        }
         UploadMonitor uploadMonitor = (UploadMonitor) monitor;
         uploadMonitor.performAbort();
     }
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.auth;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+
+public class AwsChunkedEncodingInputStreamTest {
+
+    private static final int CHUNK_SIZE = 128 * 1024;
+    private static final int BUFFER_SIZE = 256 * 1024;
+    private static final byte[] SIGNING_KEY = "signing-key".getBytes();
+    private static final String DATE_TIME = "19810216T063000Z";
+    private static final String KEY_PATH = "19810216/us-east-1/s3/aws4_request";
+    private static final String HEADER_SIGNATURE =
+            "77fe7c02927966018667f21d1dc3dfad9057e58401cbb9ed64f1b7868288e35a";
+
+    private final AWS4Signer signer = new AWS4Signer();
+    private ExecutorService executor;
+
+    @After
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void readAhead_MatchesSerialEncoding_AtChunkBoundaries() throws IOException {
+        for (int length : new int[] { 0, 1, CHUNK_SIZE - 1, CHUNK_SIZE, CHUNK_SIZE + 1,
+                3 * CHUNK_SIZE, 3 * CHUNK_SIZE + 17 }) {
+            final byte[] content = content(length);
+            final byte[] serial = readFully(chunked(content, 0));
+            assertEquals(AwsChunkedEncodingInputStream.calculateStreamContentLength(length),
+                    serial.length);
+            for (int readAhead : new int[] { 1, 2, 8 }) {
+                assertArrayEquals("length " + length + ", read-ahead " + readAhead,
+                        serial, readFully(chunked(content, readAhead)));
+            }
+        }
+    }
+
+    @Test
+    public void readAhead_MatchesSerialEncoding_WithShortFinalChunk() throws IOException {
+        final byte[] content = content(2 * CHUNK_SIZE + 5);
+        final byte[] serial = readFully(chunked(content, 0));
+        final byte[] pipelined = readFully(chunked(content, 4));
+
+        assertArrayEquals(serial, pipelined);
+        // The short chunk is followed by the final empty chunk
+        final String tail = new String(pipelined, pipelined.length - 200, 200, "UTF-8");
+        assertTrue(tail, tail.contains("\r\n5;chunk-signature="));
+        assertTrue(tail, tail.matches("(?s).*\r\n0;chunk-signature=[0-9a-f]{64}\r\n\r\n"));
+    }
+
+    @Test
+    public void readAhead_MatchesSerialEncoding_WithSingleByteReads() throws IOException {
+        final byte[] content = content(CHUNK_SIZE + 3);
+        final byte[] serial = readFully(chunked(content, 0));
+
+        final InputStream pipelined = chunked(content, 2);
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b;
+        while ((b = pipelined.read()) != -1) {
+            out.write(b);
+        }
+        assertArrayEquals(serial, out.toByteArray());
+    }
+
+    @Test
+    public void readAhead_MatchesSerialEncoding_WhenPoolIsBusy() throws IOException {
+        executor = Executors.newSingleThreadExecutor();
+        final byte[] content = content(5 * CHUNK_SIZE + 11);
+        final byte[] serial = readFully(chunked(content, 0));
+
+        assertArrayEquals(serial, readFully(new AwsChunkedEncodingInputStream(
+                new ByteArrayInputStream(content), BUFFER_SIZE, SIGNING_KEY, DATE_TIME, KEY_PATH,
+                HEADER_SIGNATURE, signer, 4, executor)));
+    }
+
+    @Test
+    public void resetAfterPartialRead_ReencodesFromStart() throws IOException {
+        final byte[] content = content(3 * CHUNK_SIZE + 17);
+        final byte[] serial = readFully(chunked(content, 0));
+
+        for (InputStream wrapped : Arrays.<InputStream> asList(
+                new ByteArrayInputStream(content), new NotMarkableInputStream(content))) {
+            final AwsChunkedEncodingInputStream pipelined = chunked(wrapped, 4);
+            pipelined.mark(-1);
+            // Stop in the middle of the second chunk, with more chunks read ahead
+            final byte[] partial = new byte[CHUNK_SIZE + 1000];
+            readFully(pipelined, partial);
+            pipelined.reset();
+
+            assertArrayEquals(serial, readFully(pipelined));
+        }
+    }
+
+    @Test
+    public void retryWrappingPreviousStream_ReencodesFromStart() throws IOException {
+        final byte[] content = content(2 * CHUNK_SIZE + 17);
+        final byte[] serial = readFully(chunked(content, 0));
+
+        final AwsChunkedEncodingInputStream firstAttempt = chunked(
+                new NotMarkableInputStream(content), 4);
+        firstAttempt.mark(-1);
+        readFully(firstAttempt, new byte[CHUNK_SIZE + 1000]);
+        firstAttempt.reset();
+        final AwsChunkedEncodingInputStream retry = new AwsChunkedEncodingInputStream(
+                firstAttempt, SIGNING_KEY, DATE_TIME, KEY_PATH, HEADER_SIGNATURE, signer, 4);
+
+        assertArrayEquals(serial, readFully(retry));
+    }
+
+    @Test
+    public void failedHashingTask_FailsRead() throws IOException {
+        final InputStream pipelined = new AwsChunkedEncodingInputStream(
+                new ByteArrayInputStream(content(CHUNK_SIZE)), BUFFER_SIZE, SIGNING_KEY, DATE_TIME,
+                KEY_PATH, HEADER_SIGNATURE, signer, 2, new FailingExecutor());
+        try {
+            readFully(pipelined);
+            fail("Expected the hashing failure to surface");
+        } catch (AmazonClientException expected) {
+            assertEquals("hashing failed", expected.getCause().getMessage());
+        }
+    }
+
+    private AwsChunkedEncodingInputStream chunked(byte[] content, int readAhead) {
+        return chunked(new ByteArrayInputStream(content), readAhead);
+    }
+
+    private AwsChunkedEncodingInputStream chunked(InputStream content, int readAhead) {
+        return new AwsChunkedEncodingInputStream(content, SIGNING_KEY, DATE_TIME, KEY_PATH,
+                HEADER_SIGNATURE, signer, readAhead);
+    }
+
+    private static byte[] content(int length) {
+        final byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        return content;
+    }
+
+    private static byte[] readFully(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        // Odd sized reads so that they straddle the chunk boundaries
+        final byte[] buffer = new byte[10007];
+        int read;
+        while ((read = in.read(buffer)) != -1) {
+            out.write(buffer, 0, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static void readFully(InputStream in, byte[] b) throws IOException {
+        int offset = 0;
+        while (offset < b.length) {
+            final int read = in.read(b, offset, b.length - offset);
+            if (read == -1) {
+                throw new IOException("Unexpected end of stream");
+            }
+            offset += read;
+        }
+    }
+
+    private static final class NotMarkableInputStream extends FilterInputStream {
+
+        private NotMarkableInputStream(byte[] content) {
+            super(new ByteArrayInputStream(content));
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+
+    /**
+     * Runs the submitted hashing tasks on the calling thread, failing every one of them.
+     */
+    private static final class FailingExecutor extends AbstractExecutorService {
+
+        @Override
+        protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+            return new FutureTask<T>(new Callable<T>() {
+                @Override
+                public T call() {
+                    throw new IllegalStateException("hashing failed");
+                }
+            });
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return null;
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,308 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.amazonaws.util.Base64;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Sends PutObject and UploadPart requests with a ByteBuffer body to a local
+ * server that records what it receives.
+ */
+public class AmazonS3ClientByteBufferBodyTest {
+
+    private HttpServer server;
+    private final List<ReceivedRequest> received =
+            Collections.synchronizedList(new ArrayList<ReceivedRequest>());
+    /** The number of requests still to be failed with a retryable error. */
+    private final AtomicInteger failuresLeft = new AtomicInteger();
+    private AmazonS3Client s3;
+
+    @Before
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", new RecordingHandler());
+        server.start();
+        s3 = new AmazonS3Client(new BasicAWSCredentials("access", "secret"));
+        s3.setEndpoint("http://127.0.0.1:" + server.getAddress().getPort());
+        s3.setS3ClientOptions(S3ClientOptions.builder().setPathStyleAccess(true).build());
+    }
+
+    @After
+    public void tearDown() {
+        s3.shutdown();
+        server.stop(0);
+    }
+
+    @Test
+    public void putObject_HeapBuffer_SendsRemainingContent() {
+        assertPutSendsRemainingContent(region(ByteBuffer.allocate(300)));
+    }
+
+    @Test
+    public void putObject_DirectBuffer_SendsRemainingContent() {
+        assertPutSendsRemainingContent(region(ByteBuffer.allocateDirect(300)));
+    }
+
+    @Test
+    public void putObject_ReadOnlyBuffer_SendsRemainingContent() {
+        assertPutSendsRemainingContent(region(ByteBuffer.allocate(300)).asReadOnlyBuffer());
+        assertPutSendsRemainingContent(region(ByteBuffer.allocateDirect(300)).asReadOnlyBuffer());
+    }
+
+    @Test
+    public void putObject_ExplicitContentLength_SendsThatManyBytes() {
+        ByteBuffer buffer = region(ByteBuffer.allocate(300));
+        ObjectMetadata metadata = new ObjectMetadata();
+        metadata.setContentLength(50);
+
+        s3.putObject(new PutObjectRequest("bucket", "key", buffer, metadata));
+
+        ReceivedRequest request = received.get(0);
+        byte[] expected = Arrays.copyOfRange(remaining(buffer), 0, 50);
+        assertEquals("50", request.contentLength);
+        assertArrayEquals(expected, request.body);
+        assertEquals(md5(expected), request.contentMd5);
+    }
+
+    @Test
+    public void putObject_UnchunkedBody_SignsHashOfRemainingContent() {
+        s3.setS3ClientOptions(S3ClientOptions.builder().setPathStyleAccess(true)
+                .disableChunkedEncoding().build());
+        ByteBuffer buffer = region(ByteBuffer.allocateDirect(300));
+        byte[] expected = remaining(buffer);
+
+        s3.putObject(new PutObjectRequest("bucket", "key", buffer, null));
+
+        ReceivedRequest request = received.get(0);
+        assertArrayEquals(expected, request.body);
+        assertEquals(md5(expected), request.contentMd5);
+        assertEquals(BinaryUtils.toHex(sha256(expected)), request.contentSha256);
+    }
+
+    @Test
+    public void putObject_RetriedAfterServerError_ResendsSameContent() {
+        ByteBuffer buffer = region(ByteBuffer.allocateDirect(64 * 1024));
+        byte[] expected = remaining(buffer);
+        failuresLeft.set(1);
+
+        s3.putObject(new PutObjectRequest("bucket", "key", buffer, null));
+
+        assertEquals(2, received.size());
+        for (ReceivedRequest request : received) {
+            assertArrayEquals(expected, request.body);
+            assertEquals(md5(expected), request.contentMd5);
+        }
+        assertEquals(expected.length, buffer.remaining());
+    }
+
+    @Test
+    public void uploadPart_Buffer_SendsRemainingContentAsPart() {
+        ByteBuffer buffer = region(ByteBuffer.allocateDirect(300));
+        byte[] expected = remaining(buffer);
+        UploadPartRequest request = new UploadPartRequest()
+                .withBucketName("bucket").withKey("key").withUploadId("upload")
+                .withPartNumber(1).withByteBuffer(buffer);
+        assertEquals(expected.length, request.getPartSize());
+
+        UploadPartResult result = s3.uploadPart(request);
+
+        ReceivedRequest part = received.get(0);
+        assertEquals(String.valueOf(expected.length), part.contentLength);
+        assertArrayEquals(expected, part.body);
+        assertEquals(md5(expected), part.contentMd5);
+        assertEquals(1, result.getPartNumber());
+        assertEquals(expected.length, buffer.remaining());
+    }
+
+    @Test
+    public void uploadPart_RetriedAfterServerError_ResendsSameContent() {
+        ByteBuffer buffer = region(ByteBuffer.allocate(64 * 1024)).asReadOnlyBuffer();
+        byte[] expected = remaining(buffer);
+        failuresLeft.set(1);
+
+        s3.uploadPart(new UploadPartRequest().withBucketName("bucket").withKey("key")
+                .withUploadId("upload").withPartNumber(1).withByteBuffer(buffer));
+
+        assertEquals(2, received.size());
+        for (ReceivedRequest request : received) {
+            assertArrayEquals(expected, request.body);
+        }
+    }
+
+    private void assertPutSendsRemainingContent(ByteBuffer buffer) {
+        received.clear();
+        byte[] expected = remaining(buffer);
+        int position = buffer.position();
+        int limit = buffer.limit();
+
+        PutObjectResult result = s3.putObject(new PutObjectRequest("bucket", "key", buffer, null));
+
+        ReceivedRequest request = received.get(0);
+        // The Content-Length comes from what is available in the buffer
+        assertEquals(String.valueOf(expected.length), request.contentLength);
+        assertArrayEquals(expected, request.body);
+        assertEquals(md5(expected), request.contentMd5);
+        assertEquals(md5(expected), result.getContentMd5());
+        assertEquals(position, buffer.position());
+        assertEquals(limit, buffer.limit());
+    }
+
+    /**
+     * Fills the buffer with random content, and leaves a region in the middle
+     * of it remaining.
+     */
+    private static ByteBuffer region(ByteBuffer buffer) {
+        byte[] content = new byte[buffer.capacity()];
+        new Random(buffer.capacity()).nextBytes(content);
+        buffer.put(content);
+        buffer.position(buffer.capacity() / 10).limit(buffer.capacity() - buffer.capacity() / 5);
+        return buffer;
+    }
+
+    private static byte[] remaining(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        return bytes;
+    }
+
+    private static String md5(byte[] content) {
+        return Base64.encodeAsString(Md5Utils.computeMD5Hash(content));
+    }
+
+    private static byte[] sha256(byte[] content) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(content);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static final class ReceivedRequest {
+        /** The length of the content, without any aws-chunked framing. */
+        private final String contentLength;
+        private final String contentMd5;
+        private final String contentSha256;
+        private final byte[] body;
+
+        private ReceivedRequest(String contentLength, String contentMd5, String contentSha256, byte[] body) {
+            this.contentLength = contentLength;
+            this.contentMd5 = contentMd5;
+            this.contentSha256 = contentSha256;
+            this.body = body;
+        }
+    }
+
+    /**
+     * Records each request and answers it with the MD5 of its body as the
+     * ETag, or with a retryable error while there are failures left.
+     */
+    private final class RecordingHandler implements HttpHandler {
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            Headers headers = exchange.getRequestHeaders();
+            byte[] body = readFully(exchange.getRequestBody());
+            String contentLength = headers.getFirst("Content-Length");
+            String contentSha256 = headers.getFirst("x-amz-content-sha256");
+            if (contentSha256 != null && contentSha256.startsWith("STREAMING-")) {
+                body = decodeChunks(body);
+                contentLength = headers.getFirst("x-amz-decoded-content-length");
+            }
+            received.add(new ReceivedRequest(contentLength, headers.getFirst("Content-MD5"),
+                    contentSha256, body));
+            if (failuresLeft.getAndDecrement() > 0) {
+                byte[] error = ("<Error><Code>InternalError</Code><Message>Try again</Message>"
+                        + "<RequestId>1</RequestId></Error>").getBytes("UTF-8");
+                exchange.sendResponseHeaders(500, error.length);
+                exchange.getResponseBody().write(error);
+            } else {
+                exchange.getResponseHeaders().add("ETag",
+                        "\"" + BinaryUtils.toHex(Md5Utils.computeMD5Hash(body)) + "\"");
+                exchange.sendResponseHeaders(200, -1);
+            }
+            exchange.close();
+        }
+
+        private byte[] readFully(InputStream in) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+
+        /**
+         * Strips the aws-chunked framing: each chunk is its length in hex and
+         * a signature on one line, then the data and a line break.
+         */
+        private byte[] decodeChunks(byte[] chunked) throws IOException {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            int position = 0;
+            while (true) {
+                int lineEnd = indexOfLineBreak(chunked, position);
+                String header = new String(chunked, position, lineEnd - position, "US-ASCII");
+                int size = Integer.parseInt(header.substring(0, header.indexOf(';')), 16);
+                if (size == 0) {
+                    return out.toByteArray();
+                }
+                out.write(chunked, lineEnd + 2, size);
+                position = lineEnd + 2 + size + 2;
+            }
+        }
+
+        private int indexOfLineBreak(byte[] bytes, int from) {
+            for (int i = from; i < bytes.length - 1; i++) {
+                if (bytes[i] == '\r' && bytes[i + 1] == '\n') {
+                    return i;
+                }
+            }
+            throw new IllegalStateException("Malformed chunk at " + from);
+        }
+    }
+}
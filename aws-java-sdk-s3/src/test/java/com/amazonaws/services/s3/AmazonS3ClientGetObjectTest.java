@@ -0,0 +1,178 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+
+public class AmazonS3ClientGetObjectTest {
+    private static final GetObjectRequest REQUEST = new GetObjectRequest("bucket", "key");
+
+    @Test
+    public void getObjectToBuffer_WritesContentAfterPosition() {
+        byte[] content = content(1000);
+        StubbedClient s3 = new StubbedClient(content);
+        ByteBuffer destination = ByteBuffer.allocate(1100);
+        destination.position(50);
+
+        ObjectMetadata metadata = s3.getObject(REQUEST, destination);
+
+        assertSame(s3.object.getObjectMetadata(), metadata);
+        assertEquals(1050, destination.position());
+        assertEquals(1100, destination.limit());
+        assertArrayEquals(content, Arrays.copyOfRange(destination.array(), 50, 1050));
+    }
+
+    @Test
+    public void getObjectToBuffer_BufferSmallerThanContentLength_FailsAndAborts() {
+        StubbedClient s3 = new StubbedClient(content(1000));
+        ByteBuffer destination = ByteBuffer.allocateDirect(999);
+
+        try {
+            s3.getObject(REQUEST, destination);
+            fail("Expected the object not to fit");
+        } catch (AmazonClientException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("larger than"));
+        }
+        assertTrue(s3.isAborted);
+    }
+
+    @Test
+    public void getObjectToBuffer_ConstraintsNotMet_ReturnsNullAndLeavesBuffer() {
+        StubbedClient s3 = new StubbedClient(null);
+        ByteBuffer destination = ByteBuffer.allocate(10);
+
+        assertNull(s3.getObject(REQUEST, destination));
+        assertEquals(0, destination.position());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getObjectToBuffer_NullBuffer_IsRejected() {
+        new StubbedClient(content(10)).getObject(REQUEST, (ByteBuffer) null);
+    }
+
+    @Test
+    public void getObjectToChannel_PartialWrites_WritesAllContent() {
+        byte[] content = content(200 * 1024);
+        StubbedClient s3 = new StubbedClient(content);
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+
+        s3.getObject(REQUEST, new WritableByteChannel() {
+            @Override
+            public int write(ByteBuffer src) {
+                // Takes a few bytes at a time, like a non-blocking socket
+                int count = Math.min(src.remaining(), 1000);
+                byte[] bytes = new byte[count];
+                src.get(bytes);
+                written.write(bytes, 0, count);
+                return count;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        assertArrayEquals(content, written.toByteArray());
+    }
+
+    @Test
+    public void getObjectToChannel_ClosedChannel_FailsAndAborts() throws IOException {
+        StubbedClient s3 = new StubbedClient(content(100));
+        WritableByteChannel channel = Channels.newChannel(new ByteArrayOutputStream());
+        channel.close();
+        try {
+            s3.getObject(REQUEST, channel);
+            fail("Expected the closed channel to fail the download");
+        } catch (AmazonClientException expected) {
+            assertTrue(expected.getCause() instanceof ClosedChannelException);
+        }
+        assertTrue(s3.isAborted);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getObjectToChannel_NullChannel_IsRejected() {
+        new StubbedClient(content(10)).getObject(REQUEST, (WritableByteChannel) null);
+    }
+
+    private static byte[] content(int length) {
+        byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        return content;
+    }
+
+    /**
+     * Returns the same object for every GetObject request without sending
+     * it, or null as when constraints are not met.
+     */
+    private static final class StubbedClient extends AmazonS3Client {
+        private final S3Object object;
+        private boolean isAborted;
+
+        private StubbedClient(byte[] content) {
+            super(new BasicAWSCredentials("access", "secret"));
+            if (content == null) {
+                object = null;
+                return;
+            }
+            object = new S3Object();
+            object.setBucketName("bucket");
+            object.setKey("key");
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(content.length);
+            object.setObjectMetadata(metadata);
+            object.setObjectContent(new S3ObjectInputStream(new ByteArrayInputStream(content), null) {
+                @Override
+                public void abort() {
+                    isAborted = true;
+                    super.abort();
+                }
+            });
+        }
+
+        @Override
+        public S3Object getObject(GetObjectRequest getObjectRequest) {
+            return object;
+        }
+    }
+}
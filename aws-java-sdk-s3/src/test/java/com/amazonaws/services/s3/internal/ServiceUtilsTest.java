@@ -0,0 +1,313 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+
+public class ServiceUtilsTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void downloadToByteBuffer_HeapBuffer_AdvancesPositionOnly() {
+        byte[] content = content(1000);
+        StubS3Object object = new StubS3Object(content);
+        ByteBuffer destination = ByteBuffer.allocate(2000);
+        destination.position(10).limit(1500);
+
+        assertEquals(1000, ServiceUtils.downloadToByteBuffer(object, destination));
+
+        assertEquals(1010, destination.position());
+        assertEquals(1500, destination.limit());
+        assertArrayEquals(content, Arrays.copyOfRange(destination.array(), 10, 1010));
+        assertFalse(object.isAborted);
+    }
+
+    @Test
+    public void downloadToByteBuffer_SlicedHeapBuffer_WritesAtArrayOffset() {
+        byte[] content = content(100);
+        ByteBuffer backing = ByteBuffer.allocate(300);
+        backing.position(50);
+        ByteBuffer destination = backing.slice();
+        destination.position(5);
+
+        ServiceUtils.downloadToByteBuffer(new StubS3Object(content), destination);
+
+        assertEquals(105, destination.position());
+        assertArrayEquals(content, Arrays.copyOfRange(backing.array(), 55, 155));
+    }
+
+    @Test
+    public void downloadToByteBuffer_DirectBuffer_AdvancesPositionOnly() {
+        byte[] content = content(300 * 1024);
+        ByteBuffer destination = ByteBuffer.allocateDirect(content.length + 20);
+        destination.position(7).limit(content.length + 10);
+
+        assertEquals(content.length, ServiceUtils.downloadToByteBuffer(new StubS3Object(content), destination));
+
+        assertEquals(content.length + 7, destination.position());
+        assertEquals(content.length + 10, destination.limit());
+        destination.flip().position(7);
+        byte[] written = new byte[content.length];
+        destination.get(written);
+        assertArrayEquals(content, written);
+    }
+
+    @Test
+    public void downloadToByteBuffer_ShortReads_FillsBuffer() {
+        byte[] content = content(1000);
+        ByteBuffer destination = ByteBuffer.allocateDirect(1000);
+
+        ServiceUtils.downloadToByteBuffer(new StubS3Object(new TricklingInputStream(content, 3)), destination);
+
+        assertFalse(destination.hasRemaining());
+        destination.flip();
+        byte[] written = new byte[content.length];
+        destination.get(written);
+        assertArrayEquals(content, written);
+    }
+
+    @Test
+    public void downloadToByteBuffer_ContentFillsBufferExactly_Succeeds() {
+        byte[] content = content(64);
+        StubS3Object object = new StubS3Object(content);
+        ByteBuffer destination = ByteBuffer.allocate(64);
+
+        assertEquals(64, ServiceUtils.downloadToByteBuffer(object, destination));
+
+        assertFalse(destination.hasRemaining());
+        assertFalse(object.isAborted);
+    }
+
+    @Test
+    public void downloadToByteBuffer_BufferSmallerThanContent_FailsAndAborts() {
+        for (ByteBuffer destination : new ByteBuffer[] {
+                ByteBuffer.allocate(100), ByteBuffer.allocateDirect(100) }) {
+            StubS3Object object = new StubS3Object(content(101));
+            try {
+                ServiceUtils.downloadToByteBuffer(object, destination);
+                fail("Expected the content not to fit");
+            } catch (AmazonClientException expected) {
+                assertTrue(expected.getMessage(), expected.getMessage().contains("larger than the 100 bytes"));
+            }
+            assertTrue(object.isAborted);
+        }
+    }
+
+    @Test
+    public void downloadToByteBuffer_ReadFailure_FailsAndAborts() {
+        StubS3Object object = new StubS3Object(new FailingInputStream());
+        try {
+            ServiceUtils.downloadToByteBuffer(object, ByteBuffer.allocate(100));
+            fail("Expected the read failure to surface");
+        } catch (AmazonClientException expected) {
+            assertEquals("read failed", expected.getCause().getMessage());
+        }
+        assertTrue(object.isAborted);
+    }
+
+    @Test
+    public void downloadToChannel_PartialWrites_WritesAllContent() {
+        byte[] content = content(300 * 1024);
+        PartialWriteChannel channel = new PartialWriteChannel(7);
+
+        assertEquals(content.length, ServiceUtils.downloadToChannel(new StubS3Object(content), channel));
+
+        assertArrayEquals(content, channel.written.toByteArray());
+    }
+
+    @Test
+    public void downloadToChannel_WriteFailure_FailsAndAborts() {
+        StubS3Object object = new StubS3Object(content(100));
+        PartialWriteChannel channel = new PartialWriteChannel(7);
+        channel.isFailing = true;
+        try {
+            ServiceUtils.downloadToChannel(object, channel);
+            fail("Expected the write failure to surface");
+        } catch (AmazonClientException expected) {
+            assertEquals("write failed", expected.getCause().getMessage());
+        }
+        assertTrue(object.isAborted);
+    }
+
+    @Test
+    public void downloadToChannel_ClosedChannel_FailsAndAborts() {
+        StubS3Object object = new StubS3Object(content(100));
+        PartialWriteChannel channel = new PartialWriteChannel(7);
+        channel.close();
+        try {
+            ServiceUtils.downloadToChannel(object, channel);
+            fail("Expected the closed channel to fail the download");
+        } catch (AmazonClientException expected) {
+            assertTrue(expected.getCause() instanceof ClosedChannelException);
+        }
+        assertTrue(object.isAborted);
+        assertEquals(0, channel.written.size());
+    }
+
+    @Test
+    public void downloadToChannel_ReadFailure_FailsAndAborts() {
+        StubS3Object object = new StubS3Object(new FailingInputStream());
+        try {
+            ServiceUtils.downloadToChannel(object, new PartialWriteChannel(7));
+            fail("Expected the read failure to surface");
+        } catch (AmazonClientException expected) {
+            assertEquals("read failed", expected.getCause().getMessage());
+        }
+        assertTrue(object.isAborted);
+    }
+
+    @Test
+    public void downloadToFileChannel_WritesAtPosition_LeavesChannelPosition() throws IOException {
+        byte[] content = content(1000);
+        File file = folder.newFile();
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            FileChannel channel = raf.getChannel();
+            channel.position(3);
+
+            assertEquals(1000, ServiceUtils.downloadToFileChannel(new StubS3Object(content), channel, 500));
+
+            assertEquals(3, channel.position());
+            assertEquals(1500, channel.size());
+            byte[] written = new byte[1000];
+            raf.seek(500);
+            raf.readFully(written);
+            assertArrayEquals(content, written);
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static byte[] content(int length) {
+        byte[] content = new byte[length];
+        new Random(length).nextBytes(content);
+        return content;
+    }
+
+    /**
+     * An S3 object whose content is the given stream, recording whether the
+     * content was aborted.
+     */
+    private static final class StubS3Object extends S3Object {
+        private boolean isAborted;
+
+        private StubS3Object(byte[] content) {
+            this(new ByteArrayInputStream(content));
+        }
+
+        private StubS3Object(InputStream content) {
+            setBucketName("bucket");
+            setKey("key");
+            setObjectMetadata(new ObjectMetadata());
+            setObjectContent(new S3ObjectInputStream(content, null) {
+                @Override
+                public void abort() {
+                    isAborted = true;
+                    super.abort();
+                }
+            });
+        }
+    }
+
+    /**
+     * Returns at most the given number of bytes per read.
+     */
+    private static final class TricklingInputStream extends ByteArrayInputStream {
+        private final int maxRead;
+
+        private TricklingInputStream(byte[] content, int maxRead) {
+            super(content);
+            this.maxRead = maxRead;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            return super.read(b, off, Math.min(len, maxRead));
+        }
+    }
+
+    private static final class FailingInputStream extends InputStream {
+        @Override
+        public int read() throws IOException {
+            throw new IOException("read failed");
+        }
+    }
+
+    /**
+     * Writes at most the given number of bytes per write, or fails every write.
+     * Like the channels of Channels.newChannel(OutputStream) before Java 9, it
+     * still accepts writes once closed.
+     */
+    private static final class PartialWriteChannel implements WritableByteChannel {
+        private final int maxWrite;
+        private final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        private boolean isFailing;
+        private boolean isOpen = true;
+
+        private PartialWriteChannel(int maxWrite) {
+            this.maxWrite = maxWrite;
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            if (isFailing) {
+                throw new IOException("write failed");
+            }
+            int count = Math.min(src.remaining(), maxWrite);
+            for (int i = 0; i < count; i++) {
+                written.write(src.get());
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return isOpen;
+        }
+
+        @Override
+        public void close() {
+            isOpen = false;
+        }
+    }
+}
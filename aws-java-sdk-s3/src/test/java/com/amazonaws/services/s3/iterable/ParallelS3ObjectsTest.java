@@ -0,0 +1,341 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.iterable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+
+public class ParallelS3ObjectsTest {
+
+    private static final String BUCKET = "bucket";
+
+    private static final List<String> KEYS = Arrays.asList(
+            "a/1", "a/2", "a/3", "a/b/1", "a/b/2", "a/c/1",
+            "b", "c/1", "c/2", "c/3", "c/4", "c/5",
+            "d/x/1", "d/y/1", "d/y/2", "e");
+
+    private static final Executor SAME_THREAD = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private FakeS3 s3;
+    private ExecutorService executor;
+
+    @Before
+    public void setUp() {
+        s3 = new FakeS3(KEYS);
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @After
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void keyOrder_MatchesSerialListing() {
+        for (int depth = 0; depth <= 3; depth++) {
+            for (int batchSize : new int[] { 1, 2, 1000 }) {
+                assertEquals("depth " + depth + ", batch size " + batchSize, KEYS,
+                        keys(ParallelS3Objects.inBucket(s3, BUCKET, executor)
+                                .withPartitionDepth(depth)
+                                .withBatchSize(batchSize)
+                                .withMaxConcurrency(3)));
+            }
+        }
+    }
+
+    @Test
+    public void keyOrder_OnSameThreadExecutor() {
+        assertEquals(KEYS, keys(ParallelS3Objects.inBucket(s3, BUCKET, SAME_THREAD)
+                .withPartitionDepth(2)
+                .withBatchSize(2)));
+    }
+
+    @Test
+    public void keyOrder_WithPrefix() {
+        assertEquals(Arrays.asList("a/1", "a/2", "a/3", "a/b/1", "a/b/2", "a/c/1"),
+                keys(ParallelS3Objects.withPrefix(s3, BUCKET, "a/", executor)
+                        .withPartitionDepth(2)
+                        .withBatchSize(1)));
+    }
+
+    @Test
+    public void partitionDepthZero_ListsSinglePartitionWithoutDelimiter() {
+        assertEquals(KEYS, keys(ParallelS3Objects.inBucket(s3, BUCKET, executor)
+                .withPartitionDepth(0)
+                .withBatchSize(3)));
+        for (ListObjectsRequest request : s3.requests) {
+            assertEquals(null, request.getDelimiter());
+            assertEquals(null, request.getPrefix());
+        }
+        // Pages of 3 keys, the last one not truncated
+        assertEquals((KEYS.size() + 2) / 3, s3.requests.size());
+    }
+
+    @Test
+    public void partitionBoundaries_ListRangesInKeyOrder() {
+        assertEquals(KEYS, keys(ParallelS3Objects.inBucket(s3, BUCKET, executor)
+                .withPartitionBoundaries("c/3", "a/2", "d", "a/2")
+                .withBatchSize(2)));
+    }
+
+    @Test
+    public void partitionBoundariesBeyondKeys_GiveEmptyRanges() {
+        assertEquals(KEYS, keys(ParallelS3Objects.inBucket(s3, BUCKET, executor)
+                .withPartitionBoundaries("0", "zz", "zzz")));
+    }
+
+    @Test
+    public void emptyBucket_HasNoSummaries() {
+        s3 = new FakeS3(Collections.<String> emptyList());
+        Iterator<S3ObjectSummary> it = ParallelS3Objects.inBucket(s3, BUCKET, executor)
+                .withPartitionDepth(2).iterator();
+        assertFalse(it.hasNext());
+    }
+
+    @Test
+    public void emptyPartitions_AreSkipped() {
+        s3 = new FakeS3(KEYS, "a/b/", "c/");
+        List<String> expected = new ArrayList<String>(KEYS);
+        expected.removeAll(Arrays.asList("a/b/1", "a/b/2", "c/1", "c/2", "c/3", "c/4", "c/5"));
+        assertEquals(expected, keys(ParallelS3Objects.inBucket(s3, BUCKET, executor)
+                .withPartitionDepth(2)
+                .withBatchSize(2)));
+    }
+
+    @Test
+    public void unordered_ReturnsEveryKeyOnce() {
+        List<String> keys = keys(ParallelS3Objects.inBucket(s3, BUCKET, executor)
+                .withPartitionDepth(2)
+                .withBatchSize(1)
+                .withOrdering(ParallelS3Objects.Ordering.UNORDERED));
+        assertEquals(KEYS.size(), keys.size());
+        assertEquals(new TreeSet<String>(KEYS), new TreeSet<String>(keys));
+    }
+
+    @Test
+    public void failingListRequest_IsThrownByIterator() {
+        final AmazonServiceException failure = new AmazonServiceException("Listing failed");
+        s3.failure = failure;
+        s3.failingPrefix = "c/";
+        Iterator<S3ObjectSummary> it = ParallelS3Objects.inBucket(s3, BUCKET, executor)
+                .withPartitionDepth(1)
+                .withBatchSize(1)
+                .iterator();
+        try {
+            while (it.hasNext()) {
+                it.next();
+            }
+            fail("Expected the listing failure to be thrown");
+        } catch (AmazonServiceException expected) {
+            assertSame(failure, expected);
+        }
+        // No more requests are started once a request failed
+        final int requests = s3.requests.size();
+        try {
+            it.hasNext();
+            fail("Expected the listing failure to be thrown again");
+        } catch (AmazonServiceException expected) {
+            assertSame(failure, expected);
+        }
+        assertEquals(requests, s3.requests.size());
+    }
+
+    @Test
+    public void failingListRequest_OnSameThreadExecutor_IsThrownByIterator() {
+        s3.failure = new AmazonServiceException("Listing failed");
+        s3.failingPrefix = "d/";
+        Iterator<S3ObjectSummary> it = ParallelS3Objects.inBucket(s3, BUCKET, SAME_THREAD)
+                .withPartitionDepth(2)
+                .iterator();
+        try {
+            while (it.hasNext()) {
+                it.next();
+            }
+            fail("Expected the listing failure to be thrown");
+        } catch (AmazonServiceException expected) {
+            assertSame(s3.failure, expected);
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void saturatedExecutor_QueuesRequestsWithoutDeadlock() {
+        ExecutorService single = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(KEYS, keys(ParallelS3Objects.inBucket(s3, BUCKET, single)
+                    .withPartitionDepth(3)
+                    .withBatchSize(1)
+                    .withMaxConcurrency(16)
+                    .withMaxBufferedSummaries(1)));
+        } finally {
+            single.shutdownNow();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void rejectingExecutor_FailsIteratorWithoutDeadlock() throws Exception {
+        final ThreadPoolExecutor busy = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>());
+        final CountDownLatch release = new CountDownLatch(1);
+        try {
+            busy.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            Iterator<S3ObjectSummary> it = ParallelS3Objects.inBucket(s3, BUCKET, busy).iterator();
+            try {
+                it.hasNext();
+                fail("Expected the rejected list request to fail the iterator");
+            } catch (AmazonClientException expected) {
+                assertTrue(expected.getMessage().contains("Unable to submit"));
+            }
+        } finally {
+            release.countDown();
+            busy.shutdownNow();
+        }
+    }
+
+    private static List<String> keys(Iterable<S3ObjectSummary> summaries) {
+        List<String> keys = new ArrayList<String>();
+        for (S3ObjectSummary summary : summaries) {
+            assertEquals(BUCKET, summary.getBucketName());
+            keys.add(summary.getKey());
+        }
+        return keys;
+    }
+
+    /**
+     * Lists keys held in memory the way Amazon S3 does, rolling the keys up
+     * into common prefixes when a delimiter is given.
+     */
+    private static final class FakeS3 extends AbstractAmazonS3 {
+        private final TreeSet<String> keys;
+        /** Common prefixes listed without any key left under them, as after a deletion */
+        private final TreeSet<String> emptyPrefixes;
+        private final List<ListObjectsRequest> requests =
+                Collections.synchronizedList(new ArrayList<ListObjectsRequest>());
+        private volatile String failingPrefix;
+        private volatile RuntimeException failure;
+
+        private FakeS3(List<String> keys, String... emptyPrefixes) {
+            this.keys = new TreeSet<String>(keys);
+            this.emptyPrefixes = new TreeSet<String>(Arrays.asList(emptyPrefixes));
+        }
+
+        @Override
+        public ObjectListing listObjects(ListObjectsRequest request) {
+            requests.add(request);
+            final String prefix = request.getPrefix() == null ? "" : request.getPrefix();
+            if (failure != null && prefix.equals(failingPrefix)) {
+                throw failure;
+            }
+            final int maxKeys = request.getMaxKeys() == null ? 1000 : request.getMaxKeys();
+            final String delimiter = request.getDelimiter();
+            final String marker = request.getMarker();
+
+            final TreeSet<String> entries = new TreeSet<String>();
+            for (String key : keys) {
+                if (!key.startsWith(prefix) || isUnderEmptyPrefix(key)) {
+                    continue;
+                }
+                final int end = delimiter == null ? -1 : key.indexOf(delimiter, prefix.length());
+                entries.add(end < 0 ? key : key.substring(0, end + delimiter.length()));
+            }
+            if (delimiter != null) {
+                for (String emptyPrefix : emptyPrefixes) {
+                    if (emptyPrefix.startsWith(prefix)
+                            && emptyPrefix.indexOf(delimiter, prefix.length())
+                                    == emptyPrefix.length() - delimiter.length()) {
+                        entries.add(emptyPrefix);
+                    }
+                }
+            }
+
+            ObjectListing listing = new ObjectListing();
+            listing.setBucketName(request.getBucketName());
+            listing.setPrefix(request.getPrefix());
+            listing.setMarker(marker);
+            listing.setDelimiter(delimiter);
+            String last = null;
+            for (String entry : marker == null ? entries : entries.tailSet(marker, false)) {
+                final int listed = listing.getObjectSummaries().size()
+                        + listing.getCommonPrefixes().size();
+                if (listed == maxKeys) {
+                    listing.setTruncated(true);
+                    // As the SDK sets it from the last key when Amazon S3 leaves it out
+                    listing.setNextMarker(last);
+                    break;
+                }
+                if (delimiter != null && entry.endsWith(delimiter) && !keys.contains(entry)) {
+                    listing.getCommonPrefixes().add(entry);
+                } else {
+                    S3ObjectSummary summary = new S3ObjectSummary();
+                    summary.setBucketName(request.getBucketName());
+                    summary.setKey(entry);
+                    listing.getObjectSummaries().add(summary);
+                }
+                last = entry;
+            }
+            return listing;
+        }
+
+        private boolean isUnderEmptyPrefix(String key) {
+            for (String emptyPrefix : emptyPrefixes) {
+                if (key.startsWith(emptyPrefix)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
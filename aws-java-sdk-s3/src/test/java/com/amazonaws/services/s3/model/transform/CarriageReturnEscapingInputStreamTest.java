@@ -0,0 +1,139 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.model.transform;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.amazonaws.util.StringUtils;
+
+/**
+ * Checks the escaping filter against the whole-document replacement it took
+ * over from {@link XmlResponsesSaxParser#sanitizeXmlDocument}.
+ */
+public class CarriageReturnEscapingInputStreamTest {
+
+    /** Size of the read buffer of the filter */
+    private static final int BUFFER_SIZE = 8192;
+
+    @Test
+    public void emptyStream() throws IOException {
+        assertEscaped("");
+        assertEquals(-1, escaping(new byte[0]).read());
+        assertEquals(-1, escaping(new byte[0]).read(new byte[10], 0, 10));
+    }
+
+    @Test
+    public void documentWithoutCarriageReturn_IsUnchanged() throws IOException {
+        assertEscaped("<ListBucketResult><Name>bucket</Name></ListBucketResult>");
+    }
+
+    @Test
+    public void carriageReturns_AreEscaped() throws IOException {
+        assertEscaped("\r<Key>a\rb\r\r\nc</Key>\r");
+    }
+
+    @Test
+    public void carriageReturnsAtReadBufferBoundary_AreEscaped() throws IOException {
+        for (int offset : new int[] { BUFFER_SIZE - 1, BUFFER_SIZE, BUFFER_SIZE + 1,
+                2 * BUFFER_SIZE - 1 }) {
+            final char[] document = new char[3 * BUFFER_SIZE];
+            Arrays.fill(document, 'x');
+            document[offset] = '\r';
+            document[offset + 1] = '\r';
+            assertEscaped(new String(document));
+        }
+    }
+
+    @Test
+    public void multiByteCharactersNextToCarriageReturns_AreKept() throws IOException {
+        assertEscaped("\u00e9\r\u65e5\u672c\r\r\ud83d\ude00\r\u00e9");
+        // Multi-byte characters straddling the read buffer boundary as well
+        final StringBuilder document = new StringBuilder();
+        while (document.length() < BUFFER_SIZE + 10) {
+            document.append("\u65e5\r\ud83d\ude00\u00e9");
+        }
+        assertEscaped(document.toString());
+    }
+
+    private static void assertEscaped(String document) throws IOException {
+        final byte[] content = document.getBytes(StringUtils.UTF8);
+        final byte[] expected = legacySanitize(document);
+
+        assertArrayEquals(expected, readBulk(escaping(content), 8192));
+        // Short reads split the escape sequences
+        for (int len = 1; len <= 7; len++) {
+            assertArrayEquals(expected, readBulk(escaping(content), len));
+        }
+        assertArrayEquals(expected, readSingleBytes(escaping(content)));
+        // The wrapped stream returning few bytes at a time
+        assertArrayEquals(expected, readBulk(
+                new CarriageReturnEscapingInputStream(new TrickleInputStream(content)), 100));
+    }
+
+    /**
+     * The document sanitization as it was done before streaming it.
+     */
+    private static byte[] legacySanitize(String document) {
+        return document.replaceAll("\r", "&#013;").getBytes(StringUtils.UTF8);
+    }
+
+    private static InputStream escaping(byte[] content) {
+        return new CarriageReturnEscapingInputStream(new ByteArrayInputStream(content));
+    }
+
+    private static byte[] readBulk(InputStream in, int len) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[len + 2];
+        int read;
+        while ((read = in.read(buffer, 1, len)) != -1) {
+            out.write(buffer, 1, read);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readSingleBytes(InputStream in) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int b;
+        while ((b = in.read()) != -1) {
+            out.write(b);
+        }
+        return out.toByteArray();
+    }
+
+    private static final class TrickleInputStream extends FilterInputStream {
+
+        private int nextLength = 1;
+
+        private TrickleInputStream(byte[] content) {
+            super(new ByteArrayInputStream(content));
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            nextLength = nextLength % 5 + 1;
+            return super.read(b, off, Math.min(len, nextLength));
+        }
+    }
+}
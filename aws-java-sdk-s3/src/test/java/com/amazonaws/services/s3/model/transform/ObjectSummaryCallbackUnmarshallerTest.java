@@ -0,0 +1,141 @@
+/*
+ * Copyright 2016-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.model.transform;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.amazonaws.services.s3.model.ListObjectsV2Result;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.S3ObjectSummaryCallback;
+import com.amazonaws.util.StringUtils;
+
+/**
+ * Tests the streaming of object summaries to a {@link S3ObjectSummaryCallback}
+ * by the list objects unmarshallers.
+ */
+public class ObjectSummaryCallbackUnmarshallerTest {
+
+    private static final String CONTENTS =
+            "<Contents><Key>first\r\nkey</Key><LastModified>2016-01-01T00:00:00.000Z</LastModified>"
+            + "<ETag>&quot;etag1&quot;</ETag><Size>10</Size><StorageClass>STANDARD</StorageClass>"
+            + "<Owner><ID>owner</ID><DisplayName>name</DisplayName></Owner></Contents>"
+            + "<Contents><Key>second\u00e9</Key><LastModified>2016-01-02T00:00:00.000Z</LastModified>"
+            + "<ETag>&quot;etag2&quot;</ETag><Size>20</Size><StorageClass>STANDARD</StorageClass></Contents>";
+
+    private static final String LIST_OBJECTS_RESPONSE =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">"
+            + "<Name>bucket</Name><Prefix></Prefix><Marker></Marker><MaxKeys>2</MaxKeys>"
+            + "<IsTruncated>true</IsTruncated>" + CONTENTS
+            + "<CommonPrefixes><Prefix>dir/</Prefix></CommonPrefixes></ListBucketResult>";
+
+    private static final String LIST_OBJECTS_V2_RESPONSE =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<ListBucketResult xmlns=\"http://s3.amazonaws.com/doc/2006-03-01/\">"
+            + "<Name>bucket</Name><Prefix></Prefix><KeyCount>2</KeyCount><MaxKeys>2</MaxKeys>"
+            + "<IsTruncated>true</IsTruncated><NextContinuationToken>token</NextContinuationToken>"
+            + CONTENTS + "</ListBucketResult>";
+
+    @Test
+    public void listObjects_HandsSummariesToCallbackInOrder() throws Exception {
+        final List<S3ObjectSummary> summaries = new ArrayList<S3ObjectSummary>();
+        ObjectListing listing = new Unmarshallers.ListObjectsUnmarshaller(false,
+                collectingInto(summaries)).unmarshall(trickle(LIST_OBJECTS_RESPONSE));
+
+        assertSummaries(summaries);
+        assertTrue(listing.getObjectSummaries().isEmpty());
+        assertEquals("bucket", listing.getBucketName());
+        assertTrue(listing.isTruncated());
+        // The next marker is still derived from the last summary handed to the callback
+        assertEquals("second\u00e9", listing.getNextMarker());
+        assertEquals("dir/", listing.getCommonPrefixes().get(0));
+    }
+
+    @Test
+    public void listObjects_WithoutCallback_CollectsSameSummaries() throws Exception {
+        ObjectListing listing = new Unmarshallers.ListObjectsUnmarshaller(false)
+                .unmarshall(trickle(LIST_OBJECTS_RESPONSE));
+
+        assertSummaries(listing.getObjectSummaries());
+        assertEquals("second\u00e9", listing.getNextMarker());
+    }
+
+    @Test
+    public void listObjectsV2_HandsSummariesToCallbackInOrder() throws Exception {
+        final List<S3ObjectSummary> summaries = new ArrayList<S3ObjectSummary>();
+        ListObjectsV2Result result = new Unmarshallers.ListObjectsV2Unmarshaller(false,
+                collectingInto(summaries)).unmarshall(trickle(LIST_OBJECTS_V2_RESPONSE));
+
+        assertSummaries(summaries);
+        assertTrue(result.getObjectSummaries().isEmpty());
+        assertEquals(2, result.getKeyCount());
+        assertEquals("token", result.getNextContinuationToken());
+    }
+
+    @Test
+    public void listObjectsV2_WithoutCallback_CollectsSameSummaries() throws Exception {
+        ListObjectsV2Result result = new Unmarshallers.ListObjectsV2Unmarshaller(false)
+                .unmarshall(trickle(LIST_OBJECTS_V2_RESPONSE));
+
+        assertSummaries(result.getObjectSummaries());
+    }
+
+    private static void assertSummaries(List<S3ObjectSummary> summaries) {
+        assertEquals(2, summaries.size());
+        S3ObjectSummary first = summaries.get(0);
+        // The carriage return of the key survives the parsing
+        assertEquals("first\r\nkey", first.getKey());
+        assertEquals("bucket", first.getBucketName());
+        assertEquals("etag1", first.getETag());
+        assertEquals(10, first.getSize());
+        assertEquals("owner", first.getOwner().getId());
+        S3ObjectSummary second = summaries.get(1);
+        assertEquals("second\u00e9", second.getKey());
+        assertEquals(20, second.getSize());
+    }
+
+    private static S3ObjectSummaryCallback collectingInto(final List<S3ObjectSummary> summaries) {
+        return new S3ObjectSummaryCallback() {
+            @Override
+            public void objectSummary(S3ObjectSummary objectSummary) {
+                summaries.add(objectSummary);
+            }
+        };
+    }
+
+    /**
+     * @return A stream of the response returning a few bytes at a time, as a
+     *         connection could.
+     */
+    private static InputStream trickle(String response) {
+        return new FilterInputStream(new ByteArrayInputStream(response.getBytes(StringUtils.UTF8))) {
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return super.read(b, off, Math.min(len, 7));
+            }
+        };
+    }
+}
@@ -0,0 +1,431 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.internal.FileLocks;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+
+public class DownloadCallableTest {
+    private static final String BUCKET = "bucket";
+    private static final String KEY = "key";
+    private static final int PART_SIZE = 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private FakeS3 s3;
+    private ExecutorService threadPool;
+    private TransferManager tm;
+
+    @Before
+    public void setUp() {
+        s3 = new FakeS3();
+        threadPool = new PartStartingExecutor();
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        configuration.setRangedDownloadThreshold(2 * PART_SIZE);
+        configuration.setRangedDownloadPartSize(PART_SIZE);
+        tm = new TransferManager(s3, threadPool);
+        tm.setConfiguration(configuration);
+    }
+
+    @After
+    public void tearDown() {
+        threadPool.shutdownNow();
+    }
+
+    @Test(timeout = 30000)
+    public void rangedDownload_ObjectOfWholeRanges_RequestsEachRangeOnce() throws Exception {
+        byte[] object = randomBytes(3 * PART_SIZE);
+        s3.objects.put(KEY, object);
+        File file = folder.newFile();
+
+        Download download = tm.download(BUCKET, KEY, file);
+        download.waitForCompletion();
+
+        assertEquals(Transfer.TransferState.Completed, download.getState());
+        assertEquals(Arrays.asList("0-1023", "1024-2047", "2048-3071"), s3.requestedRanges());
+        assertArrayEquals(object, readFile(file));
+    }
+
+    @Test(timeout = 30000)
+    public void rangedDownload_LastRangeIsPartial() throws Exception {
+        byte[] object = randomBytes(3 * PART_SIZE + 100);
+        s3.objects.put(KEY, object);
+        File file = folder.newFile();
+
+        Download download = tm.download(BUCKET, KEY, file);
+        download.waitForCompletion();
+
+        assertEquals(Transfer.TransferState.Completed, download.getState());
+        assertEquals(Arrays.asList("0-1023", "1024-2047", "2048-3071", "3072-3171"), s3.requestedRanges());
+        assertArrayEquals(object, readFile(file));
+    }
+
+    @Test(timeout = 30000)
+    public void resumeDownload_FetchesOnlyMissingRanges_OfRecordedSize() throws Exception {
+        byte[] object = randomBytes(5 * PART_SIZE + 100);
+        s3.objects.put(KEY, object);
+        File file = folder.newFile();
+        // Ranges 1 and 3 of 2 * PART_SIZE bytes made it to the file before the pause
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(object.length);
+            raf.write(object, 0, 2 * PART_SIZE);
+            raf.seek(4 * PART_SIZE);
+            raf.write(object, 4 * PART_SIZE, PART_SIZE + 100);
+        } finally {
+            raf.close();
+        }
+        PersistableDownload paused = new PersistableDownload(BUCKET, KEY, null, null, null, false,
+                file.getAbsolutePath(), 1, 0L, new int[][] { { 1, 1 }, { 3, 3 } }, (long) 2 * PART_SIZE);
+
+        Download download = tm.resumeDownload(paused);
+        download.waitForCompletion();
+
+        assertEquals(Transfer.TransferState.Completed, download.getState());
+        assertEquals(Arrays.asList("2048-4095"), s3.requestedRanges());
+        assertArrayEquals(object, readFile(file));
+    }
+
+    @Test(timeout = 30000)
+    public void integrityCheckEnabled_CorruptRange_FailsDownload() throws Exception {
+        tm.getConfiguration().setRangedDownloadIntegrityCheckEnabled(true);
+        s3.objects.put(KEY, randomBytes(3 * PART_SIZE));
+        s3.isContentCorrupt = true;
+
+        Download download = tm.download(BUCKET, KEY, folder.newFile());
+        try {
+            download.waitForCompletion();
+            fail("Expected the corrupt range to fail the download");
+        } catch (AmazonClientException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().contains("Unable to verify integrity"));
+        }
+        assertEquals(Transfer.TransferState.Failed, download.getState());
+    }
+
+    @Test(timeout = 30000)
+    public void integrityCheckEnabled_IntactRanges_Completes() throws Exception {
+        tm.getConfiguration().setRangedDownloadIntegrityCheckEnabled(true);
+        byte[] object = randomBytes(3 * PART_SIZE);
+        s3.objects.put(KEY, object);
+        File file = folder.newFile();
+
+        Download download = tm.download(BUCKET, KEY, file);
+        download.waitForCompletion();
+
+        assertEquals(Transfer.TransferState.Completed, download.getState());
+        assertArrayEquals(object, readFile(file));
+    }
+
+    @Test(timeout = 30000)
+    public void integrityCheckDisabled_DoesNotReadFileBack() throws Exception {
+        s3.objects.put(KEY, randomBytes(3 * PART_SIZE));
+        s3.isContentCorrupt = true;
+
+        Download download = tm.download(BUCKET, KEY, folder.newFile());
+        download.waitForCompletion();
+
+        assertEquals(Transfer.TransferState.Completed, download.getState());
+    }
+
+    @Test(timeout = 30000)
+    public void failedRange_WaitsForRunningRangesBeforeReleasingFile() throws Exception {
+        s3.objects.put(KEY, randomBytes(2 * PART_SIZE));
+        s3.failingRangeStart = 0;
+        s3.slowRangeStart = PART_SIZE;
+        File file = folder.newFile();
+
+        Download download = tm.download(BUCKET, KEY, file);
+        try {
+            download.waitForCompletion();
+            fail("Expected the failed range to fail the download");
+        } catch (AmazonClientException expected) {
+            assertTrue(expected.getMessage(), expected.getMessage().endsWith("Range failed"));
+        }
+
+        assertEquals(Transfer.TransferState.Failed, download.getState());
+        // The slow range ignores the interrupt, so the download must have waited for it
+        assertTrue(s3.slowRangeDone);
+        assertFalse(FileLocks.isFileLocked(file));
+    }
+
+    @Test(timeout = 30000)
+    public void adaptiveTuning_BoundsRangesInFlightAcrossDownloads() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+            configuration.setRangedDownloadThreshold(2 * PART_SIZE);
+            configuration.setRangedDownloadPartSize(PART_SIZE);
+            configuration.setMinimumUploadPartSize(PART_SIZE);
+            configuration.setAdaptiveTuningEnabled(true);
+            configuration.setMaxAdaptiveConcurrency(2);
+            TransferManager adaptiveTm = new TransferManager(s3, pool);
+            adaptiveTm.setConfiguration(configuration);
+            byte[] first = randomBytes(6 * PART_SIZE);
+            byte[] second = randomBytes(6 * PART_SIZE + 1);
+            s3.objects.put(KEY, first);
+            s3.objects.put("other-key", second);
+            s3.requestDelayMillis = 20;
+            File firstFile = folder.newFile();
+            File secondFile = folder.newFile();
+
+            Download firstDownload = adaptiveTm.download(BUCKET, KEY, firstFile);
+            Download secondDownload = adaptiveTm.download(BUCKET, "other-key", secondFile);
+            firstDownload.waitForCompletion();
+            secondDownload.waitForCompletion();
+
+            // Each download may have 2 ranges in flight, but not both at once
+            assertTrue("Ranges in flight " + s3.maxRequestsInFlight, s3.maxRequestsInFlight.get() <= 2);
+            assertArrayEquals(first, readFile(firstFile));
+            assertArrayEquals(second, readFile(secondFile));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int) raf.length()];
+            raf.readFully(bytes);
+            return bytes;
+        } finally {
+            raf.close();
+        }
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
+    /**
+     * Keeps objects in memory and serves them by range, recording the ranges
+     * requested. Optionally corrupts what it serves, fails one range, or
+     * holds another one past an interrupt.
+     */
+    private static final class FakeS3 extends AbstractAmazonS3 {
+        private final Map<String, byte[]> objects = new ConcurrentHashMap<String, byte[]>();
+        private final List<String> ranges = Collections.synchronizedList(new ArrayList<String>());
+        /** Whether the first byte of every range served is flipped. */
+        private volatile boolean isContentCorrupt;
+        /** The first byte of the range that fails once the slow range has started, or -1. */
+        private volatile long failingRangeStart = -1;
+        /** The first byte of the range that takes a while and ignores interrupts, or -1. */
+        private volatile long slowRangeStart = -1;
+        private final CountDownLatch slowRangeStarted = new CountDownLatch(1);
+        private volatile boolean slowRangeDone;
+        /** Released whenever a GetObject request comes in. */
+        private final Semaphore requestsStarted = new Semaphore(0);
+        /** How long each GetObject request takes, if positive. */
+        private volatile long requestDelayMillis;
+        private final AtomicInteger requestsInFlight = new AtomicInteger();
+        private final AtomicInteger maxRequestsInFlight = new AtomicInteger();
+
+        @Override
+        public ObjectMetadata getObjectMetadata(GetObjectMetadataRequest request) {
+            byte[] object = objects.get(request.getKey());
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(object.length);
+            metadata.setLastModified(new Date(0));
+            metadata.setHeader(Headers.ETAG, eTag(object));
+            return metadata;
+        }
+
+        @Override
+        public S3Object getObject(GetObjectRequest request) {
+            requestsStarted.release();
+            if (requestDelayMillis > 0) {
+                final int inFlight = requestsInFlight.incrementAndGet();
+                int max;
+                while (inFlight > (max = maxRequestsInFlight.get())
+                        && !maxRequestsInFlight.compareAndSet(max, inFlight))
+                    ;
+                sleepUninterruptibly(requestDelayMillis);
+                requestsInFlight.decrementAndGet();
+            }
+            byte[] object = objects.get(request.getKey());
+            long[] range = request.getRange();
+            int first = range == null ? 0 : (int) range[0];
+            int last = range == null ? object.length - 1 : (int) Math.min(range[1], object.length - 1);
+            ranges.add(first + "-" + last);
+            if (first == failingRangeStart) {
+                awaitUninterruptibly(slowRangeStarted);
+                throw new AmazonClientException("Range failed");
+            }
+            final boolean isSlowRange = first == slowRangeStart;
+            if (isSlowRange) {
+                slowRangeStarted.countDown();
+                sleepUninterruptibly(500);
+            }
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(last - first + 1);
+            metadata.setLastModified(new Date(0));
+            metadata.setHeader(Headers.ETAG, eTag(object));
+            metadata.setHeader(Headers.CONTENT_RANGE, "bytes " + first + "-" + last + "/" + object.length);
+            S3Object result = new S3Object();
+            result.setBucketName(request.getBucketName());
+            result.setKey(request.getKey());
+            result.setObjectMetadata(metadata);
+            byte[] content = Arrays.copyOfRange(object, first, last + 1);
+            if (isContentCorrupt) {
+                content[0] ^= 1;
+            }
+            result.setObjectContent(new S3ObjectInputStream(new ByteArrayInputStream(content), null) {
+                @Override
+                public void abort() {
+                    // The part is done with the response, and so with the file
+                    if (isSlowRange) {
+                        slowRangeDone = true;
+                    }
+                }
+            });
+            return result;
+        }
+
+        private List<String> requestedRanges() {
+            List<String> requested = new ArrayList<String>(ranges);
+            Collections.sort(requested, new Comparator<String>() {
+                @Override
+                public int compare(String a, String b) {
+                    return Long.valueOf(a.substring(0, a.indexOf('-')))
+                            .compareTo(Long.valueOf(b.substring(0, b.indexOf('-'))));
+                }
+            });
+            return requested;
+        }
+
+        private static String eTag(byte[] object) {
+            return BinaryUtils.toHex(Md5Utils.computeMD5Hash(object));
+        }
+    }
+
+    /**
+     * Runs every task on a thread of its own. Once the download itself has
+     * started, execute only returns when the submitted part has made its
+     * request, so that no part gets run by the thread waiting for the parts.
+     */
+    private final class PartStartingExecutor extends AbstractExecutorService {
+        private final ExecutorService delegate = Executors.newCachedThreadPool();
+        private boolean isDownloadStarted;
+
+        @Override
+        public synchronized void execute(Runnable command) {
+            delegate.execute(command);
+            if (isDownloadStarted) {
+                s3.requestsStarted.acquireUninterruptibly();
+            }
+            isDownloadStarted = true;
+        }
+
+        @Override
+        public void shutdown() {
+            delegate.shutdown();
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return delegate.shutdownNow();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return delegate.isShutdown();
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return delegate.isTerminated();
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+            return delegate.awaitTermination(timeout, unit);
+        }
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await(10, TimeUnit.SECONDS);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleepUninterruptibly(long millis) {
+        long deadline = System.currentTimeMillis() + millis;
+        boolean interrupted = false;
+        for (long left = millis; left > 0; left = deadline - System.currentTimeMillis()) {
+            try {
+                Thread.sleep(left);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+
+public class StreamingUploadTest {
+    private static final String BUCKET = "bucket";
+    private static final String KEY = "key";
+    private static final int PART_SIZE = (int) TransferManagerConfiguration.MINIMUM_STREAMING_UPLOAD_PART_SIZE;
+    private static final int BUFFER_COUNT = 2;
+
+    private FakeS3 s3;
+    private ExecutorService threadPool;
+    private TransferManager tm;
+
+    @Before
+    public void setUp() {
+        s3 = new FakeS3();
+        threadPool = Executors.newFixedThreadPool(4);
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        configuration.setStreamingUploadBufferCount(BUFFER_COUNT);
+        configuration.setStreamingUploadPartSize(PART_SIZE);
+        tm = new TransferManager(s3, threadPool);
+        tm.setConfiguration(configuration);
+    }
+
+    @After
+    public void tearDown() {
+        threadPool.shutdownNow();
+    }
+
+    @Test(timeout = 30000)
+    public void shortStream_IsUploadedWithSinglePut() throws Exception {
+        GeneratedInputStream in = new GeneratedInputStream(PART_SIZE - 1);
+
+        tm.upload(BUCKET, KEY, in, new ObjectMetadata()).waitForCompletion();
+
+        assertEquals(1, s3.puts.get());
+        assertEquals(0, s3.initiates.get());
+        assertEquals(PART_SIZE - 1, s3.putContentLength);
+        assertGenerated(s3.objects.get(KEY));
+    }
+
+    @Test(timeout = 30000)
+    public void streamOfExactlyOnePart_IsCompletedAsOnePart() throws Exception {
+        tm.upload(BUCKET, KEY, new GeneratedInputStream(PART_SIZE), new ObjectMetadata()).waitForCompletion();
+
+        // The end of the stream only shows once the first buffer is full
+        assertEquals(0, s3.puts.get());
+        assertEquals(1, s3.completedParts.size());
+        assertEquals(PART_SIZE, s3.objects.get(KEY).length);
+        assertGenerated(s3.objects.get(KEY));
+    }
+
+    @Test(timeout = 30000)
+    public void longStream_PartsAreCompletedInOrder() throws Exception {
+        // Later parts finish first
+        s3.isReversingPartOrder = true;
+        long length = 3L * PART_SIZE + PART_SIZE / 2;
+
+        tm.upload(BUCKET, KEY, new GeneratedInputStream(length), new ObjectMetadata()).waitForCompletion();
+
+        assertEquals(0, s3.puts.get());
+        assertEquals(1, s3.initiates.get());
+        assertEquals(0, s3.aborts.get());
+        assertEquals(4, s3.completedParts.size());
+        for (int i = 0; i < s3.completedParts.size(); i++) {
+            assertEquals(i + 1, s3.completedParts.get(i).getPartNumber());
+            assertEquals("etag" + (i + 1), s3.completedParts.get(i).getETag());
+        }
+        byte[] object = s3.objects.get(KEY);
+        assertEquals(length, object.length);
+        assertGenerated(object);
+    }
+
+    @Test(timeout = 30000)
+    public void longStream_HoldsAtMostBufferCountParts() throws Exception {
+        GeneratedInputStream in = new GeneratedInputStream(8L * PART_SIZE);
+        s3.source = in;
+
+        tm.upload(BUCKET, KEY, in, new ObjectMetadata()).waitForCompletion();
+
+        assertEquals(8, s3.completedParts.size());
+        assertTrue("parts in flight: " + s3.maxPartsInFlight, s3.maxPartsInFlight <= BUFFER_COUNT);
+        assertTrue("bytes held: " + in.maxBytesHeld, in.maxBytesHeld <= (long) BUFFER_COUNT * PART_SIZE);
+    }
+
+    @Test(timeout = 30000)
+    public void failedPart_AbortsUploadWithoutReadingRestOfStream() throws Exception {
+        s3.failingPartNumber = 2;
+        long length = 20L * PART_SIZE;
+        GeneratedInputStream in = new GeneratedInputStream(length);
+
+        Upload upload = tm.upload(BUCKET, KEY, in, new ObjectMetadata());
+        try {
+            upload.waitForCompletion();
+            fail("Expected the failed part to fail the upload");
+        } catch (AmazonClientException expected) {
+            assertEquals("Part failed", expected.getMessage());
+        }
+
+        assertEquals(Transfer.TransferState.Failed, upload.getState());
+        assertEquals(1, s3.aborts.get());
+        assertTrue(s3.completedParts.isEmpty());
+        assertFalse(s3.objects.containsKey(KEY));
+        assertTrue("read " + in.position + " of " + length, in.position < length);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void partSizeBelowMinimum_IsRejected() {
+        new TransferManagerConfiguration().setStreamingUploadPartSize(PART_SIZE - 1);
+    }
+
+    private static void assertGenerated(byte[] object) {
+        for (int i = 0; i < object.length; i++) {
+            if (object[i] != GeneratedInputStream.byteAt(i)) {
+                fail("Unexpected byte at " + i);
+            }
+        }
+    }
+
+    /**
+     * A stream of the given length that is generated as it is read, so that
+     * long streams don't take memory. Records how far ahead of the completed
+     * parts it gets read.
+     */
+    private static final class GeneratedInputStream extends InputStream {
+        private final long length;
+        private volatile long position;
+        /** The number of bytes in the parts the fake client has received in full. */
+        private final AtomicLong bytesUploaded = new AtomicLong();
+        private volatile long maxBytesHeld;
+
+        private GeneratedInputStream(long length) {
+            this.length = length;
+        }
+
+        private static byte byteAt(long position) {
+            return (byte) (position % 251);
+        }
+
+        @Override
+        public int read() {
+            byte[] b = new byte[1];
+            return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+        }
+
+        @Override
+        public synchronized int read(byte[] b, int off, int len) {
+            if (position == length) {
+                return -1;
+            }
+            int count = (int) Math.min(len, length - position);
+            for (int i = 0; i < count; i++) {
+                b[off + i] = byteAt(position + i);
+            }
+            position += count;
+            maxBytesHeld = Math.max(maxBytesHeld, position - bytesUploaded.get());
+            return count;
+        }
+    }
+
+    /**
+     * Keeps uploaded objects in memory, optionally failing one part, delaying
+     * earlier parts so that they finish last, and counting the parts in flight.
+     */
+    private static final class FakeS3 extends AbstractAmazonS3 {
+        private final Map<String, byte[]> objects = new ConcurrentHashMap<String, byte[]>();
+        private final Map<Integer, byte[]> parts = new ConcurrentHashMap<Integer, byte[]>();
+        private final List<PartETag> completedParts = Collections.synchronizedList(new ArrayList<PartETag>());
+        private final AtomicInteger puts = new AtomicInteger();
+        private final AtomicInteger initiates = new AtomicInteger();
+        private final AtomicInteger aborts = new AtomicInteger();
+        private final AtomicInteger partsInFlight = new AtomicInteger();
+        private volatile int maxPartsInFlight;
+        private volatile long putContentLength = -1;
+        private volatile int failingPartNumber = -1;
+        private volatile boolean isReversingPartOrder;
+        /** The stream being uploaded, told about every part received in full. */
+        private volatile GeneratedInputStream source;
+
+        @Override
+        public PutObjectResult putObject(PutObjectRequest request) {
+            puts.incrementAndGet();
+            putContentLength = request.getMetadata().getContentLength();
+            objects.put(request.getKey(), readFully(request.getInputStream()));
+            return new PutObjectResult();
+        }
+
+        @Override
+        public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+            initiates.incrementAndGet();
+            InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+            result.setBucketName(request.getBucketName());
+            result.setKey(request.getKey());
+            result.setUploadId("upload");
+            return result;
+        }
+
+        @Override
+        public UploadPartResult uploadPart(UploadPartRequest request) {
+            int inFlight = partsInFlight.incrementAndGet();
+            synchronized (this) {
+                maxPartsInFlight = Math.max(maxPartsInFlight, inFlight);
+            }
+            try {
+                if (request.getPartNumber() == failingPartNumber) {
+                    throw new AmazonClientException("Part failed");
+                }
+                if (isReversingPartOrder) {
+                    sleep((5 - request.getPartNumber()) * 50);
+                }
+                byte[] part = readFully(request.getInputStream());
+                assertEquals(request.getPartSize(), part.length);
+                parts.put(request.getPartNumber(), part);
+                if (source != null) {
+                    source.bytesUploaded.addAndGet(part.length);
+                }
+                UploadPartResult result = new UploadPartResult();
+                result.setPartNumber(request.getPartNumber());
+                result.setETag("etag" + request.getPartNumber());
+                return result;
+            } finally {
+                partsInFlight.decrementAndGet();
+            }
+        }
+
+        @Override
+        public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+            completedParts.addAll(request.getPartETags());
+            ByteArrayOutputStream object = new ByteArrayOutputStream();
+            for (PartETag partETag : request.getPartETags()) {
+                byte[] part = parts.get(partETag.getPartNumber());
+                object.write(part, 0, part.length);
+            }
+            objects.put(request.getKey(), object.toByteArray());
+            CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+            result.setBucketName(request.getBucketName());
+            result.setKey(request.getKey());
+            return result;
+        }
+
+        @Override
+        public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+            aborts.incrementAndGet();
+            parts.clear();
+        }
+
+        private static byte[] readFully(InputStream in) {
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                return out.toByteArray();
+            } catch (IOException e) {
+                throw new AmazonClientException("Unable to read the request content", e);
+            }
+        }
+
+        private static void sleep(long millis) {
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.AmazonS3Encryption;
+import com.amazonaws.services.s3.model.CopyObjectRequest;
+
+public class TransferManagerRelayCopyTest {
+    private final AtomicInteger requests = new AtomicInteger();
+    private ExecutorService threadPool;
+    private TransferManager tm;
+
+    @Before
+    public void setUp() {
+        threadPool = Executors.newSingleThreadExecutor();
+        tm = new TransferManager(newClient(AmazonS3.class), threadPool);
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        configuration.setRelayCopyEnabled(true);
+        tm.setConfiguration(configuration);
+    }
+
+    @After
+    public void tearDown() {
+        threadPool.shutdownNow();
+    }
+
+    @Test
+    public void copy_RelayFromDecryptingClient_IsRejected() {
+        AmazonS3 srcS3 = newClient(AmazonS3Encryption.class);
+        try {
+            tm.copy(new CopyObjectRequest("src", "key", "dst", "key"), srcS3, null);
+            fail("Expected the copy to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+        assertEquals(0, requests.get());
+    }
+
+    /**
+     * Returns a client that counts the requests made through it, and has
+     * nothing to return for them.
+     */
+    private <T extends AmazonS3> T newClient(Class<T> type) {
+        return type.cast(Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[] { type },
+                new InvocationHandler() {
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        requests.incrementAndGet();
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                }));
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer.internal;
+
+import static com.amazonaws.services.s3.internal.Constants.MB;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Test;
+
+public class AdaptiveTransferTunerTest {
+    private static final long MIN_PART_SIZE = 5 * MB;
+    private static final long MAX_PART_SIZE = 64 * MB;
+
+    private long now = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void partSize_FollowsThroughputOfSinglePart() {
+        AdaptiveTransferTuner tuner = new AdaptiveTransferTuner(16, MIN_PART_SIZE, MAX_PART_SIZE);
+        assertEquals(MIN_PART_SIZE, tuner.getPartSize());
+
+        // 20 MB in half a second is 40 MB/s, so a part of a second is 40 MB
+        tuner.partCompleted(20 * MB, TimeUnit.MILLISECONDS.toNanos(500), now);
+        assertEquals(40 * MB, tuner.getPartSize());
+    }
+
+    @Test
+    public void partSize_StaysWithinBounds() {
+        AdaptiveTransferTuner slow = new AdaptiveTransferTuner(16, MIN_PART_SIZE, MAX_PART_SIZE);
+        slow.partCompleted(MB, TimeUnit.SECONDS.toNanos(1), now);
+        assertEquals(MIN_PART_SIZE, slow.getPartSize());
+
+        AdaptiveTransferTuner fast = new AdaptiveTransferTuner(16, MIN_PART_SIZE, MAX_PART_SIZE);
+        fast.partCompleted(1000 * MB, TimeUnit.SECONDS.toNanos(1), now);
+        assertEquals(MAX_PART_SIZE, fast.getPartSize());
+    }
+
+    @Test
+    public void concurrency_GrowsToMaximumWhileThroughputScales() {
+        AdaptiveTransferTuner tuner = new AdaptiveTransferTuner(32, MIN_PART_SIZE, MAX_PART_SIZE);
+        // Each stream gets 10 MB/s and the link never saturates
+        Link link = new Link(10 * MB, Long.MAX_VALUE);
+        for (int i = 0; i < 20; i++) {
+            link.transferRound(tuner);
+        }
+        assertEquals(32, tuner.getConcurrency());
+    }
+
+    @Test
+    public void concurrency_ConvergesWhereLinkSaturates() {
+        AdaptiveTransferTuner tuner = new AdaptiveTransferTuner(64, MIN_PART_SIZE, MAX_PART_SIZE);
+        // 25 MB/s per stream on a 125 MB/s (1 Gbps) link saturates at 5 streams
+        Link link = new Link(25 * MB, 125 * MB);
+        for (int i = 0; i < 10; i++) {
+            link.transferRound(tuner);
+        }
+        int maxConcurrency = 0;
+        double minThroughput = Double.MAX_VALUE;
+        for (int i = 0; i < 100; i++) {
+            minThroughput = Math.min(minThroughput, link.transferRound(tuner));
+            maxConcurrency = Math.max(maxConcurrency, tuner.getConcurrency());
+        }
+        // Only probes above the saturation point briefly, and never far
+        assertTrue("Concurrency " + tuner.getConcurrency(),
+                tuner.getConcurrency() >= 5 && tuner.getConcurrency() <= 6);
+        assertTrue("Probed up to " + maxConcurrency, maxConcurrency <= 9);
+        assertTrue("Throughput " + minThroughput, minThroughput >= 0.9 * 125 * MB);
+        // A part takes about a second at the throughput of a single stream
+        assertTrue("Part size " + tuner.getPartSize(),
+                tuner.getPartSize() >= 20 * MB && tuner.getPartSize() <= 26 * MB);
+    }
+
+    @Test
+    public void concurrency_StepsBackWhenGrowingDoesNotPayOff() {
+        AdaptiveTransferTuner tuner = new AdaptiveTransferTuner(64, MIN_PART_SIZE, MAX_PART_SIZE);
+        // Already saturated with the initial 4 streams
+        Link link = new Link(25 * MB, 100 * MB);
+        link.transferRound(tuner);
+        assertEquals(6, tuner.getConcurrency());
+        link.transferRound(tuner);
+        assertEquals(4, tuner.getConcurrency());
+    }
+
+    @Test
+    public void concurrency_IsProbedAgainWhenThroughputDrops() {
+        AdaptiveTransferTuner tuner = new AdaptiveTransferTuner(64, MIN_PART_SIZE, MAX_PART_SIZE);
+        Link link = new Link(25 * MB, 100 * MB);
+        link.transferRound(tuner);
+        link.transferRound(tuner);
+        link.transferRound(tuner);
+        assertEquals(4, tuner.getConcurrency());
+
+        // Streams slow down, e.g. as latency grows, so more of them are needed
+        link.streamThroughput = 10 * MB;
+        link.transferRound(tuner);
+        assertEquals(6, tuner.getConcurrency());
+        for (int i = 0; i < 10; i++) {
+            link.transferRound(tuner);
+        }
+        assertEquals(13, tuner.getConcurrency());
+    }
+
+    @Test
+    public void partSlots_FollowConcurrency() {
+        AdaptiveTransferTuner tuner = new AdaptiveTransferTuner(64, MIN_PART_SIZE, MAX_PART_SIZE);
+        assertEquals(4, tuner.getAvailablePartSlots());
+        Link link = new Link(25 * MB, 100 * MB);
+        link.transferRound(tuner);
+        assertEquals(6, tuner.getAvailablePartSlots());
+        link.transferRound(tuner);
+        assertEquals(4, tuner.getAvailablePartSlots());
+    }
+
+    @Test
+    public void partSlots_BoundPartsInFlightAcrossTransfers() throws Exception {
+        final AdaptiveTransferTuner tuner = new AdaptiveTransferTuner(64, MIN_PART_SIZE, MAX_PART_SIZE);
+        // Parts of several transfers take all the slots
+        for (int i = 0; i < tuner.getConcurrency(); i++) {
+            tuner.acquirePartSlot();
+        }
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> part = executor.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws Exception {
+                    tuner.acquirePartSlot();
+                    return null;
+                }
+            });
+            try {
+                part.get(100, TimeUnit.MILLISECONDS);
+                fail("Expected the part to wait for a slot");
+            } catch (TimeoutException expected) {
+            }
+            tuner.releasePartSlot();
+            part.get(5, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * A simulated link on which each stream transfers at most a given
+     * throughput, and all the streams together at most the link throughput.
+     */
+    private final class Link {
+        private long streamThroughput;
+        private final long linkThroughput;
+
+        Link(long streamThroughput, long linkThroughput) {
+            this.streamThroughput = streamThroughput;
+            this.linkThroughput = linkThroughput;
+        }
+
+        /**
+         * Transfers as many parts as the tuner has in flight, all at once, and
+         * returns the aggregate throughput in bytes per second.
+         */
+        double transferRound(AdaptiveTransferTuner tuner) {
+            final int concurrency = tuner.getConcurrency();
+            final long partSize = tuner.getPartSize();
+            final double throughput = Math.min(streamThroughput, (double) linkThroughput / concurrency);
+            final long elapsedNanos = (long) (partSize / throughput * TimeUnit.SECONDS.toNanos(1));
+            now += elapsedNanos;
+            for (int i = 0; i < concurrency; i++) {
+                tuner.partCompleted(partSize, elapsedNanos, now);
+            }
+            return throughput * concurrency;
+        }
+    }
+}
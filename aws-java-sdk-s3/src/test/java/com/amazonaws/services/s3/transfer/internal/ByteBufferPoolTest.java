@@ -0,0 +1,97 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class ByteBufferPoolTest {
+
+    @Test
+    public void tryAcquire_AllocatesAtMostCapacityBuffers() {
+        ByteBufferPool pool = new ByteBufferPool(3, 16);
+
+        ByteBuffer first = pool.tryAcquire();
+        ByteBuffer second = pool.tryAcquire();
+        ByteBuffer third = pool.tryAcquire();
+
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNotNull(third);
+        assertNotSame(first, second);
+        assertNotSame(second, third);
+        assertNull(pool.tryAcquire());
+    }
+
+    @Test
+    public void tryAcquire_AllocatesDirectBuffersOfBufferSize() {
+        ByteBufferPool pool = new ByteBufferPool(1, 16);
+
+        ByteBuffer buffer = pool.tryAcquire();
+
+        assertTrue(buffer.isDirect());
+        assertEquals(16, buffer.capacity());
+        assertEquals(16, pool.getBufferSize());
+    }
+
+    @Test
+    public void release_ReusesBufferCleared() {
+        ByteBufferPool pool = new ByteBufferPool(1, 16);
+        ByteBuffer buffer = pool.tryAcquire();
+        buffer.put(new byte[10]).flip();
+
+        pool.release(buffer);
+        ByteBuffer reused = pool.tryAcquire();
+
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(16, reused.limit());
+        assertNull(pool.tryAcquire());
+    }
+
+    @Test
+    public void release_ManyCycles_NeverAllocatesMoreThanCapacity() {
+        ByteBufferPool pool = new ByteBufferPool(2, 16);
+        ByteBuffer first = pool.tryAcquire();
+        ByteBuffer second = pool.tryAcquire();
+
+        for (int i = 0; i < 100; i++) {
+            pool.release(first);
+            pool.release(second);
+            ByteBuffer a = pool.tryAcquire();
+            ByteBuffer b = pool.tryAcquire();
+            assertNull(pool.tryAcquire());
+            assertTrue((a == first && b == second) || (a == second && b == first));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_ZeroCapacity_IsRejected() {
+        new ByteBufferPool(0, 16);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void constructor_ZeroBufferSize_IsRejected() {
+        new ByteBufferPool(1, 0);
+    }
+}
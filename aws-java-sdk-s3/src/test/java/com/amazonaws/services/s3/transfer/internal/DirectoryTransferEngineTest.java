@@ -0,0 +1,448 @@
+/*
+ * Copyright 2010-2016 Amazon.com, Inc. or its affiliates. All Rights Reserved.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License").
+ * You may not use this file except in compliance with the License.
+ * A copy of the License is located at
+ *
+ *  http://aws.amazon.com/apache2.0
+ *
+ * or in the "license" file accompanying this file. This file is distributed
+ * on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either
+ * express or implied. See the License for the specific language governing
+ * permissions and limitations under the License.
+ */
+package com.amazonaws.services.s3.transfer.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.amazonaws.AbortedException;
+import com.amazonaws.AmazonClientException;
+import com.amazonaws.services.s3.AbstractAmazonS3;
+import com.amazonaws.services.s3.Headers;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.GetObjectMetadataRequest;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.ListObjectsRequest;
+import com.amazonaws.services.s3.model.ListPartsRequest;
+import com.amazonaws.services.s3.model.ObjectListing;
+import com.amazonaws.services.s3.model.ObjectMetadata;
+import com.amazonaws.services.s3.model.PartListing;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.S3ObjectInputStream;
+import com.amazonaws.services.s3.model.S3ObjectSummary;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import com.amazonaws.services.s3.transfer.MultipleFileDownload;
+import com.amazonaws.services.s3.transfer.MultipleFileUpload;
+import com.amazonaws.services.s3.transfer.Transfer.TransferState;
+import com.amazonaws.services.s3.transfer.TransferManager;
+import com.amazonaws.services.s3.transfer.TransferManagerConfiguration;
+import com.amazonaws.util.BinaryUtils;
+import com.amazonaws.util.Md5Utils;
+
+public class DirectoryTransferEngineTest {
+    private static final String BUCKET = "bucket";
+    private static final int THREADS = 2;
+    private static final int PART_SIZE = 1024;
+    private static final int FILE_SIZE = 8 * PART_SIZE;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(42);
+    private FakeS3 s3;
+    private ExecutorService threadPool;
+    private TransferManager tm;
+
+    @Before
+    public void setUp() {
+        s3 = new FakeS3();
+        threadPool = Executors.newFixedThreadPool(THREADS);
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        configuration.setMaxDirectoryTransferRequests(4);
+        configuration.setMultipartUploadThreshold((long) 2 * PART_SIZE);
+        configuration.setMinimumUploadPartSize(PART_SIZE);
+        configuration.setRangedDownloadThreshold(2 * PART_SIZE);
+        configuration.setRangedDownloadPartSize(PART_SIZE);
+        tm = new TransferManager(s3, threadPool);
+        tm.setConfiguration(configuration);
+    }
+
+    @After
+    public void tearDown() {
+        threadPool.shutdownNow();
+    }
+
+    @Test(timeout = 30000)
+    public void uploadDirectory_MoreLargeFilesThanThreads_Completes() throws Exception {
+        File directory = folder.newFolder();
+        byte[][] contents = new byte[4 * THREADS][];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = randomBytes(FILE_SIZE);
+            writeFile(new File(directory, "file" + i), contents[i]);
+        }
+
+        MultipleFileUpload upload = tm.uploadDirectory(BUCKET, "dir", directory, false);
+        upload.waitForCompletion();
+
+        assertEquals(TransferState.Completed, upload.getState());
+        for (int i = 0; i < contents.length; i++) {
+            assertArrayEquals(contents[i], s3.objects.get("dir/file" + i));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void downloadDirectory_MoreLargeFilesThanThreads_Completes() throws Exception {
+        byte[][] contents = new byte[4 * THREADS][];
+        for (int i = 0; i < contents.length; i++) {
+            contents[i] = randomBytes(FILE_SIZE);
+            s3.objects.put("dir/file" + i, contents[i]);
+        }
+        File directory = folder.newFolder();
+
+        MultipleFileDownload download = tm.downloadDirectory(BUCKET, "dir", directory);
+        download.waitForCompletion();
+
+        assertEquals(TransferState.Completed, download.getState());
+        for (int i = 0; i < contents.length; i++) {
+            assertArrayEquals(contents[i], readFile(new File(directory, "dir/file" + i)));
+        }
+    }
+
+    @Test(timeout = 30000)
+    public void downloadDirectory_ListingFails_AbortsQueuedDownloads() throws Exception {
+        for (int i = 0; i < 4; i++) {
+            s3.objects.put("dir/large" + i, randomBytes(FILE_SIZE));
+            s3.objects.put("dir/small" + i, randomBytes(PART_SIZE));
+        }
+        s3.isListingTruncated = true;
+        s3.gate = new CountDownLatch(1);
+
+        try {
+            tm.downloadDirectory(BUCKET, "dir", folder.newFolder());
+            fail("Expected the listing to fail");
+        } catch (AmazonClientException expected) {
+            assertEquals("Listing failed", expected.getMessage());
+        }
+        // With the gate still closed, the thread pool only gets idle if every
+        // queued download has been canceled and every running one interrupted
+        threadPool.shutdown();
+        assertTrue(threadPool.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(0, s3.objectsRead.get());
+    }
+
+    @Test(timeout = 30000)
+    public void partExecutor_Shutdown_RunsQueuedTasksAndRejectsNewOnes() throws Exception {
+        DirectoryTransferEngine engine = new DirectoryTransferEngine(threadPool, null, newEngineConfiguration(1));
+        ExecutorService lane = engine.newPartExecutor(PART_SIZE);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger runs = new AtomicInteger();
+        lane.execute(new Runnable() {
+            public void run() {
+                awaitQuietly(release);
+                runs.incrementAndGet();
+            }
+        });
+        lane.execute(new Runnable() {
+            public void run() {
+                runs.incrementAndGet();
+            }
+        });
+
+        lane.shutdown();
+        assertTrue(lane.isShutdown());
+        assertFalse(lane.isTerminated());
+        try {
+            lane.execute(new Runnable() {
+                public void run() {
+                }
+            });
+            fail("Expected the task to be rejected");
+        } catch (RejectedExecutionException expected) {
+        }
+        assertFalse(lane.awaitTermination(10, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        assertTrue(lane.awaitTermination(10, TimeUnit.SECONDS));
+        assertTrue(lane.isTerminated());
+        assertEquals(2, runs.get());
+        assertFalse(threadPool.isShutdown());
+    }
+
+    @Test(timeout = 30000)
+    public void partExecutor_ShutdownNow_ReturnsQueuedTasks() throws Exception {
+        DirectoryTransferEngine engine = new DirectoryTransferEngine(threadPool, null, newEngineConfiguration(1));
+        ExecutorService lane = engine.newPartExecutor(PART_SIZE);
+        ExecutorService otherLane = engine.newPartExecutor(PART_SIZE);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger runs = new AtomicInteger();
+        Runnable blocked = new Runnable() {
+            public void run() {
+                awaitQuietly(release);
+                runs.incrementAndGet();
+            }
+        };
+        Runnable queued = new Runnable() {
+            public void run() {
+                runs.incrementAndGet();
+            }
+        };
+        lane.execute(blocked);
+        lane.execute(queued);
+        lane.execute(queued);
+        otherLane.execute(queued);
+
+        List<Runnable> removed = lane.shutdownNow();
+        assertEquals(2, removed.size());
+        assertTrue(removed.contains(queued));
+
+        release.countDown();
+        assertTrue(lane.awaitTermination(10, TimeUnit.SECONDS));
+        otherLane.shutdown();
+        assertTrue(otherLane.awaitTermination(10, TimeUnit.SECONDS));
+        // The blocked task and the task of the other lane
+        assertEquals(2, runs.get());
+    }
+
+    private static TransferManagerConfiguration newEngineConfiguration(int maxRequests) {
+        TransferManagerConfiguration configuration = new TransferManagerConfiguration();
+        configuration.setMaxDirectoryTransferRequests(maxRequests);
+        return configuration;
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return bytes;
+    }
+
+    private static void writeFile(File file, byte[] content) throws IOException {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(content);
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        return readFile(file, 0, file.length());
+    }
+
+    private static byte[] readFile(File file, long offset, long length) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            byte[] bytes = new byte[(int) length];
+            raf.seek(offset);
+            raf.readFully(bytes);
+            return bytes;
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Keeps objects in memory, uploaded from files and downloaded by range,
+     * in a single bucket without common prefixes.
+     */
+    private static final class FakeS3 extends AbstractAmazonS3 {
+        private final Map<String, byte[]> objects = new ConcurrentHashMap<String, byte[]>();
+        private final Map<String, Map<Integer, byte[]>> uploads =
+                new ConcurrentHashMap<String, Map<Integer, byte[]>>();
+        /** The number of GetObject requests that returned an object. */
+        private final AtomicInteger objectsRead = new AtomicInteger();
+        /** Holds requests that transfer data until it is opened. */
+        private volatile CountDownLatch gate = new CountDownLatch(0);
+        /** Whether listings claim to have more objects, which then fails. */
+        private volatile boolean isListingTruncated;
+
+        @Override
+        public PutObjectResult putObject(PutObjectRequest request) {
+            pass();
+            try {
+                objects.put(request.getKey(), readFile(request.getFile()));
+            } catch (IOException e) {
+                throw new AmazonClientException("Unable to read " + request.getFile(), e);
+            }
+            return new PutObjectResult();
+        }
+
+        @Override
+        public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request) {
+            uploads.put(request.getKey(), new ConcurrentSkipListMap<Integer, byte[]>());
+            InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+            result.setBucketName(request.getBucketName());
+            result.setKey(request.getKey());
+            result.setUploadId(request.getKey());
+            return result;
+        }
+
+        @Override
+        public UploadPartResult uploadPart(UploadPartRequest request) {
+            pass();
+            try {
+                uploads.get(request.getUploadId()).put(request.getPartNumber(),
+                        readFile(request.getFile(), request.getFileOffset(), request.getPartSize()));
+            } catch (IOException e) {
+                throw new AmazonClientException("Unable to read " + request.getFile(), e);
+            }
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("etag" + request.getPartNumber());
+            return result;
+        }
+
+        @Override
+        public PartListing listParts(ListPartsRequest request) {
+            PartListing listing = new PartListing();
+            listing.setBucketName(request.getBucketName());
+            listing.setKey(request.getKey());
+            listing.setUploadId(request.getUploadId());
+            return listing;
+        }
+
+        @Override
+        public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request) {
+            Map<Integer, byte[]> parts = uploads.remove(request.getUploadId());
+            assertEquals(parts.size(), request.getPartETags().size());
+            ByteArrayOutputStream object = new ByteArrayOutputStream();
+            for (byte[] part : parts.values()) {
+                object.write(part, 0, part.length);
+            }
+            objects.put(request.getKey(), object.toByteArray());
+            CompleteMultipartUploadResult result = new CompleteMultipartUploadResult();
+            result.setBucketName(request.getBucketName());
+            result.setKey(request.getKey());
+            return result;
+        }
+
+        @Override
+        public void abortMultipartUpload(AbortMultipartUploadRequest request) {
+            uploads.remove(request.getUploadId());
+        }
+
+        @Override
+        public ObjectListing listObjects(ListObjectsRequest request) {
+            ObjectListing listing = new ObjectListing();
+            listing.setBucketName(request.getBucketName());
+            listing.setPrefix(request.getPrefix());
+            for (Map.Entry<String, byte[]> object : new ConcurrentSkipListMap<String, byte[]>(objects).entrySet()) {
+                if (object.getKey().startsWith(request.getPrefix())) {
+                    S3ObjectSummary summary = new S3ObjectSummary();
+                    summary.setBucketName(request.getBucketName());
+                    summary.setKey(object.getKey());
+                    summary.setSize(object.getValue().length);
+                    summary.setETag(eTag(object.getValue()));
+                    summary.setLastModified(new Date(0));
+                    listing.getObjectSummaries().add(summary);
+                }
+            }
+            listing.setTruncated(isListingTruncated);
+            return listing;
+        }
+
+        @Override
+        public ObjectListing listNextBatchOfObjects(ObjectListing previousObjectListing) {
+            throw new AmazonClientException("Listing failed");
+        }
+
+        @Override
+        public ObjectMetadata getObjectMetadata(GetObjectMetadataRequest request) {
+            byte[] object = objects.get(request.getKey());
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(object.length);
+            metadata.setLastModified(new Date(0));
+            metadata.setHeader(Headers.ETAG, eTag(object));
+            return metadata;
+        }
+
+        @Override
+        public S3Object getObject(GetObjectRequest request) {
+            pass();
+            byte[] object = objects.get(request.getKey());
+            long[] range = request.getRange();
+            int first = range == null ? 0 : (int) range[0];
+            int last = range == null ? object.length - 1 : (int) Math.min(range[1], object.length - 1);
+            ObjectMetadata metadata = new ObjectMetadata();
+            metadata.setContentLength(last - first + 1);
+            metadata.setLastModified(new Date(0));
+            metadata.setHeader(Headers.CONTENT_RANGE, "bytes " + first + "-" + last + "/" + object.length);
+            S3Object result = new S3Object();
+            result.setBucketName(request.getBucketName());
+            result.setKey(request.getKey());
+            result.setObjectMetadata(metadata);
+            result.setObjectContent(new S3ObjectInputStream(
+                    new ByteArrayInputStream(object, first, last - first + 1), null));
+            objectsRead.incrementAndGet();
+            return result;
+        }
+
+        @Override
+        public ObjectMetadata getObject(GetObjectRequest request, File destinationFile) {
+            S3Object object = getObject(request);
+            try {
+                writeFile(destinationFile, objects.get(request.getKey()));
+            } catch (IOException e) {
+                throw new AmazonClientException("Unable to write " + destinationFile, e);
+            }
+            return object.getObjectMetadata();
+        }
+
+        private void pass() {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AbortedException();
+            }
+        }
+
+        private static String eTag(byte[] object) {
+            return BinaryUtils.toHex(Md5Utils.computeMD5Hash(object));
+        }
+    }
+}